@@ -0,0 +1,131 @@
+package it.eng.dome.billing.engine.benchmark;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import it.eng.dome.tmforum.tmf620.v4.model.Money;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPriceRelationship;
+import it.eng.dome.tmforum.tmf620.v4.model.Quantity;
+import it.eng.dome.tmforum.tmf635.v4.model.ProductRef;
+import it.eng.dome.tmforum.tmf635.v4.model.RatedProductUsage;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+import it.eng.dome.tmforum.tmf637.v4.model.BillingAccountRef;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf637.v4.model.ProductOfferingPriceRef;
+import it.eng.dome.tmforum.tmf637.v4.model.ProductPrice;
+import it.eng.dome.tmforum.tmf637.v4.model.ProductStatusType;
+import it.eng.dome.tmforum.tmf637.v4.model.RelatedParty;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * TMForum entities shared by the benchmarks (valid for the {@link it.eng.dome.billing.engine.validator.TMFEntityValidator})
+ */
+final class BenchmarkFixtures {
+
+	static final String CURRENCY = "EUR";
+	static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+	private BenchmarkFixtures() {
+	}
+
+	static ProductOfferingPrice createPop(String id, String priceType, float value) {
+		ProductOfferingPrice pop = new ProductOfferingPrice();
+		pop.setId(id);
+		pop.setName(priceType);
+		pop.setPriceType(priceType);
+		pop.setIsBundle(false);
+		pop.setLifecycleStatus("Launched");
+		pop.setPrice(new Money().unit(CURRENCY).value(value));
+		return pop;
+	}
+
+	static ProductOfferingPrice createRecurringPop(String id, String priceType, float value, String periodType, int periodLength) {
+		ProductOfferingPrice pop = createPop(id, priceType, value);
+		pop.setRecurringChargePeriodType(periodType);
+		pop.setRecurringChargePeriodLength(periodLength);
+		return pop;
+	}
+
+	static ProductOfferingPrice createUsagePop(String id, float value, String metric, float unitAmount) {
+		ProductOfferingPrice pop = createRecurringPop(id, "usage", value, "month", 1);
+		pop.setUnitOfMeasure(new Quantity().amount(unitAmount).units(metric));
+		return pop;
+	}
+
+	/*
+	 * Percentage discount valid from 2020 to 2100
+	 */
+	static ProductOfferingPrice createDiscountPop(String id, float percentage) {
+		ProductOfferingPrice pop = new ProductOfferingPrice();
+		pop.setId(id);
+		pop.setName("discount");
+		pop.setPriceType("discount");
+		pop.setIsBundle(false);
+		pop.setLifecycleStatus("Launched");
+		pop.setPercentage(percentage);
+		it.eng.dome.tmforum.tmf620.v4.model.TimePeriod validFor = new it.eng.dome.tmforum.tmf620.v4.model.TimePeriod();
+		validFor.setStartDateTime(OffsetDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC));
+		validFor.setEndDateTime(OffsetDateTime.of(2100, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC));
+		pop.setValidFor(validFor);
+		return pop;
+	}
+
+	static void addAlterations(ProductOfferingPrice pop, List<ProductOfferingPrice> alterations) {
+		for (ProductOfferingPrice alteration : alterations) {
+			pop.addPopRelationshipItem(new ProductOfferingPriceRelationship().id(alteration.getId()));
+		}
+	}
+
+	static Product createProduct(String id, OffsetDateTime startDate, List<ProductOfferingPrice> pops) {
+		Product product = new Product();
+		product.setId(id);
+		product.setStartDate(startDate);
+		product.setStatus(ProductStatusType.ACTIVE);
+		BillingAccountRef billingAccount = new BillingAccountRef();
+		billingAccount.setId("urn:ngsi-ld:billing-account:1");
+		product.setBillingAccount(billingAccount);
+		product.addRelatedPartyItem(new RelatedParty().id("urn:ngsi-ld:organization:buyer").role("Buyer"));
+		product.addRelatedPartyItem(new RelatedParty().id("urn:ngsi-ld:organization:seller").role("Seller"));
+		for (ProductOfferingPrice pop : pops) {
+			product.addProductPriceItem(new ProductPrice().productOfferingPrice(new ProductOfferingPriceRef().id(pop.getId())));
+		}
+		return product;
+	}
+
+	/*
+	 * Usage(s) of the Product with usageDate randomly distributed in the TimePeriod, each one with a value for each metric
+	 */
+	static List<Usage> createUsages(String productId, String[] metrics, int count, TimePeriod tp, long seed) {
+		Random random = new Random(seed);
+		long seconds = tp.getEndDateTime().toEpochSecond() - tp.getStartDateTime().toEpochSecond();
+
+		List<Usage> usages = new ArrayList<Usage>(count);
+		for (int i = 0; i < count; i++) {
+			Usage usage = new Usage();
+			usage.setId("urn:ngsi-ld:usage:" + i);
+			usage.setUsageDate(tp.getStartDateTime().plusSeconds((long) (random.nextDouble() * seconds)));
+			usage.addRatedProductUsageItem(new RatedProductUsage().productRef(new ProductRef().id(productId)));
+			for (String metric : metrics) {
+				UsageCharacteristic usageCh = new UsageCharacteristic();
+				usageCh.setName(metric);
+				usageCh.setValue(random.nextInt(1000) / 10d);
+				usage.addUsageCharacteristicItem(usageCh);
+			}
+			usages.add(usage);
+		}
+		return usages;
+	}
+
+	static TimePeriod createTimePeriod(OffsetDateTime start, OffsetDateTime end) {
+		TimePeriod tp = new TimePeriod();
+		tp.setStartDateTime(start);
+		tp.setEndDateTime(end);
+		return tp;
+	}
+
+}
@@ -0,0 +1,70 @@
+package it.eng.dome.billing.engine.benchmark;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.eng.dome.billing.engine.exception.BillingBadRequestException;
+import it.eng.dome.billing.engine.service.BillCycleService;
+import it.eng.dome.brokerage.model.BillCycle;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Bill cycles of a recurring {@link ProductOfferingPrice} for each recurring charge period type and for products activated from one to ten years ago:
+ * all the bill cycles from the activation date ({@link BillCycleService#getBillCycles(ProductOfferingPrice, OffsetDateTime, OffsetDateTime)})
+ * and the bill cycles of the last month (the billing run of a product).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BillCycleServiceBenchmark {
+
+	@Param({ "day", "week", "month", "year" })
+	private String periodType;
+
+	@Param({ "1", "10" })
+	private int historyYears;
+
+	private final BillCycleService billCycleService = new BillCycleService();
+
+	private ProductOfferingPrice pop;
+	private OffsetDateTime activationDate;
+	private OffsetDateTime limitDate;
+	private TimePeriod lastMonth;
+
+	@Setup
+	public void setUp() {
+		pop = BenchmarkFixtures.createRecurringPop("urn:ngsi-ld:product-offering-price:recurring", "recurring", 10f, periodType, 1);
+
+		limitDate = BenchmarkFixtures.START.plusYears(historyYears);
+		activationDate = BenchmarkFixtures.START.plusDays(13).plusHours(10);
+		lastMonth = BenchmarkFixtures.createTimePeriod(limitDate.minusMonths(1), limitDate.minusSeconds(1));
+	}
+
+	@Benchmark
+	public List<BillCycle> billCyclesFromActivation() throws BillingBadRequestException {
+		return billCycleService.getBillCycles(pop, activationDate, limitDate);
+	}
+
+	@Benchmark
+	public List<BillCycle> billCyclesInLastMonth() throws BillingBadRequestException {
+		return billCycleService.getBillCyclesInBillingPeriod(pop, activationDate, lastMonth);
+	}
+
+}
@@ -0,0 +1,91 @@
+package it.eng.dome.billing.engine.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.service.BillingEngineService;
+import it.eng.dome.brokerage.model.Invoice;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * End-to-end {@link BillingEngineService#calculateBill(Product, TimePeriod)} of a yearly billing period against the in-memory TMForum:
+ * a monthly price with a discount, a yearly prepaid price and two usage prices (12 monthly usage bill cycles) on a year of Usage(s),
+ * with the sequential and the parallel pricing of the POP/bill cycle pairs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class BillingEngineBenchmark {
+
+	private static final String[] METRICS = { "apiCalls", "storage" };
+	private static final String PRODUCT_ID = "urn:ngsi-ld:product:1";
+
+	@Param({ "1000", "100000" })
+	private int usageCount;
+
+	@Param({ "false", "true" })
+	private boolean parallel;
+
+	private AnnotationConfigApplicationContext context;
+	private BillingEngineService billingEngineService;
+
+	private Product product;
+	private TimePeriod billingPeriod;
+
+	@Setup
+	public void setUp() throws Exception {
+		ProductOfferingPrice monthlyPop = BenchmarkFixtures.createRecurringPop("urn:ngsi-ld:product-offering-price:monthly", "recurring", 9.99f, "month", 1);
+		ProductOfferingPrice discount = BenchmarkFixtures.createDiscountPop("urn:ngsi-ld:product-offering-price:discount", 10f);
+		BenchmarkFixtures.addAlterations(monthlyPop, List.of(discount));
+		ProductOfferingPrice yearlyPop = BenchmarkFixtures.createRecurringPop("urn:ngsi-ld:product-offering-price:yearly", "recurring-prepaid", 99f, "year", 1);
+		ProductOfferingPrice apiCallsPop = BenchmarkFixtures.createUsagePop("urn:ngsi-ld:product-offering-price:api-calls", 0.25f, METRICS[0], 1000f);
+		ProductOfferingPrice storagePop = BenchmarkFixtures.createUsagePop("urn:ngsi-ld:product-offering-price:storage", 0.02f, METRICS[1], 1f);
+		List<ProductOfferingPrice> pops = List.of(monthlyPop, yearlyPop, apiCallsPop, storagePop);
+
+		billingPeriod = BenchmarkFixtures.createTimePeriod(BenchmarkFixtures.START, BenchmarkFixtures.START.plusYears(1).minusSeconds(1));
+		product = BenchmarkFixtures.createProduct(PRODUCT_ID, BenchmarkFixtures.START, pops);
+
+		InMemoryTmf tmf = new InMemoryTmf().addProductOfferingPrice(discount)
+				.addUsages(BenchmarkFixtures.createUsages(PRODUCT_ID, METRICS, usageCount, billingPeriod, 42));
+		pops.forEach(tmf::addProductOfferingPrice);
+
+		AppProperties appProperties = new AppProperties();
+		appProperties.setSchema(new AppProperties.Schema());
+		appProperties.getSchema().setSchemaLocationRelatedParty("https://raw.githubusercontent.com/DOME-Marketplace/tmf-api/refs/heads/main/DOME/TrackedShareableEntity.schema.json");
+		appProperties.setBillCycle(new AppProperties.BillCycle());
+		appProperties.getPricing().setParallel(parallel);
+		context = tmf.createContext(appProperties);
+		billingEngineService = context.getBean(BillingEngineService.class);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public List<Invoice> calculateBill() throws Exception {
+		return billingEngineService.calculateBill(product, billingPeriod);
+	}
+
+}
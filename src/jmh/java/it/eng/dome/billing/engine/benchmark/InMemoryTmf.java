@@ -0,0 +1,108 @@
+package it.eng.dome.billing.engine.benchmark;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import ch.qos.logback.classic.Level;
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.price.alteration.DiscountAlterationOperation;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationFactory;
+import it.eng.dome.billing.engine.price.calculator.PriceCalculatorFactory;
+import it.eng.dome.billing.engine.service.BillCycleService;
+import it.eng.dome.billing.engine.service.BillingEngineService;
+import it.eng.dome.billing.engine.service.PricePreviewService;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
+import it.eng.dome.billing.engine.service.ProductPriceService;
+import it.eng.dome.billing.engine.service.UsageIngestionService;
+import it.eng.dome.billing.engine.service.UsageRatingService;
+import it.eng.dome.billing.engine.service.UsageService;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
+import it.eng.dome.brokerage.api.UsageManagementApis;
+import it.eng.dome.tmforum.tmf620.v4.ApiException;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+
+/**
+ * In-memory TMForum used by the end-to-end benchmarks: the TMF620 and TMF635 APIs answer from maps, without HTTP,
+ * and the billing engine's components are wired by Spring as in the application (but without the web layer and the TMForum clients).
+ * The ProductOfferingPrice(s) and the Usage(s) must be added before the context is created.
+ */
+final class InMemoryTmf {
+
+	// key: ProductOfferingPrice's id
+	private final Map<String, ProductOfferingPrice> pops = new HashMap<String, ProductOfferingPrice>();
+
+	// the Usage(s) are paged as TMForum does (the query filters are applied client-side by the billing engine)
+	private final List<Usage> usages = new ArrayList<Usage>();
+
+	static {
+		// the benchmarks measure the billing engine, not the console
+		((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+	}
+
+	public InMemoryTmf addProductOfferingPrice(ProductOfferingPrice pop) {
+		pops.put(pop.getId(), pop);
+		return this;
+	}
+
+	public InMemoryTmf addUsages(List<Usage> usages) {
+		this.usages.addAll(usages);
+		return this;
+	}
+
+	public ProductCatalogManagementApis productCatalogManagementApis() throws ApiException {
+		ProductCatalogManagementApis productCatalogManagementApis = mock(ProductCatalogManagementApis.class);
+		when(productCatalogManagementApis.getProductOfferingPrice(anyString(), any())).thenAnswer(invocation -> pops.get(invocation.getArgument(0)));
+		return productCatalogManagementApis;
+	}
+
+	public UsageManagementApis usageManagementApis() throws it.eng.dome.tmforum.tmf635.v4.ApiException {
+		UsageManagementApis usageManagementApis = mock(UsageManagementApis.class);
+		when(usageManagementApis.listUsages(any(), any(), any(), any())).thenAnswer(invocation -> {
+			int offset = invocation.getArgument(1) == null ? 0 : invocation.<Integer>getArgument(1);
+			int limit = invocation.getArgument(2) == null ? usages.size() : invocation.<Integer>getArgument(2);
+			return new ArrayList<Usage>(usages.subList(Math.min(offset, usages.size()), Math.min(offset + limit, usages.size())));
+		});
+		return usageManagementApis;
+	}
+
+	/**
+	 * Creates the Spring context with the billing engine's services backed by this in-memory TMForum
+	 *
+	 * @param appProperties the application's properties
+	 * @return the refreshed context (to be closed at the end of the benchmark)
+	 * @throws Exception if the in-memory APIs can't be created
+	 */
+	public AnnotationConfigApplicationContext createContext(AppProperties appProperties) throws Exception {
+		ProductCatalogManagementApis productCatalogManagementApis = this.productCatalogManagementApis();
+		UsageManagementApis usageManagementApis = this.usageManagementApis();
+
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		context.registerBean(AppProperties.class, () -> appProperties);
+		context.registerBean(ProductCatalogManagementApis.class, () -> productCatalogManagementApis);
+		context.registerBean(UsageManagementApis.class, () -> usageManagementApis);
+		context.registerBean(ObjectMapper.class, () -> JsonMapper.builder().findAndAddModules().build());
+		context.register(TMFEntityValidator.class, BillCycleService.class, ProductOfferingPriceService.class, UsageService.class,
+				UsageRatingService.class, UsageIngestionService.class,
+				PriceAlterationFactory.class, DiscountAlterationOperation.class, PriceAlterationCalculator.class, PriceCalculatorFactory.class,
+				ProductPriceService.class, PricePreviewService.class, BillingEngineService.class);
+		context.refresh();
+		return context;
+	}
+
+}
@@ -0,0 +1,98 @@
+package it.eng.dome.billing.engine.benchmark;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.eng.dome.billing.engine.model.Money;
+
+/**
+ * Compares the amounts of a bill computed with floats and BigDecimal(s) created from their text (the previous arithmetic) 
+ * with the fixed point {@link Money}: each rate of the bill has a percentage and a fixed discount and the rates are summed in the bill total.
+ * Run with "-prof gc" to compare the allocation per bill (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+
+	private static final String CURRENCY = "EUR";
+	private static final BigDecimal ONE_HUNDRED = new BigDecimal("100");
+
+	@Param({ "100" })
+	private int rateCount;
+
+	private float[] prices;
+	private float percentage;
+	private float fixedDiscount;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		prices = new float[rateCount];
+		for (int i = 0; i < rateCount; i++) {
+			prices[i] = random.nextInt(1_000_000) / 100f;
+		}
+		percentage = 12.5f;
+		fixedDiscount = 1.5f;
+	}
+
+	/*
+	 * The previous arithmetic: each alteration converts the float prices to BigDecimal through their text, the rates are summed as floats
+	 */
+	@Benchmark
+	public float floatAndBigDecimal() {
+		float total = 0f;
+		for (float price : prices) {
+			BigDecimal basePrice = new BigDecimal(String.valueOf(price));
+
+			List<BigDecimal> alterationAmounts = new ArrayList<BigDecimal>();
+			alterationAmounts.add(basePrice
+					.multiply(new BigDecimal(String.valueOf(percentage)))
+					.divide(ONE_HUNDRED)
+					.setScale(2, RoundingMode.HALF_EVEN).abs().negate());
+			alterationAmounts.add(new BigDecimal(String.valueOf(fixedDiscount)).abs().negate());
+
+			BigDecimal totalAlterations = alterationAmounts.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+			total += basePrice.add(totalAlterations).floatValue();
+		}
+		return total;
+	}
+
+	/*
+	 * The fixed point arithmetic: the floats are converted once and the amounts are summed as long(s)
+	 */
+	@Benchmark
+	public float fixedPointMoney() {
+		Money total = Money.zero(CURRENCY);
+		for (float price : prices) {
+			Money basePrice = new Money(CURRENCY, price);
+
+			Money totalAlterations = Money.zero(CURRENCY)
+					.add(basePrice.percentage(percentage, 2).abs().negate())
+					.add(new Money(CURRENCY, fixedDiscount).abs().negate());
+
+			total = total.add(basePrice.add(totalAlterations));
+		}
+		return total.getValue();
+	}
+
+}
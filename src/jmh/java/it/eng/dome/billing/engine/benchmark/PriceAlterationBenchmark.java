@@ -0,0 +1,81 @@
+package it.eng.dome.billing.engine.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.tmforum.tmf620.v4.ApiException;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf622.v4.model.OrderPrice;
+import it.eng.dome.tmforum.tmf622.v4.model.Price;
+
+/**
+ * {@link PriceAlterationCalculator#applyAlterations} of one or more percentage discounts, with the alteration operations created by Spring
+ * as in the application: on the {@link OrderPrice} of a price preview and on the {@link Money} of a bill.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriceAlterationBenchmark {
+
+	@Param({ "1", "5" })
+	private int alterationCount;
+
+	private AnnotationConfigApplicationContext context;
+	private PriceAlterationCalculator priceAlterationCalculator;
+
+	private List<ProductOfferingPrice> alterations;
+	private Money basePrice;
+
+	@Setup
+	public void setUp() throws Exception {
+		alterations = new ArrayList<ProductOfferingPrice>();
+		for (int i = 0; i < alterationCount; i++) {
+			alterations.add(BenchmarkFixtures.createDiscountPop("urn:ngsi-ld:product-offering-price:discount-" + i, 5f + i));
+		}
+		basePrice = new Money(BenchmarkFixtures.CURRENCY, 1234.56f);
+
+		context = new InMemoryTmf().createContext(new AppProperties());
+		priceAlterationCalculator = context.getBean(PriceAlterationCalculator.class);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public OrderPrice applyAlterationsToOrderPrice() throws BillingEngineValidationException {
+		// the alterations are added to the OrderPrice, so a new one is needed for each invocation
+		OrderPrice orderPrice = new OrderPrice().priceType("recurring")
+				.price(new Price().dutyFreeAmount(new it.eng.dome.tmforum.tmf622.v4.model.Money().unit(BenchmarkFixtures.CURRENCY).value(1234.56f)));
+		return priceAlterationCalculator.applyAlterations(orderPrice, alterations, 3f);
+	}
+
+	@Benchmark
+	public Money applyAlterationsToMoney() throws BillingEngineValidationException, ApiException {
+		return priceAlterationCalculator.applyAlterations(basePrice, alterations);
+	}
+
+}
@@ -0,0 +1,91 @@
+package it.eng.dome.billing.engine.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.service.PricePreviewService;
+import it.eng.dome.tmforum.tmf620.v4.ApiException;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf622.v4.model.OrderPrice;
+import it.eng.dome.tmforum.tmf622.v4.model.ProductOfferingPriceRef;
+import it.eng.dome.tmforum.tmf622.v4.model.ProductOrder;
+import it.eng.dome.tmforum.tmf622.v4.model.ProductOrderItem;
+
+/**
+ * {@link PricePreviewService#calculateOrderPrice(ProductOrder, List)} of large {@link ProductOrder}(s): each ProductOrderItem has a one time price,
+ * a monthly price with two discounts and a yearly price. The ProductOfferingPrice(s) are read from the in-memory TMForum
+ * through the ProductOfferingPrice cache, as in the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PricePreviewBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	private int itemCount;
+
+	private AnnotationConfigApplicationContext context;
+	private PricePreviewService pricePreviewService;
+
+	private ProductOrder productOrder;
+
+	@Setup
+	public void setUp() throws Exception {
+		ProductOfferingPrice oneTimePop = BenchmarkFixtures.createPop("urn:ngsi-ld:product-offering-price:one-time", "one time", 100f);
+		ProductOfferingPrice recurringPop = BenchmarkFixtures.createRecurringPop("urn:ngsi-ld:product-offering-price:recurring", "recurring", 9.99f, "month", 1);
+		ProductOfferingPrice yearlyPop = BenchmarkFixtures.createRecurringPop("urn:ngsi-ld:product-offering-price:yearly", "recurring-prepaid", 99f, "year", 1);
+		List<ProductOfferingPrice> discounts = List.of(BenchmarkFixtures.createDiscountPop("urn:ngsi-ld:product-offering-price:discount-1", 10f),
+				BenchmarkFixtures.createDiscountPop("urn:ngsi-ld:product-offering-price:discount-2", 5f));
+		BenchmarkFixtures.addAlterations(recurringPop, discounts);
+
+		InMemoryTmf tmf = new InMemoryTmf().addProductOfferingPrice(oneTimePop).addProductOfferingPrice(recurringPop).addProductOfferingPrice(yearlyPop);
+		discounts.forEach(tmf::addProductOfferingPrice);
+		context = tmf.createContext(new AppProperties());
+		pricePreviewService = context.getBean(PricePreviewService.class);
+
+		productOrder = new ProductOrder();
+		productOrder.setId("urn:ngsi-ld:product-order:1");
+		for (int i = 0; i < itemCount; i++) {
+			ProductOrderItem item = new ProductOrderItem();
+			item.setId(String.valueOf(i));
+			item.setQuantity(1 + i % 10);
+			for (ProductOfferingPrice pop : List.of(oneTimePop, recurringPop, yearlyPop)) {
+				item.addItemTotalPriceItem(new OrderPrice().productOfferingPrice(new ProductOfferingPriceRef().id(pop.getId())));
+			}
+			productOrder.addProductOrderItemItem(item);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	/*
+	 * The itemPrice(s) and the orderTotalPrice are replaced at each calculation, so the same ProductOrder is priced again
+	 */
+	@Benchmark
+	public ProductOrder calculateOrderPrice() throws BillingEngineValidationException, ApiException {
+		return pricePreviewService.calculateOrderPrice(productOrder, null);
+	}
+
+}
@@ -0,0 +1,63 @@
+package it.eng.dome.billing.engine.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.service.BillingEngineService;
+import it.eng.dome.brokerage.model.Invoice;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Time to the first bill in a new JVM: the creation of the billing engine's Spring context against the in-memory TMForum and the first
+ * {@link BillingEngineService#calculateBill(Product, TimePeriod)} of a monthly billing period (a monthly price with a discount and a usage price),
+ * so the class loading and the initialization of the pricing pipeline are measured. Each fork measures a single cold start
+ * (the class data sharing archive of the fast-startup profile can be compared with -Djmh.args="Startup -jvmArgsAppend -XX:SharedArchiveFile=...").
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 10)
+public class StartupBenchmark {
+
+	private static final String[] METRICS = { "apiCalls" };
+	private static final String PRODUCT_ID = "urn:ngsi-ld:product:1";
+
+	@Benchmark
+	public List<Invoice> timeToFirstBill() throws Exception {
+		ProductOfferingPrice monthlyPop = BenchmarkFixtures.createRecurringPop("urn:ngsi-ld:product-offering-price:monthly", "recurring", 9.99f, "month", 1);
+		ProductOfferingPrice discount = BenchmarkFixtures.createDiscountPop("urn:ngsi-ld:product-offering-price:discount", 10f);
+		BenchmarkFixtures.addAlterations(monthlyPop, List.of(discount));
+		ProductOfferingPrice apiCallsPop = BenchmarkFixtures.createUsagePop("urn:ngsi-ld:product-offering-price:api-calls", 0.25f, METRICS[0], 1000f);
+		List<ProductOfferingPrice> pops = List.of(monthlyPop, apiCallsPop);
+
+		TimePeriod billingPeriod = BenchmarkFixtures.createTimePeriod(BenchmarkFixtures.START, BenchmarkFixtures.START.plusMonths(1).minusSeconds(1));
+		Product product = BenchmarkFixtures.createProduct(PRODUCT_ID, BenchmarkFixtures.START, pops);
+
+		InMemoryTmf tmf = new InMemoryTmf().addProductOfferingPrice(discount)
+				.addUsages(BenchmarkFixtures.createUsages(PRODUCT_ID, METRICS, 100, billingPeriod, 42));
+		pops.forEach(tmf::addProductOfferingPrice);
+
+		AppProperties appProperties = new AppProperties();
+		appProperties.setSchema(new AppProperties.Schema());
+		appProperties.getSchema().setSchemaLocationRelatedParty("https://raw.githubusercontent.com/DOME-Marketplace/tmf-api/refs/heads/main/DOME/TrackedShareableEntity.schema.json");
+		appProperties.setBillCycle(new AppProperties.BillCycle());
+
+		try (AnnotationConfigApplicationContext context = tmf.createContext(appProperties)) {
+			return context.getBean(BillingEngineService.class).calculateBill(product, billingPeriod);
+		}
+	}
+
+}
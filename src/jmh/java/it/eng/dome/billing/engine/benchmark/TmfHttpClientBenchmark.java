@@ -0,0 +1,144 @@
+package it.eng.dome.billing.engine.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.tmf.TmfHttpClient;
+
+/**
+ * Latency of a burst of TMF635 Usage page requests (8 concurrent callers) against a local stub with a simulated TMForum latency:
+ * <ul>
+ * <li>newClient: a default HttpClient built for each request, as the generated TMForum clients do each time an API class is instantiated</li>
+ * <li>default: a shared default HttpClient (HTTP/2 upgrade attempt, unbounded connections, no timeouts)</li>
+ * <li>tuned: the {@link TmfHttpClient} with the default settings of the application.yml file</li>
+ * <li>tuned-gzip: the {@link TmfHttpClient} with the compression of the responses</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(8)
+@Fork(1)
+public class TmfHttpClientBenchmark {
+
+	@Param({ "newClient", "default", "tuned", "tuned-gzip" })
+	private String client;
+
+	@Param({ "0", "5" })
+	private int latencyMillis;
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private HttpClient httpClient;
+	private HttpRequest request;
+
+	private byte[] body;
+	private byte[] gzipBody;
+
+	@Setup
+	public void setUp() throws IOException {
+		String usages = IntStream.range(0, 100)
+				.mapToObj(i -> "{\"id\":\"urn:ngsi-ld:usage:" + i + "\",\"usageDate\":\"2025-01-01T00:00:00Z\",\"usageType\":\"local\","
+						+ "\"usageCharacteristic\":[{\"name\":\"apiCalls\",\"valueType\":\"float\",\"value\":" + i + ".5}]}")
+				.collect(Collectors.joining(",", "[", "]"));
+		body = usages.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(body);
+		}
+		gzipBody = compressed.toByteArray();
+
+		executor = Executors.newCachedThreadPool();
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/usage", this::handle);
+		server.setExecutor(executor);
+		server.start();
+
+		request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getAddress().getPort() + "/usage?offset=0&limit=100"))
+				.timeout(Duration.ofSeconds(30)).GET().build();
+
+		AppProperties.TmfHttp settings = new AppProperties.TmfHttp();
+		settings.setCompression("tuned-gzip".equals(client));
+		if (client.startsWith("tuned")) {
+			httpClient = new TmfHttpClient("tmf635", settings);
+		} else if ("default".equals(client)) {
+			httpClient = HttpClient.newHttpClient();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/*
+	 * The body is read as a stream, as the generated TMForum clients do
+	 */
+	@Benchmark
+	public byte[] getUsagePage() throws IOException, InterruptedException {
+		HttpClient current = httpClient != null ? httpClient : HttpClient.newHttpClient();
+		HttpResponse<InputStream> response = current.send(request, HttpResponse.BodyHandlers.ofInputStream());
+		try (InputStream in = response.body()) {
+			return in.readAllBytes();
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (latencyMillis > 0) {
+				Thread.sleep(latencyMillis);
+			}
+			byte[] response = body;
+			if ("gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"))) {
+				response = gzipBody;
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			}
+			exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+			exchange.sendResponseHeaders(200, response.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(response);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+package it.eng.dome.billing.engine.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.eng.dome.billing.engine.utils.UsageUtils;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+
+/**
+ * {@link UsageUtils#createUsageCharacteristicDataMap(List)} for a month of {@link Usage}(s) of a product, with one or more metrics per Usage
+ * (see {@link UsageIndexBenchmark} for the comparison with the {@link it.eng.dome.billing.engine.utils.UsageIndex}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UsageDataMapBenchmark {
+
+	private static final String[] METRICS = { "apiCalls", "storage", "bandwidth" };
+
+	@Param({ "1000", "100000" })
+	private int usageCount;
+
+	@Param({ "1", "3" })
+	private int metricsPerUsage;
+
+	private List<Usage> usages;
+
+	@Setup
+	public void setUp() {
+		usages = BenchmarkFixtures.createUsages("urn:ngsi-ld:product:1", Arrays.copyOf(METRICS, metricsPerUsage), usageCount,
+				BenchmarkFixtures.createTimePeriod(BenchmarkFixtures.START, BenchmarkFixtures.START.plusMonths(1)), 42);
+	}
+
+	@Benchmark
+	public Map<String, List<UsageCharacteristic>> createUsageCharacteristicDataMap() {
+		return UsageUtils.createUsageCharacteristicDataMap(usages);
+	}
+
+}
@@ -0,0 +1,140 @@
+package it.eng.dome.billing.engine.benchmark;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import it.eng.dome.billing.engine.utils.UsageIndex;
+import it.eng.dome.billing.engine.utils.UsageUtils;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Compares the {@link UsageCharacteristic} map of {@link UsageUtils#createUsageCharacteristicDataMap(List)} with the {@link UsageIndex}
+ * pricing the monthly usage cycles of a yearly billing period: the map needs the Usage(s) of each cycle to be filtered and mapped again,
+ * the index is built once and answers each cycle with a range sum.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms3g", "-Xmx3g" })
+public class UsageIndexBenchmark {
+
+	private static final String[] METRICS = { "apiCalls", "storage", "bandwidth" };
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+	private static final int CYCLES = 12;
+
+	@Param({ "1000000" })
+	private int usageCount;
+
+	private List<Usage> usages;
+	private List<TimePeriod> cycles;
+	private UsageIndex usageIndex;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		int secondsPerYear = 60 * 60 * 24 * 365;
+
+		usages = new ArrayList<Usage>(usageCount);
+		for (int i = 0; i < usageCount; i++) {
+			Usage usage = new Usage();
+			usage.setId("urn:ngsi-ld:usage:" + i);
+			usage.setUsageDate(START.plusSeconds(random.nextInt(secondsPerYear)));
+
+			UsageCharacteristic usageCh = new UsageCharacteristic();
+			usageCh.setName(METRICS[i % METRICS.length]);
+			usageCh.setValue(random.nextInt(1000) / 10f);
+			usage.addUsageCharacteristicItem(usageCh);
+			usages.add(usage);
+		}
+
+		cycles = new ArrayList<TimePeriod>(CYCLES);
+		for (int i = 0; i < CYCLES; i++) {
+			TimePeriod tp = new TimePeriod();
+			tp.setStartDateTime(START.plusMonths(i));
+			tp.setEndDateTime(START.plusMonths(i + 1).minusSeconds(1));
+			cycles.add(tp);
+		}
+
+		usageIndex = UsageUtils.createUsageIndex(usages);
+	}
+
+	@Benchmark
+	public Map<String, List<UsageCharacteristic>> buildMap() {
+		return UsageUtils.createUsageCharacteristicDataMap(usages);
+	}
+
+	@Benchmark
+	public UsageIndex buildIndex() {
+		return UsageUtils.createUsageIndex(usages);
+	}
+
+	/*
+	 * Quantity of each metric in each cycle with the map: filter the Usage(s) of the cycle, map them and sum the values
+	 */
+	@Benchmark
+	public void cycleSumsWithMap(Blackhole blackhole) {
+		for (TimePeriod tp : cycles) {
+			List<Usage> cycleUsages = usages.stream().filter(u -> UsageUtils.isUsageInTimePeriod(u, tp)).collect(Collectors.toList());
+			Map<String, List<UsageCharacteristic>> usageData = UsageUtils.createUsageCharacteristicDataMap(cycleUsages);
+			for (String metric : METRICS) {
+				double quantity = 0d;
+				List<UsageCharacteristic> usageChs = UsageUtils.getUsageCharacteristicsForMetric(usageData, metric);
+				if (usageChs != null) {
+					for (UsageCharacteristic usageCh : usageChs) {
+						quantity += Float.parseFloat(usageCh.getValue().toString());
+					}
+				}
+				blackhole.consume(quantity);
+			}
+		}
+	}
+
+	/*
+	 * Quantity of each metric in each cycle with the index already built (e.g., by the UsageSnapshot of the billing run)
+	 */
+	@Benchmark
+	public void cycleSumsWithIndex(Blackhole blackhole) {
+		for (TimePeriod tp : cycles) {
+			for (String metric : METRICS) {
+				blackhole.consume(usageIndex.sum(metric, tp));
+			}
+		}
+	}
+
+	/*
+	 * Quantity of each metric in each cycle building the index first
+	 */
+	@Benchmark
+	public void cycleSumsWithNewIndex(Blackhole blackhole) {
+		UsageIndex index = UsageUtils.createUsageIndex(usages);
+		for (TimePeriod tp : cycles) {
+			for (String metric : METRICS) {
+				blackhole.consume(index.sum(metric, tp));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package it.eng.dome.billing.engine.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.helpers.MessageFormatter;
+
+import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.utils.UsageUtils;
+import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+
+/**
+ * Compares the rating of the {@link UsageCharacteristic}(s) of a metric one by one (parse of the value's text, price and {@link Money} 
+ * for each UsageCharacteristic, with the INFO log line formatted) with the fixed point accumulation of {@link UsageUtils#sumUsageCharacteristicValues(List)} 
+ * priced once. The values are numbers (as deserialized from JSON) or text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UsageRatingBenchmark {
+
+	private static final String METRIC = "apiCalls";
+	private static final String CURRENCY = "EUR";
+	private static final float PRICE = 0.25f;
+	private static final float UNIT_AMOUNT = 1000f;
+
+	@Param({ "100000" })
+	private int usageCount;
+
+	@Param({ "number", "text" })
+	private String valueType;
+
+	private List<UsageCharacteristic> usageCharacteristics;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+
+		usageCharacteristics = new ArrayList<UsageCharacteristic>(usageCount);
+		for (int i = 0; i < usageCount; i++) {
+			float value = random.nextInt(100000) / 100f;
+
+			UsageCharacteristic usageCh = new UsageCharacteristic();
+			usageCh.setName(METRIC);
+			usageCh.setValue("text".equals(valueType) ? Float.toString(value) : Double.valueOf(value));
+			usageCharacteristics.add(usageCh);
+		}
+	}
+
+	/*
+	 * The previous rating: each UsageCharacteristic is parsed, priced and logged
+	 */
+	@Benchmark
+	public Money perUsageCharacteristic(Blackhole blackhole) {
+		float totalAmount = 0f;
+		for (UsageCharacteristic usageCh : usageCharacteristics) {
+			Float usageChValue = Float.parseFloat(usageCh.getValue().toString());
+			Float usageChAmount = (PRICE * usageChValue) / UNIT_AMOUNT;
+			String logLine = MessageFormatter.arrayFormat("Price of UsageCharacteristic '{}' with [quantity: '{}', price: '{}' per '{} {}'] = {} {}",
+					new Object[] { usageCh.getName(), usageChValue, PRICE, UNIT_AMOUNT, METRIC, usageChAmount, CURRENCY }).getMessage();
+			blackhole.consume(logLine);
+			Money usageChMoney = new Money(CURRENCY, usageChAmount);
+			totalAmount += usageChMoney.getValue();
+		}
+		return new Money(CURRENCY, totalAmount);
+	}
+
+	/*
+	 * The rating kernel: the values are accumulated and the total quantity is priced once
+	 */
+	@Benchmark
+	public Money kernel() {
+		BigDecimal quantity = UsageUtils.sumUsageCharacteristicValues(usageCharacteristics);
+		return new Money(CURRENCY, PRICE).multiply(quantity).divide(Money.toDecimal(UNIT_AMOUNT));
+	}
+
+}
@@ -1,14 +1,51 @@
 package it.eng.dome.billing.engine;
 
+import java.util.Arrays;
+
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 
 @SpringBootApplication
 public class BillingEngineApplication {
 
+	// startup steps recorded for the startup timeline (app.startup.timeline) and the actuator's startup endpoint
+	private static final int STARTUP_STEPS = 4096;
+
+	private static final String FAST_STARTUP_PROFILE = "fast-startup";
+
     public static void main(String[] args) {
-    	SpringApplication.run(BillingEngineApplication.class, args);
+    	SpringApplication application = new SpringApplication(BillingEngineApplication.class);
+    	if (isStartupTimelineEnabled(args)) {
+    		application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+    	}
+    	application.run(args);
+    }
+
+    /*
+     * The startup steps must be recorded before the environment is loaded: the startup timeline is enabled by the fast-startup profile
+     * or by app.startup.timeline, set on the command line, as system property or as environment variable
+     */
+    static boolean isStartupTimelineEnabled(String[] args) {
+    	String timeline = getSetting(args, "app.startup.timeline", "STARTUP_TIMELINE");
+    	if (timeline != null) {
+    		return Boolean.parseBoolean(timeline.trim());
+    	}
+
+    	String profiles = getSetting(args, "spring.profiles.active", "SPRING_PROFILES_ACTIVE");
+    	return profiles != null && Arrays.stream(profiles.split(",")).map(String::trim).anyMatch(FAST_STARTUP_PROFILE::equals);
+    }
+
+    private static String getSetting(String[] args, String property, String environmentVariable) {
+    	String prefix = "--" + property + "=";
+    	for (String arg : args) {
+    		if (arg.startsWith(prefix)) {
+    			return arg.substring(prefix.length());
+    		}
+    	}
+    	String value = System.getProperty(property);
+    	return value != null ? value : System.getenv(environmentVariable);
     }
 
 }
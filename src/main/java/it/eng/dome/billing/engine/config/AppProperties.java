@@ -1,7 +1,12 @@
 package it.eng.dome.billing.engine.config;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import it.eng.dome.billing.engine.price.calculator.CharacteristicTierIndex;
+
 /**
  * Class to get properties set in the application.yml file
  */
@@ -10,6 +15,19 @@ public class AppProperties {
 	
 	private Schema schema;
     private BillCycle billCycle;
+    private Usage usage = new Usage();
+    private PopCache popCache = new PopCache();
+    private ValidationCache validationCache = new ValidationCache();
+    private Batch batch = new Batch();
+    private Job job = new Job();
+    private Pricing pricing = new Pricing();
+    private LocalTmf localTmf = new LocalTmf();
+    private TmfClient tmfClient = new TmfClient();
+    private Profiling profiling = new Profiling();
+    private Rating rating = new Rating();
+    private Ingestion ingestion = new Ingestion();
+    private Health health = new Health();
+    private Startup startup = new Startup();
 
 	public Schema getSchema() {
 		return schema;
@@ -27,6 +45,110 @@ public class AppProperties {
 		this.billCycle = billCycle;
 	}
 	
+	public Usage getUsage() {
+		return usage;
+	}
+
+	public void setUsage(Usage usage) {
+		this.usage = usage;
+	}
+	
+	public PopCache getPopCache() {
+		return popCache;
+	}
+
+	public void setPopCache(PopCache popCache) {
+		this.popCache = popCache;
+	}
+	
+	public ValidationCache getValidationCache() {
+		return validationCache;
+	}
+
+	public void setValidationCache(ValidationCache validationCache) {
+		this.validationCache = validationCache;
+	}
+	
+	public Batch getBatch() {
+		return batch;
+	}
+
+	public void setBatch(Batch batch) {
+		this.batch = batch;
+	}
+	
+	public Job getJob() {
+		return job;
+	}
+
+	public void setJob(Job job) {
+		this.job = job;
+	}
+	
+	public Pricing getPricing() {
+		return pricing;
+	}
+
+	public void setPricing(Pricing pricing) {
+		this.pricing = pricing;
+	}
+	
+	public LocalTmf getLocalTmf() {
+		return localTmf;
+	}
+
+	public void setLocalTmf(LocalTmf localTmf) {
+		this.localTmf = localTmf;
+	}
+	
+	public TmfClient getTmfClient() {
+		return tmfClient;
+	}
+
+	public void setTmfClient(TmfClient tmfClient) {
+		this.tmfClient = tmfClient;
+	}
+	
+	public Profiling getProfiling() {
+		return profiling;
+	}
+
+	public void setProfiling(Profiling profiling) {
+		this.profiling = profiling;
+	}
+	
+	public Rating getRating() {
+		return rating;
+	}
+
+	public void setRating(Rating rating) {
+		this.rating = rating;
+	}
+
+	public Ingestion getIngestion() {
+		return ingestion;
+	}
+
+	public void setIngestion(Ingestion ingestion) {
+		this.ingestion = ingestion;
+	}
+
+	public Health getHealth() {
+		return health;
+	}
+
+	public void setHealth(Health health) {
+		this.health = health;
+	}
+
+	public Startup getStartup() {
+		return startup;
+	}
+
+	public void setStartup(Startup startup) {
+		this.startup = startup;
+	}
+	
     public static class Schema {
         private String schemaLocationRelatedParty;
 
@@ -53,4 +175,506 @@ public class AppProperties {
 
     }
 
+    public static class Usage {
+
+        private boolean serverSideFilter = true; // default
+        private int pageSize = 100; // default
+        private String fields; // default: all the attributes
+
+		public boolean isServerSideFilter() {
+			return serverSideFilter;
+		}
+
+		public void setServerSideFilter(boolean serverSideFilter) {
+			this.serverSideFilter = serverSideFilter;
+		}
+
+		public int getPageSize() {
+			return pageSize;
+		}
+
+		public void setPageSize(int pageSize) {
+			this.pageSize = pageSize;
+		}
+
+		public String getFields() {
+			return fields;
+		}
+
+		public void setFields(String fields) {
+			this.fields = fields;
+		}
+
+    }
+
+    public static class PopCache {
+
+        private boolean enabled = true; // default
+        private long maximumSize = 1000; // default
+        private Duration ttl = Duration.ofMinutes(10); // default
+        private Duration negativeTtl = Duration.ofMinutes(1); // default
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public long getMaximumSize() {
+			return maximumSize;
+		}
+
+		public void setMaximumSize(long maximumSize) {
+			this.maximumSize = maximumSize;
+		}
+
+		public Duration getTtl() {
+			return ttl;
+		}
+
+		public void setTtl(Duration ttl) {
+			this.ttl = ttl;
+		}
+
+		public Duration getNegativeTtl() {
+			return negativeTtl;
+		}
+
+		public void setNegativeTtl(Duration negativeTtl) {
+			this.negativeTtl = negativeTtl;
+		}
+
+    }
+
+    public static class ValidationCache {
+
+        private boolean enabled = true; // default
+        private long maximumSize = 10000; // default
+        private Duration ttl = Duration.ofMinutes(10); // default
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public long getMaximumSize() {
+			return maximumSize;
+		}
+
+		public void setMaximumSize(long maximumSize) {
+			this.maximumSize = maximumSize;
+		}
+
+		public Duration getTtl() {
+			return ttl;
+		}
+
+		public void setTtl(Duration ttl) {
+			this.ttl = ttl;
+		}
+
+    }
+
+    public static class Batch {
+
+        private int parallelism = 4; // default
+        private int maxProducts = 1000; // default
+        private int pageSize = 100; // default
+
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		public void setParallelism(int parallelism) {
+			this.parallelism = parallelism;
+		}
+
+		public int getMaxProducts() {
+			return maxProducts;
+		}
+
+		public void setMaxProducts(int maxProducts) {
+			this.maxProducts = maxProducts;
+		}
+
+		public int getPageSize() {
+			return pageSize;
+		}
+
+		public void setPageSize(int pageSize) {
+			this.pageSize = pageSize;
+		}
+
+    }
+
+    public static class Job {
+
+        private String directory = "data/jobs"; // default
+        private int concurrency = 1; // default
+        private int checkpointInterval = 50; // default
+
+		public String getDirectory() {
+			return directory;
+		}
+
+		public void setDirectory(String directory) {
+			this.directory = directory;
+		}
+
+		public int getConcurrency() {
+			return concurrency;
+		}
+
+		public void setConcurrency(int concurrency) {
+			this.concurrency = concurrency;
+		}
+
+		public int getCheckpointInterval() {
+			return checkpointInterval;
+		}
+
+		public void setCheckpointInterval(int checkpointInterval) {
+			this.checkpointInterval = checkpointInterval;
+		}
+
+    }
+
+    public static class Pricing {
+
+        private boolean parallel = false; // default
+        private int parallelism = 4; // default
+        private CharacteristicTierIndex.Mode tierMode = CharacteristicTierIndex.Mode.VOLUME; // default
+
+		public boolean isParallel() {
+			return parallel;
+		}
+
+		public void setParallel(boolean parallel) {
+			this.parallel = parallel;
+		}
+
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		public void setParallelism(int parallelism) {
+			this.parallelism = parallelism;
+		}
+
+		public CharacteristicTierIndex.Mode getTierMode() {
+			return tierMode;
+		}
+
+		public void setTierMode(CharacteristicTierIndex.Mode tierMode) {
+			this.tierMode = tierMode;
+		}
+
+    }
+
+    public static class Rating {
+
+        private String directory = "data/ratings"; // default
+
+		public String getDirectory() {
+			return directory;
+		}
+
+		public void setDirectory(String directory) {
+			this.directory = directory;
+		}
+
+    }
+
+    public static class Ingestion {
+
+        private boolean enabled = false; // default
+        private String directory = "data/usage-aggregates"; // default
+        private int checkpointInterval = 1000; // default
+        private long cacheSize = 10000; // default
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public String getDirectory() {
+			return directory;
+		}
+
+		public void setDirectory(String directory) {
+			this.directory = directory;
+		}
+
+		public int getCheckpointInterval() {
+			return checkpointInterval;
+		}
+
+		public void setCheckpointInterval(int checkpointInterval) {
+			this.checkpointInterval = checkpointInterval;
+		}
+
+		public long getCacheSize() {
+			return cacheSize;
+		}
+
+		public void setCacheSize(long cacheSize) {
+			this.cacheSize = cacheSize;
+		}
+
+    }
+
+    public static class Health {
+
+        private Duration probeInterval = Duration.ofSeconds(30); // default
+        private Duration staleAfter = Duration.ofMinutes(2); // default
+
+		public Duration getProbeInterval() {
+			return probeInterval;
+		}
+
+		public void setProbeInterval(Duration probeInterval) {
+			this.probeInterval = probeInterval;
+		}
+
+		public Duration getStaleAfter() {
+			return staleAfter;
+		}
+
+		public void setStaleAfter(Duration staleAfter) {
+			this.staleAfter = staleAfter;
+		}
+
+    }
+
+    public static class Startup {
+
+        private boolean deferTasks = false; // default
+        private boolean timeline = false; // default
+        private int timelineSteps = 10; // default
+
+		public boolean isDeferTasks() {
+			return deferTasks;
+		}
+
+		public void setDeferTasks(boolean deferTasks) {
+			this.deferTasks = deferTasks;
+		}
+
+		public boolean isTimeline() {
+			return timeline;
+		}
+
+		public void setTimeline(boolean timeline) {
+			this.timeline = timeline;
+		}
+
+		public int getTimelineSteps() {
+			return timelineSteps;
+		}
+
+		public void setTimelineSteps(int timelineSteps) {
+			this.timelineSteps = timelineSteps;
+		}
+
+    }
+
+    public static class Profiling {
+
+        private boolean enabled = true; // default
+        private int headerPops = 20; // default
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getHeaderPops() {
+			return headerPops;
+		}
+
+		public void setHeaderPops(int headerPops) {
+			this.headerPops = headerPops;
+		}
+
+    }
+
+    public static class LocalTmf {
+
+        private int port = 8100; // default
+        private long seed = 42; // default
+        private int catalogSize = 50; // default
+        private int products = 100; // default
+        private int popsPerProduct = 3; // default
+        private int usagesPerProduct = 1000; // default
+        private Duration history = Duration.ofDays(365); // default
+        private Duration latency = Duration.ZERO; // default
+        private Duration latencyJitter = Duration.ZERO; // default
+
+		public int getPort() {
+			return port;
+		}
+
+		public void setPort(int port) {
+			this.port = port;
+		}
+
+		public long getSeed() {
+			return seed;
+		}
+
+		public void setSeed(long seed) {
+			this.seed = seed;
+		}
+
+		public int getCatalogSize() {
+			return catalogSize;
+		}
+
+		public void setCatalogSize(int catalogSize) {
+			this.catalogSize = catalogSize;
+		}
+
+		public int getProducts() {
+			return products;
+		}
+
+		public void setProducts(int products) {
+			this.products = products;
+		}
+
+		public int getPopsPerProduct() {
+			return popsPerProduct;
+		}
+
+		public void setPopsPerProduct(int popsPerProduct) {
+			this.popsPerProduct = popsPerProduct;
+		}
+
+		public int getUsagesPerProduct() {
+			return usagesPerProduct;
+		}
+
+		public void setUsagesPerProduct(int usagesPerProduct) {
+			this.usagesPerProduct = usagesPerProduct;
+		}
+
+		public Duration getHistory() {
+			return history;
+		}
+
+		public void setHistory(Duration history) {
+			this.history = history;
+		}
+
+		public Duration getLatency() {
+			return latency;
+		}
+
+		public void setLatency(Duration latency) {
+			this.latency = latency;
+		}
+
+		public Duration getLatencyJitter() {
+			return latencyJitter;
+		}
+
+		public void setLatencyJitter(Duration latencyJitter) {
+			this.latencyJitter = latencyJitter;
+		}
+
+    }
+
+    public static class TmfClient {
+
+        private TmfHttp tmf620 = new TmfHttp(); // default
+        private TmfHttp tmf635 = new TmfHttp(); // default
+        private TmfHttp tmf637 = new TmfHttp(); // default
+
+		public TmfHttp getTmf620() {
+			return tmf620;
+		}
+
+		public void setTmf620(TmfHttp tmf620) {
+			this.tmf620 = tmf620;
+		}
+
+		public TmfHttp getTmf635() {
+			return tmf635;
+		}
+
+		public void setTmf635(TmfHttp tmf635) {
+			this.tmf635 = tmf635;
+		}
+
+		public TmfHttp getTmf637() {
+			return tmf637;
+		}
+
+		public void setTmf637(TmfHttp tmf637) {
+			this.tmf637 = tmf637;
+		}
+
+    }
+
+    public static class TmfHttp {
+
+        private int maxConnections = 20; // default
+        private Duration connectTimeout = Duration.ofSeconds(5); // default
+        private Duration readTimeout = Duration.ofSeconds(30); // default
+        private HttpClient.Version version = HttpClient.Version.HTTP_1_1; // default
+        private boolean compression = false; // default
+
+		public int getMaxConnections() {
+			return maxConnections;
+		}
+
+		public void setMaxConnections(int maxConnections) {
+			this.maxConnections = maxConnections;
+		}
+
+		public Duration getConnectTimeout() {
+			return connectTimeout;
+		}
+
+		public void setConnectTimeout(Duration connectTimeout) {
+			this.connectTimeout = connectTimeout;
+		}
+
+		public Duration getReadTimeout() {
+			return readTimeout;
+		}
+
+		public void setReadTimeout(Duration readTimeout) {
+			this.readTimeout = readTimeout;
+		}
+
+		public HttpClient.Version getVersion() {
+			return version;
+		}
+
+		public void setVersion(HttpClient.Version version) {
+			this.version = version;
+		}
+
+		public boolean isCompression() {
+			return compression;
+		}
+
+		public void setCompression(boolean compression) {
+			this.compression = compression;
+		}
+
+    }
+
 }
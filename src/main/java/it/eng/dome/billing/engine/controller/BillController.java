@@ -1,19 +1,33 @@
 package it.eng.dome.billing.engine.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
+import it.eng.dome.billing.engine.dto.BatchBillingRequestDTO;
+import it.eng.dome.billing.engine.dto.BatchBillingResponseDTO;
+import it.eng.dome.billing.engine.dto.ProductBillingResultDTO;
 import it.eng.dome.billing.engine.exception.BillingBadRequestException;
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.service.BatchBillingService;
 import it.eng.dome.billing.engine.service.BillingEngineService;
 import it.eng.dome.billing.engine.validator.TMFEntityValidator;
 import it.eng.dome.brokerage.api.ProductInventoryApis;
@@ -39,6 +53,12 @@ public class BillController {
 	
 	@Autowired
 	private TMFEntityValidator tmfEntityValidator;
+	
+	@Autowired
+	private BatchBillingService batchBillingService;
+	
+	@Autowired
+	private ObjectMapper objectMapper;
     
 	 /**
      * The REST API POST /billing/bill REST API is invoked to calculate the bill of a {@link Product} without taxes.
@@ -55,28 +75,58 @@ public class BillController {
     public ResponseEntity<List<Invoice>> calculateBill(@RequestBody BillingRequestDTO billRequestDTO) throws IllegalArgumentException, BillingEngineValidationException, ApiException, BillingBadRequestException, it.eng.dome.tmforum.tmf637.v4.ApiException{
 		logger.info("Received request for calculating bill...");
 		
-		Product product;
-		TimePeriod billingPeriod;
-				
-
-		// 1) retrieve the Product and the billingPeriod from the BillingRequestDTO
-		product=productInventoryApis.getProduct(billRequestDTO.getProductId(), null);
+		List<Invoice> invoices=this.calculateInvoices(billRequestDTO, false);
 		
-		if (product == null) {
-			throw new BillingBadRequestException("Missing the instance of Product in the BillingRequestDTO");
-		}
+		return ResponseEntity.ok(invoices);
+	}
+    
+    /**
+     * The REST API POST /billing/bill REST API with Accept: application/x-ndjson calculates the bill of a {@link Product} without taxes
+     * and writes each {@link Invoice} (CustomerBill and ACBRs) as a JSON line.
+     * The bill is calculated before the response is written, since the CustomerBill totals all the ACBRs: the Invoice(s) are not streamed as they are priced,
+     * and the errors of the calculation are returned with their HTTP status.
+     * 
+     * @param billRequestDTO A {@link BillingRequestDTO} containing information about the identifier of the {@link Product} and of a {@link TimePeriod} representing the billingPeriod for which the bill must be must be calculated.
+     * @return  The stream of {@link Invoice}, one per line 
+	 * @throws BillingBadRequestException if the {@link BillingRequestDTO} is not well formed
+	 * @throws ApiException if some error occurs retrieving the TMF620 entities
+	 * @throws {@link BillingEngineValidationException} if some error occurs during the validation of TMForum entities
+	 * @throws IllegalArgumentException  if some illegal argument is provided in input
+	 * @throws it.eng.dome.tmforum.tmf637.v4.ApiException if some error occurs retrieving the TMF637 entities
+     */ 
+    @RequestMapping(value = "/bill", method = RequestMethod.POST, produces = MediaType.APPLICATION_NDJSON_VALUE, consumes = "application/json")
+    public ResponseEntity<StreamingResponseBody> calculateBillStream(@RequestBody BillingRequestDTO billRequestDTO) throws IllegalArgumentException, BillingEngineValidationException, ApiException, BillingBadRequestException, it.eng.dome.tmforum.tmf637.v4.ApiException{
+		logger.info("Received request for calculating bill (NDJSON)...");
 		
-		billingPeriod = billRequestDTO.getBillingPeriod();
-		if (billingPeriod == null) {
-			throw new BillingBadRequestException("Missing the instance of billingPeriod in the BillingRequestDTO");
-		}
+		List<Invoice> invoices=this.calculateInvoices(billRequestDTO, false);
 		
-		tmfEntityValidator.validateBillingPeriod(billingPeriod);
+		ObjectWriter writer=this.getNdjsonWriter();
+		StreamingResponseBody body = out -> {
+			for(Invoice invoice:invoices) {
+				writeLine(writer, out, invoice);
+			}
+		};
 		
-		logger.info("Product with ID: {}", product.getId());
-		logger.info("BillingPeriod with startDate: {} and endDate: {}", billingPeriod.getStartDateTime(), billingPeriod.getEndDateTime());
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+	}
+    
+    /**
+     * The REST API POST /billing/currentSpend REST API is invoked to calculate the current spend of a {@link Product} without taxes (e.g., in a bill cycle not ended yet).
+     * The usage prices are calculated from the running totals of the Usage(s), rating only the Usage(s) created after the previous request for the same bill cycle.
+     * 
+     * @param billRequestDTO A {@link BillingRequestDTO} containing information about the identifier of the {@link Product} and of a {@link TimePeriod} representing the billingPeriod for which the current spend must be calculated.
+     * @return  A list of {@link Invoice} 
+	 * @throws BillingBadRequestException if the {@link BillingRequestDTO} is not well formed
+	 * @throws ApiException if some error occurs retrieving the TMF620 entities
+	 * @throws {@link BillingEngineValidationException} if some error occurs during the validation of TMForum entities
+	 * @throws IllegalArgumentException  if some illegal argument is provided in input
+	 * @throws it.eng.dome.tmforum.tmf637.v4.ApiException if some error occurs retrieving the TMF637 entities
+     */ 
+    @RequestMapping(value = "/currentSpend", method = RequestMethod.POST, produces = "application/json", consumes = "application/json")
+    public ResponseEntity<List<Invoice>> calculateCurrentSpend(@RequestBody BillingRequestDTO billRequestDTO) throws IllegalArgumentException, BillingEngineValidationException, ApiException, BillingBadRequestException, it.eng.dome.tmforum.tmf637.v4.ApiException{
+		logger.info("Received request for calculating current spend...");
 		
-		List<Invoice> invoices=billService.calculateBill(product, billingPeriod);
+		List<Invoice> invoices=this.calculateInvoices(billRequestDTO, true);
 		
 		return ResponseEntity.ok(invoices);
 	}
@@ -111,5 +161,133 @@ public class BillController {
 		
 		return ResponseEntity.ok(invoices);
 	}
+    
+    /**
+     * The REST API POST /billing/bills REST API is invoked to calculate the bills of several {@link Product}(s) without taxes for the same billingPeriod.
+     * The Product(s) are billed in parallel and the failure of a Product is reported in its result without stopping the batch.
+     * 
+     * @param batchBillingRequestDTO A {@link BatchBillingRequestDTO} containing the identifiers of the Product(s) (or a filter on the Product Inventory) and a {@link TimePeriod} representing the billingPeriod for which the bills must be calculated.
+     * @return A {@link BatchBillingResponseDTO} with the list of {@link Invoice} (or the error) of each Product
+	 * @throws BillingBadRequestException if the {@link BatchBillingRequestDTO} is not well formed
+	 * @throws {@link BillingEngineValidationException} if some error occurs during the validation of the billingPeriod
+     */ 
+    @RequestMapping(value = "/bills", method = RequestMethod.POST, produces = "application/json", consumes = "application/json")
+    public ResponseEntity<BatchBillingResponseDTO> calculateBills(@RequestBody BatchBillingRequestDTO batchBillingRequestDTO) throws BillingBadRequestException, BillingEngineValidationException {
+		logger.info("Received request for calculating bills...");
+		
+		TimePeriod billingPeriod = this.getBatchBillingPeriod(batchBillingRequestDTO);
+		
+		BatchBillingResponseDTO response;
+		if (hasProductIds(batchBillingRequestDTO)) {
+			response = batchBillingService.calculateBills(batchBillingRequestDTO.getProductIds(), billingPeriod);
+		} else {
+			response = batchBillingService.calculateBills(batchBillingRequestDTO.getFilter(), billingPeriod);
+		}
+		
+		return ResponseEntity.ok(response);
+	}
+    
+    /**
+     * The REST API POST /billing/bills REST API with Accept: application/x-ndjson calculates the bills of several {@link Product}(s) without taxes for the same billingPeriod
+     * and writes the {@link ProductBillingResultDTO} of each Product as a JSON line as soon as it is calculated (in order of completion).
+     * The size of the batch is not limited: the results are not kept in memory.
+     * 
+     * @param batchBillingRequestDTO A {@link BatchBillingRequestDTO} containing the identifiers of the Product(s) (or a filter on the Product Inventory) and a {@link TimePeriod} representing the billingPeriod for which the bills must be calculated.
+     * @return The stream of {@link ProductBillingResultDTO}, one per line
+	 * @throws BillingBadRequestException if the {@link BatchBillingRequestDTO} is not well formed
+	 * @throws {@link BillingEngineValidationException} if some error occurs during the validation of the billingPeriod
+     */ 
+    @RequestMapping(value = "/bills", method = RequestMethod.POST, produces = MediaType.APPLICATION_NDJSON_VALUE, consumes = "application/json")
+    public ResponseEntity<StreamingResponseBody> calculateBillsStream(@RequestBody BatchBillingRequestDTO batchBillingRequestDTO) throws BillingBadRequestException, BillingEngineValidationException {
+		logger.info("Received request for calculating bills (NDJSON)...");
+		
+		TimePeriod billingPeriod = this.getBatchBillingPeriod(batchBillingRequestDTO);
+		
+		ObjectWriter writer = this.getNdjsonWriter();
+		StreamingResponseBody body = out -> {
+			Consumer<ProductBillingResultDTO> consumer = result -> {
+				try {
+					writeLine(writer, out, result);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			};
+			
+			if (hasProductIds(batchBillingRequestDTO)) {
+				batchBillingService.calculateBills(batchBillingRequestDTO.getProductIds(), billingPeriod, consumer);
+			} else {
+				batchBillingService.calculateBills(batchBillingRequestDTO.getFilter(), billingPeriod, consumer);
+			}
+		};
+		
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+	}
+    
+    /*
+     * Retrieves the Product and validates the billingPeriod of the BillingRequestDTO, then calculates the bill
+     */
+    private List<Invoice> calculateInvoices(BillingRequestDTO billRequestDTO, boolean currentSpend) throws IllegalArgumentException, BillingEngineValidationException, ApiException, BillingBadRequestException, it.eng.dome.tmforum.tmf637.v4.ApiException{
+		Product product;
+		TimePeriod billingPeriod;
+				
+
+		// 1) retrieve the Product and the billingPeriod from the BillingRequestDTO
+		product=productInventoryApis.getProduct(billRequestDTO.getProductId(), null);
+		
+		if (product == null) {
+			throw new BillingBadRequestException("Missing the instance of Product in the BillingRequestDTO");
+		}
+		
+		billingPeriod = billRequestDTO.getBillingPeriod();
+		if (billingPeriod == null) {
+			throw new BillingBadRequestException("Missing the instance of billingPeriod in the BillingRequestDTO");
+		}
+		
+		tmfEntityValidator.validateBillingPeriod(billingPeriod);
+		
+		logger.info("Product with ID: {}", product.getId());
+		logger.info("BillingPeriod with startDate: {} and endDate: {}", billingPeriod.getStartDateTime(), billingPeriod.getEndDateTime());
+		
+		if (currentSpend) {
+			return billService.calculateCurrentSpend(product, billingPeriod);
+		}
+		return billService.calculateBill(product, billingPeriod);
+    }
+    
+    /*
+     * Validates the BatchBillingRequestDTO and returns its billingPeriod
+     */
+    private TimePeriod getBatchBillingPeriod(BatchBillingRequestDTO batchBillingRequestDTO) throws BillingBadRequestException, BillingEngineValidationException {
+		TimePeriod billingPeriod = batchBillingRequestDTO.getBillingPeriod();
+		if (billingPeriod == null) {
+			throw new BillingBadRequestException("Missing the instance of billingPeriod in the BatchBillingRequestDTO");
+		}
+		
+		tmfEntityValidator.validateBillingPeriod(billingPeriod);
+		
+		boolean hasFilter = batchBillingRequestDTO.getFilter() != null && !batchBillingRequestDTO.getFilter().isEmpty();
+		if (!hasProductIds(batchBillingRequestDTO) && !hasFilter) {
+			throw new BillingBadRequestException("Missing the productIds or the filter in the BatchBillingRequestDTO");
+		}
+		
+		return billingPeriod;
+    }
+    
+    private static boolean hasProductIds(BatchBillingRequestDTO batchBillingRequestDTO) {
+    	return batchBillingRequestDTO.getProductIds() != null && !batchBillingRequestDTO.getProductIds().isEmpty();
+    }
+    
+    /*
+     * The target stream must not be closed after each value: the values are separated by a new line
+     */
+    private ObjectWriter getNdjsonWriter() {
+    	return objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+    
+    private static void writeLine(ObjectWriter writer, OutputStream out, Object value) throws IOException {
+    	writer.writeValue(out, value);
+    	out.write('\n');
+    	out.flush();
+    }
 
 }
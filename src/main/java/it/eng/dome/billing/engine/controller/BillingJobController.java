@@ -0,0 +1,106 @@
+package it.eng.dome.billing.engine.controller;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.v3.oas.annotations.tags.Tag;
+import it.eng.dome.billing.engine.dto.BatchBillingRequestDTO;
+import it.eng.dome.billing.engine.dto.ProductBillingResultDTO;
+import it.eng.dome.billing.engine.exception.BillingBadRequestException;
+import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.job.BillingJob;
+import it.eng.dome.billing.engine.service.BillingJobService;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+
+@RestController
+@RequestMapping("/billing/jobs")
+@Tag(name = "Billing Job Controller", description = "APIs to manage the asynchronous calculation of the bills")
+public class BillingJobController {
+
+	private static final Logger logger = LoggerFactory.getLogger(BillingJobController.class);
+
+	private static final int MAX_LIMIT = 1000;
+
+	@Autowired
+	private BillingJobService billingJobService;
+
+	@Autowired
+	private TMFEntityValidator tmfEntityValidator;
+
+	/**
+	 * The REST API POST /billing/jobs submits a job to calculate the bills of several Product(s) without taxes for the same billingPeriod
+	 * 
+	 * @param batchBillingRequestDTO A {@link BatchBillingRequestDTO} containing the identifiers of the Product(s) (or a filter on the Product Inventory) and the billingPeriod
+	 * @return the submitted {@link BillingJob}, with its identifier
+	 * @throws BillingBadRequestException if the {@link BatchBillingRequestDTO} is not well formed
+	 * @throws {@link BillingEngineValidationException} if some error occurs during the validation of the billingPeriod
+	 */
+	@PostMapping(produces = "application/json", consumes = "application/json")
+	public ResponseEntity<BillingJob> submitJob(@RequestBody BatchBillingRequestDTO batchBillingRequestDTO) throws BillingBadRequestException, BillingEngineValidationException {
+		logger.info("Request submitJob()");
+
+		if (batchBillingRequestDTO.getBillingPeriod() != null) {
+			tmfEntityValidator.validateBillingPeriod(batchBillingRequestDTO.getBillingPeriod());
+		}
+
+		BillingJob job = billingJobService.submit(batchBillingRequestDTO);
+
+		return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+	}
+
+	/**
+	 * The REST API GET /billing/jobs/{id} returns the status and the progress of a job
+	 * 
+	 * @param id the identifier of the {@link BillingJob}
+	 * @return the {@link BillingJob}
+	 */
+	@GetMapping(value = "/{id}", produces = "application/json")
+	public ResponseEntity<BillingJob> getJob(@PathVariable String id) {
+		logger.info("Request getJob({})", id);
+
+		BillingJob job = billingJobService.getJob(id);
+		if (job == null) {
+			return ResponseEntity.notFound().build();
+		}
+
+		return ResponseEntity.ok(job);
+	}
+
+	/**
+	 * The REST API GET /billing/jobs/{id}/results returns a page of the results of a job (also while the job is running)
+	 * 
+	 * @param id the identifier of the {@link BillingJob}
+	 * @param offset the index of the first result
+	 * @param limit the maximum number of results (at most 1000)
+	 * @return the list of {@link ProductBillingResultDTO}
+	 * @throws BillingBadRequestException if the offset or the limit are not valid
+	 */
+	@GetMapping(value = "/{id}/results", produces = "application/json")
+	public ResponseEntity<List<ProductBillingResultDTO>> getJobResults(@PathVariable String id, @RequestParam(defaultValue = "0") int offset,
+			@RequestParam(defaultValue = "100") int limit) throws BillingBadRequestException {
+		logger.info("Request getJobResults({}, {}, {})", id, offset, limit);
+
+		if (offset < 0 || limit <= 0 || limit > MAX_LIMIT) {
+			throw new BillingBadRequestException(String.format("Invalid offset/limit: the offset must be >= 0 and the limit between 1 and %d", MAX_LIMIT));
+		}
+
+		List<ProductBillingResultDTO> results = billingJobService.getResults(id, offset, limit);
+		if (results == null) {
+			return ResponseEntity.notFound().build();
+		}
+
+		return ResponseEntity.ok(results);
+	}
+}
@@ -0,0 +1,79 @@
+package it.eng.dome.billing.engine.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.swagger.v3.oas.annotations.tags.Tag;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+
+@RestController
+@RequestMapping("/engine/cache")
+@Tag(name = "Cache Controller", description = "APIs to manage the caches of the billing-engine")
+public class CacheController {
+
+	private static final Logger logger = LoggerFactory.getLogger(CacheController.class);
+
+	@Autowired
+	private ProductOfferingPriceService productOfferingPriceService;
+
+	/**
+	 * The REST API GET /engine/cache/productOfferingPrice returns the statistics of the {@link ProductOfferingPrice} cache
+	 * 
+	 * @return the size, the hit and miss count of the cache
+	 */
+	@GetMapping("/productOfferingPrice")
+	public ResponseEntity<Map<String, Object>> getProductOfferingPriceCacheStatistics() {
+		logger.info("Request getProductOfferingPriceCacheStatistics()");
+
+		CacheStats stats = productOfferingPriceService.getStatistics();
+
+		Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+		statistics.put("name", ProductOfferingPriceService.CACHE_NAME);
+		statistics.put("size", productOfferingPriceService.getSize());
+		statistics.put("hitCount", stats.hitCount());
+		statistics.put("missCount", stats.missCount());
+		statistics.put("hitRate", stats.hitRate());
+		statistics.put("evictionCount", stats.evictionCount());
+
+		return ResponseEntity.ok(statistics);
+	}
+
+	/**
+	 * The REST API DELETE /engine/cache/productOfferingPrice removes all the {@link ProductOfferingPrice}(s) from the cache
+	 */
+	@DeleteMapping("/productOfferingPrice")
+	public ResponseEntity<Void> invalidateProductOfferingPriceCache() {
+		logger.info("Request invalidateProductOfferingPriceCache()");
+
+		productOfferingPriceService.invalidateAll();
+
+		return ResponseEntity.noContent().build();
+	}
+
+	/**
+	 * The REST API DELETE /engine/cache/productOfferingPrice/{id} removes the {@link ProductOfferingPrice} with the specified identifier from the cache
+	 * 
+	 * @param id the identifier of the {@link ProductOfferingPrice}
+	 */
+	@DeleteMapping("/productOfferingPrice/{id}")
+	public ResponseEntity<Void> invalidateProductOfferingPrice(@PathVariable String id) {
+		logger.info("Request invalidateProductOfferingPrice({})", id);
+
+		productOfferingPriceService.invalidate(id);
+
+		return ResponseEntity.noContent().build();
+	}
+}
@@ -0,0 +1,107 @@
+package it.eng.dome.billing.engine.controller;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.swagger.v3.oas.annotations.tags.Tag;
+import it.eng.dome.billing.engine.exception.BillingBadRequestException;
+import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.service.UsageIngestionService;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+
+@RestController
+@RequestMapping("/billing")
+@Tag(name = "Usage Ingestion Controller", description = "APIs to push the Usage(s) to the billing engine as they are created")
+public class UsageIngestionController {
+
+	private static final Logger logger = LoggerFactory.getLogger(UsageIngestionController.class);
+
+	private static final String USAGE_CREATE_EVENT = "UsageCreateEvent";
+
+	@Autowired
+	private UsageIngestionService usageIngestionService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	/**
+	 * The REST API POST /billing/usages aggregates a {@link Usage} created in TMForum
+	 *
+	 * @param usage the TMF635 {@link Usage} (JSON)
+	 * @return 204 No Content once the Usage has been aggregated
+	 * @throws BillingBadRequestException if the Usage is not well formed
+	 * @throws {@link BillingEngineValidationException} if some error occurs during the validation of the Usage(s)
+	 */
+	@PostMapping(value = "/usages", consumes = "application/json")
+	public ResponseEntity<Void> ingestUsage(@RequestBody String usage) throws BillingBadRequestException, BillingEngineValidationException {
+		logger.info("Request ingestUsage()");
+
+		usageIngestionService.ingest(this.toUsage(usage));
+		return ResponseEntity.noContent().build();
+	}
+
+	/**
+	 * The REST API POST /billing/listener/usageCreateEvent is the listener of the TMF635 UsageCreateEvent(s) (to register on the TMForum event hub):
+	 * the {@link Usage} of the event is aggregated. The other events are ignored, so the aggregates are used only for the current spend.
+	 *
+	 * @param event the TMF635 event (JSON), with the Usage in event.usage
+	 * @return 204 No Content once the Usage has been aggregated
+	 * @throws BillingBadRequestException if the event (e.g., without eventType) or its Usage is not well formed
+	 * @throws {@link BillingEngineValidationException} if some error occurs during the validation of the Usage(s)
+	 */
+	@PostMapping(value = "/listener/usageCreateEvent", consumes = "application/json")
+	public ResponseEntity<Void> listenUsageCreateEvent(@RequestBody String event) throws BillingBadRequestException, BillingEngineValidationException {
+		JsonNode eventNode;
+		try {
+			eventNode = objectMapper.readTree(event);
+		} catch (IOException e) {
+			throw new BillingBadRequestException("The event is not valid JSON: " + e.getMessage());
+		}
+
+		String eventType = eventNode.path("eventType").asText();
+		if (eventType.isEmpty()) {
+			throw new BillingBadRequestException("Missing the eventType of the event");
+		}
+		logger.info("Request listenUsageCreateEvent() for event '{}' ({})", eventNode.path("eventId").asText(), eventType);
+		if (!USAGE_CREATE_EVENT.equals(eventType)) {
+			logger.debug("Event of type {} ignored", eventType);
+			return ResponseEntity.noContent().build();
+		}
+
+		JsonNode usageNode = eventNode.path("event").path("usage");
+		if (!usageNode.isObject()) {
+			throw new BillingBadRequestException("Missing the Usage in the UsageCreateEvent (event.usage)");
+		}
+
+		usageIngestionService.ingest(this.toUsage(usageNode.toString()));
+		return ResponseEntity.noContent().build();
+	}
+
+	/*
+	 * The Usage is parsed with the TMF635 model, which maps its enums and validates its attributes
+	 */
+	private Usage toUsage(String json) throws BillingBadRequestException {
+		Usage usage;
+		try {
+			usage = Usage.fromJson(json);
+		} catch (IOException | RuntimeException e) {
+			throw new BillingBadRequestException("The Usage is not valid: " + e.getMessage());
+		}
+		if (usage == null) {
+			throw new BillingBadRequestException("Missing the Usage in the request body");
+		}
+		return usage;
+	}
+
+}
@@ -0,0 +1,88 @@
+package it.eng.dome.billing.engine.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.v3.oas.annotations.tags.Tag;
+import it.eng.dome.billing.engine.dto.UsageReconciliationDTO;
+import it.eng.dome.billing.engine.exception.BillingBadRequestException;
+import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.rating.UsageRating;
+import it.eng.dome.billing.engine.service.UsageRatingService;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.brokerage.billing.dto.BillingRequestDTO;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+@RestController
+@RequestMapping("/billing/ratings")
+@Tag(name = "Usage Rating Controller", description = "APIs to manage the running totals of the incremental Usage rating")
+public class UsageRatingController {
+
+	private static final Logger logger = LoggerFactory.getLogger(UsageRatingController.class);
+
+	@Autowired
+	private UsageRatingService usageRatingService;
+
+	@Autowired
+	private TMFEntityValidator tmfEntityValidator;
+
+	/**
+	 * The REST API POST /billing/ratings rates the Usage(s) of a {@link Product} in a bill cycle created after the previous rating
+	 *
+	 * @param billRequestDTO A {@link BillingRequestDTO} containing the identifier of the {@link Product} and the {@link TimePeriod} of the bill cycle
+	 * @return the {@link UsageRating} with the running totals of the Usage(s) of the Product in the bill cycle
+	 * @throws BillingBadRequestException if the {@link BillingRequestDTO} is not well formed
+	 * @throws {@link BillingEngineValidationException} if some error occurs during the validation of the bill cycle or of the Usage(s)
+	 */
+	@PostMapping(produces = "application/json", consumes = "application/json")
+	public ResponseEntity<UsageRating> rate(@RequestBody BillingRequestDTO billRequestDTO) throws BillingBadRequestException, BillingEngineValidationException {
+		logger.info("Request rate()");
+
+		TimePeriod billCycle = this.getBillCycle(billRequestDTO);
+
+		return ResponseEntity.ok(usageRatingService.rate(billRequestDTO.getProductId(), billCycle));
+	}
+
+	/**
+	 * The REST API POST /billing/ratings/reconcile recomputes the totals of all the Usage(s) of a {@link Product} in a bill cycle
+	 * and replaces the running totals with them (e.g., before the final bill)
+	 *
+	 * @param billRequestDTO A {@link BillingRequestDTO} containing the identifier of the {@link Product} and the {@link TimePeriod} of the bill cycle
+	 * @return the {@link UsageReconciliationDTO} with the differences between the running and the recomputed totals
+	 * @throws BillingBadRequestException if the {@link BillingRequestDTO} is not well formed
+	 * @throws {@link BillingEngineValidationException} if some error occurs during the validation of the bill cycle or of the Usage(s)
+	 */
+	@PostMapping(value = "/reconcile", produces = "application/json", consumes = "application/json")
+	public ResponseEntity<UsageReconciliationDTO> reconcile(@RequestBody BillingRequestDTO billRequestDTO) throws BillingBadRequestException, BillingEngineValidationException {
+		logger.info("Request reconcile()");
+
+		TimePeriod billCycle = this.getBillCycle(billRequestDTO);
+
+		return ResponseEntity.ok(usageRatingService.reconcile(billRequestDTO.getProductId(), billCycle));
+	}
+
+	/*
+	 * Validates the BillingRequestDTO and returns its billingPeriod
+	 */
+	private TimePeriod getBillCycle(BillingRequestDTO billRequestDTO) throws BillingBadRequestException, BillingEngineValidationException {
+		if (billRequestDTO.getProductId() == null || billRequestDTO.getProductId().isBlank()) {
+			throw new BillingBadRequestException("Missing the productId in the BillingRequestDTO");
+		}
+
+		TimePeriod billCycle = billRequestDTO.getBillingPeriod();
+		if (billCycle == null) {
+			throw new BillingBadRequestException("Missing the instance of billingPeriod in the BillingRequestDTO");
+		}
+
+		tmfEntityValidator.validateBillingPeriod(billCycle);
+		return billCycle;
+	}
+
+}
@@ -0,0 +1,54 @@
+package it.eng.dome.billing.engine.dto;
+
+import java.util.List;
+import java.util.Map;
+
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Class representing the request to calculate the bills of several {@link Product}(s) for the same billingPeriod.
+ * The Product(s) are specified by their identifiers or by a filter on the Product Inventory (TMF637), e.g. {"status": "active"}.
+ */
+public class BatchBillingRequestDTO {
+
+	private List<String> productIds;
+
+	private Map<String, String> filter;
+
+	private TimePeriod billingPeriod;
+
+	public BatchBillingRequestDTO() {
+	}
+
+	public BatchBillingRequestDTO(List<String> productIds, Map<String, String> filter, TimePeriod billingPeriod) {
+		this.productIds = productIds;
+		this.filter = filter;
+		this.billingPeriod = billingPeriod;
+	}
+
+	public List<String> getProductIds() {
+		return productIds;
+	}
+
+	public void setProductIds(List<String> productIds) {
+		this.productIds = productIds;
+	}
+
+	public Map<String, String> getFilter() {
+		return filter;
+	}
+
+	public void setFilter(Map<String, String> filter) {
+		this.filter = filter;
+	}
+
+	public TimePeriod getBillingPeriod() {
+		return billingPeriod;
+	}
+
+	public void setBillingPeriod(TimePeriod billingPeriod) {
+		this.billingPeriod = billingPeriod;
+	}
+
+}
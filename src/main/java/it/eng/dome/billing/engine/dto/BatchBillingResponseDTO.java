@@ -0,0 +1,68 @@
+package it.eng.dome.billing.engine.dto;
+
+import java.util.List;
+
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Class representing the result of a batch bill calculation: a {@link ProductBillingResultDTO} for each Product of the batch
+ * (in the order of the request) and the number of succeeded and failed calculations.
+ */
+public class BatchBillingResponseDTO {
+
+	private TimePeriod billingPeriod;
+
+	private int succeeded;
+
+	private int failed;
+
+	private List<ProductBillingResultDTO> results;
+
+	public BatchBillingResponseDTO() {
+	}
+
+	public BatchBillingResponseDTO(TimePeriod billingPeriod, List<ProductBillingResultDTO> results) {
+		this.billingPeriod = billingPeriod;
+		this.results = results;
+		for (ProductBillingResultDTO result : results) {
+			if (result.getStatus() == ProductBillingResultDTO.Status.SUCCEEDED) {
+				succeeded++;
+			} else {
+				failed++;
+			}
+		}
+	}
+
+	public TimePeriod getBillingPeriod() {
+		return billingPeriod;
+	}
+
+	public void setBillingPeriod(TimePeriod billingPeriod) {
+		this.billingPeriod = billingPeriod;
+	}
+
+	public int getSucceeded() {
+		return succeeded;
+	}
+
+	public void setSucceeded(int succeeded) {
+		this.succeeded = succeeded;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+
+	public void setFailed(int failed) {
+		this.failed = failed;
+	}
+
+	public List<ProductBillingResultDTO> getResults() {
+		return results;
+	}
+
+	public void setResults(List<ProductBillingResultDTO> results) {
+		this.results = results;
+	}
+
+}
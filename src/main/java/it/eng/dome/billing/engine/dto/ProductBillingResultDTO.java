@@ -0,0 +1,77 @@
+package it.eng.dome.billing.engine.dto;
+
+import java.util.List;
+
+import it.eng.dome.brokerage.model.Invoice;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+
+/**
+ * Class representing the result of the bill calculation of a {@link Product} in a batch: the list of {@link Invoice} if the calculation succeeded,
+ * the error otherwise.
+ */
+public class ProductBillingResultDTO {
+
+	public enum Status {
+		SUCCEEDED, FAILED
+	}
+
+	private String productId;
+
+	private Status status;
+
+	private List<Invoice> invoices;
+
+	private String error;
+
+	public ProductBillingResultDTO() {
+	}
+
+	public static ProductBillingResultDTO succeeded(String productId, List<Invoice> invoices) {
+		ProductBillingResultDTO result = new ProductBillingResultDTO();
+		result.setProductId(productId);
+		result.setStatus(Status.SUCCEEDED);
+		result.setInvoices(invoices);
+		return result;
+	}
+
+	public static ProductBillingResultDTO failed(String productId, String error) {
+		ProductBillingResultDTO result = new ProductBillingResultDTO();
+		result.setProductId(productId);
+		result.setStatus(Status.FAILED);
+		result.setError(error);
+		return result;
+	}
+
+	public String getProductId() {
+		return productId;
+	}
+
+	public void setProductId(String productId) {
+		this.productId = productId;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+
+	public List<Invoice> getInvoices() {
+		return invoices;
+	}
+
+	public void setInvoices(List<Invoice> invoices) {
+		this.invoices = invoices;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+}
@@ -0,0 +1,183 @@
+package it.eng.dome.billing.engine.dto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import it.eng.dome.billing.engine.rating.UsageRating;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+
+/**
+ * Class representing the reconciliation of the running totals of the Usage(s) of a {@link Product} in a bill cycle with a full recompute:
+ * the metrics whose running totals differ from the recomputed ones (e.g., because of Usage(s) created in TMForum with a usageDate before the high-water mark)
+ * and the recomputed {@link UsageRating}, which replaces the running totals.
+ */
+public class UsageReconciliationDTO {
+
+	private String productId;
+
+	private boolean consistent;
+
+	// number of Usage(s) rated incrementally, 0 if there were no running totals
+	private long ratedUsages;
+
+	private long recomputedUsages;
+
+	private List<MetricDifference> differences = new ArrayList<MetricDifference>();
+
+	private UsageRating rating;
+
+	public UsageReconciliationDTO() {
+	}
+
+	/**
+	 * Compares the running totals with the recomputed ones
+	 *
+	 * @param stored the running totals, null if the Usage(s) of the bill cycle have never been rated
+	 * @param recomputed the totals of a full recompute
+	 * @return the UsageReconciliationDTO
+	 */
+	public static UsageReconciliationDTO of(UsageRating stored, UsageRating recomputed) {
+		UsageReconciliationDTO reconciliation = new UsageReconciliationDTO();
+		reconciliation.setProductId(recomputed.getProductId());
+		reconciliation.setRatedUsages(stored == null ? 0 : stored.getRatedUsages());
+		reconciliation.setRecomputedUsages(recomputed.getRatedUsages());
+		reconciliation.setRating(recomputed);
+
+		TreeSet<String> metrics = new TreeSet<String>(recomputed.getMetrics().keySet());
+		if (stored != null) {
+			metrics.addAll(stored.getMetrics().keySet());
+		}
+		for (String metric : metrics) {
+			UsageRating.MetricTotal storedTotal = stored == null ? null : stored.getMetric(metric);
+			UsageRating.MetricTotal recomputedTotal = recomputed.getMetric(metric);
+			if (recomputedTotal == null || !recomputedTotal.isSameAs(storedTotal)) {
+				reconciliation.getDifferences().add(new MetricDifference(metric, storedTotal, recomputedTotal));
+			}
+		}
+		reconciliation.setConsistent(stored != null && reconciliation.getDifferences().isEmpty());
+
+		return reconciliation;
+	}
+
+	public String getProductId() {
+		return productId;
+	}
+
+	public void setProductId(String productId) {
+		this.productId = productId;
+	}
+
+	public boolean isConsistent() {
+		return consistent;
+	}
+
+	public void setConsistent(boolean consistent) {
+		this.consistent = consistent;
+	}
+
+	public long getRatedUsages() {
+		return ratedUsages;
+	}
+
+	public void setRatedUsages(long ratedUsages) {
+		this.ratedUsages = ratedUsages;
+	}
+
+	public long getRecomputedUsages() {
+		return recomputedUsages;
+	}
+
+	public void setRecomputedUsages(long recomputedUsages) {
+		this.recomputedUsages = recomputedUsages;
+	}
+
+	public List<MetricDifference> getDifferences() {
+		return differences;
+	}
+
+	public void setDifferences(List<MetricDifference> differences) {
+		this.differences = differences;
+	}
+
+	public UsageRating getRating() {
+		return rating;
+	}
+
+	public void setRating(UsageRating rating) {
+		this.rating = rating;
+	}
+
+	/**
+	 * The running and the recomputed totals of a metric
+	 */
+	public static class MetricDifference {
+
+		private String metric;
+
+		private long ratedCount;
+
+		private BigDecimal ratedQuantity = BigDecimal.ZERO;
+
+		private long recomputedCount;
+
+		private BigDecimal recomputedQuantity = BigDecimal.ZERO;
+
+		public MetricDifference() {
+		}
+
+		public MetricDifference(String metric, UsageRating.MetricTotal rated, UsageRating.MetricTotal recomputed) {
+			this.metric = metric;
+			if (rated != null) {
+				this.ratedCount = rated.getCount();
+				this.ratedQuantity = rated.getQuantity();
+			}
+			if (recomputed != null) {
+				this.recomputedCount = recomputed.getCount();
+				this.recomputedQuantity = recomputed.getQuantity();
+			}
+		}
+
+		public String getMetric() {
+			return metric;
+		}
+
+		public void setMetric(String metric) {
+			this.metric = metric;
+		}
+
+		public long getRatedCount() {
+			return ratedCount;
+		}
+
+		public void setRatedCount(long ratedCount) {
+			this.ratedCount = ratedCount;
+		}
+
+		public BigDecimal getRatedQuantity() {
+			return ratedQuantity;
+		}
+
+		public void setRatedQuantity(BigDecimal ratedQuantity) {
+			this.ratedQuantity = ratedQuantity;
+		}
+
+		public long getRecomputedCount() {
+			return recomputedCount;
+		}
+
+		public void setRecomputedCount(long recomputedCount) {
+			this.recomputedCount = recomputedCount;
+		}
+
+		public BigDecimal getRecomputedQuantity() {
+			return recomputedQuantity;
+		}
+
+		public void setRecomputedQuantity(BigDecimal recomputedQuantity) {
+			this.recomputedQuantity = recomputedQuantity;
+		}
+	}
+
+}
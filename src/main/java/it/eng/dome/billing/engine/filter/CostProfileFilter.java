@@ -0,0 +1,121 @@
+package it.eng.dome.billing.engine.filter;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.utils.CostProfile;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Profiles the billing requests that ask for it with the X-Billing-Profile header or with the profile query parameter (e.g., POST /billing/bill?profile=true).
+ * The {@link CostProfile} of the request is returned in the X-Billing-Profile response header (as JSON) and the time of the billing stages
+ * in the standard Server-Timing response header, so the body of the response is unchanged.
+ * <p>
+ * The response headers are limited in size (8KB by default in Tomcat), so the header lists only the slowest ProductOfferingPrice(s)
+ * (app.profiling.header-pops) with the number of the omitted ones: the full profile is logged.
+ */
+@Component
+public class CostProfileFilter extends OncePerRequestFilter {
+
+	public static final String PROFILE_HEADER = "X-Billing-Profile";
+	public static final String PROFILE_PARAMETER = "profile";
+	public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+	private static final Set<String> PROFILED_PATHS = Set.of("/billing/bill", "/billing/instantBill", "/billing/currentSpend", "/billing/previewPrice");
+
+	private final Logger logger = LoggerFactory.getLogger(CostProfileFilter.class);
+
+	private final AppProperties appProperties;
+	private final ObjectMapper objectMapper;
+
+	public CostProfileFilter(AppProperties appProperties, ObjectMapper objectMapper) {
+		this.appProperties = appProperties;
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		if (!appProperties.getProfiling().isEnabled()) {
+			return true;
+		}
+		String path = request.getServletPath();
+		if (path.length() > 1 && path.endsWith("/")) {
+			path = path.substring(0, path.length() - 1);
+		}
+		return !PROFILED_PATHS.contains(path) || !(isTrue(request.getHeader(PROFILE_HEADER)) || isTrue(request.getParameter(PROFILE_PARAMETER)));
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		// the NDJSON responses are streamed after the billing, so their headers are still writable without buffering the body
+		String accept = request.getHeader("Accept");
+		boolean streamed = accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE);
+		HttpServletResponse target = streamed ? response : new ContentCachingResponseWrapper(response);
+
+		CostProfile profile = CostProfile.start();
+		try {
+			filterChain.doFilter(request, target);
+		} finally {
+			CostProfile.clear();
+			profile.stop();
+			this.writeProfile(profile, request, target);
+			if (target instanceof ContentCachingResponseWrapper) {
+				((ContentCachingResponseWrapper) target).copyBodyToResponse();
+			}
+		}
+	}
+
+	private void writeProfile(CostProfile profile, HttpServletRequest request, HttpServletResponse response) {
+		try {
+			logger.info("Cost profile of the request {} {}: {}", request.getMethod(), request.getRequestURI(), objectMapper.writeValueAsString(profile));
+		} catch (IOException e) {
+			logger.warn("Error serializing the cost profile of the request: {}", e.getMessage());
+		}
+		if (response.isCommitted()) {
+			logger.warn("The cost profile of the request can not be returned, the response is already committed");
+			return;
+		}
+		try {
+			response.setHeader(PROFILE_HEADER, objectMapper.writeValueAsString(this.toHeader(profile)));
+		} catch (IOException e) {
+			logger.warn("Error serializing the cost profile of the request: {}", e.getMessage());
+		}
+		response.setHeader(SERVER_TIMING_HEADER, profile.toServerTiming());
+		logger.debug("Cost profile of the request: {}", profile.toServerTiming());
+	}
+
+	/*
+	 * The profile returned in the header: only the slowest POPs, with the number of the omitted ones
+	 */
+	private ObjectNode toHeader(CostProfile profile) {
+		int maxPops = appProperties.getProfiling().getHeaderPops();
+		ObjectNode header = objectMapper.valueToTree(profile);
+		int pops = header.path("pops").size();
+		if (pops > maxPops) {
+			header.set("pops", objectMapper.valueToTree(profile.getSlowestPops(maxPops)));
+			header.put("popsOmitted", pops - maxPops);
+		}
+		return header;
+	}
+
+	private static boolean isTrue(String value) {
+		return value != null && (value.isEmpty() || Boolean.parseBoolean(value));
+	}
+
+}
@@ -0,0 +1,189 @@
+package it.eng.dome.billing.engine.job;
+
+import java.time.OffsetDateTime;
+
+import it.eng.dome.billing.engine.dto.BatchBillingRequestDTO;
+import it.eng.dome.billing.engine.dto.ProductBillingResultDTO;
+
+/**
+ * Class representing an asynchronous billing job: the {@link BatchBillingRequestDTO} to process, its status and its progress.
+ * The results of the job are stored separately by the {@link BillingJobStore}.
+ */
+public class BillingJob {
+
+	public enum Status {
+		QUEUED, RUNNING, COMPLETED, FAILED
+	}
+
+	private String id;
+
+	private Status status;
+
+	private BatchBillingRequestDTO request;
+
+	// number of Product(s) to bill, null until known (i.e., for the jobs with a filter on the Product Inventory)
+	private Integer total;
+
+	private int processed;
+
+	private int succeeded;
+
+	private int failed;
+
+	private String error;
+
+	private OffsetDateTime createdAt;
+
+	private OffsetDateTime updatedAt;
+
+	public BillingJob() {
+	}
+
+	public BillingJob(String id, BatchBillingRequestDTO request) {
+		this.id = id;
+		this.request = request;
+		this.status = Status.QUEUED;
+		this.createdAt = OffsetDateTime.now();
+		this.updatedAt = this.createdAt;
+	}
+
+	/**
+	 * Creates a copy of the job, e.g. to return a consistent view of a running job
+	 *
+	 * @return a copy of the job
+	 */
+	public synchronized BillingJob copy() {
+		BillingJob copy = new BillingJob();
+		copy.id = id;
+		copy.status = status;
+		copy.request = request;
+		copy.total = total;
+		copy.processed = processed;
+		copy.succeeded = succeeded;
+		copy.failed = failed;
+		copy.error = error;
+		copy.createdAt = createdAt;
+		copy.updatedAt = updatedAt;
+		return copy;
+	}
+
+	/**
+	 * Updates the progress of the job with the result of a Product
+	 *
+	 * @param result the {@link ProductBillingResultDTO} of a Product
+	 */
+	public synchronized void addResult(ProductBillingResultDTO result) {
+		processed++;
+		if (result.getStatus() == ProductBillingResultDTO.Status.SUCCEEDED) {
+			succeeded++;
+		} else {
+			failed++;
+		}
+		updatedAt = OffsetDateTime.now();
+	}
+
+	/**
+	 * Starts (or restarts after a crash) the job: the progress is reset and then recounted from the results stored by the previous runs
+	 *
+	 * @param total the number of Product(s) to bill, null if not known
+	 */
+	public synchronized void start(Integer total) {
+		this.status = Status.RUNNING;
+		this.total = total;
+		this.processed = 0;
+		this.succeeded = 0;
+		this.failed = 0;
+		this.error = null;
+		this.updatedAt = OffsetDateTime.now();
+	}
+
+	public synchronized void updateStatus(Status status, String error) {
+		if (status == Status.COMPLETED && total == null) {
+			total = processed;
+		}
+		this.status = status;
+		this.error = error;
+		this.updatedAt = OffsetDateTime.now();
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+
+	public BatchBillingRequestDTO getRequest() {
+		return request;
+	}
+
+	public void setRequest(BatchBillingRequestDTO request) {
+		this.request = request;
+	}
+
+	public Integer getTotal() {
+		return total;
+	}
+
+	public void setTotal(Integer total) {
+		this.total = total;
+	}
+
+	public int getProcessed() {
+		return processed;
+	}
+
+	public void setProcessed(int processed) {
+		this.processed = processed;
+	}
+
+	public int getSucceeded() {
+		return succeeded;
+	}
+
+	public void setSucceeded(int succeeded) {
+		this.succeeded = succeeded;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+
+	public void setFailed(int failed) {
+		this.failed = failed;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	public OffsetDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(OffsetDateTime createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public OffsetDateTime getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(OffsetDateTime updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+
+}
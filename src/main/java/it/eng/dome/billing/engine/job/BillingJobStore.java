@@ -0,0 +1,220 @@
+package it.eng.dome.billing.engine.job;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import it.eng.dome.billing.engine.dto.ProductBillingResultDTO;
+
+/**
+ * File-based store of the {@link BillingJob}(s). Each job has its own directory containing:
+ * <ul>
+ * <li>job.json: the job, replaced atomically at each checkpoint</li>
+ * <li>results.ndjson: the {@link ProductBillingResultDTO} of the billed Product(s), one per line, appended as soon as they are calculated</li>
+ * </ul>
+ * The results file is the checkpoint of the job: after a crash the job is resumed skipping the Product(s) already in the file.
+ */
+public class BillingJobStore {
+
+	private final static Logger logger = LoggerFactory.getLogger(BillingJobStore.class);
+
+	private static final String JOB_FILE = "job.json";
+	private static final String RESULTS_FILE = "results.ndjson";
+
+	private final Path directory;
+
+	private final ObjectMapper objectMapper;
+
+	public BillingJobStore(Path directory, ObjectMapper objectMapper) {
+		this.directory = directory;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Saves the {@link BillingJob}, replacing the previous version
+	 *
+	 * @param job the {@link BillingJob} to save
+	 */
+	public void save(BillingJob job) {
+		try {
+			Path jobDirectory = Files.createDirectories(directory.resolve(job.getId()));
+			Path tmp = jobDirectory.resolve(JOB_FILE + ".tmp");
+			objectMapper.writeValue(tmp.toFile(), job.copy());
+			Files.move(tmp, jobDirectory.resolve(JOB_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error saving BillingJob " + job.getId(), e);
+		}
+	}
+
+	/**
+	 * Loads the {@link BillingJob} with the specified identifier
+	 *
+	 * @param id the identifier of the {@link BillingJob}
+	 * @return the {@link BillingJob}, null if not found
+	 */
+	public BillingJob load(String id) {
+		// the identifiers are UUIDs: anything else could escape the directory of the store
+		if (id == null || !id.matches("[0-9a-fA-F-]+")) {
+			return null;
+		}
+
+		Path jobFile = directory.resolve(id).resolve(JOB_FILE);
+		try {
+			return objectMapper.readValue(jobFile.toFile(), BillingJob.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			if (!Files.exists(jobFile)) {
+				return null;
+			}
+			throw new UncheckedIOException("Error loading BillingJob " + id, e);
+		}
+	}
+
+	/**
+	 * Loads all the {@link BillingJob}(s) of the store
+	 *
+	 * @return the list of {@link BillingJob}
+	 */
+	public List<BillingJob> loadAll() {
+		List<BillingJob> jobs = new ArrayList<BillingJob>();
+		if (!Files.isDirectory(directory)) {
+			return jobs;
+		}
+
+		try (Stream<Path> jobDirectories = Files.list(directory)) {
+			jobDirectories.filter(Files::isDirectory).forEach(jobDirectory -> {
+				try {
+					BillingJob job = this.load(jobDirectory.getFileName().toString());
+					if (job != null) {
+						jobs.add(job);
+					}
+				} catch (UncheckedIOException e) {
+					logger.warn("Skipping BillingJob in {}: {}", jobDirectory, e.getMessage());
+				}
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error listing the BillingJob(s) in " + directory, e);
+		}
+
+		return jobs;
+	}
+
+	/**
+	 * Opens the results of the {@link BillingJob} to append the {@link ProductBillingResultDTO}(s)
+	 *
+	 * @param id the identifier of the {@link BillingJob}
+	 * @return a {@link ResultAppender}, to be closed at the end of the job
+	 * @throws IOException if the results file cannot be opened
+	 */
+	public ResultAppender openResults(String id) throws IOException {
+		Path jobDirectory = Files.createDirectories(directory.resolve(id));
+		BufferedWriter writer = Files.newBufferedWriter(jobDirectory.resolve(RESULTS_FILE), StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		return new ResultAppender(writer);
+	}
+
+	/**
+	 * Reads the {@link ProductBillingResultDTO}(s) of the {@link BillingJob}, in the order they were stored.
+	 * A line that cannot be parsed (e.g., the last line written when the application crashed) is skipped.
+	 *
+	 * @param id the identifier of the {@link BillingJob}
+	 * @param consumer the consumer of the {@link ProductBillingResultDTO}(s)
+	 */
+	public void forEachResult(String id, Consumer<ProductBillingResultDTO> consumer) {
+		Path resultsFile = directory.resolve(id).resolve(RESULTS_FILE);
+		if (!Files.exists(resultsFile)) {
+			return;
+		}
+
+		try (BufferedReader reader = Files.newBufferedReader(resultsFile, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isBlank()) {
+					continue;
+				}
+				try {
+					consumer.accept(objectMapper.readValue(line, ProductBillingResultDTO.class));
+				} catch (JsonProcessingException e) {
+					logger.warn("Skipping malformed result of BillingJob {}: {}", id, e.getOriginalMessage());
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error reading the results of BillingJob " + id, e);
+		}
+	}
+
+	/**
+	 * Reads a page of the {@link ProductBillingResultDTO}(s) of the {@link BillingJob}
+	 *
+	 * @param id the identifier of the {@link BillingJob}
+	 * @param offset the index of the first result
+	 * @param limit the maximum number of results
+	 * @return the list of {@link ProductBillingResultDTO}
+	 */
+	public List<ProductBillingResultDTO> readResults(String id, int offset, int limit) {
+		List<ProductBillingResultDTO> results = new ArrayList<ProductBillingResultDTO>();
+		int[] index = { 0 };
+
+		this.forEachResult(id, result -> {
+			if (index[0] >= offset && results.size() < limit) {
+				results.add(result);
+			}
+			index[0]++;
+		});
+
+		return results;
+	}
+
+	/**
+	 * Appends the {@link ProductBillingResultDTO}(s) of a running {@link BillingJob} to its results file
+	 */
+	public class ResultAppender implements Closeable {
+
+		private final BufferedWriter writer;
+
+		private ResultAppender(BufferedWriter writer) {
+			this.writer = writer;
+		}
+
+		/**
+		 * Appends the result and flushes it: once this method returns the Product is not billed again if the job is resumed
+		 *
+		 * @param result the {@link ProductBillingResultDTO} to append
+		 */
+		public void append(ProductBillingResultDTO result) {
+			try {
+				// a new line first: a partial line left by a crash is kept apart from the new results
+				writer.newLine();
+				writer.write(objectMapper.writeValueAsString(result));
+				writer.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+	}
+
+}
@@ -28,6 +28,9 @@ public class MarkdownGenerationListener extends AbstractMarkdownGenerator {
 	@Autowired
 	private RestClient restClient;
 
+	@Autowired
+	private StartupTasks startupTasks;
+
 	@Value("${rest_api_docs.generate_md:false}")
 	private boolean generateApiDocs;
 
@@ -44,40 +47,44 @@ public class MarkdownGenerationListener extends AbstractMarkdownGenerator {
 		// To generate automatic REST_APIs.md doc set the generateApiDocs = true
 		// Please set 'generate-rest-apis' profile (i.e. mvn spring-boot:run -Pgenerate-rest-apis)
 		if (Boolean.TRUE.equals(generateApiDocs)) {
-			logger.info("Generating {} to display REST APIs", REST_API_MD);
+			startupTasks.run("generate " + REST_API_MD, this::generateMarkdown);
+		}
+	}
+
+	private void generateMarkdown() {
 
-			String path = contextPath + API_DOCS_PATH;
-			String url = "http://localhost:" + serverPort + path.replaceAll("//+", "/");
+		logger.info("Generating {} to display REST APIs", REST_API_MD);
 
-			logger.debug("GET JSON OpenAPI call to {}", url);
+		String path = contextPath + API_DOCS_PATH;
+		String url = "http://localhost:" + serverPort + path.replaceAll("//+", "/");
+
+		logger.debug("GET JSON OpenAPI call to {}", url);
+		
+		try {
+			// Request to JSON OpenAPI
+			String json = restClient.get()
+		        .uri(url)
+		        .accept(MediaType.APPLICATION_JSON)
+		        .retrieve()
+		        .body(String.class);
 			
-			try {
-				// Request to JSON OpenAPI
-				String json = restClient.get()
-			        .uri(url)
-			        .accept(MediaType.APPLICATION_JSON)
-			        .retrieve()
-			        .body(String.class);
-				
-				if (json == null || json.isBlank()) {
-				    logger.warn("Received empty JSON from {}", url);
-				    return;
-				}
-
-				// Get StringBuilder from JSON payload
-				StringBuilder md = generateMarkdownFromJson(json);
-				
-				try (
-				// Write FILE.MD
-				BufferedWriter writer = Files.newBufferedWriter(Path.of(REST_API_MD), StandardCharsets.UTF_8)) {
-					writer.write(md.toString());
-				}
-				
-				logger.info("The {} file was generated successfully", REST_API_MD);
-			} catch (Exception e) {
-				logger.error("Failed to generate {}: {}", REST_API_MD, e.getMessage(), e);
-			}			
+			if (json == null || json.isBlank()) {
+			    logger.warn("Received empty JSON from {}", url);
+			    return;
+			}
+
+			// Get StringBuilder from JSON payload
+			StringBuilder md = generateMarkdownFromJson(json);
 			
-		}
+			try (
+			// Write FILE.MD
+			BufferedWriter writer = Files.newBufferedWriter(Path.of(REST_API_MD), StandardCharsets.UTF_8)) {
+				writer.write(md.toString());
+			}
+			
+			logger.info("The {} file was generated successfully", REST_API_MD);
+		} catch (Exception e) {
+			logger.error("Failed to generate {}: {}", REST_API_MD, e.getMessage(), e);
+		}			
 	}
 }
\ No newline at end of file
@@ -36,6 +36,9 @@ public class StartupListener implements ApplicationListener<ApplicationReadyEven
 	@Autowired
 	private RestClient restClient;
 
+	@Autowired
+	private StartupTasks startupTasks;
+
 	@Value("${server.port}")
 	private int serverPort;
 
@@ -45,6 +48,10 @@ public class StartupListener implements ApplicationListener<ApplicationReadyEven
 
 	@EventListener(ApplicationReadyEvent.class)
 	public void onApplicationReady() {
+		startupTasks.run("engine info", this::callInfo);
+	}
+
+	private void callInfo() {
 
 		String path = contextPath + INFO_PATH;
 		String url = "http://localhost:" + serverPort + path.replaceAll("//+", "/");
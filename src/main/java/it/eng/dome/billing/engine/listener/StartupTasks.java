@@ -0,0 +1,68 @@
+package it.eng.dome.billing.engine.listener;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs the non-essential work done when the application is ready (e.g., the self-call to /engine/info and the generation of REST_APIs.md).
+ * The {@link org.springframework.boot.context.event.ApplicationReadyEvent} listeners run before the application accepts traffic: with
+ * app.startup.defer-tasks the work is run in background, one task at a time, so it doesn't delay the readiness.
+ */
+@Component
+public class StartupTasks {
+
+	private static final Logger logger = LoggerFactory.getLogger(StartupTasks.class);
+
+	// null if the tasks are not deferred
+	private final ExecutorService executor;
+
+	public StartupTasks(AppProperties appProperties) {
+		AppProperties.Startup startup = appProperties.getStartup() != null ? appProperties.getStartup() : new AppProperties.Startup();
+		if (startup.isDeferTasks()) {
+			this.executor = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "startup-task");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * Runs a startup task, in background if the tasks are deferred
+	 *
+	 * @param name the name of the task (for the logs)
+	 * @param task the task to run
+	 */
+	public void run(String name, Runnable task) {
+		if (executor == null) {
+			task.run();
+			return;
+		}
+
+		executor.execute(() -> {
+			long start = System.nanoTime();
+			try {
+				task.run();
+				logger.debug("Startup task '{}' completed in {} ms", name, (System.nanoTime() - start) / 1_000_000);
+			} catch (RuntimeException e) {
+				logger.error("Startup task '{}' failed: {}", name, e.getMessage(), e);
+			}
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package it.eng.dome.billing.engine.listener;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline.TimelineEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.stereotype.Component;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+
+/**
+ * Logs the startup timeline when app.startup.timeline is enabled: the time from the start of the JVM, the time to the refresh of the context
+ * (started) and to the readiness (ready), whether a class data sharing archive is used, and the slowest startup steps recorded by the
+ * {@link BufferingApplicationStartup} (the steps are nested, e.g. the instantiation of a bean includes the instantiation of its dependencies).
+ */
+@Component
+public class StartupTimelineListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(StartupTimelineListener.class);
+
+	private static final String SHARED_ARCHIVE_OPTION = "-XX:SharedArchiveFile=";
+
+	private final boolean enabled;
+	private final int steps;
+	private final StartupTasks startupTasks;
+
+	private volatile Duration started;
+
+	public StartupTimelineListener(AppProperties appProperties, StartupTasks startupTasks) {
+		AppProperties.Startup startup = appProperties.getStartup() != null ? appProperties.getStartup() : new AppProperties.Startup();
+		this.enabled = startup.isTimeline();
+		this.steps = Math.max(0, startup.getTimelineSteps());
+		this.startupTasks = startupTasks;
+	}
+
+	@EventListener(ApplicationStartedEvent.class)
+	public void onApplicationStarted(ApplicationStartedEvent event) {
+		started = event.getTimeTaken();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady(ApplicationReadyEvent event) {
+		if (!enabled) {
+			return;
+		}
+
+		long jvm = ManagementFactory.getRuntimeMXBean().getUptime();
+		Duration ready = event.getTimeTaken();
+		ApplicationStartup applicationStartup = event.getApplicationContext().getApplicationStartup();
+
+		startupTasks.run("startup timeline", () -> {
+			logger.info("Startup timeline [jvm: {} ms, started: {} ms, ready: {} ms, class data sharing: {}]", jvm,
+					started != null ? started.toMillis() : null, ready != null ? ready.toMillis() : null, getSharedArchive());
+
+			if (applicationStartup instanceof BufferingApplicationStartup buffering) {
+				List<TimelineEvent> slowest = buffering.getBufferedTimeline().getEvents().stream()
+						.sorted(Comparator.comparing(TimelineEvent::getDuration).reversed())
+						.limit(steps)
+						.collect(Collectors.toList());
+				for (TimelineEvent step : slowest) {
+					String tags = StreamSupport.stream(step.getStartupStep().getTags().spliterator(), false)
+							.map(tag -> tag.getKey() + "=" + tag.getValue())
+							.collect(Collectors.joining(", "));
+					logger.info("- {} ms {}{}", step.getDuration().toMillis(), step.getStartupStep().getName(), tags.isEmpty() ? "" : " [" + tags + "]");
+				}
+			}
+		});
+	}
+
+	/*
+	 * The class data sharing archive set on the command line, "default" if none
+	 */
+	private static String getSharedArchive() {
+		for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			if (argument.startsWith(SHARED_ARCHIVE_OPTION)) {
+				return argument.substring(SHARED_ARCHIVE_OPTION.length());
+			}
+		}
+		return "default";
+	}
+}
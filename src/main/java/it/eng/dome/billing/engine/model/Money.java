@@ -1,28 +1,89 @@
 package it.eng.dome.billing.engine.model;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
 /**
  * Class representing a Money with a unit (i.e., currency) and a price value.
+ * The value is kept as an exact decimal in fixed point (a long with {@value #SCALE} decimal digits), so sums and alterations do not drift:
+ * the TMForum float values are converted only when a Money is created from or returned to the TMForum entities ({@link #Money(String, Float)} and {@link #getValue()}).
+ * The arithmetic operations return a new Money and throw {@link ArithmeticException} in case of overflow.
  */
 public class Money {
-	
+
 	private static final String DEFAULT_CURRENCY = "EUR";
-	
+
+	/**
+	 * Number of decimal digits of the value
+	 */
+	public static final int SCALE = 8;
+
+	private static final long SCALE_FACTOR = 100_000_000L;
+
+	private static final RoundingMode ROUNDING = RoundingMode.HALF_EVEN;
+
+	// the floats up to this value (in units) are converted without BigDecimal (2^53: the units are exact in a double)
+	private static final double MAX_FAST_UNITS = 9_007_199_254_740_992d;
+
+	private static final long[] POWERS_OF_TEN = new long[19];
+	static {
+		POWERS_OF_TEN[0] = 1L;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
 	private String unit;
-	private Float value;
-	
+
+	// the value multiplied by 10^SCALE (meaningful only if hasValue)
+	private long units;
+	private boolean hasValue;
+
 	public Money() {
-		// TODO Auto-generated constructor stub
 	}
-	
+
 	public Money(String unit, Float value) {
-		super();
-		if(unit==null)
-			this.unit=DEFAULT_CURRENCY;
-		else 
-			this.unit = unit;
-		this.value = value;
+		this.unit = unit == null ? DEFAULT_CURRENCY : unit;
+		this.setValue(value);
+	}
+
+	/**
+	 * Creates a Money with the specified decimal value, rounded (half even) to {@value #SCALE} decimal digits
+	 *
+	 * @param unit the currency (EUR if null)
+	 * @param amount the value
+	 */
+	public Money(String unit, BigDecimal amount) {
+		this.unit = unit == null ? DEFAULT_CURRENCY : unit;
+		this.setAmount(amount);
 	}
 
+	private Money(String unit, long units) {
+		this.unit = unit;
+		this.units = units;
+		this.hasValue = true;
+	}
+
+	/**
+	 * Creates a Money with zero value
+	 *
+	 * @param unit the currency (EUR if null)
+	 * @return the Money
+	 */
+	public static Money zero(String unit) {
+		return new Money(unit == null ? DEFAULT_CURRENCY : unit, 0L);
+	}
+
+	/**
+	 * Converts a TMForum float value to the exact decimal of its shortest representation (e.g., 0.1f is 0.1, not 0.100000001490116...)
+	 *
+	 * @param value the float value
+	 * @return the decimal value, null if the value is null
+	 */
+	public static BigDecimal toDecimal(Float value) {
+		return value == null ? null : new BigDecimal(Float.toString(value));
+	}
 
 	public String getUnit() {
 		return unit;
@@ -32,14 +93,207 @@ public class Money {
 		this.unit = unit;
 	}
 
+	/**
+	 * Returns the value as float, to be set in the TMForum entities
+	 *
+	 * @return the value (null if not set)
+	 */
 	public Float getValue() {
-		return value;
+		return hasValue ? (float) ((double) units / SCALE_FACTOR) : null;
 	}
 
 	public void setValue(Float value) {
-		this.value = value;
+		if (value == null) {
+			this.units = 0L;
+			this.hasValue = false;
+		} else {
+			this.units = toUnits(value);
+			this.hasValue = true;
+		}
+	}
+
+	/**
+	 * Returns the exact decimal value
+	 *
+	 * @return the value with {@value #SCALE} decimal digits (null if not set)
+	 */
+	public BigDecimal getAmount() {
+		return hasValue ? BigDecimal.valueOf(units, SCALE) : null;
+	}
+
+	public void setAmount(BigDecimal amount) {
+		if (amount == null) {
+			this.units = 0L;
+			this.hasValue = false;
+		} else {
+			this.units = amount.setScale(SCALE, ROUNDING).unscaledValue().longValueExact();
+			this.hasValue = true;
+		}
+	}
+
+	/**
+	 * Returns the sum of this Money and the specified one, which must have the same currency
+	 *
+	 * @param other the Money to add
+	 * @return a new Money with the sum
+	 * @throws IllegalArgumentException if the currencies of the Money(s) are different
+	 */
+	public Money add(Money other) {
+		long value = this.units();
+		long otherValue = other.units();
+		if (!Objects.equals(unit, other.unit)) {
+			throw new IllegalArgumentException("Cannot add a Money in " + other.unit + " to a Money in " + unit);
+		}
+		return new Money(unit, Math.addExact(value, otherValue));
+	}
+
+	/**
+	 * Returns the opposite of this Money (e.g., a discount)
+	 *
+	 * @return a new Money with the negated value
+	 */
+	public Money negate() {
+		return new Money(unit, Math.negateExact(this.units()));
+	}
+
+	/**
+	 * Returns the absolute value of this Money
+	 *
+	 * @return a new Money with the absolute value
+	 */
+	public Money abs() {
+		long value = this.units();
+		return value >= 0 ? this : new Money(unit, Math.negateExact(value));
+	}
+
+	/**
+	 * Returns this Money multiplied by an integer quantity
+	 *
+	 * @param quantity the quantity
+	 * @return a new Money with the product
+	 */
+	public Money multiply(long quantity) {
+		return new Money(unit, Math.multiplyExact(this.units(), quantity));
+	}
+
+	/**
+	 * Returns this Money multiplied by a decimal factor, rounded (half even) to {@value #SCALE} decimal digits
+	 *
+	 * @param factor the factor
+	 * @return a new Money with the product
+	 */
+	public Money multiply(BigDecimal factor) {
+		return this.multiply(factor, SCALE);
+	}
+
+	/**
+	 * Returns this Money multiplied by a decimal factor, rounded (half even) to the specified number of decimal digits
+	 *
+	 * @param factor the factor
+	 * @param scale the number of decimal digits of the product (not greater than {@value #SCALE})
+	 * @return a new Money with the product
+	 */
+	public Money multiply(BigDecimal factor, int scale) {
+		return new Money(unit, this.getAmount().multiply(factor).setScale(scale, ROUNDING));
+	}
+
+	/**
+	 * Returns the specified percentage of this Money, rounded (half even) to the specified number of decimal digits (e.g., the amount of a percentage discount)
+	 *
+	 * @param percentage the percentage (e.g., 10 for 10%)
+	 * @param scale the number of decimal digits of the result (not greater than {@value #SCALE})
+	 * @return a new Money with this * percentage / 100
+	 */
+	public Money percentage(float percentage, int scale) {
+		// the percentage in units of 10^-(SCALE+2) is the factor in units of 10^-SCALE
+		return this.multiply(toUnits(percentage), SCALE + 2, scale);
+	}
+
+	/**
+	 * Returns this Money divided by a decimal divisor, rounded (half even) to {@value #SCALE} decimal digits
+	 *
+	 * @param divisor the divisor
+	 * @return a new Money with the quotient
+	 * @throws ArithmeticException if the divisor is zero
+	 */
+	public Money divide(BigDecimal divisor) {
+		return new Money(unit, this.getAmount().divide(divisor, SCALE, ROUNDING));
+	}
+
+	public int signum() {
+		return Long.signum(this.units());
+	}
+
+	/*
+	 * Multiplies by the factor factorUnits * 10^-factorScale, rounding the result to the scale: the product is computed in a long when possible, in BigDecimal otherwise
+	 */
+	private Money multiply(long factorUnits, int factorScale, int scale) {
+		long value = this.units();
+		while (factorScale > 0 && factorUnits % 10 == 0) {
+			factorUnits /= 10;
+			factorScale--;
+		}
+
+		// value * factor (in units) = value * factorUnits / 10^factorScale, rounded to a multiple of 10^(SCALE-scale)
+		int divisorExponent = factorScale + SCALE - scale;
+		long high = Math.multiplyHigh(value, factorUnits);
+		long product = value * factorUnits;
+		if (divisorExponent < POWERS_OF_TEN.length && ((high == 0 && product >= 0) || (high == -1 && product < 0))) {
+			long rounded = divideHalfEven(product, POWERS_OF_TEN[divisorExponent]);
+			return new Money(unit, Math.multiplyExact(rounded, POWERS_OF_TEN[SCALE - scale]));
+		}
+
+		return new Money(unit, this.getAmount().multiply(BigDecimal.valueOf(factorUnits, factorScale)).setScale(scale, ROUNDING));
+	}
+
+	private static long divideHalfEven(long dividend, long divisor) {
+		long quotient = dividend / divisor;
+		long remainder = Math.abs(dividend % divisor);
+		long half = divisor - remainder;
+		if (remainder > half || (remainder == half && (quotient & 1) != 0)) {
+			quotient += dividend < 0 ? -1 : 1;
+		}
+		return quotient;
+	}
+
+	/*
+	 * Converts the float to units: the result is the shortest decimal (with at most SCALE digits) that converts back to the same float,
+	 * i.e. the decimal the float was parsed from (e.g., 1.1f is 1.1, not 1.10000002)
+	 */
+	private static long toUnits(float value) {
+		if (!Float.isFinite(value)) {
+			throw new ArithmeticException("The value of the Money is not a finite number: " + value);
+		}
+
+		double scaled = (double) value * SCALE_FACTOR;
+		if (Math.abs(scaled) >= MAX_FAST_UNITS) {
+			return new BigDecimal(Float.toString(value)).setScale(SCALE, ROUNDING).unscaledValue().longValueExact();
+		}
+
+		long units = Math.round(scaled);
+		for (int digits = 0; digits < SCALE; digits++) {
+			long step = POWERS_OF_TEN[SCALE - digits];
+			long candidate = Math.floorDiv(units + step / 2, step) * step;
+			if ((float) ((double) candidate / SCALE_FACTOR) == value) {
+				return candidate;
+			}
+		}
+		return units;
+	}
+
+	/*
+	 * The fixed point value, failing if the value is not set
+	 */
+	private long units() {
+		if (!hasValue) {
+			throw new IllegalStateException("The value of the Money is not set");
+		}
+		return units;
+	}
+
+	@Override
+	public String toString() {
+		return hasValue ? this.getAmount().stripTrailingZeros().toPlainString() + " " + unit : "null " + unit;
 	}
-	
-	
 
 }
@@ -1,8 +1,5 @@
 package it.eng.dome.billing.engine.price.alteration;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,8 +8,8 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.model.Money;
 import it.eng.dome.billing.engine.validator.TMFEntityValidator;
-import it.eng.dome.tmforum.tmf620.v4.model.Money;
 import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 
 @Component(value = "discountAlterationOperation")
@@ -20,39 +17,33 @@ import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 public class DiscountAlterationOperation implements PriceAlterationOperation{
     private final Logger logger = LoggerFactory.getLogger(DiscountAlterationOperation.class);
     
-    private static final BigDecimal ONE_HUNDRED = new BigDecimal("100");
-    
     @Autowired
 	private TMFEntityValidator tmfEntityValidator;
 
 	@Override
-	public BigDecimal applyAlteration(BigDecimal basePrice, ProductOfferingPrice alterationPOP, Float quantity) throws BillingEngineValidationException {
-		BigDecimal discount =BigDecimal.ZERO;
+	public Money applyAlteration(Money basePrice, ProductOfferingPrice alterationPOP, Float quantity) throws BillingEngineValidationException {
+		Money discount =Money.zero(basePrice.getUnit());
 		
 		// If percentage is set
 		if (alterationPOP.getPercentage() != null) {
-            discount = basePrice
-                    .multiply(new BigDecimal(String.valueOf(alterationPOP.getPercentage())))
-                    .divide(ONE_HUNDRED)
-                    .setScale(2, RoundingMode.HALF_EVEN);
+            discount = basePrice.percentage(alterationPOP.getPercentage(), 2);
             
             logger.info("Applied {}% discount to base price '{}'. Discount '{}'", 
     				alterationPOP.getPercentage(), basePrice, discount.abs().negate());
         } 
 		// if the percentage is not set will be considered as discount the price of the pop alteration
 		else {
-        	Money price=alterationPOP.getPrice();
+        	it.eng.dome.tmforum.tmf620.v4.model.Money price=alterationPOP.getPrice();
         	if(price!=null) {
         		tmfEntityValidator.validatePrice(alterationPOP);
         		
-        		discount=new BigDecimal(String.valueOf(price.getValue()));
+        		discount=new Money(basePrice.getUnit(), price.getValue());
         		logger.info("Discount applied to base price '{}': Discount '{}'", 
         				basePrice, discount.abs().negate());
         	}
         }
 		
 		if(quantity!=null && quantity>=0f) {
-			discount.multiply(new BigDecimal(String.valueOf(quantity)));
 			logger.info("Quantity is {}: Total Discount {}", quantity, discount.abs().negate());
 		}
 			
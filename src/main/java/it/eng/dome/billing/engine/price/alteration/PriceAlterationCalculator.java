@@ -1,7 +1,5 @@
 package it.eng.dome.billing.engine.price.alteration;
 
-import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -11,9 +9,12 @@ import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.Timer;
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
 import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.utils.BillingMetrics;
 import it.eng.dome.billing.engine.utils.TMForumEntityUtils;
+import it.eng.dome.billing.engine.utils.TmfConverter;
 import it.eng.dome.billing.engine.validator.TMFEntityValidator;
 import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.tmforum.tmf620.v4.ApiException;
@@ -46,9 +47,18 @@ public class PriceAlterationCalculator {
 	 * @throws BillingEngineValidationException if some unexpected/missing values are find during the validation of the TMForum entities
 	 */
 	public OrderPrice applyAlterations(@NotNull OrderPrice orderPrice, @NotNull List<ProductOfferingPrice> popRels, float quantity) throws BillingEngineValidationException {
+		Timer.Sample sample=Timer.start();
+		try {
+			return this.applyOrderPriceAlterations(orderPrice, popRels, quantity);
+		} finally {
+			BillingMetrics.stop(sample, BillingMetrics.priceAlteration("orderPrice"), "priceAlteration");
+			BillingMetrics.PRICE_ALTERATIONS.record(popRels.size());
+		}
+	}
+	
+	private OrderPrice applyOrderPriceAlterations(@NotNull OrderPrice orderPrice, @NotNull List<ProductOfferingPrice> popRels, float quantity) throws BillingEngineValidationException {
 		PriceAlterationOperation alterationCalculator;
-		BigDecimal baseOrderPriceValue=new BigDecimal(String.valueOf(orderPrice.getPrice().getDutyFreeAmount().getValue()));
-		String priceCurrency=orderPrice.getPrice().getDutyFreeAmount().getUnit();
+		Money baseOrderPrice=TmfConverter.convert622ToMoney(orderPrice.getPrice().getDutyFreeAmount());
 		
 		if(!popRels.isEmpty()) {
 			
@@ -68,8 +78,8 @@ public class PriceAlterationCalculator {
 				if (alterationCalculator == null)
 					continue;
 				
-				BigDecimal alteratedPriceValue= alterationCalculator.applyAlteration(baseOrderPriceValue, popRel,quantity);
-				Price alteratedPrice=TMForumEntityUtils.createPriceTMF622(new Money(priceCurrency,alteratedPriceValue.floatValue()));
+				Money alterationAmount= alterationCalculator.applyAlteration(baseOrderPrice, popRel,quantity);
+				Price alteratedPrice=TMForumEntityUtils.createPriceTMF622(alterationAmount);
 				
 				//logger.debug("Applying alteration '{}' on base order price: {} {}",popRel.getPriceType(), baseOrderPriceValue,priceCurrency);
 				
@@ -92,14 +102,22 @@ public class PriceAlterationCalculator {
 	 * @throws ApiException if an error occurs retrieving TMForum entities
 	 */
 	public Money applyAlterations(@NotNull Money basePrice, @NotNull List<ProductOfferingPrice> popRels) throws BillingEngineValidationException, ApiException{
+		Timer.Sample sample=Timer.start();
+		try {
+			return this.applyMoneyAlterations(basePrice, popRels);
+		} finally {
+			BillingMetrics.stop(sample, BillingMetrics.priceAlteration("money"), "priceAlteration");
+			BillingMetrics.PRICE_ALTERATIONS.record(popRels.size());
+		}
+	}
+	
+	private Money applyMoneyAlterations(@NotNull Money basePrice, @NotNull List<ProductOfferingPrice> popRels) throws BillingEngineValidationException, ApiException{
 
 		PriceAlterationOperation alterationCalculator;
-		BigDecimal totalAtlerationsAmount;
-		BigDecimal basePriceValue=new BigDecimal(String.valueOf(basePrice.getValue()));
-		String priceCurrency=basePrice.getUnit();
+		Money totalAtlerationsAmount;
 
 		if(!popRels.isEmpty()) {
-			List<BigDecimal> alterationAmounts=new ArrayList<BigDecimal>();
+			totalAtlerationsAmount=Money.zero(basePrice.getUnit());
 			
 			for(ProductOfferingPrice popRel:popRels) {
 				
@@ -117,13 +135,11 @@ public class PriceAlterationCalculator {
 				if (alterationCalculator == null)
 					continue;
 				
-				logger.debug("Applying alteration '{}' on base price: {} {}",popRel.getPriceType(), basePriceValue,priceCurrency);
-				alterationAmounts.add(alterationCalculator.applyAlteration(basePriceValue, popRel, null));
+				logger.debug("Applying alteration '{}' on base price: {}",popRel.getPriceType(), basePrice);
+				totalAtlerationsAmount=totalAtlerationsAmount.add(alterationCalculator.applyAlteration(basePrice, popRel, null));
 			}
 			
-			totalAtlerationsAmount=alterationAmounts.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
-			
-			Money finalPrice=new Money(priceCurrency,basePriceValue.add(totalAtlerationsAmount).floatValue());
+			Money finalPrice=basePrice.add(totalAtlerationsAmount);
 			
 			return finalPrice;
 			
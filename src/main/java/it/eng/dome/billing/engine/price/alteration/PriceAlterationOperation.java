@@ -1,8 +1,7 @@
 package it.eng.dome.billing.engine.price.alteration;
 
-import java.math.BigDecimal;
-
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.model.Money;
 import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 
 @FunctionalInterface
@@ -13,11 +12,11 @@ public interface PriceAlterationOperation {
 	 * For instance, in case of a discount alteration, the returned alteration amount will be a negative number.
 	 * If a not null and greater than zero quantity is specified the amount of alteration is multiplied for that quantity to manage the case of price preview where the productOrderItem contains a quantity that must be applied also to the alteration amounts.
 	 * 
-	 * @param basicPrice A {@link BigDecimal} representing the base price to which the alteration must be calculated
+	 * @param basicPrice A {@link Money} representing the base price to which the alteration must be calculated
 	 * @param alterationPOP The {@link ProductOfferingPrice} representing a price alteration that must be applied to the base price
 	 * @param quantity A {@link Float} to indicate the quantity. Null if not present
-	 * @return a {@link BigDecimal} representing the amount of the alteration that must be applied to the base price. 
+	 * @return a {@link Money} representing the amount of the alteration that must be applied to the base price (in the currency of the base price). 
 	 */
-	BigDecimal applyAlteration(BigDecimal basicPrice, ProductOfferingPrice alterationPOP, Float quantity) throws BillingEngineValidationException;
+	Money applyAlteration(Money basicPrice, ProductOfferingPrice alterationPOP, Float quantity) throws BillingEngineValidationException;
 	
 }
@@ -1,28 +1,32 @@
 package it.eng.dome.billing.engine.price.calculator;
 
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
 import it.eng.dome.billing.engine.model.Characteristic;
 import it.eng.dome.billing.engine.model.Money;
 import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.rating.UsageRating;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
 import it.eng.dome.billing.engine.utils.CharacteristicUtils;
+import it.eng.dome.billing.engine.utils.UsageIndex;
 import it.eng.dome.billing.engine.utils.UsageUtils;
 import it.eng.dome.billing.engine.validator.TMFEntityValidator;
-import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
 import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
+import it.eng.dome.tmforum.tmf620.v4.ApiException;
 import it.eng.dome.tmforum.tmf620.v4.model.CharacteristicValueSpecification;
 import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 import it.eng.dome.tmforum.tmf620.v4.model.ProductSpecificationCharacteristicValueUse;
 import it.eng.dome.tmforum.tmf620.v4.model.Quantity;
 import it.eng.dome.tmforum.tmf635.v4.model.Usage;
 import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
 import jakarta.validation.constraints.NotNull;
 import lombok.NonNull;
 
@@ -30,43 +34,39 @@ public abstract class AbstractPriceCalculator<T, R> implements PriceCalculator<T
 	
 	private final Logger logger = LoggerFactory.getLogger(AbstractPriceCalculator.class);
 	
-	protected ProductOfferingPrice pop;
+	protected static final String DEFAULT_CURRENCY = "EUR";
 	
-	protected String priceCurrency;
-	protected final String DEFAULT_CURRENCY = "EUR";
+	protected final ProductOfferingPrice pop;
 	
-	@Autowired
-	protected PriceAlterationCalculator priceAlterationCalculator;
+	protected final String priceCurrency;
 	
-	@Autowired
-	protected ProductCatalogManagementApis productCatalogManagementApis;
+	protected final PriceAlterationCalculator priceAlterationCalculator;
 	
-	@Autowired
-	protected TMFEntityValidator tmfEntityValidator;
+	protected final ProductOfferingPriceService productOfferingPriceService;
 	
-	// Map with key=usageCharacteristic.name and value=list of UsageCharacteritic
-	protected Map<String, List<UsageCharacteristic>> usageData;
-	                                                               
+	protected final TMFEntityValidator tmfEntityValidator;
 	
-	protected AbstractPriceCalculator() {
+	// the ProductOfferingPrice(s) related to the POP, resolved at the first calculation (the calculators are cached by the PriceCalculatorFactory)
+	private volatile List<ProductOfferingPrice> priceAlterations;
+	
+	private volatile List<ProductOfferingPrice> bundledPops;
+	
+	// the tiers of the bundled POPs, built with them (null if the bundled POPs are not tiers)
+	private volatile CharacteristicTierIndex tierIndex;
+	
+	protected AbstractPriceCalculator(@NonNull ProductOfferingPrice pop, PriceAlterationCalculator priceAlterationCalculator, 
+			ProductOfferingPriceService productOfferingPriceService, TMFEntityValidator tmfEntityValidator) {
         super();
+        this.pop=pop;
+        this.priceCurrency=getPriceCurrency(pop);
+        this.priceAlterationCalculator=priceAlterationCalculator;
+        this.productOfferingPriceService=productOfferingPriceService;
+        this.tmfEntityValidator=tmfEntityValidator;
     }
 	
-	protected Money calculatePriceForUsageCharacteristic(@NonNull UsageCharacteristic usageCh) {
-		
-		logger.debug("Calculating price for Usage Characteristic with [name:'{}' value: '{}']", usageCh.getName(), usageCh.getValue());
-
-		final String usageChName = usageCh.getName();
-		final Float usageChValue = Float.parseFloat(usageCh.getValue().toString());
-		
-		final Quantity unitOfMeasure = pop.getUnitOfMeasure();
-		Float usageChAmount= (pop.getPrice().getValue() * usageChValue) / unitOfMeasure.getAmount();
-		logger.info("Price of UsageCharacteristic '{}' with [quantity: '{}', price: '{}' per '{} {}'] = {} {}", 
-					usageChName, usageChValue,
-					pop.getPrice().getValue(), unitOfMeasure.getAmount(), unitOfMeasure.getUnits(), usageChAmount, priceCurrency);
-
-		Money usageChMoney=new Money(pop.getPrice().getUnit(), usageChAmount);
-		return usageChMoney;
+	@Override
+	public ProductOfferingPrice getProductOfferingPrice() {
+		return pop;
 	}
 	
 	/*
@@ -87,33 +87,33 @@ public abstract class AbstractPriceCalculator<T, R> implements PriceCalculator<T
 		logger.debug("Calculating price for Characteristic with name '{}' value '{}' and valueType '{}'", ch.getName(), ch.getValue(), ch.getValueType());
 		final String chName = ch.getName();
 		final String chValueType= ch.getValueType();
-		Float chValue;
-		Float chAmount;
+		final Money price = this.getPopPrice();
+		BigDecimal chValue;
+		Money chAmount;
 		
 		if ("number".equalsIgnoreCase(chValueType)){
-			chValue = Float.parseFloat(ch.getValue().toString());
+			chValue = new BigDecimal(ch.getValue().toString());
 		
 			if (ProductOfferingPriceUtils.isForfaitPrice(pop)) {
-				chAmount = (pop.getPrice().getValue() * chValue);
+				chAmount = price.multiply(chValue);
 				logger.info("Price of Characteristic '{}' [quantity: {}, price: '{}'] = {} {}", 
-					chName, chValue, pop.getPrice().getValue(), chAmount,priceCurrency);
+					chName, chValue, pop.getPrice().getValue(), chAmount.getAmount(),priceCurrency);
 			} else {
 				final Quantity unitOfMeasure = pop.getUnitOfMeasure();
-				//chAmount = new EuroMoney(((pop.getPrice().getValue() * chValue) / unitOfMeasure.getAmount()) * chValue);
-				chAmount = (pop.getPrice().getValue() * chValue) / unitOfMeasure.getAmount();
+				chAmount = price.multiply(chValue).divide(Money.toDecimal(unitOfMeasure.getAmount()));
 				logger.info("Price of Characteristic '{}' [quantity: {}, price: '{}' per '{} {}'] = {} {}", 
 						chName, chValue,
-						pop.getPrice().getValue(), unitOfMeasure.getAmount(), unitOfMeasure.getUnits(), chAmount,priceCurrency);
+						pop.getPrice().getValue(), unitOfMeasure.getAmount(), unitOfMeasure.getUnits(), chAmount.getAmount(),priceCurrency);
 			}
 		}
 		// valueType of the characteristic != number
 		else {
-			chAmount = (pop.getPrice().getValue());
+			chAmount = price;
 			logger.info("Price of Characteristic '{}' [valueType: {}, price: '{}'] = {} {}", 
-					chName, chValueType, pop.getPrice().getValue(), chAmount,priceCurrency);
+					chName, chValueType, pop.getPrice().getValue(), chAmount.getAmount(),priceCurrency);
 		}
 		
-		return new Money(priceCurrency, chAmount);
+		return chAmount;
 	}
 	
 	/*protected Characteristic findMachingCharacteristic(@NotNull List<Characteristic> characteristics) throws BillingEngineValidationException {
@@ -152,7 +152,8 @@ public abstract class AbstractPriceCalculator<T, R> implements PriceCalculator<T
 	        	// Characteristic.valueType == number
 				if ("number".equalsIgnoreCase(characteristic.getValueType())) {
 					// match on range
-					if(CharacteristicUtils.isRangeCharacteristic(chValueSpec) && CharacteristicUtils.isValueInCharacteristicRange((Integer)characteristic.getValue(), chValueSpec)) {
+					if(CharacteristicUtils.isRangeCharacteristic(chValueSpec) && characteristic.getValue() instanceof Number
+							&& CharacteristicUtils.isValueInCharacteristicRange((Number)characteristic.getValue(), chValueSpec)) {
 						logger.debug("Matching characteristic with name '{}' and valueType '{}' in range [{}-{}]",characteristic.getName(),characteristic.getValueType(),chValueSpec.getValueFrom(),chValueSpec.getValueTo());
 						return characteristic;
 					}
@@ -184,6 +185,10 @@ public abstract class AbstractPriceCalculator<T, R> implements PriceCalculator<T
 	    }
 
 	    if (v1 instanceof Number && v2 instanceof Number) {
+	    	// integral values are compared without BigDecimal(s)
+	    	if (isIntegral(v1) && isIntegral(v2)) {
+	    		return ((Number) v1).longValue() == ((Number) v2).longValue();
+	    	}
 	        return new BigDecimal(v1.toString())
 	                .compareTo(new BigDecimal(v2.toString())) == 0;
 	    }
@@ -191,10 +196,15 @@ public abstract class AbstractPriceCalculator<T, R> implements PriceCalculator<T
 	    return v1.toString().equals(v2.toString());
 	}
 	
-	protected Money calculatePriceforUsageCharacteristics() throws BillingEngineValidationException {
-		
-		float totalAmount=0f;
-		Money totalAmountMoney=new Money(priceCurrency,totalAmount);
+	private static boolean isIntegral(Object v) {
+		return v instanceof Integer || v instanceof Long || v instanceof Short || v instanceof Byte;
+	}
+	
+	/*
+	 * Calculates the price of the UsageCharacteristic(s) in the usageData (key=usageCharacteristic.name and value=list of UsageCharacteritic) for the metric of the POP.
+	 * The values are summed exactly in fixed point and the total quantity is priced once (the single UsageCharacteristic(s) are logged only at TRACE level)
+	 */
+	protected Money calculatePriceforUsageCharacteristics(@NonNull Map<String, List<UsageCharacteristic>> usageData) throws BillingEngineValidationException {
 		
 		// Retrieve the metric from the unitOfMeasure of the POP and validate it
 		tmfEntityValidator.validateUnitOfMeasure(pop.getUnitOfMeasure(), pop);
@@ -204,34 +214,130 @@ public abstract class AbstractPriceCalculator<T, R> implements PriceCalculator<T
 		
 		List<UsageCharacteristic> usageChForMetric= UsageUtils.getUsageCharacteristicsForMetric(usageData, metric);
 		
-		if(usageChForMetric!=null && !usageChForMetric.isEmpty()) {
-			logger.debug("Size of the list of UsageCharacteristic for metric {}: {}",metric,usageChForMetric.size());
-			
+		if(usageChForMetric==null || usageChForMetric.isEmpty()) {
+			logger.warn("No usage data fount for the metric '{}'",metric);
+			return Money.zero(priceCurrency);
+		}
+		
+		if(logger.isTraceEnabled()) {
 			for(UsageCharacteristic usageCh:usageChForMetric) {
-				Money usageChAmount= this.calculatePriceForUsageCharacteristic(usageCh);
-				totalAmount+=usageChAmount.getValue();
+				logger.trace("UsageCharacteristic with [name:'{}' value: '{}']", usageCh.getName(), usageCh.getValue());
 			}
-			totalAmountMoney.setValue(totalAmount);
-			
 		}
-		else {
+		
+		BigDecimal quantity=UsageUtils.sumUsageCharacteristicValues(usageChForMetric);
+		return this.calculatePriceForUsageQuantity(usageChForMetric.size(), quantity);
+	}
+	
+	/*
+	 * Calculates the price of the quantity of the POP's metric (i.e., the units of the unitOfMeasure) with usageDate within the TimePeriod,
+	 * reading the total quantity from the UsageIndex instead of pricing each UsageCharacteristic
+	 */
+	protected Money calculatePriceForUsageMetric(@NonNull UsageIndex usageIndex, @NonNull TimePeriod tp) throws BillingEngineValidationException {
+		
+		tmfEntityValidator.validateUnitOfMeasure(pop.getUnitOfMeasure(), pop);
+		
+		final String metric=pop.getUnitOfMeasure().getUnits();
+		
+		int count=usageIndex.count(metric, tp);
+		if(count==0) {
 			logger.warn("No usage data fount for the metric '{}'",metric);
+			return Money.zero(priceCurrency);
 		}
-
-		return totalAmountMoney;
+		
+		return this.calculatePriceForUsageQuantity(count, usageIndex.sum(metric, tp));
 	}
 	
+	/*
+	 * Calculates the price of the running total of the POP's metric in a bill cycle (the current spend), without retrieving the Usage(s)
+	 */
+	protected Money calculatePriceForUsageRating(@NonNull UsageRating usageRating) throws BillingEngineValidationException {
+		
+		tmfEntityValidator.validateUnitOfMeasure(pop.getUnitOfMeasure(), pop);
+		
+		final String metric=pop.getUnitOfMeasure().getUnits();
+		
+		UsageRating.MetricTotal total=usageRating.getMetric(metric);
+		if(total==null || total.getCount()==0) {
+			logger.warn("No usage data fount for the metric '{}'",metric);
+			return Money.zero(priceCurrency);
+		}
+		
+		return this.calculatePriceForUsageQuantity(total.getCount(), total.getQuantity());
+	}
 	
-	@Override
-	public void setProductOfferingPrice(ProductOfferingPrice pop) {
-		this.pop=pop;
-		
-		if(!ProductOfferingPriceUtils.isBundled(pop)) {
-			if(this.pop.getPrice().getUnit()!=null && !this.pop.getPrice().getUnit().isEmpty())
-				this.priceCurrency=this.pop.getPrice().getUnit();
-			else
-				this.priceCurrency=DEFAULT_CURRENCY;
+	/*
+	 * Prices the total quantity of the POP's metric: price * quantity / unitOfMeasure.amount, computed once for all the UsageCharacteristic(s)
+	 */
+	private Money calculatePriceForUsageQuantity(long count, BigDecimal quantity) {
+		final Quantity unitOfMeasure = pop.getUnitOfMeasure();
+		
+		Money amount=this.getPopPrice().multiply(quantity).divide(Money.toDecimal(unitOfMeasure.getAmount()));
+		logger.info("Price of {} UsageCharacteristic(s) '{}' with [total quantity: '{}', price: '{}' per '{} {}'] = {} {}", 
+				count, unitOfMeasure.getUnits(), quantity, pop.getPrice().getValue(), unitOfMeasure.getAmount(), unitOfMeasure.getUnits(), amount.getAmount(), priceCurrency);
+		
+		return amount;
+	}
+	
+	/*
+	 * The price alterations of the POP (popRelationship), retrieved once. If some of them is not found they are retrieved again at the next calculation
+	 */
+	protected List<ProductOfferingPrice> getPriceAlterations() throws ApiException {
+		List<ProductOfferingPrice> alterations=priceAlterations;
+		if(alterations==null) {
+			alterations=unmodifiable(productOfferingPriceService.getProductOfferingPriceRelationships(pop.getPopRelationship()));
+			if(pop.getPopRelationship()==null || alterations.size()==pop.getPopRelationship().size())
+				priceAlterations=alterations;
 		}
+		return alterations;
+	}
+	
+	/*
+	 * The bundled POPs of the POP (bundledPopRelationship), retrieved once. If some of them is not found they are retrieved again at the next calculation
+	 */
+	protected List<ProductOfferingPrice> getBundledPops() throws ApiException {
+		List<ProductOfferingPrice> pops=bundledPops;
+		if(pops==null) {
+			pops=unmodifiable(productOfferingPriceService.getBundledProductOfferingPrices(pop.getBundledPopRelationship()));
+			if(pop.getBundledPopRelationship()==null || pops.size()==pop.getBundledPopRelationship().size()) {
+				tierIndex=CharacteristicTierIndex.of(pops);
+				bundledPops=pops;
+			}
+		}
+		return pops;
+	}
+	
+	/*
+	 * The index of the tiers of the bundled POPs, built once with them. Null if the bundled POPs are not tiers of a number characteristic
+	 */
+	protected CharacteristicTierIndex getTierIndex() throws ApiException {
+		List<ProductOfferingPrice> pops=this.getBundledPops();
+		return pops==bundledPops ? tierIndex : CharacteristicTierIndex.of(pops);
+	}
+	
+	private static List<ProductOfferingPrice> unmodifiable(List<ProductOfferingPrice> pops) {
+		return pops==null ? Collections.emptyList() : Collections.unmodifiableList(pops);
+	}
+	
+	/*
+	 * The price of the POP as exact decimal Money (the float of TMForum is converted once here)
+	 */
+	protected Money getPopPrice() {
+		return new Money(priceCurrency, pop.getPrice().getValue());
+	}
+	
+	
+	/*
+	 * The currency of a bundled POP is not set: it is the currency of the bundled POPs
+	 */
+	protected static String getPriceCurrency(ProductOfferingPrice pop) {
+		if(ProductOfferingPriceUtils.isBundled(pop) || pop.getPrice()==null)
+			return null;
+		
+		if(pop.getPrice().getUnit()!=null && !pop.getPrice().getUnit().isEmpty())
+			return pop.getPrice().getUnit();
+		else
+			return DEFAULT_CURRENCY;
 	}
 
 }
@@ -5,29 +5,33 @@ import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Component;
 
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
 import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
 import it.eng.dome.billing.engine.utils.OrderPriceUtils;
 import it.eng.dome.billing.engine.utils.TMForumEntityUtils;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
 import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.tmforum.tmf620.v4.ApiException;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 import it.eng.dome.tmforum.tmf622.v4.model.OrderPrice;
 import it.eng.dome.tmforum.tmf622.v4.model.Price;
 import it.eng.dome.tmforum.tmf622.v4.model.ProductOrderItem;
+import lombok.NonNull;
 
-@Component
 public class BasePreviewPriceCalculator extends AbstractPriceCalculator<ProductOrderItem,List<OrderPrice>>{
 	
 	private final Logger logger = LoggerFactory.getLogger(BasePreviewPriceCalculator.class);
 	
-	public BasePreviewPriceCalculator() {
-		super();
+	public BasePreviewPriceCalculator(@NonNull ProductOfferingPrice pop, PriceAlterationCalculator priceAlterationCalculator, 
+			ProductOfferingPriceService productOfferingPriceService, TMFEntityValidator tmfEntityValidator) {
+		super(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator);
 	}
 
 	@Override
-	public List<OrderPrice> calculatePrice(ProductOrderItem productOrderItem) throws BillingEngineValidationException, ApiException {
+	public List<OrderPrice> calculatePrice(ProductOrderItem productOrderItem, PriceCalculationContext context) throws BillingEngineValidationException, ApiException {
 		logger.info("Calculating price preview for ProductOfferingPrice '{}' of ProductOrderItem", pop.getId(), productOrderItem.getId());
 		
 		List<OrderPrice> orderPrices=new ArrayList<OrderPrice>();
@@ -37,9 +41,7 @@ public class BasePreviewPriceCalculator extends AbstractPriceCalculator<ProductO
 		// Checks if Price is well formed 
 		tmfEntityValidator.validatePrice(pop);
 		
-		Float orderPriceValue=(pop.getPrice().getValue() * productOrderItem.getQuantity());
-		
-		Money money=new Money(priceCurrency,orderPriceValue);
+		Money money=this.getPopPrice().multiply(productOrderItem.getQuantity());
 		Price price= TMForumEntityUtils.createPriceTMF622(money);
 		OrderPrice orderPrice=TMForumEntityUtils.createOrderPriceTMF622(price, pop);
 			
@@ -48,7 +50,7 @@ public class BasePreviewPriceCalculator extends AbstractPriceCalculator<ProductO
 								
 		// apply price alterations
 		if (ProductOfferingPriceUtils.hasRelationships(pop)) {
-			OrderPrice updatedOrderPrice=priceAlterationCalculator.applyAlterations(orderPrice,ProductOfferingPriceUtils.getProductOfferingPriceRelationships(pop.getPopRelationship(), productCatalogManagementApis),productOrderItem.getQuantity());
+			OrderPrice updatedOrderPrice=priceAlterationCalculator.applyAlterations(orderPrice,this.getPriceAlterations(),productOrderItem.getQuantity());
 								
 			logger.info("Price of ProductOfferingPrice '{}' after alterations = {} {}", 
 					pop.getId(), OrderPriceUtils.getAlteredDutyFreePrice(updatedOrderPrice),priceCurrency);	
@@ -2,35 +2,39 @@ package it.eng.dome.billing.engine.price.calculator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Component;
 
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
 import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
 import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.tmforum.tmf620.v4.ApiException;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import lombok.NonNull;
 
-@Component
 public class BasePriceCalculator extends AbstractPriceCalculator<Product,Money>{
 	
 	private final Logger logger = LoggerFactory.getLogger(BasePriceCalculator.class); 
 
-	public BasePriceCalculator() {
-		super();
+	public BasePriceCalculator(@NonNull ProductOfferingPrice pop, PriceAlterationCalculator priceAlterationCalculator, 
+			ProductOfferingPriceService productOfferingPriceService, TMFEntityValidator tmfEntityValidator) {
+		super(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator);
 	}
 
 	@Override
-	public Money calculatePrice(Product prod) throws BillingEngineValidationException, ApiException {	
+	public Money calculatePrice(Product prod, PriceCalculationContext context) throws BillingEngineValidationException, ApiException {	
 		logger.info("Calculating base price for POP '{}' of Product '{}'", pop.getId(), prod.getId());
 		
-		Money totalAmountMoney=new Money(priceCurrency,pop.getPrice().getValue());
+		Money totalAmountMoney=this.getPopPrice();
 			
 		logger.info("Price of ProductOfferingPrice '{}' = {} {}", 
 					pop.getId(), totalAmountMoney.getValue(),priceCurrency);
 								
 		// apply price alterations
 		if (ProductOfferingPriceUtils.hasRelationships(pop)) {
-			Money alteretedPrice=priceAlterationCalculator.applyAlterations(totalAmountMoney,ProductOfferingPriceUtils.getProductOfferingPriceRelationships(pop.getPopRelationship(), productCatalogManagementApis));
+			Money alteretedPrice=priceAlterationCalculator.applyAlterations(totalAmountMoney,this.getPriceAlterations());
 								
 			logger.info("Price of ProductOfferingPrice '{}' after alterations = {} {}", 
 					pop.getId(), alteretedPrice.getValue(),priceCurrency);	
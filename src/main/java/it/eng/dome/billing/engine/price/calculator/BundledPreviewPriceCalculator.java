@@ -3,37 +3,44 @@ package it.eng.dome.billing.engine.price.calculator;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.model.Characteristic;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
+import it.eng.dome.billing.engine.utils.TmfConverter;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
 import it.eng.dome.billing.engine.validator.ValidationIssue;
 import it.eng.dome.billing.engine.validator.ValidationIssueSeverity;
-import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.tmforum.tmf620.v4.ApiException;
 import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 import it.eng.dome.tmforum.tmf622.v4.model.OrderPrice;
 import it.eng.dome.tmforum.tmf622.v4.model.ProductOrderItem;
-import it.eng.dome.tmforum.tmf635.v4.model.Usage;
-import jakarta.validation.constraints.NotNull;
+import lombok.NonNull;
 
-@Component
 public class BundledPreviewPriceCalculator extends AbstractPriceCalculator<ProductOrderItem,List<OrderPrice>>{
 
-	private List<Usage> usages;
+	private final Logger logger = LoggerFactory.getLogger(BundledPreviewPriceCalculator.class);
+
+	private final PriceCalculatorFactory priceCalculatorFactory;
 	
-	public BundledPreviewPriceCalculator() {
-		super();
-	}
+	private final CharacteristicTierIndex.Mode tierMode;
 	
-	@Autowired
-	PriceCalculatorFactory priceCalculatorFactory;
+	public BundledPreviewPriceCalculator(@NonNull ProductOfferingPrice pop, PriceAlterationCalculator priceAlterationCalculator, 
+			ProductOfferingPriceService productOfferingPriceService, TMFEntityValidator tmfEntityValidator, PriceCalculatorFactory priceCalculatorFactory,
+			CharacteristicTierIndex.Mode tierMode) {
+		super(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator);
+		this.priceCalculatorFactory=priceCalculatorFactory;
+		this.tierMode=tierMode;
+	}
 
 	@Override
-	public List<OrderPrice> calculatePrice(ProductOrderItem productOrderItem) throws BillingEngineValidationException, ApiException {
+	public List<OrderPrice> calculatePrice(ProductOrderItem productOrderItem, PriceCalculationContext context) throws BillingEngineValidationException, ApiException {
 		
 		List<OrderPrice> orderPrices=new ArrayList<OrderPrice>();
-		List<ProductOfferingPrice> bundledPops = ProductOfferingPriceUtils.getBundledProductOfferingPrices(pop.getBundledPopRelationship(), productCatalogManagementApis);
+		List<ProductOfferingPrice> bundledPops = this.getBundledPops();
 		
 		if (bundledPops == null || bundledPops.isEmpty()) {
 			String msg=String.format("Error! Started calculation of bundled ProductOfferingPrice %s but the retrieved list of bundled POP is null or empty!", pop.getId());
@@ -41,18 +48,41 @@ public class BundledPreviewPriceCalculator extends AbstractPriceCalculator<Produ
 			throw new BillingEngineValidationException(issue);
 		}
 		
+		// the bundled POPs are tiers of a number characteristic: only the selected tier(s) are priced
+		CharacteristicTierIndex tierIndex=this.getTierIndex();
+		if(tierIndex!=null) {
+			return this.calculatePriceForTiers(productOrderItem, tierIndex);
+		}
+		
 		for(ProductOfferingPrice bundledPop:bundledPops) {
 
-			PriceCalculator<ProductOrderItem,List<OrderPrice>> pc= priceCalculatorFactory.getPriceCalculatorForProductOrderItem(bundledPop, usages);
-			List<OrderPrice> bundledPopMoney= pc.calculatePrice(productOrderItem);
+			PriceCalculator<ProductOrderItem,List<OrderPrice>> pc= priceCalculatorFactory.getPriceCalculatorForProductOrderItem(bundledPop);
+			List<OrderPrice> bundledPopMoney= pc.calculatePrice(productOrderItem, context);
 			orderPrices.addAll(bundledPopMoney);
 		}
 		
 		return orderPrices;
 	}
 	
-	public void setUsages(@NotNull List<Usage> usages) {
-		this.usages=usages;
+	private List<OrderPrice> calculatePriceForTiers(ProductOrderItem productOrderItem, CharacteristicTierIndex tierIndex) throws BillingEngineValidationException, ApiException {
+		List<OrderPrice> orderPrices=new ArrayList<OrderPrice>();
+		
+		tmfEntityValidator.validateCharacteristicsInProductOrderItem(productOrderItem);
+		
+		List<Characteristic> characteristics=TmfConverter.convert622ToCharacteristics(productOrderItem.getProduct().getProductCharacteristic());
+		Characteristic ch=tierIndex.findCharacteristic(characteristics);
+		
+		if(ch==null) {
+			logger.info("No maching characteristics for the tiers of bundled ProductOfferingPrice '{}' in ProductOrderItem '{}'", pop.getId(), productOrderItem.getId());
+			return orderPrices;
+		}
+		
+		for(CharacteristicTierIndex.Tier tier:tierIndex.select((Number)ch.getValue(), tierMode)) {
+			CharacteristicPreviewPriceCalculator pc=(CharacteristicPreviewPriceCalculator)priceCalculatorFactory.getPriceCalculatorForProductOrderItem(tier.getPop());
+			orderPrices.add(pc.calculatePriceForTier(new Characteristic(ch.getName(), ch.getValueType(), tier.getQuantity()), productOrderItem));
+		}
+		
+		return orderPrices;
 	}
 
 }
@@ -2,37 +2,42 @@ package it.eng.dome.billing.engine.price.calculator;
 
 import java.util.List;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.model.Characteristic;
 import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
+import it.eng.dome.billing.engine.utils.TmfConverter;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
 import it.eng.dome.billing.engine.validator.ValidationIssue;
 import it.eng.dome.billing.engine.validator.ValidationIssueSeverity;
-import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.tmforum.tmf620.v4.ApiException;
 import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 import it.eng.dome.tmforum.tmf637.v4.model.Product;
-import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
-import jakarta.validation.constraints.NotNull;
+import lombok.NonNull;
 
-@Component
 public class BundledPriceCalculator extends AbstractPriceCalculator<Product,Money>{
 	
-	private TimePeriod billingPeriod;
+	private final Logger logger = LoggerFactory.getLogger(BundledPriceCalculator.class);
 	
-	public BundledPriceCalculator() {
-		super();
-	}
+	private final PriceCalculatorFactory priceCalculatorFactory;
+	
+	private final CharacteristicTierIndex.Mode tierMode;
 	
-	@Autowired
-	PriceCalculatorFactory priceCalculatorFactory;
+	public BundledPriceCalculator(@NonNull ProductOfferingPrice pop, PriceAlterationCalculator priceAlterationCalculator, 
+			ProductOfferingPriceService productOfferingPriceService, TMFEntityValidator tmfEntityValidator, PriceCalculatorFactory priceCalculatorFactory,
+			CharacteristicTierIndex.Mode tierMode) {
+		super(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator);
+		this.priceCalculatorFactory=priceCalculatorFactory;
+		this.tierMode=tierMode;
+	}
 
 	@Override
-	public Money calculatePrice(Product prod) throws BillingEngineValidationException, ApiException {
-		Float totalBundledPopsAmount=0f;
-		
-		List<ProductOfferingPrice> bundledPops = ProductOfferingPriceUtils.getBundledProductOfferingPrices(pop.getBundledPopRelationship(), productCatalogManagementApis);
+	public Money calculatePrice(Product prod, PriceCalculationContext context) throws BillingEngineValidationException, ApiException {
+		List<ProductOfferingPrice> bundledPops = this.getBundledPops();
 		
 		if (bundledPops == null || bundledPops.isEmpty()) {
 			String msg=String.format("Error! Started calculation of bundled ProductOfferingPrice %s but the retrieved list of bundled POP is null or empty!", pop.getId());
@@ -40,18 +45,61 @@ public class BundledPriceCalculator extends AbstractPriceCalculator<Product,Mone
 			throw new BillingEngineValidationException(issue);
 		}
 		
+		// the bundled POP has no price: the total is in the currency of its bundled POPs
+		Money totalBundledPopsAmount=Money.zero(getBundledPopsCurrency(bundledPops));
+		
+		// the bundled POPs are tiers of a number characteristic: only the selected tier(s) are priced
+		CharacteristicTierIndex tierIndex=this.getTierIndex();
+		if(tierIndex!=null) {
+			return this.calculatePriceForTiers(prod, tierIndex);
+		}
+		
 		for(ProductOfferingPrice bundledPop:bundledPops) {
 
-			PriceCalculator<Product,Money> pc= priceCalculatorFactory.getPriceCalculatorForProduct(bundledPop, billingPeriod);
-			Money bundledPopMoney= pc.calculatePrice(prod);
-			totalBundledPopsAmount+=bundledPopMoney.getValue();
+			PriceCalculator<Product,Money> pc= priceCalculatorFactory.getPriceCalculatorForProduct(bundledPop);
+			Money bundledPopMoney= pc.calculatePrice(prod, context);
+			totalBundledPopsAmount=totalBundledPopsAmount.add(bundledPopMoney);
+		}
+		
+		return totalBundledPopsAmount;
+	}
+	
+	private Money calculatePriceForTiers(Product prod, CharacteristicTierIndex tierIndex) throws BillingEngineValidationException, ApiException {
+		tmfEntityValidator.validateCharacteristicsInProduct(prod);
+		
+		List<Characteristic> characteristics=TmfConverter.convert637ToCharacteristics(prod.getProductCharacteristic());
+		Characteristic ch=tierIndex.findCharacteristic(characteristics);
+		if(ch==null) {
+			String msg=String.format("Error! No matching Characteristic found for the bundled ProductOfferingPrice '%s' in Product '%s'", pop.getId(), prod.getId());
+			ValidationIssue issue=new ValidationIssue(msg,ValidationIssueSeverity.ERROR);
+			throw new BillingEngineValidationException(issue);
 		}
 		
-		return new Money(priceCurrency,totalBundledPopsAmount);
+		// the value must be fully covered by the tiers
+		List<CharacteristicTierIndex.Tier> tiers=tierIndex.select((Number)ch.getValue(), tierMode);
+		
+		Money totalTiersAmount=Money.zero(getBundledPopsCurrency(this.getBundledPops()));
+		for(CharacteristicTierIndex.Tier tier:tiers) {
+			CharacteristicPriceCalculator pc=(CharacteristicPriceCalculator)priceCalculatorFactory.getPriceCalculatorForProduct(tier.getPop());
+			Money tierMoney=pc.calculatePriceForTier(new Characteristic(ch.getName(), ch.getValueType(), tier.getQuantity()));
+			totalTiersAmount=totalTiersAmount.add(tierMoney);
+		}
+		
+		logger.debug("Price of the {} tier(s) of bundled POP '{}' for Characteristic '{}' '{}': {} {}", 
+				tiers.size(), pop.getId(), ch.getName(), ch.getValue(), totalTiersAmount.getAmount(), totalTiersAmount.getUnit());
+		return totalTiersAmount;
 	}
 	
-	public void setBillingPeriod(@NotNull TimePeriod billingPeriod) {
-		this.billingPeriod=billingPeriod;
+	/*
+	 * The currency of the first bundled POP with a price (the POPs of a Product are validated to have the same currency)
+	 */
+	private static String getBundledPopsCurrency(List<ProductOfferingPrice> bundledPops) {
+		for(ProductOfferingPrice bundledPop:bundledPops) {
+			String currency=getPriceCurrency(bundledPop);
+			if(currency!=null)
+				return currency;
+		}
+		return null;
 	}
 
 }
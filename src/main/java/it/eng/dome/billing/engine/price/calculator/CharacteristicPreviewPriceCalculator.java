@@ -5,31 +5,35 @@ import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Component;
 
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
 import it.eng.dome.billing.engine.model.Characteristic;
 import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
 import it.eng.dome.billing.engine.utils.OrderPriceUtils;
 import it.eng.dome.billing.engine.utils.TMForumEntityUtils;
 import it.eng.dome.billing.engine.utils.TmfConverter;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
 import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.tmforum.tmf620.v4.ApiException;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 import it.eng.dome.tmforum.tmf622.v4.model.OrderPrice;
 import it.eng.dome.tmforum.tmf622.v4.model.Price;
 import it.eng.dome.tmforum.tmf622.v4.model.ProductOrderItem;
+import lombok.NonNull;
 
-@Component
 public class CharacteristicPreviewPriceCalculator extends AbstractPriceCalculator<ProductOrderItem, List<OrderPrice>>{
 
 	private final Logger logger = LoggerFactory.getLogger(CharacteristicPreviewPriceCalculator.class);
 	
-	public CharacteristicPreviewPriceCalculator() {
-		super();
+	public CharacteristicPreviewPriceCalculator(@NonNull ProductOfferingPrice pop, PriceAlterationCalculator priceAlterationCalculator, 
+			ProductOfferingPriceService productOfferingPriceService, TMFEntityValidator tmfEntityValidator) {
+		super(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator);
 	}
 
 	@Override
-	public List<OrderPrice> calculatePrice(ProductOrderItem prodOrderItem) throws BillingEngineValidationException, ApiException {
+	public List<OrderPrice> calculatePrice(ProductOrderItem prodOrderItem, PriceCalculationContext context) throws BillingEngineValidationException, ApiException {
 		//logger.info("Calculating price preview for POP  '{}' with Characteristic for ProductOrderItem '{}'", pop.getId(), prodOrderItem.getId());
 		logger.info("Calculating price preview for POP  '{}' with Characteristic", pop.getId());
 		
@@ -50,6 +54,15 @@ public class CharacteristicPreviewPriceCalculator extends AbstractPriceCalculato
 			return orderPrices;
 		}
 			
+		orderPrices.add(this.calculatePriceForTier(matchChar, prodOrderItem));
+		return orderPrices;
+	}
+	
+	/*
+	 * Calculates the OrderPrice of the matching Characteristic (or of the part of its value priced by the POP, if the POP is a tier of a bundled POP) 
+	 * for the quantity of the ProductOrderItem and applies the price alterations
+	 */
+	OrderPrice calculatePriceForTier(@NonNull Characteristic matchChar, @NonNull ProductOrderItem prodOrderItem) throws BillingEngineValidationException, ApiException {
 		Money chPrice=calculatePriceForCharacteristic(matchChar);
 		
 		chPrice=OrderPriceUtils.applyQuantity(chPrice, prodOrderItem.getQuantity());
@@ -59,17 +72,15 @@ public class CharacteristicPreviewPriceCalculator extends AbstractPriceCalculato
 			
 		// applies price alterations
 		if (ProductOfferingPriceUtils.hasRelationships(pop)) {
-			OrderPrice updatedOrderPrice=priceAlterationCalculator.applyAlterations(orderPrice,ProductOfferingPriceUtils.getProductOfferingPriceRelationships(pop.getPopRelationship(),productCatalogManagementApis), prodOrderItem.getQuantity());
+			OrderPrice updatedOrderPrice=priceAlterationCalculator.applyAlterations(orderPrice,this.getPriceAlterations(), prodOrderItem.getQuantity());
 			
 			logger.info("Price of Characteristic '{}' '{}' after alterations: {} {}", 
 			matchChar.getName(), matchChar.getValue(), OrderPriceUtils.getAlteredDutyFreePrice(updatedOrderPrice));
 			
-			orderPrices.add(updatedOrderPrice);
-		}else {
-			orderPrices.add(orderPrice);
+			return updatedOrderPrice;
 		}
-			
-		return orderPrices;
+		
+		return orderPrice;
 	}
 
 }
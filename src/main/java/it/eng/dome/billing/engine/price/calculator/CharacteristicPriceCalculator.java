@@ -4,30 +4,34 @@ import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Component;
 
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
 import it.eng.dome.billing.engine.model.Characteristic;
 import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
 import it.eng.dome.billing.engine.utils.TmfConverter;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
 import it.eng.dome.billing.engine.validator.ValidationIssue;
 import it.eng.dome.billing.engine.validator.ValidationIssueSeverity;
 import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.tmforum.tmf620.v4.ApiException;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import lombok.NonNull;
 
-@Component
 public class CharacteristicPriceCalculator extends AbstractPriceCalculator<Product,Money>{
 	
 	private final Logger logger = LoggerFactory.getLogger(CharacteristicPriceCalculator.class);
 	
-	public CharacteristicPriceCalculator() {
-		super();
+	public CharacteristicPriceCalculator(@NonNull ProductOfferingPrice pop, PriceAlterationCalculator priceAlterationCalculator, 
+			ProductOfferingPriceService productOfferingPriceService, TMFEntityValidator tmfEntityValidator) {
+		super(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator);
 	}
 
 
 	@Override
-	public Money calculatePrice(Product prod) throws BillingEngineValidationException, ApiException {
+	public Money calculatePrice(Product prod, PriceCalculationContext context) throws BillingEngineValidationException, ApiException {
 		logger.info("Calculating price for POP '{}' with Characteristic of Product '{}'", pop.getId(), prod.getId());
 		
 		Characteristic matchChar;
@@ -43,11 +47,18 @@ public class CharacteristicPriceCalculator extends AbstractPriceCalculator<Produ
 			throw new BillingEngineValidationException(issue);
 		}
 			
+		return this.calculatePriceForTier(matchChar);
+	}
+	
+	/*
+	 * Calculates the price of the matching Characteristic (or of the part of its value priced by the POP, if the POP is a tier of a bundled POP) and applies the price alterations
+	 */
+	Money calculatePriceForTier(@NonNull Characteristic matchChar) throws BillingEngineValidationException, ApiException {
 		Money chPrice=calculatePriceForCharacteristic(matchChar);
 			
 		 // applies price alterations
 		if (ProductOfferingPriceUtils.hasRelationships(pop)) {
-			Money alteratedChPrice=priceAlterationCalculator.applyAlterations(chPrice,ProductOfferingPriceUtils.getProductOfferingPriceRelationships(pop.getPopRelationship(),productCatalogManagementApis));
+			Money alteratedChPrice=priceAlterationCalculator.applyAlterations(chPrice,this.getPriceAlterations());
 			
 			logger.info("Price of Characteristic '{}' '{}' after alterations: {} {}", 
 			matchChar.getName(), matchChar.getValue(), alteratedChPrice.getValue());
@@ -0,0 +1,228 @@
+package it.eng.dome.billing.engine.price.calculator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.model.Characteristic;
+import it.eng.dome.billing.engine.validator.ValidationIssue;
+import it.eng.dome.billing.engine.validator.ValidationIssueSeverity;
+import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
+import it.eng.dome.tmforum.tmf620.v4.model.CharacteristicValueSpecification;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductSpecificationCharacteristicValueUse;
+
+/**
+ * Index of the tiers of a bundled {@link ProductOfferingPrice}: the bundled POPs priced on the ranges (valueFrom - valueTo, bounds included) of the same number characteristic.
+ * The index is built once for each bundled POP and selects the tier(s) of a value of the characteristic with a binary search on the ranges,
+ * instead of matching the characteristic against each bundled POP.
+ * <p>
+ * The tiers are applied with the {@link Mode} configured in the application.yml file (app.pricing.tier-mode):
+ * <ul>
+ * <li>VOLUME: the whole value is priced by the tier whose range includes it</li>
+ * <li>GRADUATED: each tier prices the part of the value within its range (e.g., with the tiers 1-10 and 11-100 the value 25 is priced 10 by the first tier and 15 by the second)</li>
+ * </ul>
+ */
+public final class CharacteristicTierIndex {
+
+	public enum Mode {
+		VOLUME, GRADUATED
+	}
+
+	private final String characteristicName;
+
+	// the tiers sorted by valueFrom
+	private final ProductOfferingPrice[] pops;
+	private final int[] valuesFrom;
+	private final int[] valuesTo;
+
+	private CharacteristicTierIndex(String characteristicName, List<ProductOfferingPrice> pops) {
+		this.characteristicName = characteristicName;
+		this.pops = pops.toArray(new ProductOfferingPrice[0]);
+		this.valuesFrom = new int[pops.size()];
+		this.valuesTo = new int[pops.size()];
+		for (int i = 0; i < pops.size(); i++) {
+			CharacteristicValueSpecification range = getRange(pops.get(i));
+			valuesFrom[i] = range.getValueFrom();
+			valuesTo[i] = range.getValueTo();
+		}
+	}
+
+	/**
+	 * Creates the index of the tiers of a bundled {@link ProductOfferingPrice}
+	 *
+	 * @param bundledPops the bundled POPs of the bundled ProductOfferingPrice
+	 * @return the {@link CharacteristicTierIndex}, null if the bundled POPs are not tiers, i.e. if some of them is not priced on a range
+	 * of the same number characteristic or if the ranges overlap
+	 */
+	public static CharacteristicTierIndex of(List<ProductOfferingPrice> bundledPops) {
+		if (bundledPops == null || bundledPops.size() < 2) {
+			return null;
+		}
+
+		String characteristicName = null;
+		for (ProductOfferingPrice pop : bundledPops) {
+			if (ProductOfferingPriceUtils.isBundled(pop) || ProductOfferingPriceUtils.isPriceTypeUsage(pop) || getRange(pop) == null) {
+				return null;
+			}
+			String name = pop.getProdSpecCharValueUse().get(0).getName();
+			if (name == null || (characteristicName != null && !characteristicName.equalsIgnoreCase(name))) {
+				return null;
+			}
+			characteristicName = name;
+		}
+
+		List<ProductOfferingPrice> tiers = new ArrayList<ProductOfferingPrice>(bundledPops);
+		tiers.sort(Comparator.comparingInt(pop -> getRange(pop).getValueFrom()));
+		for (int i = 1; i < tiers.size(); i++) {
+			if (getRange(tiers.get(i)).getValueFrom() <= getRange(tiers.get(i - 1)).getValueTo()) {
+				return null;
+			}
+		}
+
+		return new CharacteristicTierIndex(characteristicName, tiers);
+	}
+
+	/**
+	 * Returns the name of the characteristic of the tiers
+	 *
+	 * @return the characteristic's name
+	 */
+	public String getCharacteristicName() {
+		return characteristicName;
+	}
+
+	/**
+	 * Finds the characteristic of the tiers (name case insensitive, valueType number)
+	 *
+	 * @param characteristics the characteristics of the Product or ProductOrderItem
+	 * @return the {@link Characteristic} with a number value, null if not found
+	 */
+	public Characteristic findCharacteristic(List<Characteristic> characteristics) {
+		for (Characteristic characteristic : characteristics) {
+			if (characteristicName.equalsIgnoreCase(characteristic.getName()) && "number".equalsIgnoreCase(characteristic.getValueType())
+					&& characteristic.getValue() instanceof Number) {
+				return characteristic;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Selects the tier(s) pricing the value of the characteristic. The ranges of the tiers are made of whole values, so a value between two adjacent ranges
+	 * (e.g., 10.5 with the tiers 1-10 and 11-100) is in the upper one.
+	 *
+	 * @param value the value of the characteristic
+	 * @param mode the {@link Mode} of the tiers
+	 * @return the selected {@link Tier}(s) with the part of the value they price
+	 * @throws BillingEngineValidationException if the value is not fully covered by the tiers: in VOLUME mode if it's not in a range, in GRADUATED mode
+	 * if a part of the value from 0 is not in a range (e.g., the value is above the last range or some ranges have a gap)
+	 */
+	public List<Tier> select(Number value, Mode mode) throws BillingEngineValidationException {
+		double v = value.doubleValue();
+
+		// the last tier with valueFrom <= value
+		int low = 0;
+		int high = pops.length - 1;
+		int last = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (valuesFrom[mid] <= v) {
+				last = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		// the tier whose range includes the value
+		int selected = last;
+		if (last >= 0 && v > valuesTo[last]) {
+			selected = last + 1 < pops.length && this.isAdjacent(last + 1) ? last + 1 : -1;
+		}
+		if (selected < 0) {
+			throw this.notCovered(value, mode);
+		}
+
+		if (mode == Mode.GRADUATED) {
+			// the value is priced from 0 by the tiers up to the selected one, without gaps
+			if (valuesFrom[0] > 1) {
+				throw this.notCovered(value, mode);
+			}
+			List<Tier> tiers = new ArrayList<Tier>(selected + 1);
+			for (int i = 0; i <= selected; i++) {
+				if (i > 0 && !this.isAdjacent(i)) {
+					throw this.notCovered(value, mode);
+				}
+				// a range starting from 0 or 1 prices the value from 0
+				double lower = Math.max(valuesFrom[i] - 1, 0);
+				tiers.add(new Tier(pops[i], toNumber(Math.min(v, valuesTo[i]) - lower)));
+			}
+			return tiers;
+		}
+
+		return List.of(new Tier(pops[selected], value));
+	}
+
+	/*
+	 * Checks if the range of the tier starts right after the range of the previous tier
+	 */
+	private boolean isAdjacent(int i) {
+		return valuesFrom[i] == valuesTo[i - 1] + 1;
+	}
+
+	private BillingEngineValidationException notCovered(Number value, Mode mode) {
+		StringBuilder ranges = new StringBuilder();
+		for (int i = 0; i < pops.length; i++) {
+			ranges.append(i > 0 ? ", " : "").append(valuesFrom[i]).append('-').append(valuesTo[i]);
+		}
+		String msg = String.format("The value %s of the Characteristic '%s' is not covered by the tiers [%s] (tier mode %s)", value, characteristicName, ranges, mode);
+		return new BillingEngineValidationException(new ValidationIssue(msg, ValidationIssueSeverity.ERROR));
+	}
+
+	/*
+	 * The range of the first (and only one used) ProductSpecificationCharacteristicValueUse of the POP, null if the POP is not priced on a range
+	 */
+	private static CharacteristicValueSpecification getRange(ProductOfferingPrice pop) {
+		if (!ProductOfferingPriceUtils.hasProdSpecCharValueUses(pop)) {
+			return null;
+		}
+		ProductSpecificationCharacteristicValueUse prodSpecCharValueUse = pop.getProdSpecCharValueUse().get(0);
+		if (prodSpecCharValueUse.getProductSpecCharacteristicValue() == null || prodSpecCharValueUse.getProductSpecCharacteristicValue().isEmpty()) {
+			return null;
+		}
+		CharacteristicValueSpecification chValueSpec = prodSpecCharValueUse.getProductSpecCharacteristicValue().get(0);
+		if (chValueSpec.getValueFrom() == null || chValueSpec.getValueTo() == null) {
+			return null;
+		}
+		return chValueSpec;
+	}
+
+	private static Number toNumber(double value) {
+		return value == Math.rint(value) ? (Number) Long.valueOf((long) value) : (Number) Double.valueOf(value);
+	}
+
+	/**
+	 * A tier selected for a value: the bundled POP and the part of the value it prices
+	 */
+	public static final class Tier {
+
+		private final ProductOfferingPrice pop;
+		private final Number quantity;
+
+		Tier(ProductOfferingPrice pop, Number quantity) {
+			this.pop = pop;
+			this.quantity = quantity;
+		}
+
+		public ProductOfferingPrice getPop() {
+			return pop;
+		}
+
+		public Number getQuantity() {
+			return quantity;
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package it.eng.dome.billing.engine.price.calculator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import it.eng.dome.billing.engine.rating.UsageRating;
+import it.eng.dome.billing.engine.service.UsageSnapshot;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Immutable per-invocation data of a price calculation (e.g., the billingPeriod of the bill or the simulated {@link Usage} of a price preview).
+ * The {@link PriceCalculator}(s) don't keep any state related to a single calculation, so the same PriceCalculator can be used concurrently with different contexts.
+ */
+public final class PriceCalculationContext {
+	
+	private final TimePeriod billingPeriod;
+	private final List<Usage> usages;
+	private final UsageSnapshot usageSnapshot;
+	private final UsageRating usageRating;
+	
+	private PriceCalculationContext(TimePeriod billingPeriod, List<Usage> usages, UsageSnapshot usageSnapshot, UsageRating usageRating) {
+		this.billingPeriod = billingPeriod;
+		this.usages = usages == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<Usage>(usages));
+		this.usageSnapshot = usageSnapshot;
+		this.usageRating = usageRating;
+	}
+	
+	/**
+	 * Creates the context to calculate the price of a {@link it.eng.dome.tmforum.tmf637.v4.model.Product} in the specified billingPeriod
+	 * 
+	 * @param billingPeriod the {@link TimePeriod} of the bill
+	 * @return the PriceCalculationContext
+	 */
+	public static PriceCalculationContext forBillingPeriod(TimePeriod billingPeriod) {
+		return new PriceCalculationContext(billingPeriod, null, null, null);
+	}
+	
+	/**
+	 * Creates the context to calculate the price of a {@link it.eng.dome.tmforum.tmf637.v4.model.Product} in the specified billingPeriod of a billing run,
+	 * getting the {@link Usage}(s) from the snapshot shared by all the calculations of the run
+	 * 
+	 * @param billingPeriod the {@link TimePeriod} of the bill
+	 * @param usageSnapshot the {@link UsageSnapshot} of the billing run (could be null)
+	 * @return the PriceCalculationContext
+	 */
+	public static PriceCalculationContext forBillingPeriod(TimePeriod billingPeriod, UsageSnapshot usageSnapshot) {
+		return new PriceCalculationContext(billingPeriod, null, usageSnapshot, null);
+	}
+	
+	/**
+	 * Creates the context to calculate the current spend of a {@link it.eng.dome.tmforum.tmf637.v4.model.Product} in the specified bill cycle,
+	 * getting the quantities of the usage POPs from the running totals of the incremental rating
+	 * 
+	 * @param billingPeriod the {@link TimePeriod} of the bill cycle
+	 * @param usageSnapshot the {@link UsageSnapshot} of the billing run, used if the running totals don't cover the bill cycle (could be null)
+	 * @param usageRating the running totals of the {@link Usage}(s) in the bill cycle (could be null)
+	 * @return the PriceCalculationContext
+	 */
+	public static PriceCalculationContext forRunningTotals(TimePeriod billingPeriod, UsageSnapshot usageSnapshot, UsageRating usageRating) {
+		return new PriceCalculationContext(billingPeriod, null, usageSnapshot, usageRating);
+	}
+	
+	/**
+	 * Creates the context to calculate the price preview of a {@link it.eng.dome.tmforum.tmf622.v4.model.ProductOrderItem} with the specified simulated {@link Usage}
+	 * 
+	 * @param usages the simulated {@link Usage} for pay per use plans (could be null)
+	 * @return the PriceCalculationContext
+	 */
+	public static PriceCalculationContext forUsages(List<Usage> usages) {
+		return new PriceCalculationContext(null, usages, null, null);
+	}
+
+	public TimePeriod getBillingPeriod() {
+		return billingPeriod;
+	}
+
+	public List<Usage> getUsages() {
+		return usages;
+	}
+
+	public UsageSnapshot getUsageSnapshot() {
+		return usageSnapshot;
+	}
+
+	public UsageRating getUsageRating() {
+		return usageRating;
+	}
+
+}
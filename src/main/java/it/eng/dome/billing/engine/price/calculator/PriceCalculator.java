@@ -4,11 +4,14 @@ import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
 import it.eng.dome.tmforum.tmf620.v4.ApiException;
 import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 
-
+/**
+ * Pricing plan of a {@link ProductOfferingPrice}. Implementations are immutable: all the data of a single calculation are passed in the {@link PriceCalculationContext}, 
+ * so that a PriceCalculator can be safely used by concurrent requests.
+ */
 public interface PriceCalculator<T,R> {
 
-	public R calculatePrice(T target) throws BillingEngineValidationException, ApiException;
+	public R calculatePrice(T target, PriceCalculationContext context) throws BillingEngineValidationException, ApiException;
 	
-	public void setProductOfferingPrice(ProductOfferingPrice pop);
+	public ProductOfferingPrice getProductOfferingPrice();
 
 }
@@ -4,38 +4,145 @@ import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import it.eng.dome.billing.engine.config.AppProperties;
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
 import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
+import it.eng.dome.billing.engine.service.UsageService;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
 import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 import it.eng.dome.tmforum.tmf622.v4.model.OrderPrice;
 import it.eng.dome.tmforum.tmf622.v4.model.ProductOrderItem;
-import it.eng.dome.tmforum.tmf635.v4.model.Usage;
 import it.eng.dome.tmforum.tmf637.v4.model.Product;
-import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
 import jakarta.validation.constraints.NotNull;
 
+/**
+ * Factory of the {@link PriceCalculator}(s). An immutable PriceCalculator is created for each {@link ProductOfferingPrice}, 
+ * the data of the single calculation (e.g., billingPeriod, usages) are passed to the PriceCalculator in the {@link PriceCalculationContext}.
+ * <p>
+ * When the ProductOfferingPrice(s) are cached by the {@link ProductOfferingPriceService} (app.pop-cache), the PriceCalculator(s) are cached too:
+ * the type of calculator, the bundled POPs and the price alterations of a ProductOfferingPrice are resolved at its first calculation, 
+ * and the following calculations reuse them. The PriceCalculator(s) are cached by identifier, version and lastUpdate of the ProductOfferingPrice, so a ProductOfferingPrice
+ * changed in the catalog gets a new PriceCalculator, and they are removed when the ProductOfferingPrice(s) are invalidated
+ * (only the PriceCalculator(s) of the invalidated ProductOfferingPrice and of the ones referring it when a single ProductOfferingPrice is invalidated).
+ */
 @Component
 public class PriceCalculatorFactory {
 	
 	private static final Logger logger = LoggerFactory.getLogger(PriceCalculatorFactory.class);
 	
+	private final PriceAlterationCalculator priceAlterationCalculator;
+	private final ProductOfferingPriceService productOfferingPriceService;
+	private final TMFEntityValidator tmfEntityValidator;
+	private final UsageService usageService;
+	
+	// how the tiers of the bundled POPs priced on the ranges of a characteristic are applied
+	private final CharacteristicTierIndex.Mode tierMode;
+	
+	// key: id|version|lastUpdate of the ProductOfferingPrice, value: its PriceCalculator. Null if the PriceCalculator(s) are not cached
+	private final Cache<String, PriceCalculator<Product,Money>> productCalculators;
+	private final Cache<String, PriceCalculator<ProductOrderItem,List<OrderPrice>>> productOrderItemCalculators;
+	
+	/**
+	 * Creates a PriceCalculatorFactory that doesn't cache the {@link PriceCalculator}(s)
+	 */
+	public PriceCalculatorFactory(PriceAlterationCalculator priceAlterationCalculator, ProductOfferingPriceService productOfferingPriceService, 
+			TMFEntityValidator tmfEntityValidator, UsageService usageService) {
+		this(priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator, usageService, null, null);
+	}
+	
 	@Autowired
-    private ApplicationContext ctx;
+	public PriceCalculatorFactory(PriceAlterationCalculator priceAlterationCalculator, ProductOfferingPriceService productOfferingPriceService, 
+			TMFEntityValidator tmfEntityValidator, UsageService usageService, AppProperties appProperties, ObjectProvider<MeterRegistry> meterRegistry) {
+		this.priceAlterationCalculator = priceAlterationCalculator;
+		this.productOfferingPriceService = productOfferingPriceService;
+		this.tmfEntityValidator = tmfEntityValidator;
+		this.usageService = usageService;
+		this.tierMode = appProperties!=null && appProperties.getPricing()!=null ? appProperties.getPricing().getTierMode() : CharacteristicTierIndex.Mode.VOLUME;
+		
+		if(appProperties!=null && productOfferingPriceService.isCacheEnabled()) {
+			AppProperties.PopCache popCache = appProperties.getPopCache() != null ? appProperties.getPopCache() : new AppProperties.PopCache();
+			this.productCalculators = createCache(popCache);
+			this.productOrderItemCalculators = createCache(popCache);
+			productOfferingPriceService.addInvalidationListener(id -> {
+				if(id!=null) {
+					this.invalidate(id);
+				}else {
+					this.invalidateAll();
+				}
+			});
+			
+			if(meterRegistry!=null) {
+				meterRegistry.ifAvailable(registry -> {
+					CaffeineCacheMetrics.monitor(registry, productCalculators, "priceCalculator", "target", "product");
+					CaffeineCacheMetrics.monitor(registry, productOrderItemCalculators, "priceCalculator", "target", "productOrderItem");
+				});
+			}
+		}else {
+			this.productCalculators = null;
+			this.productOrderItemCalculators = null;
+		}
+		logger.info("PriceCalculator cache [enabled: {}], tier mode: {}", productCalculators!=null, tierMode);
+	}
+	
+	public PriceCalculator<Product,Money> getPriceCalculatorForProduct(@NotNull ProductOfferingPrice pop) throws BillingEngineValidationException {
+		if(productCalculators!=null && pop.getId()!=null) {
+			return productCalculators.get(cacheKey(pop), key -> this.createPriceCalculatorForProduct(pop));
+		}
+		return this.createPriceCalculatorForProduct(pop);
+	}
+	
+	public PriceCalculator<ProductOrderItem,List<OrderPrice>> getPriceCalculatorForProductOrderItem(@NotNull ProductOfferingPrice pop) throws BillingEngineValidationException {
+		if(productOrderItemCalculators!=null && pop.getId()!=null) {
+			return productOrderItemCalculators.get(cacheKey(pop), key -> this.createPriceCalculatorForProductOrderItem(pop));
+		}
+		return this.createPriceCalculatorForProductOrderItem(pop);
+	}
 	
-	public PriceCalculator<Product,Money> getPriceCalculatorForProduct(@NotNull ProductOfferingPrice pop, @NotNull TimePeriod billingPeriod) throws BillingEngineValidationException {
+	/**
+	 * Removes from the cache the {@link PriceCalculator}(s) of the {@link ProductOfferingPrice} with the specified identifier and of the ProductOfferingPrice(s)
+	 * referring it as bundled POP or price alteration. The PriceCalculator(s) of the bundles resolve again the calculators of their bundled POPs, so the 
+	 * outer bundles of nested bundles are up to date too.
+	 * 
+	 * @param id the identifier of the {@link ProductOfferingPrice}
+	 */
+	public void invalidate(@NotNull String id) {
+		if(productCalculators!=null) {
+			productCalculators.asMap().values().removeIf(pc -> dependsOn(pc.getProductOfferingPrice(), id));
+			productOrderItemCalculators.asMap().values().removeIf(pc -> dependsOn(pc.getProductOfferingPrice(), id));
+		}
+	}
+	
+	/**
+	 * Removes all the {@link PriceCalculator}(s) from the cache
+	 */
+	public void invalidateAll() {
+		if(productCalculators!=null) {
+			productCalculators.invalidateAll();
+			productOrderItemCalculators.invalidateAll();
+		}
+	}
+	
+	private PriceCalculator<Product,Money> createPriceCalculatorForProduct(@NotNull ProductOfferingPrice pop) {
 		logger.debug("*************** Price Calculator FACTORY for Product **************");
         PriceCalculator<Product, Money> pc;
         
         if(ProductOfferingPriceUtils.isBundled(pop)) {
-        	pc=getBundledPriceCalculator(pop,billingPeriod);
+        	pc=getBundledPriceCalculator(pop);
         }else {
         	if(ProductOfferingPriceUtils.isPriceTypeUsage(pop)) {
-    			pc=getUsagePriceCalculator(pop,billingPeriod);
+    			pc=getUsagePriceCalculator(pop);
     		}else {
     			if(ProductOfferingPriceUtils.hasProdSpecCharValueUses(pop)) {
     				pc=getCharacteristicPriceCalculator(pop);
@@ -45,19 +152,18 @@ public class PriceCalculatorFactory {
     		}
         }
         
-        pc.setProductOfferingPrice(pop);
 		return pc;
 	}
 	
-	public PriceCalculator<ProductOrderItem,List<OrderPrice>> getPriceCalculatorForProductOrderItem(@NotNull ProductOfferingPrice pop, @NotNull List<Usage> usages) throws BillingEngineValidationException {
+	private PriceCalculator<ProductOrderItem,List<OrderPrice>> createPriceCalculatorForProductOrderItem(@NotNull ProductOfferingPrice pop) {
 		logger.debug("*************** Price Calculator FACTORY for ProductOrderItem **************");
         PriceCalculator<ProductOrderItem,List<OrderPrice>> pc;
         
         if(ProductOfferingPriceUtils.isBundled(pop)) {
-        	pc=getBundledPriceCalculatorForProductOrderItem(pop,usages);
+        	pc=getBundledPriceCalculatorForProductOrderItem(pop);
         }else {
         	if(ProductOfferingPriceUtils.isPriceTypeUsage(pop)) {
-    			pc=getUsagePriceCalculatorForProductOrderItem(pop,usages);
+    			pc=getUsagePriceCalculatorForProductOrderItem(pop);
     		}else {
     			if(ProductOfferingPriceUtils.hasProdSpecCharValueUses(pop)) {
     				pc=getCharacteristicPriceCalculatorForProductOrderItem(pop);
@@ -66,63 +172,79 @@ public class PriceCalculatorFactory {
     			}
     		}
         }
-        pc.setProductOfferingPrice(pop);
+        
 		return pc;
 	}
 
-	private PriceCalculator<Product,Money> getUsagePriceCalculator(@NotNull ProductOfferingPrice pop, @NotNull TimePeriod billingPeriod) throws IllegalArgumentException{
+	private PriceCalculator<Product,Money> getUsagePriceCalculator(@NotNull ProductOfferingPrice pop) {
 		logger.debug("Creating UsagePriceCalculator for POP '{}'", pop.getId());
-		if(billingPeriod==null)
-			throw new IllegalArgumentException(String.format("Error getting UsagePriceCalculator: the POP '{}' with priceType Usage requires a not null billingPeriod to get Usage data", pop.getId()));
-		UsagePriceCalculator priceCalculator=ctx.getBean(UsagePriceCalculator.class);
-		priceCalculator.setBillingPeriod(billingPeriod);
-		return priceCalculator;
+		return new UsagePriceCalculator(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator, usageService);
 	}
 	
 	private PriceCalculator<Product,Money> getBasePriceCalculator(@NotNull ProductOfferingPrice pop) {
 		logger.debug("Creating BasePriceCalculator for POP '{}'", pop.getId()); 
-		BasePriceCalculator priceCalculator=ctx.getBean(BasePriceCalculator.class);
-		return priceCalculator;
+		return new BasePriceCalculator(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator);
 	}
 	
-	private PriceCalculator<Product,Money> getCharacteristicPriceCalculator(@NotNull ProductOfferingPrice pop) throws BillingEngineValidationException {
+	private PriceCalculator<Product,Money> getCharacteristicPriceCalculator(@NotNull ProductOfferingPrice pop) {
 		logger.debug("Creating CharacteristicPriceCalculator for POP '{}'", pop.getId());
-		CharacteristicPriceCalculator priceCalculator=ctx.getBean(CharacteristicPriceCalculator.class);
-		return priceCalculator;
+		return new CharacteristicPriceCalculator(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator);
 	}
 	
-	private PriceCalculator<Product,Money> getBundledPriceCalculator(@NotNull ProductOfferingPrice pop, @NotNull TimePeriod billingPeriod) {
+	private PriceCalculator<Product,Money> getBundledPriceCalculator(@NotNull ProductOfferingPrice pop) {
 		logger.debug("Creating BundledPriceCalculator for POP '{}'", pop.getId());
-		BundledPriceCalculator priceCalculator=ctx.getBean(BundledPriceCalculator.class);
-		priceCalculator.setBillingPeriod(billingPeriod);
-		return priceCalculator;
+		return new BundledPriceCalculator(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator, this, tierMode);
 	}
 	
-	private PriceCalculator<ProductOrderItem,List<OrderPrice>> getUsagePriceCalculatorForProductOrderItem(@NotNull ProductOfferingPrice pop, @NotNull List<Usage> usages) throws IllegalArgumentException{
+	private PriceCalculator<ProductOrderItem,List<OrderPrice>> getUsagePriceCalculatorForProductOrderItem(@NotNull ProductOfferingPrice pop) {
 		logger.debug("Creating UsagePreviewPriceCalculator for POP '{}'", pop.getId());
-		UsagePreviewPriceCalculator priceCalculator=ctx.getBean(UsagePreviewPriceCalculator.class);
-		priceCalculator.setUsages(usages);
-		return priceCalculator;
+		return new UsagePreviewPriceCalculator(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator);
 	}
 	
-	private PriceCalculator<ProductOrderItem,List<OrderPrice>>getBasePriceCalculatorForProductOrderItem(@NotNull ProductOfferingPrice pop) {
+	private PriceCalculator<ProductOrderItem,List<OrderPrice>> getBasePriceCalculatorForProductOrderItem(@NotNull ProductOfferingPrice pop) {
 		logger.debug("Creating BasePreviewPriceCalculator for POP '{}'", pop.getId());
-		BasePreviewPriceCalculator priceCalculator=ctx.getBean(BasePreviewPriceCalculator.class);
-		return priceCalculator;
+		return new BasePreviewPriceCalculator(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator);
 	}
 	
-	private PriceCalculator<ProductOrderItem,List<OrderPrice>> getCharacteristicPriceCalculatorForProductOrderItem(@NotNull ProductOfferingPrice pop) throws BillingEngineValidationException {
+	private PriceCalculator<ProductOrderItem,List<OrderPrice>> getCharacteristicPriceCalculatorForProductOrderItem(@NotNull ProductOfferingPrice pop) {
 		logger.debug("Creating CharacteristicPreviewPriceCalculator for POP '{}'", pop.getId());
-		CharacteristicPreviewPriceCalculator priceCalculator=ctx.getBean(CharacteristicPreviewPriceCalculator.class);
-		return priceCalculator;
+		return new CharacteristicPreviewPriceCalculator(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator);
 	}
 	
-	private PriceCalculator<ProductOrderItem,List<OrderPrice>> getBundledPriceCalculatorForProductOrderItem(@NotNull ProductOfferingPrice pop, @NotNull List<Usage> usages) {
+	private PriceCalculator<ProductOrderItem,List<OrderPrice>> getBundledPriceCalculatorForProductOrderItem(@NotNull ProductOfferingPrice pop) {
 		logger.debug("Creating BundledPreviewPriceCalculator for POP '{}'", pop.getId());
-		BundledPreviewPriceCalculator priceCalculator=ctx.getBean(BundledPreviewPriceCalculator.class);
-		priceCalculator.setUsages(usages);
-		return priceCalculator;
+		return new BundledPreviewPriceCalculator(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator, this, tierMode);
 	}
 
+	/*
+	 * Checks if the ProductOfferingPrice is the one with the identifier or refers it as bundled POP or price alteration
+	 */
+	private static boolean dependsOn(ProductOfferingPrice pop, String id) {
+		if(id.equals(pop.getId())) {
+			return true;
+		}
+		if(pop.getBundledPopRelationship()!=null && pop.getBundledPopRelationship().stream().anyMatch(rel -> id.equals(rel.getId()))) {
+			return true;
+		}
+		return pop.getPopRelationship()!=null && pop.getPopRelationship().stream().anyMatch(rel -> id.equals(rel.getId()));
+	}
+
+	/*
+	 * The key of the PriceCalculator of the ProductOfferingPrice in the cache
+	 */
+	private static String cacheKey(ProductOfferingPrice pop) {
+		return pop.getId() + "|" + pop.getVersion() + "|" + (pop.getLastUpdate()!=null ? pop.getLastUpdate().toInstant() : null);
+	}
+
+	/*
+	 * The PriceCalculator(s) expire with the ProductOfferingPrice(s) in the cache of the ProductOfferingPriceService
+	 */
+	private static <V> Cache<String, V> createCache(AppProperties.PopCache popCache) {
+		return Caffeine.newBuilder()
+				.maximumSize(popCache.getMaximumSize())
+				.expireAfterWrite(popCache.getTtl())
+				.recordStats()
+				.build();
+	}
 
 }
@@ -2,38 +2,47 @@ package it.eng.dome.billing.engine.price.calculator;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Component;
 
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
 import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
 import it.eng.dome.billing.engine.utils.OrderPriceUtils;
 import it.eng.dome.billing.engine.utils.TMForumEntityUtils;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
 import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.tmforum.tmf620.v4.ApiException;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 import it.eng.dome.tmforum.tmf622.v4.model.OrderPrice;
 import it.eng.dome.tmforum.tmf622.v4.model.Price;
 import it.eng.dome.tmforum.tmf622.v4.model.ProductOrderItem;
 import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+import lombok.NonNull;
 
-@Component
 public class UsagePreviewPriceCalculator extends AbstractPriceCalculator<ProductOrderItem, List<OrderPrice>>{
 	
 	private final Logger logger = LoggerFactory.getLogger(UsagePreviewPriceCalculator.class);
 	
-	private List<Usage> usages;
+	public UsagePreviewPriceCalculator(@NonNull ProductOfferingPrice pop, PriceAlterationCalculator priceAlterationCalculator, 
+			ProductOfferingPriceService productOfferingPriceService, TMFEntityValidator tmfEntityValidator) {
+		super(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator);
+	}
 
 	@Override
-	public List<OrderPrice> calculatePrice(ProductOrderItem productOrderItem) throws BillingEngineValidationException, ApiException {
+	public List<OrderPrice> calculatePrice(ProductOrderItem productOrderItem, PriceCalculationContext context) throws BillingEngineValidationException, ApiException {
 
 		logger.info("Calculating price preview for POP '{}' USAGE of ProductOrderItem '{}'", pop.getId(), productOrderItem.getId());
 		
 		List<OrderPrice> orderPrices=new ArrayList<OrderPrice>();
-		usageData=inizializeUsageData(usages);
+		List<Usage> usages=context.getUsages();
+		Map<String, List<UsageCharacteristic>> usageData=inizializeUsageData(usages);
 		
-		Money totalAmountMoney=this.calculatePriceforUsageCharacteristics();
+		Money totalAmountMoney=this.calculatePriceforUsageCharacteristics(usageData);
 		Money finalAmountMoney=OrderPriceUtils.applyQuantity(totalAmountMoney, productOrderItem.getQuantity());
 		
 		logger.info("Price of ProductOfferingPrice '{}' of ProductOrderItem '{}': [quantity: {}, price: '{}'] = {}{}", pop.getId(), 
@@ -45,7 +54,7 @@ public class UsagePreviewPriceCalculator extends AbstractPriceCalculator<Product
 		
 		// apply price alterations
 		if (ProductOfferingPriceUtils.hasRelationships(pop)) {
-			OrderPrice alteretedOrderPrice=priceAlterationCalculator.applyAlterations(orderPrice, ProductOfferingPriceUtils.getProductOfferingPriceRelationships(pop.getPopRelationship(), productCatalogManagementApis),productOrderItem.getQuantity());
+			OrderPrice alteretedOrderPrice=priceAlterationCalculator.applyAlterations(orderPrice, this.getPriceAlterations(),productOrderItem.getQuantity());
 											
 			logger.info("Price of ProductOfferingPrice '{}' after alterations = {} {}", 
 					pop.getId(), OrderPriceUtils.getAlteredDutyFreePrice(orderPrice),priceCurrency);	
@@ -58,13 +67,5 @@ public class UsagePreviewPriceCalculator extends AbstractPriceCalculator<Product
 		return orderPrices;
 		
 	}
-	
-	public void setUsages(List<Usage> usages) {
-		if (usages == null) {
-		    this.usages = new ArrayList<>();
-		} else {
-		    this.usages=usages;
-		}
-	}
 
 }
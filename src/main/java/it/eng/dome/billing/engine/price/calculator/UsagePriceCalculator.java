@@ -1,53 +1,77 @@
 package it.eng.dome.billing.engine.price.calculator;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
 
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
 import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.rating.UsageRating;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
+import it.eng.dome.billing.engine.service.UsageService;
+import it.eng.dome.billing.engine.service.UsageSnapshot;
+import it.eng.dome.billing.engine.utils.UsageIndex;
 import it.eng.dome.billing.engine.utils.UsageUtils;
-import it.eng.dome.brokerage.api.UsageManagementApis;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
 import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.tmforum.tmf620.v4.ApiException;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
 import it.eng.dome.tmforum.tmf635.v4.model.Usage;
 import it.eng.dome.tmforum.tmf637.v4.model.Product;
 import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
-import jakarta.validation.constraints.NotNull;
 import lombok.NonNull;
 
-@Component
 public class UsagePriceCalculator extends AbstractPriceCalculator<Product, Money>{
 	
 	private final Logger logger = LoggerFactory.getLogger(UsagePriceCalculator.class);
 	
-	private TimePeriod billingPeriod;      
+	private final UsageService usageService;
 	
-	@Autowired
-	private UsageManagementApis usageManagementApis;
-	
-	public UsagePriceCalculator() {
-		super();
+	public UsagePriceCalculator(@NonNull ProductOfferingPrice pop, PriceAlterationCalculator priceAlterationCalculator, 
+			ProductOfferingPriceService productOfferingPriceService, TMFEntityValidator tmfEntityValidator, UsageService usageService) {
+		super(pop, priceAlterationCalculator, productOfferingPriceService, tmfEntityValidator);
+		this.usageService=usageService;
 	}
 
 	@Override
-	public Money calculatePrice(Product prod) throws BillingEngineValidationException, ApiException{
+	public Money calculatePrice(Product prod, PriceCalculationContext context) throws BillingEngineValidationException, ApiException{
 		
 		logger.info("Calculating price for POP '{}' USAGE of Product '{}'", pop.getId(), prod.getId());
 		
-		List<Usage> usages=getUsages(prod.getId(), billingPeriod);
-		usageData=inizializeUsageData(usages);
+		TimePeriod billingPeriod=context.getBillingPeriod();
+		if(billingPeriod==null)
+			throw new IllegalArgumentException(String.format("Error calculating the price of the POP '%s' with priceType Usage: a not null billingPeriod is required to get Usage data", pop.getId()));
 		
-		Money totalAmountMoney=this.calculatePriceforUsageCharacteristics();
+		Money totalAmountMoney;
+		// the current spend is priced from the running totals of the bill cycle (the new Usage(s) have already been rated and validated)
+		UsageRating usageRating=context.getUsageRating();
+		if(usageRating!=null && usageRating.covers(prod.getId(), billingPeriod)) {
+			totalAmountMoney=this.calculatePriceForUsageRating(usageRating);
+		}
+		else {
+			// the Usage(s) of the billing run are retrieved once and shared by all the usage POPs and bill cycles
+			// and the quantity of each bill cycle is read from the UsageIndex of the snapshot
+			UsageSnapshot usageSnapshot=context.getUsageSnapshot();
+			UsageIndex usageIndex;
+			if(usageSnapshot!=null && usageSnapshot.covers(prod.getId(), billingPeriod)) {
+				tmfEntityValidator.validateUsages(usageSnapshot.getUsages(billingPeriod));
+				usageIndex=usageSnapshot.getUsageIndex();
+			}
+			else {
+				List<Usage> usages=usageService.getUsages(prod.getId(), billingPeriod);
+				tmfEntityValidator.validateUsages(usages);
+				usageIndex=UsageUtils.createUsageIndex(usages);
+			}
+			
+			totalAmountMoney=this.calculatePriceForUsageMetric(usageIndex, billingPeriod);
+		}
 		logger.info("Price of ProductOfferingPrice '{}' = {} {}", pop.getId(), totalAmountMoney.getValue(), priceCurrency);
 		
 		// apply price alterations
 		if (ProductOfferingPriceUtils.hasRelationships(pop)) {
-			Money alteretedPrice=priceAlterationCalculator.applyAlterations(totalAmountMoney, ProductOfferingPriceUtils.getProductOfferingPriceRelationships(pop.getPopRelationship(), productCatalogManagementApis));
+			Money alteretedPrice=priceAlterationCalculator.applyAlterations(totalAmountMoney, this.getPriceAlterations());
 											
 			logger.info("Price of ProductOfferingPrice '{}' after alterations = {} {}", 
 					pop.getId(), alteretedPrice.getValue(), alteretedPrice.getUnit());	
@@ -58,21 +82,5 @@ public class UsagePriceCalculator extends AbstractPriceCalculator<Product, Money
 		return totalAmountMoney;
 		
 	}
-	
-	private List<Usage> getUsages(@NonNull String productId, @NotNull TimePeriod billingPeriod){
-		List<Usage> usages=UsageUtils.getUsages(productId, billingPeriod, usageManagementApis);
-		
-		if (usages == null) {
-		    usages = new ArrayList<>();
-		} else {
-		    logger.debug("Usage found: {}", usages.size());
-		}
-
-		return usages;
-	}
-	
-	public void setBillingPeriod(@NotNull TimePeriod billingPeriod) {
-		this.billingPeriod=billingPeriod;
-	}
 
 }
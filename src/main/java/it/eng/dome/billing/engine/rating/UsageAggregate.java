@@ -0,0 +1,264 @@
+package it.eng.dome.billing.engine.rating;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import it.eng.dome.billing.engine.utils.UsageUtils;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+
+/**
+ * Class representing the aggregate of the {@link Usage}(s) of a {@link Product} with the usageDate in a day (UTC): for each metric
+ * (i.e., the UsageCharacteristic's name) the number of values and their total quantity. The aggregates are updated as the Usage(s) are pushed
+ * to the billing engine and are stored by the {@link UsageAggregateStore}.
+ * <p>
+ * The identifiers of the Usage(s) aggregated are kept, so a Usage delivered more than once (e.g., by a TMForum event hub) is aggregated only once.
+ * Each Usage aggregated is appended to the log of the aggregate as a {@link Delta}, and the whole aggregate is saved only periodically.
+ */
+public class UsageAggregate {
+
+	private String productId;
+
+	private LocalDate day;
+
+	// number of Usage(s) aggregated
+	private long usages;
+
+	// first and last usageDate of the Usage(s) aggregated
+	private OffsetDateTime firstUsageDate;
+
+	private OffsetDateTime lastUsageDate;
+
+	// key: metric's name
+	private Map<String, UsageRating.MetricTotal> metrics = new TreeMap<String, UsageRating.MetricTotal>();
+
+	private Set<String> usageIds = new TreeSet<String>();
+
+	private OffsetDateTime updatedAt;
+
+	// sequence number of the last Delta appended to the log of the aggregate
+	private long sequence;
+
+	// number of Delta(s) in the log of the aggregate, i.e. appended since the aggregate has been saved (not stored)
+	private int appendedUsages;
+
+	public UsageAggregate() {
+	}
+
+	public UsageAggregate(String productId, LocalDate day) {
+		this.productId = productId;
+		this.day = day;
+	}
+
+	/**
+	 * Adds the values of the {@link UsageCharacteristic}(s) of the {@link Usage} to the aggregate, unless it has already been aggregated
+	 *
+	 * @param usage the {@link Usage} to aggregate
+	 * @return true if the Usage has been aggregated, false if a Usage with the same identifier was already aggregated
+	 * @throws NumberFormatException if the value of a UsageCharacteristic is not a number
+	 */
+	public boolean add(Usage usage) {
+		return this.add(Delta.of(usage));
+	}
+
+	/**
+	 * Adds the {@link Delta} of a {@link Usage} to the aggregate, unless the Usage has already been aggregated
+	 *
+	 * @param delta the {@link Delta} of the Usage to aggregate
+	 * @return true if the Usage has been aggregated, false if a Usage with the same identifier was already aggregated
+	 */
+	public boolean add(Delta delta) {
+		if (delta.getUsageId() != null && !usageIds.add(delta.getUsageId())) {
+			return false;
+		}
+		for (Map.Entry<String, UsageRating.MetricTotal> total : delta.getMetrics().entrySet()) {
+			metrics.computeIfAbsent(total.getKey(), k -> new UsageRating.MetricTotal()).add(total.getValue());
+		}
+		OffsetDateTime usageDate = delta.getUsageDate();
+		if (usageDate != null) {
+			if (firstUsageDate == null || usageDate.isBefore(firstUsageDate)) {
+				firstUsageDate = usageDate;
+			}
+			if (lastUsageDate == null || usageDate.isAfter(lastUsageDate)) {
+				lastUsageDate = usageDate;
+			}
+		}
+		usages++;
+		return true;
+	}
+
+	/**
+	 * Checks if the usageDate of all the {@link Usage}(s) aggregated falls within the specified bounds
+	 *
+	 * @param start the start of the period
+	 * @param end the end of the period
+	 * @return true if the aggregate can be added to the totals of the period, false otherwise
+	 */
+	public boolean isWithin(OffsetDateTime start, OffsetDateTime end) {
+		return usages == 0 || (firstUsageDate != null && !firstUsageDate.isBefore(start) && !lastUsageDate.isAfter(end));
+	}
+
+	public String getProductId() {
+		return productId;
+	}
+
+	public void setProductId(String productId) {
+		this.productId = productId;
+	}
+
+	public LocalDate getDay() {
+		return day;
+	}
+
+	public void setDay(LocalDate day) {
+		this.day = day;
+	}
+
+	public long getUsages() {
+		return usages;
+	}
+
+	public void setUsages(long usages) {
+		this.usages = usages;
+	}
+
+	public OffsetDateTime getFirstUsageDate() {
+		return firstUsageDate;
+	}
+
+	public void setFirstUsageDate(OffsetDateTime firstUsageDate) {
+		this.firstUsageDate = firstUsageDate;
+	}
+
+	public OffsetDateTime getLastUsageDate() {
+		return lastUsageDate;
+	}
+
+	public void setLastUsageDate(OffsetDateTime lastUsageDate) {
+		this.lastUsageDate = lastUsageDate;
+	}
+
+	public Map<String, UsageRating.MetricTotal> getMetrics() {
+		return metrics;
+	}
+
+	public void setMetrics(Map<String, UsageRating.MetricTotal> metrics) {
+		this.metrics = metrics == null ? new TreeMap<String, UsageRating.MetricTotal>() : new TreeMap<String, UsageRating.MetricTotal>(metrics);
+	}
+
+	public Set<String> getUsageIds() {
+		return usageIds;
+	}
+
+	public void setUsageIds(Set<String> usageIds) {
+		this.usageIds = usageIds == null ? new TreeSet<String>() : new TreeSet<String>(usageIds);
+	}
+
+	public OffsetDateTime getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(OffsetDateTime updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	@JsonIgnore
+	public int getAppendedUsages() {
+		return appendedUsages;
+	}
+
+	@JsonIgnore
+	public void setAppendedUsages(int appendedUsages) {
+		this.appendedUsages = appendedUsages;
+	}
+
+	/**
+	 * The contribution of a single {@link Usage} to an aggregate (its identifier, usageDate and the totals of its metrics),
+	 * appended to the log of the aggregate by the {@link UsageAggregateStore}
+	 */
+	public static class Delta {
+
+		// sequence number in the log of the aggregate
+		private long sequence;
+
+		private String usageId;
+
+		private OffsetDateTime usageDate;
+
+		// key: metric's name
+		private Map<String, UsageRating.MetricTotal> metrics = new TreeMap<String, UsageRating.MetricTotal>();
+
+		public Delta() {
+		}
+
+		/**
+		 * Creates the {@link Delta} of a {@link Usage}
+		 *
+		 * @param usage the {@link Usage}
+		 * @return the Delta with the values of the UsageCharacteristic(s) of the Usage
+		 * @throws NumberFormatException if the value of a UsageCharacteristic is not a number
+		 */
+		public static Delta of(Usage usage) {
+			Delta delta = new Delta();
+			delta.usageId = usage.getId();
+			delta.usageDate = usage.getUsageDate();
+			if (usage.getUsageCharacteristic() != null) {
+				for (UsageCharacteristic usageCh : usage.getUsageCharacteristic()) {
+					if (usageCh != null && usageCh.getName() != null && usageCh.getValue() != null) {
+						delta.metrics.computeIfAbsent(usageCh.getName(), k -> new UsageRating.MetricTotal())
+							.add(UsageUtils.getQuantity(usageCh.getValue()));
+					}
+				}
+			}
+			return delta;
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		public void setSequence(long sequence) {
+			this.sequence = sequence;
+		}
+
+		public String getUsageId() {
+			return usageId;
+		}
+
+		public void setUsageId(String usageId) {
+			this.usageId = usageId;
+		}
+
+		public OffsetDateTime getUsageDate() {
+			return usageDate;
+		}
+
+		public void setUsageDate(OffsetDateTime usageDate) {
+			this.usageDate = usageDate;
+		}
+
+		public Map<String, UsageRating.MetricTotal> getMetrics() {
+			return metrics;
+		}
+
+		public void setMetrics(Map<String, UsageRating.MetricTotal> metrics) {
+			this.metrics = metrics == null ? new TreeMap<String, UsageRating.MetricTotal>() : new TreeMap<String, UsageRating.MetricTotal>(metrics);
+		}
+	}
+
+}
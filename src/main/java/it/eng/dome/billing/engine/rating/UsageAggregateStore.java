@@ -0,0 +1,166 @@
+package it.eng.dome.billing.engine.rating;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * File-based store of the {@link UsageAggregate}(s). The aggregates of a Product are stored in a directory named after the hash of the Product's identifier,
+ * one JSON file per day (the checkpoint, replaced atomically) and one log per day where the {@link UsageAggregate.Delta}(s) of the Usage(s)
+ * aggregated after the checkpoint are appended, one JSON line each.
+ * <p>
+ * An update appends a line to the log instead of rewriting the aggregate; the aggregate is loaded replaying its log on the checkpoint.
+ * The Delta(s) are numbered, so the ones already in the checkpoint are skipped if the log has not been deleted after saving it.
+ */
+public class UsageAggregateStore {
+
+	private static final String EXTENSION = ".json";
+
+	private static final String LOG_EXTENSION = ".log";
+
+	private final Path directory;
+
+	private final ObjectMapper objectMapper;
+
+	// the Delta(s) are written on a single line
+	private final ObjectWriter logWriter;
+
+	public UsageAggregateStore(Path directory, ObjectMapper objectMapper) {
+		this.directory = directory;
+		this.objectMapper = objectMapper;
+		this.logWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+	}
+
+	/**
+	 * Saves the {@link UsageAggregate} as the checkpoint of its day, replacing the previous version, and deletes the log of the day
+	 *
+	 * @param aggregate the {@link UsageAggregate} to save
+	 */
+	public void save(UsageAggregate aggregate) {
+		Path productDirectory = directory.resolve(key(aggregate.getProductId()));
+		try {
+			Files.createDirectories(productDirectory);
+			Path tmp = productDirectory.resolve(aggregate.getDay() + EXTENSION + ".tmp");
+			objectMapper.writeValue(tmp.toFile(), aggregate);
+			Files.move(tmp, productDirectory.resolve(aggregate.getDay() + EXTENSION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			Files.deleteIfExists(productDirectory.resolve(aggregate.getDay() + LOG_EXTENSION));
+			aggregate.setAppendedUsages(0);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error saving the UsageAggregate of Product " + aggregate.getProductId(), e);
+		}
+	}
+
+	/**
+	 * Appends the {@link UsageAggregate.Delta} of a Usage, already added to the {@link UsageAggregate}, to the log of the aggregate
+	 *
+	 * @param aggregate the {@link UsageAggregate} the Delta has been added to
+	 * @param delta the {@link UsageAggregate.Delta} to append
+	 */
+	public void append(UsageAggregate aggregate, UsageAggregate.Delta delta) {
+		Path productDirectory = directory.resolve(key(aggregate.getProductId()));
+		delta.setSequence(aggregate.getSequence() + 1);
+		try {
+			Files.createDirectories(productDirectory);
+			byte[] line = (logWriter.writeValueAsString(delta) + "\n").getBytes(StandardCharsets.UTF_8);
+			Files.write(productDirectory.resolve(aggregate.getDay() + LOG_EXTENSION), line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error appending to the UsageAggregate of Product " + aggregate.getProductId(), e);
+		}
+		aggregate.setSequence(delta.getSequence());
+		aggregate.setAppendedUsages(aggregate.getAppendedUsages() + 1);
+	}
+
+	/**
+	 * Loads the {@link UsageAggregate} of the specified Product in the specified day, replaying its log on the checkpoint
+	 *
+	 * @param productId the identifier of the Product
+	 * @param day the day (UTC) of the usageDate
+	 * @return the {@link UsageAggregate}, null if no Usage of the day has been pushed
+	 */
+	public UsageAggregate load(String productId, LocalDate day) {
+		Path productDirectory = directory.resolve(key(productId));
+		UsageAggregate aggregate = this.loadCheckpoint(productId, productDirectory.resolve(day + EXTENSION));
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(productDirectory.resolve(day + LOG_EXTENSION), StandardCharsets.UTF_8);
+		} catch (NoSuchFileException e) {
+			return aggregate;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error loading the log of the UsageAggregate of Product " + productId, e);
+		}
+
+		if (aggregate == null) {
+			aggregate = new UsageAggregate(productId, day);
+		}
+		int appended = 0;
+		boolean truncated = false;
+		for (int i = 0; i < lines.size(); i++) {
+			if (lines.get(i).isBlank()) {
+				continue;
+			}
+			UsageAggregate.Delta delta;
+			try {
+				delta = objectMapper.readValue(lines.get(i), UsageAggregate.Delta.class);
+			} catch (JsonProcessingException e) {
+				// the last line is truncated if the billing engine stopped while appending it
+				if (i == lines.size() - 1) {
+					truncated = true;
+					break;
+				}
+				throw new UncheckedIOException("Error loading the log of the UsageAggregate of Product " + productId, e);
+			}
+			if (delta.getSequence() > aggregate.getSequence()) {
+				aggregate.add(delta);
+				aggregate.setSequence(delta.getSequence());
+				appended++;
+			}
+		}
+		aggregate.setAppendedUsages(appended);
+		// the truncated line is dropped saving the checkpoint, so the next Delta(s) are appended to a new log
+		if (truncated) {
+			this.save(aggregate);
+		}
+		return aggregate;
+	}
+
+	private UsageAggregate loadCheckpoint(String productId, Path aggregateFile) {
+		try {
+			return objectMapper.readValue(aggregateFile.toFile(), UsageAggregate.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			if (!Files.exists(aggregateFile)) {
+				return null;
+			}
+			throw new UncheckedIOException("Error loading the UsageAggregate of Product " + productId, e);
+		}
+	}
+
+	/*
+	 * The identifiers of the Product(s) are URNs: they are hashed to get a valid directory name that cannot escape the directory of the store
+	 */
+	private static String key(String productId) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(productId.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
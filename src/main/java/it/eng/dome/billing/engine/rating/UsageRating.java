@@ -0,0 +1,253 @@
+package it.eng.dome.billing.engine.rating;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+import it.eng.dome.billing.engine.utils.UsageUtils;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Class representing the running totals of the {@link Usage}(s) of a {@link Product} in a bill cycle: for each metric (i.e., the UsageCharacteristic's name)
+ * the number of values and their total quantity, and the high-water mark of the rated Usage(s), i.e. the usageDate and the identifier of the last Usage rated
+ * (the Usage(s) are rated in order of usageDate and identifier). The running totals are stored by the {@link UsageRatingStore}.
+ * <p>
+ * The quantities are summed as exact decimals, so the running totals don't depend on the order in which the Usage(s) are rated
+ * and can be compared exactly with the totals of a full recompute.
+ */
+public class UsageRating {
+
+	private String productId;
+
+	private OffsetDateTime startDateTime;
+
+	private OffsetDateTime endDateTime;
+
+	// usageDate of the last Usage rated, null if no Usage has been rated
+	private OffsetDateTime lastUsageDate;
+
+	// identifier of the last Usage rated (among the Usage(s) with the same usageDate)
+	private String lastUsageId;
+
+	private long ratedUsages;
+
+	// key: metric's name
+	private Map<String, MetricTotal> metrics = new TreeMap<String, MetricTotal>();
+
+	private OffsetDateTime updatedAt;
+
+	private OffsetDateTime reconciledAt;
+
+	public UsageRating() {
+	}
+
+	public UsageRating(String productId, TimePeriod billCycle) {
+		this.productId = productId;
+		this.startDateTime = billCycle.getStartDateTime();
+		this.endDateTime = billCycle.getEndDateTime();
+	}
+
+	/**
+	 * Checks if the running totals refer to the specified {@link Product} and bill cycle
+	 *
+	 * @param productId the identifier of the {@link Product}
+	 * @param tp the {@link TimePeriod} of the bill cycle
+	 * @return true if the Product and the bounds of the bill cycle are the same, false otherwise
+	 */
+	public boolean covers(String productId, TimePeriod tp) {
+		return this.productId != null && this.productId.equals(productId) && tp != null &&
+				startDateTime.isEqual(tp.getStartDateTime()) && endDateTime.isEqual(tp.getEndDateTime());
+	}
+
+	/**
+	 * Checks if the {@link Usage} comes after the high-water mark, i.e. it has not been rated yet
+	 *
+	 * @param usage the {@link Usage} (with usageDate)
+	 * @return true if the Usage has a later usageDate than the last Usage rated, or the same usageDate and a greater identifier
+	 */
+	public boolean isAfterHighWaterMark(Usage usage) {
+		if (lastUsageDate == null) {
+			return true;
+		}
+		int compare = usage.getUsageDate().toInstant().compareTo(lastUsageDate.toInstant());
+		return compare > 0 || (compare == 0 && idOf(usage).compareTo(lastUsageId == null ? "" : lastUsageId) > 0);
+	}
+
+	/**
+	 * Adds the values of the {@link UsageCharacteristic}(s) of the {@link Usage} to the running totals and advances the high-water mark.
+	 * The Usage(s) must be added in order of usageDate and identifier.
+	 *
+	 * @param usage the {@link Usage} to rate (with usageDate)
+	 * @throws NumberFormatException if the value of a UsageCharacteristic is not a number
+	 */
+	public void add(Usage usage) {
+		if (usage.getUsageCharacteristic() != null) {
+			for (UsageCharacteristic usageCh : usage.getUsageCharacteristic()) {
+				if (usageCh != null && usageCh.getName() != null && usageCh.getValue() != null) {
+					metrics.computeIfAbsent(usageCh.getName(), k -> new MetricTotal())
+						.add(UsageUtils.getQuantity(usageCh.getValue()));
+				}
+			}
+		}
+		lastUsageDate = usage.getUsageDate();
+		lastUsageId = idOf(usage);
+		ratedUsages++;
+	}
+
+	/**
+	 * Adds the totals of a {@link UsageAggregate} to the running totals, without moving the high-water mark
+	 *
+	 * @param aggregate the {@link UsageAggregate} of the Usage(s) of a day
+	 */
+	public void add(UsageAggregate aggregate) {
+		for (Map.Entry<String, MetricTotal> total : aggregate.getMetrics().entrySet()) {
+			metrics.computeIfAbsent(total.getKey(), k -> new MetricTotal()).add(total.getValue());
+		}
+		ratedUsages += aggregate.getUsages();
+	}
+
+	/**
+	 * Returns the running total of the specified metric
+	 *
+	 * @param metric the metric's name
+	 * @return the {@link MetricTotal}, null if no value of the metric has been rated
+	 */
+	public MetricTotal getMetric(String metric) {
+		return metrics.get(metric);
+	}
+
+	private static String idOf(Usage usage) {
+		return usage.getId() == null ? "" : usage.getId();
+	}
+
+	public String getProductId() {
+		return productId;
+	}
+
+	public void setProductId(String productId) {
+		this.productId = productId;
+	}
+
+	public OffsetDateTime getStartDateTime() {
+		return startDateTime;
+	}
+
+	public void setStartDateTime(OffsetDateTime startDateTime) {
+		this.startDateTime = startDateTime;
+	}
+
+	public OffsetDateTime getEndDateTime() {
+		return endDateTime;
+	}
+
+	public void setEndDateTime(OffsetDateTime endDateTime) {
+		this.endDateTime = endDateTime;
+	}
+
+	public OffsetDateTime getLastUsageDate() {
+		return lastUsageDate;
+	}
+
+	public void setLastUsageDate(OffsetDateTime lastUsageDate) {
+		this.lastUsageDate = lastUsageDate;
+	}
+
+	public String getLastUsageId() {
+		return lastUsageId;
+	}
+
+	public void setLastUsageId(String lastUsageId) {
+		this.lastUsageId = lastUsageId;
+	}
+
+	public long getRatedUsages() {
+		return ratedUsages;
+	}
+
+	public void setRatedUsages(long ratedUsages) {
+		this.ratedUsages = ratedUsages;
+	}
+
+	public Map<String, MetricTotal> getMetrics() {
+		return metrics;
+	}
+
+	public void setMetrics(Map<String, MetricTotal> metrics) {
+		this.metrics = metrics == null ? new TreeMap<String, MetricTotal>() : new TreeMap<String, MetricTotal>(metrics);
+	}
+
+	public OffsetDateTime getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(OffsetDateTime updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+
+	public OffsetDateTime getReconciledAt() {
+		return reconciledAt;
+	}
+
+	public void setReconciledAt(OffsetDateTime reconciledAt) {
+		this.reconciledAt = reconciledAt;
+	}
+
+	/**
+	 * The number of values and the total quantity of a metric
+	 */
+	public static class MetricTotal {
+
+		private long count;
+
+		private BigDecimal quantity = BigDecimal.ZERO;
+
+		public MetricTotal() {
+		}
+
+		public MetricTotal(long count, BigDecimal quantity) {
+			this.count = count;
+			this.quantity = quantity;
+		}
+
+		void add(BigDecimal value) {
+			count++;
+			quantity = quantity.add(value);
+		}
+
+		void add(MetricTotal other) {
+			count += other.count;
+			quantity = quantity.add(other.quantity);
+		}
+
+		/**
+		 * Checks if the totals are the same (the scale of the quantities is ignored)
+		 *
+		 * @param other the other {@link MetricTotal} (could be null)
+		 * @return true if the count and the quantity are the same
+		 */
+		public boolean isSameAs(MetricTotal other) {
+			return other != null && count == other.count && quantity.compareTo(other.quantity) == 0;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public void setCount(long count) {
+			this.count = count;
+		}
+
+		public BigDecimal getQuantity() {
+			return quantity;
+		}
+
+		public void setQuantity(BigDecimal quantity) {
+			this.quantity = quantity;
+		}
+	}
+
+}
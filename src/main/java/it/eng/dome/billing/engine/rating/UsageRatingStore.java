@@ -0,0 +1,87 @@
+package it.eng.dome.billing.engine.rating;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * File-based store of the {@link UsageRating}(s). The running totals of a Product in a bill cycle are stored in their own JSON file,
+ * named after the hash of the Product's identifier and of the bounds of the bill cycle, and replaced atomically at each update.
+ */
+public class UsageRatingStore {
+
+	private static final String EXTENSION = ".json";
+
+	private final Path directory;
+
+	private final ObjectMapper objectMapper;
+
+	public UsageRatingStore(Path directory, ObjectMapper objectMapper) {
+		this.directory = directory;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Saves the {@link UsageRating}, replacing the previous version
+	 *
+	 * @param rating the {@link UsageRating} to save
+	 */
+	public void save(UsageRating rating) {
+		String key = key(rating.getProductId(), rating.getStartDateTime(), rating.getEndDateTime());
+		try {
+			Files.createDirectories(directory);
+			Path tmp = directory.resolve(key + EXTENSION + ".tmp");
+			objectMapper.writeValue(tmp.toFile(), rating);
+			Files.move(tmp, directory.resolve(key + EXTENSION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error saving the UsageRating of Product " + rating.getProductId(), e);
+		}
+	}
+
+	/**
+	 * Loads the {@link UsageRating} of the specified Product in the specified bill cycle
+	 *
+	 * @param productId the identifier of the Product
+	 * @param billCycle the {@link TimePeriod} of the bill cycle
+	 * @return the {@link UsageRating}, null if not found
+	 */
+	public UsageRating load(String productId, TimePeriod billCycle) {
+		Path ratingFile = directory.resolve(key(productId, billCycle.getStartDateTime(), billCycle.getEndDateTime()) + EXTENSION);
+		try {
+			return objectMapper.readValue(ratingFile.toFile(), UsageRating.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			if (!Files.exists(ratingFile)) {
+				return null;
+			}
+			throw new UncheckedIOException("Error loading the UsageRating of Product " + productId, e);
+		}
+	}
+
+	/*
+	 * The identifiers of the Product(s) are URNs: they are hashed to get a valid file name that cannot escape the directory of the store
+	 */
+	private static String key(String productId, OffsetDateTime start, OffsetDateTime end) {
+		String key = productId + "|" + start.toInstant() + "|" + end.toInstant();
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
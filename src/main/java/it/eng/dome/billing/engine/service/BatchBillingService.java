@@ -0,0 +1,273 @@
+package it.eng.dome.billing.engine.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.dto.BatchBillingResponseDTO;
+import it.eng.dome.billing.engine.dto.ProductBillingResultDTO;
+import it.eng.dome.billing.engine.exception.BillingBadRequestException;
+import it.eng.dome.brokerage.api.ProductInventoryApis;
+import it.eng.dome.brokerage.api.fetch.FetchUtils;
+import it.eng.dome.brokerage.model.Invoice;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Service to calculate the bills of several {@link Product}(s) for the same billingPeriod. The Product(s) are billed in parallel by a pool of workers
+ * shared by all the batches (app.batch.parallelism) and the ProductOfferingPrice(s) are shared across the batch through the {@link ProductOfferingPriceService} cache.
+ * The failure of the bill calculation of a Product does not stop the batch: it is reported in the {@link ProductBillingResultDTO} of the Product.
+ */
+@Service
+public class BatchBillingService {
+
+	private final static Logger logger = LoggerFactory.getLogger(BatchBillingService.class);
+
+	private final BillingEngineService billingEngineService;
+
+	private final ProductInventoryApis productInventoryApis;
+
+	private final AppProperties.Batch batch;
+
+	private final ExecutorService executor;
+
+	public BatchBillingService(BillingEngineService billingEngineService, ProductInventoryApis productInventoryApis, AppProperties appProperties) {
+		this.billingEngineService = billingEngineService;
+		this.productInventoryApis = productInventoryApis;
+		this.batch = appProperties.getBatch() != null ? appProperties.getBatch() : new AppProperties.Batch();
+		this.executor = Executors.newFixedThreadPool(Math.max(1, batch.getParallelism()), new BatchThreadFactory());
+
+		logger.info("Batch billing [parallelism: {}, maxProducts: {}]", batch.getParallelism(), batch.getMaxProducts());
+	}
+
+	/**
+	 * Calculates the bills of the {@link Product}(s) with the specified identifiers for the specified billingPeriod
+	 *
+	 * @param productIds the list of identifiers of the {@link Product}(s) to bill (duplicates are billed once)
+	 * @param billingPeriod the billingPeriod for which the bills must be calculated
+	 * @return a {@link BatchBillingResponseDTO} with the result of each Product, in the order of the productIds
+	 * @throws BillingBadRequestException if the number of Product(s) exceeds the maximum size of a batch
+	 */
+	public BatchBillingResponseDTO calculateBills(@NotNull List<String> productIds, @NotNull TimePeriod billingPeriod) throws BillingBadRequestException {
+		List<String> ids = new ArrayList<String>(new LinkedHashSet<String>(productIds));
+		this.checkBatchSize(ids.size());
+
+		logger.info("Starting calculation of the bills for {} Product(s) and billingPeriod '{}'-'{}'...", ids.size(), billingPeriod.getStartDateTime(), billingPeriod.getEndDateTime());
+
+		List<CompletableFuture<ProductBillingResultDTO>> futures = ids.stream()
+				.map(id -> CompletableFuture.supplyAsync(() -> this.calculateBill(id, billingPeriod), executor))
+				.collect(Collectors.toList());
+
+		return this.collectResults(futures, billingPeriod);
+	}
+
+	/**
+	 * Calculates the bills of the {@link Product}(s) of the Product Inventory matching the specified filter for the specified billingPeriod
+	 *
+	 * @param filter the filter on the Product Inventory (TMF637), e.g. {"status": "active"}
+	 * @param billingPeriod the billingPeriod for which the bills must be calculated
+	 * @return a {@link BatchBillingResponseDTO} with the result of each Product
+	 * @throws BillingBadRequestException if the number of Product(s) matching the filter exceeds the maximum size of a batch
+	 */
+	public BatchBillingResponseDTO calculateBills(@NotNull Map<String, String> filter, @NotNull TimePeriod billingPeriod) throws BillingBadRequestException {
+		List<Product> products = FetchUtils.streamAll(
+				productInventoryApis::listProducts, // method TMF GET /product
+				null,                               // fields
+				filter,                             // filter
+				batch.getPageSize()                 // page size
+		)
+		.limit(batch.getMaxProducts() + 1L)
+		.collect(Collectors.toList());
+
+		this.checkBatchSize(products.size());
+
+		logger.info("Starting calculation of the bills for {} Product(s) matching {} and billingPeriod '{}'-'{}'...", products.size(), filter, billingPeriod.getStartDateTime(), billingPeriod.getEndDateTime());
+
+		List<CompletableFuture<ProductBillingResultDTO>> futures = products.stream()
+				.map(product -> CompletableFuture.supplyAsync(() -> this.calculateBill(product, billingPeriod), executor))
+				.collect(Collectors.toList());
+
+		return this.collectResults(futures, billingPeriod);
+	}
+
+	/**
+	 * Calculates the bills of the {@link Product}(s) with the specified identifiers for the specified billingPeriod, passing the result of each Product
+	 * to the consumer as soon as it is calculated (i.e., in order of completion). At most a few results per worker are kept in memory, whatever the size of the batch.
+	 *
+	 * @param productIds the list of identifiers of the {@link Product}(s) to bill (duplicates are billed once)
+	 * @param billingPeriod the billingPeriod for which the bills must be calculated
+	 * @param consumer the consumer of the {@link ProductBillingResultDTO} of each Product
+	 */
+	public void calculateBills(@NotNull List<String> productIds, @NotNull TimePeriod billingPeriod, @NotNull Consumer<ProductBillingResultDTO> consumer) {
+		logger.info("Starting streaming calculation of the bills for {} Product(s) and billingPeriod '{}'-'{}'...", productIds.size(), billingPeriod.getStartDateTime(), billingPeriod.getEndDateTime());
+
+		Iterator<Callable<ProductBillingResultDTO>> tasks = productIds.stream()
+				.distinct()
+				.map(id -> (Callable<ProductBillingResultDTO>) () -> this.calculateBill(id, billingPeriod))
+				.iterator();
+
+		this.streamResults(tasks, consumer);
+	}
+
+	/**
+	 * Calculates the bills of the {@link Product}(s) of the Product Inventory matching the specified filter for the specified billingPeriod, passing the result of each Product
+	 * to the consumer as soon as it is calculated (i.e., in order of completion). The Product(s) are listed page by page, so the size of the batch is not limited.
+	 *
+	 * @param filter the filter on the Product Inventory (TMF637), e.g. {"status": "active"}
+	 * @param billingPeriod the billingPeriod for which the bills must be calculated
+	 * @param consumer the consumer of the {@link ProductBillingResultDTO} of each Product
+	 */
+	public void calculateBills(@NotNull Map<String, String> filter, @NotNull TimePeriod billingPeriod, @NotNull Consumer<ProductBillingResultDTO> consumer) {
+		this.calculateBills(filter, billingPeriod, Collections.emptySet(), consumer);
+	}
+
+	/**
+	 * Calculates the bills of the {@link Product}(s) of the Product Inventory matching the specified filter for the specified billingPeriod, skipping the excluded Product(s)
+	 * (e.g., the ones already billed by a job before a crash), and passes the result of each Product to the consumer as soon as it is calculated.
+	 *
+	 * @param filter the filter on the Product Inventory (TMF637), e.g. {"status": "active"}
+	 * @param billingPeriod the billingPeriod for which the bills must be calculated
+	 * @param excludedProductIds the identifiers of the {@link Product}(s) not to bill
+	 * @param consumer the consumer of the {@link ProductBillingResultDTO} of each Product
+	 */
+	public void calculateBills(@NotNull Map<String, String> filter, @NotNull TimePeriod billingPeriod, @NotNull Set<String> excludedProductIds, @NotNull Consumer<ProductBillingResultDTO> consumer) {
+		logger.info("Starting streaming calculation of the bills for the Product(s) matching {} and billingPeriod '{}'-'{}'...", filter, billingPeriod.getStartDateTime(), billingPeriod.getEndDateTime());
+
+		Iterator<Callable<ProductBillingResultDTO>> tasks = FetchUtils.streamAll(
+				productInventoryApis::listProducts, // method TMF GET /product
+				null,                               // fields
+				filter,                             // filter
+				batch.getPageSize()                 // page size
+		)
+		.filter(product -> !excludedProductIds.contains(product.getId()))
+		.map(product -> (Callable<ProductBillingResultDTO>) () -> this.calculateBill(product, billingPeriod))
+		.iterator();
+
+		this.streamResults(tasks, consumer);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void checkBatchSize(int size) throws BillingBadRequestException {
+		if (size > batch.getMaxProducts()) {
+			throw new BillingBadRequestException(String.format("Too many Product(s) in the batch: the maximum is %d", batch.getMaxProducts()));
+		}
+	}
+
+	private BatchBillingResponseDTO collectResults(List<CompletableFuture<ProductBillingResultDTO>> futures, TimePeriod billingPeriod) {
+		List<ProductBillingResultDTO> results = futures.stream()
+				.map(CompletableFuture::join)
+				.collect(Collectors.toList());
+
+		BatchBillingResponseDTO response = new BatchBillingResponseDTO(billingPeriod, results);
+		logger.info("Calculation of the bills completed: {} succeeded, {} failed", response.getSucceeded(), response.getFailed());
+
+		return response;
+	}
+
+	/*
+	 * Submits the tasks keeping at most two tasks per worker in flight, and passes the results to the consumer in order of completion
+	 */
+	private void streamResults(Iterator<Callable<ProductBillingResultDTO>> tasks, Consumer<ProductBillingResultDTO> consumer) {
+		CompletionService<ProductBillingResultDTO> completionService = new ExecutorCompletionService<ProductBillingResultDTO>(executor);
+		int window = 2 * Math.max(1, batch.getParallelism());
+		int inFlight = 0;
+		int completed = 0;
+
+		while (tasks.hasNext()) {
+			if (inFlight == window) {
+				consumer.accept(this.takeResult(completionService));
+				inFlight--;
+				completed++;
+			}
+			completionService.submit(tasks.next());
+			inFlight++;
+		}
+
+		for (; inFlight > 0; inFlight--) {
+			consumer.accept(this.takeResult(completionService));
+			completed++;
+		}
+
+		logger.info("Streaming calculation of the bills completed for {} Product(s)", completed);
+	}
+
+	private ProductBillingResultDTO takeResult(CompletionService<ProductBillingResultDTO> completionService) {
+		try {
+			return completionService.take().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Calculation of the bills interrupted", e);
+		} catch (ExecutionException e) {
+			// calculateBill() never throws: the errors are reported in the ProductBillingResultDTO
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private ProductBillingResultDTO calculateBill(String productId, TimePeriod billingPeriod) {
+		Product product;
+		try {
+			product = productInventoryApis.getProduct(productId, null);
+		} catch (Exception e) {
+			logger.warn("Error retrieving Product '{}': {}", productId, e.getMessage());
+			return ProductBillingResultDTO.failed(productId, e.getMessage());
+		}
+
+		if (product == null) {
+			return ProductBillingResultDTO.failed(productId, String.format("Product '%s' not found", productId));
+		}
+
+		return this.calculateBill(product, billingPeriod);
+	}
+
+	private ProductBillingResultDTO calculateBill(Product product, TimePeriod billingPeriod) {
+		try {
+			List<Invoice> invoices = billingEngineService.calculateBill(product, billingPeriod);
+			return ProductBillingResultDTO.succeeded(product.getId(), invoices);
+		} catch (Exception e) {
+			logger.warn("Error calculating the bill of Product '{}': {}", product.getId(), e.getMessage());
+			return ProductBillingResultDTO.failed(product.getId(), e.getMessage());
+		}
+	}
+
+	/*
+	 * Names the worker threads of the batch billing
+	 */
+	private static final class BatchThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger(0);
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "batch-billing-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
@@ -1,8 +1,8 @@
 package it.eng.dome.billing.engine.service;
 
 import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Stream;
 
@@ -41,52 +41,127 @@ public class BillCycleService{
 		
 		List<TimePeriod> billingPeriods=new ArrayList<TimePeriod>();
 		
-		List<OffsetDateTime> billingPeriodStartDates=this.calculateBillingPeriodStartDates(recurringChargePeriod, activationDate, limitDate);
-
-		if(!billingPeriodStartDates.isEmpty()) {
-			
-			try {
-			    Collections.sort(billingPeriodStartDates);
-			} catch (Exception e) {
-				Logger.error("Error: {}", e.getMessage());
-			}
-
-		    for (OffsetDateTime startDate : billingPeriodStartDates) {
-		        OffsetDateTime endDate = calculateBillingPeriodEndDate(recurringChargePeriod, startDate);
-		        
-		        TimePeriod timePeriod=new TimePeriod();
-		        timePeriod.setStartDateTime(startDate);
-		        timePeriod.setEndDateTime(endDate);
-
-		        billingPeriods.add(timePeriod);
-		    }
+		if (activationDate.isAfter(limitDate)) {
+	        Logger.warn("activationDate '{}' is after limitDate '{}'", activationDate, limitDate);
+	        return billingPeriods;
+	    }
+		
+		validateRecurringChargePeriod(recurringChargePeriod);
+		
+		for(long cycleIndex=0; !getBillingPeriodStartDate(recurringChargePeriod, activationDate, cycleIndex).isAfter(limitDate); cycleIndex++) {
+			billingPeriods.add(getBillingPeriod(recurringChargePeriod, activationDate, cycleIndex));
 		}
-	    
 
 	    return billingPeriods;
 	}
 	
-	private OffsetDateTime calculateBillingPeriodEndDate(@NotNull RecurringChargePeriod recurringChargePeriod, @NotNull OffsetDateTime startDate) {
+	/**
+	 * Calculates the start date of the billingPeriod with the specified index (0 for the first billingPeriod starting at the activation date).
+	 * The start date is always calculated from the activation date (e.g., 1 MONTH from 31 January: 28/29 February, 31 March, 30 April...), so that the month-end is preserved.
+	 * 
+	 * @param recurringChargePeriod A {@link RecurringChargePeriod} specifying the recurringChargePeriodType and recurringChargePeriodLength
+	 * @param activationDate An {@link OffsetDateTime} representing the start date of the first billingPeriod
+	 * @param cycleIndex the index of the billingPeriod
+	 * @return the {@link OffsetDateTime} start date of the billingPeriod
+	 * @throws IllegalArgumentException If the {@link RecurringChargePeriod} contains unexpected values
+	 */
+	public OffsetDateTime getBillingPeriodStartDate(@NotNull RecurringChargePeriod recurringChargePeriod, @NotNull OffsetDateTime activationDate, long cycleIndex) throws IllegalArgumentException {
+		long billingPeriodLength = recurringChargePeriod.getRecurringChargePeriodLenght();
+		
+		switch (recurringChargePeriod.getRecurringChargePeriodType()) {
+	        case DAY:
+	            return activationDate.plusDays(cycleIndex * billingPeriodLength);
 
-	    RecurringPeriod billingPeriodType = recurringChargePeriod.getRecurringChargePeriodType();
-	    int billingPeriodLenght = recurringChargePeriod.getRecurringChargePeriodLenght();
+	        case WEEK:
+	            return activationDate.plusDays(cycleIndex * billingPeriodLength * 7);
 
-	    switch (billingPeriodType) {
+	        case MONTH:
+	            return activationDate.plusMonths(cycleIndex * billingPeriodLength);
+
+	        case YEAR:
+	            return activationDate.plusYears(cycleIndex * billingPeriodLength);
+
+	        default:
+	        	throw new IllegalArgumentException("Error in the RecurringChargePeriod: unexpected value for billingPeriodType");
+	    }
+	}
+	
+	/**
+	 * Calculates the billingPeriod with the specified index (0 for the first billingPeriod starting at the activation date). 
+	 * The billingPeriod ends the day before the start of the next billingPeriod.
+	 * 
+	 * @param recurringChargePeriod A {@link RecurringChargePeriod} specifying the recurringChargePeriodType and recurringChargePeriodLength
+	 * @param activationDate An {@link OffsetDateTime} representing the start date of the first billingPeriod
+	 * @param cycleIndex the index of the billingPeriod
+	 * @return the {@link TimePeriod} representing the billingPeriod
+	 * @throws IllegalArgumentException If the {@link RecurringChargePeriod} contains unexpected values
+	 */
+	public TimePeriod getBillingPeriod(@NotNull RecurringChargePeriod recurringChargePeriod, @NotNull OffsetDateTime activationDate, long cycleIndex) throws IllegalArgumentException {
+		TimePeriod timePeriod=new TimePeriod();
+        timePeriod.setStartDateTime(getBillingPeriodStartDate(recurringChargePeriod, activationDate, cycleIndex));
+        timePeriod.setEndDateTime(getBillingPeriodStartDate(recurringChargePeriod, activationDate, cycleIndex + 1).minusDays(1));
+        
+        return timePeriod;
+	}
+	
+	/**
+	 * Calculates, without iterating from the activation date, the index of the first billingPeriod starting at or after the specified date
+	 * 
+	 * @param recurringChargePeriod A {@link RecurringChargePeriod} specifying the recurringChargePeriodType and recurringChargePeriodLength
+	 * @param activationDate An {@link OffsetDateTime} representing the start date of the first billingPeriod
+	 * @param date the {@link OffsetDateTime} to consider
+	 * @return the index of the first billingPeriod whose start date is not before the specified date (0 if the date is not after the activation date)
+	 * @throws IllegalArgumentException If the {@link RecurringChargePeriod} contains unexpected values
+	 */
+	public long getFirstCycleIndexNotBefore(@NotNull RecurringChargePeriod recurringChargePeriod, @NotNull OffsetDateTime activationDate, @NotNull OffsetDateTime date) throws IllegalArgumentException {
+		validateRecurringChargePeriod(recurringChargePeriod);
+		
+		if(!date.isAfter(activationDate))
+			return 0;
+		
+		long billingPeriodLength = recurringChargePeriod.getRecurringChargePeriodLenght();
+		long cycleIndex;
+		
+		// estimation of the index with the period arithmetic
+		switch (recurringChargePeriod.getRecurringChargePeriodType()) {
 	        case DAY:
-	            return startDate.plusDays(billingPeriodLenght - 1);
+	        	cycleIndex = ChronoUnit.DAYS.between(activationDate, date) / billingPeriodLength;
+	        	break;
 
 	        case WEEK:
-	            return startDate.plusDays((long) billingPeriodLenght * 7 - 1);
+	        	cycleIndex = ChronoUnit.DAYS.between(activationDate, date) / (billingPeriodLength * 7);
+	        	break;
 
 	        case MONTH:
-	            return startDate.plusMonths(billingPeriodLenght).minusDays(1);
+	        	cycleIndex = ChronoUnit.MONTHS.between(activationDate, date) / billingPeriodLength;
+	        	break;
 
 	        case YEAR:
-	            return startDate.plusYears(billingPeriodLenght).minusDays(1);
+	        	cycleIndex = ChronoUnit.YEARS.between(activationDate, date) / billingPeriodLength;
+	        	break;
 
 	        default:
 	        	throw new IllegalArgumentException("Error in the RecurringChargePeriod: unexpected value for billingPeriodType");
 	    }
+		
+		// adjustment of the estimation (at most one step, e.g., for month-end or offset changes)
+		while(getBillingPeriodStartDate(recurringChargePeriod, activationDate, cycleIndex).isBefore(date)) {
+			cycleIndex++;
+		}
+		while(cycleIndex > 0 && !getBillingPeriodStartDate(recurringChargePeriod, activationDate, cycleIndex - 1).isBefore(date)) {
+			cycleIndex--;
+		}
+		
+		return cycleIndex;
+	}
+	
+	private static void validateRecurringChargePeriod(@NotNull RecurringChargePeriod recurringChargePeriod) throws IllegalArgumentException {
+		RecurringPeriod billingPeriodType = recurringChargePeriod.getRecurringChargePeriodType();
+	    Integer billingPeriodLength = recurringChargePeriod.getRecurringChargePeriodLenght();
+	    
+		if (billingPeriodType == null || billingPeriodLength == null || billingPeriodLength <= 0) {
+	    	throw new IllegalArgumentException("Error in the RecurringChargePeriod: billingPeriodType must not be null, billingPeriodLength must be greater than 0");
+	    }
 	}
 
 	/**
@@ -212,20 +287,18 @@ public class BillCycleService{
 	        }
 
 	        case MONTH: {
-	            // start date for period N = activationDate + (N-1) * length MONTHS
+	            // start date for period N = activationDate + (N-1) * length MONTHS (always from the activationDate to keep the month-end)
 	            streamData = Stream.iterate(
-	                    activationDate,
-	                    d -> d.plusMonths(billingPeriodLength)
-	            );
+	                    0, i -> i + 1
+	            ).map(i -> activationDate.plusMonths(i * billingPeriodLength));
 	            break;
 	        }
 
 	        case YEAR: {
-	            // start date for period N = activationDate + (N-1) * length YEARS
+	            // start date for period N = activationDate + (N-1) * length YEARS (always from the activationDate to keep the month-end)
 	            streamData = Stream.iterate(
-	                    activationDate,
-	                    d -> d.plusYears(billingPeriodLength)
-	            );
+	                    0, i -> i + 1
+	            ).map(i -> activationDate.plusYears(i * billingPeriodLength));
 	            break;
 	        }
 
@@ -284,6 +357,80 @@ public class BillCycleService{
 				
 	}
 	
+	/**
+	 * Returns the {@link BillCycle}(s), according to the recurring charge period specified in the {@link ProductOfferingPrice}, whose billDate falls within the specified billingPeriod.
+	 * Differently from {@link #getBillCycles(ProductOfferingPrice, OffsetDateTime, OffsetDateTime)}, the bill cycles before the billingPeriod are not calculated: 
+	 * the first bill cycle is found with the period arithmetic and only the bill cycles in the billingPeriod are lazily emitted.
+	 * 
+	 * @param pop The {@link ProductOfferingPrice} that specifies the recurring charge period
+	 * @param activationDate an {@link OffsetDateTime} representing the activation date
+	 * @param billingPeriod a {@link TimePeriod} representing the billingPeriod
+	 * @return a stream of {@link BillCycle} with billDate within the billingPeriod
+	 * @throws BillingBadRequestException if the billCycles(s) can't be calculated because the {@link ProductOfferingPrice} is custom
+	 */
+	public Stream<BillCycle> streamBillCyclesInBillingPeriod(@NotNull ProductOfferingPrice pop, @NotNull OffsetDateTime activationDate, @NotNull TimePeriod billingPeriod) throws BillingBadRequestException{
+		
+		if(ProductOfferingPriceUtils.isPriceTypeOneTime(pop)) {
+			if(isBillDateWithinBillingPeriod(activationDate, billingPeriod))
+				return Stream.of(this.getBillCycleForOneTime(activationDate));
+			return Stream.empty();
+		}
+		
+		if(ProductOfferingPriceUtils.isPriceTypeRecurringPrepaid(pop)) {
+			RecurringChargePeriod recurringChargePeriod=ProductOfferingPriceUtils.getRecurringChargePeriod(pop);
+			// billDate = start of the billingPeriod of the cycle
+			long firstCycleIndex=this.getFirstCycleIndexNotBefore(recurringChargePeriod, activationDate, billingPeriod.getStartDateTime());
+			
+			return Stream.iterate(firstCycleIndex, i -> i + 1)
+					.map(i -> this.getBillingPeriod(recurringChargePeriod, activationDate, i))
+					.takeWhile(periodCoverage -> !periodCoverage.getStartDateTime().isAfter(billingPeriod.getEndDateTime()))
+					.map(periodCoverage -> createBillCycle(periodCoverage.getStartDateTime(), periodCoverage));
+		}
+		
+		if(ProductOfferingPriceUtils.isPriceTypeInRecurringPostpaidCategory(pop)) {
+			RecurringChargePeriod recurringChargePeriod=ProductOfferingPriceUtils.getRecurringChargePeriod(pop);
+			// billDate = end of the billingPeriod of the cycle, i.e., the day before the start of the next cycle
+			long firstCycleIndex=Math.max(0, this.getFirstCycleIndexNotBefore(recurringChargePeriod, activationDate, billingPeriod.getStartDateTime().plusDays(1)) - 1);
+			
+			return Stream.iterate(firstCycleIndex, i -> i + 1)
+					.map(i -> this.getBillingPeriod(recurringChargePeriod, activationDate, i))
+					.dropWhile(periodCoverage -> periodCoverage.getEndDateTime().isBefore(billingPeriod.getStartDateTime()))
+					.takeWhile(periodCoverage -> !periodCoverage.getEndDateTime().isAfter(billingPeriod.getEndDateTime()))
+					.map(periodCoverage -> createBillCycle(periodCoverage.getEndDateTime(), periodCoverage));
+		}
+		
+		if(ProductOfferingPriceUtils.isPriceTypeCustom(pop))
+			throw new BillingBadRequestException(String.format("Error: Not possible to calculate billDates for PriceType '%s' in ProductOfferingPrice '%s' ", PriceType.CUSTOM.toString(), pop.getId()));
+		
+		return Stream.empty();
+	}
+	
+	/**
+	 * Returns the list of {@link BillCycle}, according to the recurring charge period specified in the {@link ProductOfferingPrice}, whose billDate falls within the specified billingPeriod.
+	 * 
+	 * @param pop The {@link ProductOfferingPrice} that specifies the recurring charge period
+	 * @param activationDate an {@link OffsetDateTime} representing the activation date
+	 * @param billingPeriod a {@link TimePeriod} representing the billingPeriod
+	 * @return a list of {@link BillCycle} with billDate within the billingPeriod
+	 * @throws BillingBadRequestException if the billCycles(s) can't be calculated because the {@link ProductOfferingPrice} is custom
+	 */
+	public List<BillCycle> getBillCyclesInBillingPeriod(@NotNull ProductOfferingPrice pop, @NotNull OffsetDateTime activationDate, @NotNull TimePeriod billingPeriod) throws BillingBadRequestException{
+		if (activationDate.isAfter(billingPeriod.getEndDateTime())) {
+	        Logger.warn("activationDate '{}' is after the end of the billingPeriod '{}'", activationDate, billingPeriod.getEndDateTime());
+	        return new ArrayList<BillCycle>();
+	    }
+		
+		return new ArrayList<BillCycle>(this.streamBillCyclesInBillingPeriod(pop, activationDate, billingPeriod).toList());
+	}
+	
+	private static BillCycle createBillCycle(@NotNull OffsetDateTime billDate, @NotNull TimePeriod periodCoverage) {
+		BillCycle billCycle=new BillCycle();
+		billCycle.setBillDate(billDate);
+		billCycle.setBillingPeriod(TMForumEntityUtils.createTimePeriod678(periodCoverage.getStartDateTime(), periodCoverage.getEndDateTime()));
+		
+		return billCycle;
+	}
+	
 	/**
 	 * Returns the BillCyle for the specified {@link ProductOfferingPrice} of {@link PriceType} ONE_TIME
 	 * 
@@ -4,20 +4,30 @@ import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.Timer;
 import it.eng.dome.billing.engine.config.AppProperties;
 import it.eng.dome.billing.engine.exception.BillingBadRequestException;
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.price.calculator.PriceCalculationContext;
 import it.eng.dome.billing.engine.price.calculator.PriceCalculator;
 import it.eng.dome.billing.engine.price.calculator.PriceCalculatorFactory;
+import it.eng.dome.billing.engine.utils.BillingMetrics;
+import it.eng.dome.billing.engine.utils.CostProfile;
 import it.eng.dome.billing.engine.utils.TMForumEntityUtils;
 import it.eng.dome.billing.engine.utils.TmfConverter;
 import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.brokerage.model.BillCycle;
 import it.eng.dome.brokerage.model.BillCycleSpecification;
 import it.eng.dome.brokerage.model.Invoice;
@@ -27,6 +37,7 @@ import it.eng.dome.tmforum.tmf637.v4.model.Product;
 import it.eng.dome.tmforum.tmf678.v4.model.AppliedCustomerBillingRate;
 import it.eng.dome.tmforum.tmf678.v4.model.CustomerBill;
 import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+import jakarta.annotation.PreDestroy;
 import jakarta.validation.constraints.NotNull;
 
 @Service
@@ -43,15 +54,72 @@ private final static Logger logger=LoggerFactory.getLogger(BillingEngineService.
 	@Autowired
 	private PriceCalculatorFactory priceCalculatorFactory;
 	
+	@Autowired
+	private UsageService usageService;
+	
+	@Autowired
+	private ProductOfferingPriceService productOfferingPriceService;
+	
+	@Autowired
+	private UsageRatingService usageRatingService;
+	
+	@Autowired
+	private UsageIngestionService usageIngestionService;
+	
 	private final AppProperties appProperties;
 	
+	// executor of the parallel pricing of the POP/bill cycle pairs, null if the parallel pricing is disabled (app.pricing.parallel)
+	private final ExecutorService pricingExecutor;
+	
 	public BillingEngineService(AppProperties appProperties) {
 		this.appProperties = appProperties;
+		
+		AppProperties.Pricing pricing = appProperties.getPricing() != null ? appProperties.getPricing() : new AppProperties.Pricing();
+		if (pricing.isParallel()) {
+			AtomicInteger count = new AtomicInteger(0);
+			this.pricingExecutor = Executors.newFixedThreadPool(Math.max(1, pricing.getParallelism()), r -> {
+				Thread thread = new Thread(r, "pricing-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			logger.info("Parallel pricing enabled with parallelism {}", pricing.getParallelism());
+		} else {
+			this.pricingExecutor = null;
+		}
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		if (pricingExecutor != null) {
+			pricingExecutor.shutdownNow();
+		}
 	}
 	
 	public List<Invoice> calculateBill(@NotNull Product product, @NotNull TimePeriod billingPeriod) throws BillingEngineValidationException, ApiException, IllegalArgumentException, BillingBadRequestException {
+		return this.calculateBill(product, billingPeriod, false);
+	}
+	
+	/**
+	 * Calculates the current spend of a {@link Product} in the billingPeriod (e.g., a bill cycle not ended yet). Differently from the bill,
+	 * the usage POPs are priced from the running totals of their bill cycles, rating only the Usage(s) created after the previous request
+	 * (see {@link UsageRatingService}): the final bill is still recalculated from all the Usage(s). When the ingestion of the pushed Usage(s)
+	 * is enabled (app.ingestion.enabled), the current spend is priced from the daily aggregates instead (see {@link UsageIngestionService}).
+	 * 
+	 * @param product the {@link Product}
+	 * @param billingPeriod the {@link TimePeriod} of the current spend
+	 * @return the list of {@link Invoice} with the current spend
+	 * @throws BillingEngineValidationException if some error occurs during the validation of the TMForum entities
+	 * @throws ApiException if some error occurs retrieving the TMF620 entities
+	 * @throws IllegalArgumentException if some illegal argument is provided in input
+	 * @throws BillingBadRequestException if some error occurs in the price calculation
+	 */
+	public List<Invoice> calculateCurrentSpend(@NotNull Product product, @NotNull TimePeriod billingPeriod) throws BillingEngineValidationException, ApiException, IllegalArgumentException, BillingBadRequestException {
+		return this.calculateBill(product, billingPeriod, true);
+	}
+	
+	private List<Invoice> calculateBill(@NotNull Product product, @NotNull TimePeriod billingPeriod, boolean runningTotals) throws BillingEngineValidationException, ApiException, IllegalArgumentException, BillingBadRequestException {
 		
-		logger.info("Starting calculation of the bill for Product '{}' and billingPeriod '{}'-'{}'...", product.getId(), billingPeriod.getStartDateTime(), billingPeriod.getEndDateTime());
+		logger.info("Starting calculation of the {} for Product '{}' and billingPeriod '{}'-'{}'...", runningTotals ? "current spend" : "bill", product.getId(), billingPeriod.getStartDateTime(), billingPeriod.getEndDateTime());
 		
 		List<Invoice> invoices=new ArrayList<Invoice>();
 		
@@ -62,10 +130,21 @@ private final static Logger logger=LoggerFactory.getLogger(BillingEngineService.
 		Map<ProductOfferingPrice, List<BillCycle>> popBillCyclesInBillingPeriod=productPriceService.getPOPBillCyclesInBillingPeriod(product,billingPeriod);
 		List<ProductOfferingPrice> popKeys = new ArrayList<ProductOfferingPrice>(popBillCyclesInBillingPeriod.keySet());		
 		
-		tmfEntityValidator.validatePOPsCurrency(popKeys, product);
-		
+		List<ProductOfferingPrice> billedPops = new ArrayList<ProductOfferingPrice>();
 		for(ProductOfferingPrice pop: popKeys) {
-			acbrs.addAll(generateACBR(pop,popBillCyclesInBillingPeriod.get(pop),product));
+			billedPops.addAll(this.getBilledPops(pop));
+		}
+		tmfEntityValidator.validatePOPsCurrency(billedPops, product);
+		
+		// the Usage(s) are retrieved once for all the bill cycles (and only if some POP is usage-based)
+		UsageSnapshot usageSnapshot=createUsageSnapshot(product, popBillCyclesInBillingPeriod);
+		
+		if(pricingExecutor==null) {
+			for(ProductOfferingPrice pop: popKeys) {
+				acbrs.addAll(generateACBR(pop,popBillCyclesInBillingPeriod.get(pop),product,usageSnapshot,runningTotals));
+			}
+		}else {
+			acbrs.addAll(generateACBRInParallel(popKeys, popBillCyclesInBillingPeriod, product, usageSnapshot, runningTotals));
 		}
 		
 		if(!acbrs.isEmpty()) {
@@ -78,26 +157,139 @@ private final static Logger logger=LoggerFactory.getLogger(BillingEngineService.
 		return invoices;
 	}
 	
-	private List<AppliedCustomerBillingRate> generateACBR(@NotNull ProductOfferingPrice pop, @NotNull List<BillCycle> billCycles, @NotNull Product product) throws BillingBadRequestException, BillingEngineValidationException, ApiException {
+	private List<AppliedCustomerBillingRate> generateACBR(@NotNull ProductOfferingPrice pop, @NotNull List<BillCycle> billCycles, @NotNull Product product, UsageSnapshot usageSnapshot, boolean runningTotals) throws BillingBadRequestException, BillingEngineValidationException, ApiException {
 		logger.debug("Generation of ACBR(s) for POP '{}' in Product '{}'",pop.getId(),product.getId());
 		
 		List<AppliedCustomerBillingRate> acbrs=new ArrayList<AppliedCustomerBillingRate>();
 		
 		for(BillCycle billCycle:billCycles) {
-			tmfEntityValidator.validatePrice(pop);
-			
-			PriceCalculator<Product,it.eng.dome.billing.engine.model.Money> pc=priceCalculatorFactory.getPriceCalculatorForProduct(pop,billCycle.getBillingPeriod());
-			
-			it.eng.dome.billing.engine.model.Money taxExclutedAmount=pc.calculatePrice(product);
-			
-			AppliedCustomerBillingRate acbr= TMForumEntityUtils.createAppliedCustomerBillingRate
-					(pop, product, billCycle, TmfConverter.convertMoneyTo678(taxExclutedAmount), appProperties.getSchema().getSchemaLocationRelatedParty());
-			acbrs.add(acbr);
+			acbrs.add(generateACBR(pop, billCycle, product, usageSnapshot, runningTotals));
 		}
 
 		return acbrs;
 	}
 	
+	private AppliedCustomerBillingRate generateACBR(@NotNull ProductOfferingPrice pop, @NotNull BillCycle billCycle, @NotNull Product product, UsageSnapshot usageSnapshot, boolean runningTotals) throws BillingBadRequestException, BillingEngineValidationException, ApiException {
+		List<ProductOfferingPrice> billedPops=this.getBilledPops(pop);
+		for(ProductOfferingPrice billedPop:billedPops) {
+			tmfEntityValidator.validatePrice(billedPop);
+		}
+		
+		PriceCalculator<Product,it.eng.dome.billing.engine.model.Money> pc=priceCalculatorFactory.getPriceCalculatorForProduct(pop);
+		
+		PriceCalculationContext context;
+		if(runningTotals && usageIngestionService.isEnabled() && ProductOfferingPriceUtils.isPriceTypeUsage(pop)) {
+			// the Usage(s) are aggregated as they are pushed, so the current spend is priced from the daily aggregates
+			context=PriceCalculationContext.forRunningTotals(billCycle.getBillingPeriod(), usageSnapshot, usageIngestionService.getTotals(product.getId(), billCycle.getBillingPeriod()));
+		}else if(runningTotals && ProductOfferingPriceUtils.isPriceTypeUsage(pop)) {
+			// only the Usage(s) created after the previous rating of the bill cycle are retrieved and rated
+			context=PriceCalculationContext.forRunningTotals(billCycle.getBillingPeriod(), usageSnapshot, usageRatingService.rate(product.getId(), billCycle.getBillingPeriod()));
+		}else {
+			context=PriceCalculationContext.forBillingPeriod(billCycle.getBillingPeriod(), usageSnapshot);
+		}
+		
+		it.eng.dome.billing.engine.model.Money taxExclutedAmount;
+		Timer.Sample sample=Timer.start();
+		try {
+			taxExclutedAmount=pc.calculatePrice(product, context);
+		} finally {
+			CostProfile.recordPop(pop.getId(), BillingMetrics.stop(sample, BillingMetrics.priceCalculation(pc), "priceCalculation"));
+		}
+		
+		// the ACBR of the tiers of a bundled POP refers to the bundled POP, with the priceType shared by its tiers
+		return TMForumEntityUtils.createAppliedCustomerBillingRate(pop, billedPops.get(0).getPriceType(), product, billCycle, 
+				TmfConverter.convertMoneyTo678(taxExclutedAmount), appProperties.getSchema().getSchemaLocationRelatedParty());
+	}
+	
+	/*
+	 * The POP(s) with the price(s) of the ACBR(s) of a POP: for a bundled POP (only the tiers of a characteristic are billed together by ProductPriceService) all its tiers
+	 */
+	private List<ProductOfferingPrice> getBilledPops(@NotNull ProductOfferingPrice pop) throws ApiException {
+		if(!ProductOfferingPriceUtils.isBundled(pop)) {
+			return List.of(pop);
+		}
+		List<ProductOfferingPrice> tiers=productOfferingPriceService.getBundledProductOfferingPrices(pop.getBundledPopRelationship());
+		return tiers.isEmpty() ? List.of(pop) : tiers;
+	}
+	
+	/*
+	 * Prices the POP/bill cycle pairs concurrently on the pricing executor. The ACBRs are returned in the same order of the sequential generation,
+	 * and the first error (in the same order) is rethrown.
+	 */
+	private List<AppliedCustomerBillingRate> generateACBRInParallel(@NotNull List<ProductOfferingPrice> pops, @NotNull Map<ProductOfferingPrice, List<BillCycle>> popBillCycles, @NotNull Product product, UsageSnapshot usageSnapshot, boolean runningTotals) throws BillingBadRequestException, BillingEngineValidationException, ApiException {
+		List<CompletableFuture<AppliedCustomerBillingRate>> futures=new ArrayList<CompletableFuture<AppliedCustomerBillingRate>>();
+		
+		for(ProductOfferingPrice pop: pops) {
+			logger.debug("Generation of ACBR(s) for POP '{}' in Product '{}'",pop.getId(),product.getId());
+			
+			for(BillCycle billCycle:popBillCycles.get(pop)) {
+				futures.add(CompletableFuture.supplyAsync(CostProfile.propagate(() -> {
+					try {
+						return generateACBR(pop, billCycle, product, usageSnapshot, runningTotals);
+					} catch (BillingBadRequestException | BillingEngineValidationException | ApiException e) {
+						throw new CompletionException(e);
+					}
+				}), pricingExecutor));
+			}
+		}
+		
+		List<AppliedCustomerBillingRate> acbrs=new ArrayList<AppliedCustomerBillingRate>();
+		try {
+			for(CompletableFuture<AppliedCustomerBillingRate> future:futures) {
+				acbrs.add(join(future));
+			}
+		} finally {
+			// no need to complete the remaining pairs if one has failed
+			futures.forEach(future -> future.cancel(false));
+		}
+		
+		return acbrs;
+	}
+	
+	/*
+	 * Creates the UsageSnapshot covering all the bill cycles of the Product, null if there are no bill cycles
+	 */
+	private UsageSnapshot createUsageSnapshot(@NotNull Product product, @NotNull Map<ProductOfferingPrice, List<BillCycle>> popBillCycles) {
+		OffsetDateTime start=null;
+		OffsetDateTime end=null;
+		
+		for(List<BillCycle> billCycles:popBillCycles.values()) {
+			for(BillCycle billCycle:billCycles) {
+				TimePeriod period=billCycle.getBillingPeriod();
+				if(start==null || period.getStartDateTime().isBefore(start))
+					start=period.getStartDateTime();
+				if(end==null || period.getEndDateTime().isAfter(end))
+					end=period.getEndDateTime();
+			}
+		}
+		
+		if(start==null)
+			return null;
+		
+		return usageService.createSnapshot(product.getId(), TMForumEntityUtils.createTimePeriod678(start, end));
+	}
+	
+	private static AppliedCustomerBillingRate join(CompletableFuture<AppliedCustomerBillingRate> future) throws BillingBadRequestException, BillingEngineValidationException, ApiException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause=e.getCause();
+			if (cause instanceof BillingBadRequestException) {
+				throw (BillingBadRequestException) cause;
+			}
+			if (cause instanceof BillingEngineValidationException) {
+				throw (BillingEngineValidationException) cause;
+			}
+			if (cause instanceof ApiException) {
+				throw (ApiException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+	
 	private CustomerBill generateCB(@NotNull List<AppliedCustomerBillingRate> acbrs, @NotNull Product prod, @NotNull TimePeriod billingPeriod) {
 		logger.info("Generation of CB for billingPeriod '{}'-'{}' with {} ACBRs",billingPeriod.getStartDateTime(), billingPeriod.getEndDateTime(), acbrs.size());
 		
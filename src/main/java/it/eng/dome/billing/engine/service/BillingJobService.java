@@ -0,0 +1,191 @@
+package it.eng.dome.billing.engine.service;
+
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.dto.BatchBillingRequestDTO;
+import it.eng.dome.billing.engine.dto.ProductBillingResultDTO;
+import it.eng.dome.billing.engine.exception.BillingBadRequestException;
+import it.eng.dome.billing.engine.job.BillingJob;
+import it.eng.dome.billing.engine.job.BillingJobStore;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Service to run the batch bill calculations as asynchronous jobs. The jobs and their results are persisted by a {@link BillingJobStore}
+ * (app.job.directory): the jobs interrupted by a crash or a restart are resumed at startup, skipping the Product(s) already billed.
+ */
+@Service
+public class BillingJobService {
+
+	private final static Logger logger = LoggerFactory.getLogger(BillingJobService.class);
+
+	private final BatchBillingService batchBillingService;
+
+	private final BillingJobStore store;
+
+	private final AppProperties.Job jobProperties;
+
+	private final ExecutorService executor;
+
+	// the jobs queued or running in this instance
+	private final Map<String, BillingJob> activeJobs = new ConcurrentHashMap<String, BillingJob>();
+
+	public BillingJobService(BatchBillingService batchBillingService, ObjectMapper objectMapper, AppProperties appProperties) {
+		this.batchBillingService = batchBillingService;
+		this.jobProperties = appProperties.getJob() != null ? appProperties.getJob() : new AppProperties.Job();
+		this.store = new BillingJobStore(Paths.get(jobProperties.getDirectory()), objectMapper);
+
+		AtomicInteger count = new AtomicInteger(0);
+		this.executor = Executors.newFixedThreadPool(Math.max(1, jobProperties.getConcurrency()), r -> {
+			Thread thread = new Thread(r, "billing-job-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		logger.info("Billing jobs [directory: {}, concurrency: {}]", Paths.get(jobProperties.getDirectory()).toAbsolutePath(), jobProperties.getConcurrency());
+	}
+
+	/**
+	 * Submits a new job to calculate the bills of the Product(s) of the {@link BatchBillingRequestDTO}
+	 *
+	 * @param request the {@link BatchBillingRequestDTO} with the identifiers of the Product(s) (or a filter on the Product Inventory) and the billingPeriod
+	 * @return the submitted {@link BillingJob}
+	 * @throws BillingBadRequestException if the {@link BatchBillingRequestDTO} is not well formed
+	 */
+	public BillingJob submit(@NotNull BatchBillingRequestDTO request) throws BillingBadRequestException {
+		if (request.getBillingPeriod() == null) {
+			throw new BillingBadRequestException("Missing the instance of billingPeriod in the BatchBillingRequestDTO");
+		}
+		if ((request.getProductIds() == null || request.getProductIds().isEmpty()) && (request.getFilter() == null || request.getFilter().isEmpty())) {
+			throw new BillingBadRequestException("Missing the productIds or the filter in the BatchBillingRequestDTO");
+		}
+
+		BillingJob job = new BillingJob(UUID.randomUUID().toString(), request);
+		store.save(job);
+		logger.info("BillingJob {} submitted", job.getId());
+
+		this.schedule(job);
+		return job.copy();
+	}
+
+	/**
+	 * Gets the {@link BillingJob} with the specified identifier
+	 *
+	 * @param id the identifier of the {@link BillingJob}
+	 * @return the {@link BillingJob} with its current progress, null if not found
+	 */
+	public BillingJob getJob(@NotNull String id) {
+		BillingJob job = activeJobs.get(id);
+		if (job != null) {
+			return job.copy();
+		}
+		return store.load(id);
+	}
+
+	/**
+	 * Gets a page of the results of the {@link BillingJob} with the specified identifier (also while the job is running)
+	 *
+	 * @param id the identifier of the {@link BillingJob}
+	 * @param offset the index of the first result
+	 * @param limit the maximum number of results
+	 * @return the list of {@link ProductBillingResultDTO}, null if the job is not found
+	 */
+	public List<ProductBillingResultDTO> getResults(@NotNull String id, int offset, int limit) {
+		if (this.getJob(id) == null) {
+			return null;
+		}
+		return store.readResults(id, offset, limit);
+	}
+
+	/**
+	 * Resumes the jobs left queued or running by a previous execution of the application
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void resumeJobs() {
+		for (BillingJob job : store.loadAll()) {
+			if ((job.getStatus() == BillingJob.Status.QUEUED || job.getStatus() == BillingJob.Status.RUNNING) && !activeJobs.containsKey(job.getId())) {
+				logger.info("Resuming BillingJob {} ({} Product(s) already processed)", job.getId(), job.getProcessed());
+				this.schedule(job);
+			}
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void schedule(BillingJob job) {
+		activeJobs.put(job.getId(), job);
+		executor.execute(() -> this.run(job));
+	}
+
+	private void run(BillingJob job) {
+		BatchBillingRequestDTO request = job.getRequest();
+		boolean byProductIds = request.getProductIds() != null && !request.getProductIds().isEmpty();
+
+		try (BillingJobStore.ResultAppender appender = store.openResults(job.getId())) {
+			List<String> productIds = byProductIds ? request.getProductIds().stream().distinct().collect(Collectors.toList()) : null;
+			job.start(byProductIds ? productIds.size() : null);
+
+			// checkpoint: the Product(s) already billed before a crash are not billed again
+			Set<String> processedProductIds = new HashSet<String>();
+			store.forEachResult(job.getId(), result -> {
+				if (processedProductIds.add(result.getProductId())) {
+					job.addResult(result);
+				}
+			});
+			store.save(job);
+
+			Consumer<ProductBillingResultDTO> consumer = result -> {
+				appender.append(result);
+				job.addResult(result);
+				if (job.getProcessed() % Math.max(1, jobProperties.getCheckpointInterval()) == 0) {
+					store.save(job);
+				}
+			};
+
+			if (byProductIds) {
+				List<String> remaining = productIds.stream().filter(id -> !processedProductIds.contains(id)).collect(Collectors.toList());
+				batchBillingService.calculateBills(remaining, request.getBillingPeriod(), consumer);
+			} else {
+				batchBillingService.calculateBills(request.getFilter(), request.getBillingPeriod(), processedProductIds, consumer);
+			}
+
+			job.updateStatus(BillingJob.Status.COMPLETED, null);
+			logger.info("BillingJob {} completed: {} succeeded, {} failed", job.getId(), job.getSucceeded(), job.getFailed());
+		} catch (Exception e) {
+			if (executor.isShutdown()) {
+				// the job stays RUNNING: it is resumed at the next startup
+				logger.warn("BillingJob {} interrupted by the shutdown after {} Product(s)", job.getId(), job.getProcessed());
+			} else {
+				logger.error("BillingJob {} failed: {}", job.getId(), e.getMessage());
+				job.updateStatus(BillingJob.Status.FAILED, e.getMessage());
+			}
+		} finally {
+			store.save(job);
+			activeJobs.remove(job.getId());
+		}
+	}
+
+}
@@ -1,12 +1,25 @@
 package it.eng.dome.billing.engine.service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import it.eng.dome.billing.engine.config.AppProperties;
 import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
 import it.eng.dome.brokerage.api.ProductInventoryApis;
 import it.eng.dome.brokerage.api.UsageManagementApis;
@@ -16,27 +29,68 @@ import it.eng.dome.brokerage.observability.health.Check;
 import it.eng.dome.brokerage.observability.health.Health;
 import it.eng.dome.brokerage.observability.health.HealthStatus;
 import it.eng.dome.brokerage.observability.info.Info;
-
-
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Service providing the info and the health of the Billing Engine. The TMForum APIs dependencies (TMF620, TMF635 and TMF637) are probed in background
+ * every app.health.probe-interval and the health is built from the last result of each probe, so the health requests (e.g., the Kubernetes probes)
+ * don't call TMForum and don't wait for a slow dependency. The output of each check reports how long ago the dependency was probed and
+ * when it last succeeded; a check whose last probe is older than app.health.stale-after is reported as WARN.
+ * <p>
+ * The duration of the probes is recorded in the health.probe timer (histogram, tagged with the dependency and the outcome) and the time
+ * of the last successful probe in the health.probe.last.success gauge.
+ */
 @Service
 public class HealthService extends AbstractHealthService {
 
 	private final Logger logger = LoggerFactory.getLogger(HealthService.class);
 	private final static String SERVICE_NAME = "Billing Engine";
-	
-	private final ProductCatalogManagementApis productCatalogManagementApis;
-	private final UsageManagementApis usageManagementApis;
-	private final ProductInventoryApis productInventoryApis;
-
-	
-	public HealthService(ProductCatalogManagementApis productCatalogManagementApis, 
-			UsageManagementApis usageManagementApis, ProductInventoryApis productInventoryApis) {
-		
-		this.productCatalogManagementApis = productCatalogManagementApis;
-		this.usageManagementApis = usageManagementApis;
-		this.productInventoryApis = productInventoryApis;
+
+	private final Duration probeInterval;
+	private final Duration staleAfter;
+
+	private final List<Probe> probes = new ArrayList<Probe>();
+
+	// a thread for each dependency, so a slow dependency doesn't delay the probes of the others
+	private final ScheduledExecutorService scheduler;
+
+
+	public HealthService(ProductCatalogManagementApis productCatalogManagementApis,
+			UsageManagementApis usageManagementApis, ProductInventoryApis productInventoryApis, AppProperties appProperties) {
+
+		AppProperties.Health healthProperties = appProperties.getHealth() != null ? appProperties.getHealth() : new AppProperties.Health();
+		this.probeInterval = healthProperties.getProbeInterval();
+		this.staleAfter = healthProperties.getStaleAfter();
+
+		probes.add(new Probe("tmf620", () -> FetchUtils.streamAll(productCatalogManagementApis::listProductOfferingPrices, null, null, 1).findAny()));
+		probes.add(new Probe("tmf635", () -> FetchUtils.streamAll(usageManagementApis::listUsages, null, null, 1).findAny()));
+		probes.add(new Probe("tmf637", () -> FetchUtils.streamAll(productInventoryApis::listProducts, null, null, 1).findAny()));
+
+		AtomicInteger count = new AtomicInteger(0);
+		this.scheduler = Executors.newScheduledThreadPool(probes.size(), r -> {
+			Thread thread = new Thread(r, "health-probe-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		logger.info("Health probes [interval: {}, staleAfter: {}]", probeInterval, staleAfter);
 	}
-	
+
+	/**
+	 * Starts the background probes of the TMForum APIs dependencies
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void startProbes() {
+		for (Probe probe : probes) {
+			scheduler.scheduleWithFixedDelay(probe::run, 0, probeInterval.toMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
 	@Override
 	public Info getInfo() {
 
@@ -45,7 +99,7 @@ public class HealthService extends AbstractHealthService {
 
 		return info;
 	}
-	
+
 	@Override
 	public Health getHealth() {
 		Health health = new Health();
@@ -62,7 +116,7 @@ public class HealthService extends AbstractHealthService {
 		// 2: check dependencies: in case of FAIL or WARN set it to WARN
 		boolean onlyDependenciesFailing = health.getChecks("self", null).stream()
 				.allMatch(c -> c.getStatus() == HealthStatus.PASS);
-		
+
 		if (onlyDependenciesFailing && health.getStatus() == HealthStatus.FAIL) {
 	        health.setStatus(HealthStatus.WARN);
 	    }
@@ -71,64 +125,128 @@ public class HealthService extends AbstractHealthService {
 		Check selfInfo = getChecksOnSelf(SERVICE_NAME);
 		health.addCheck(selfInfo);
 		health.elevateStatus(selfInfo.getStatus());
-	    
+
 	    // 4: build human-readable notes
 	    health.setNotes(buildNotes(health));
-		
+
 		logger.debug("Health response: {}", toJson(health));
-		
+
 		return health;
 	}
 
+	/*
+	 * The checks of the TMForum APIs dependencies from the last result of their probes
+	 */
 	private List<Check> getTMFChecks() {
 
 		List<Check> out = new ArrayList<>();
-
-		// TMF620
-		Check tmf620 = createCheck("tmf-api", "connectivity", "tmf620");
-
-		try {
-			FetchUtils.streamAll(productCatalogManagementApis::listProductOfferingPrices, null, null, 1).findAny();
-
-			tmf620.setStatus(HealthStatus.PASS);
-
-		} catch (Exception e) {
-			tmf620.setStatus(HealthStatus.FAIL);
-			tmf620.setOutput(e.toString());
+		Instant now = Instant.now();
+
+		for (Probe probe : probes) {
+			Check check = createCheck("tmf-api", "connectivity", probe.dependency);
+			ProbeResult result = probe.result;
+
+			if (result == null) {
+				check.setStatus(HealthStatus.WARN);
+				check.setOutput("Not probed yet");
+			} else {
+				Duration age = Duration.between(result.probedAt, now);
+				boolean stale = age.compareTo(staleAfter) > 0;
+
+				check.setStatus(stale && result.status == HealthStatus.PASS ? HealthStatus.WARN : result.status);
+				check.setTime(result.probedAt.atOffset(ZoneOffset.UTC).toString());
+				check.setObservedValue(result.latencyMillis);
+				check.setObservedUnit("ms");
+
+				StringBuilder output = new StringBuilder();
+				if (stale) {
+					output.append("Stale: ");
+				}
+				if (result.error != null) {
+					output.append(result.error).append("; ");
+				}
+				output.append("probed ").append(age.toSeconds()).append("s ago, last success ")
+					.append(probe.lastSuccess != null ? Duration.between(probe.lastSuccess, now).toSeconds() + "s ago" : "never");
+				check.setOutput(output.toString());
+			}
+
+			out.add(check);
 		}
 
-		out.add(tmf620);
-
-		// TMF635
-		Check tmf635 = createCheck("tmf-api", "connectivity", "tmf635");
-
-		try {
-			FetchUtils.streamAll(usageManagementApis::listUsages, null, null, 1).findAny();
-
-			tmf635.setStatus(HealthStatus.PASS);
+		return out;
+	}
 
-		} catch (Exception e) {
-			tmf635.setStatus(HealthStatus.FAIL);
-			tmf635.setOutput(e.toString());
+	/*
+	 * The background probe of a TMForum API dependency. Any failure of the call (including an Error) is reported by the check,
+	 * since a Throwable escaping the task would cancel the next runs of the probe
+	 */
+	private final class Probe {
+
+		private final String dependency;
+		private final Runnable call;
+
+		private final Timer success;
+		private final Timer failure;
+
+		private volatile ProbeResult result;
+		private volatile Instant lastSuccess;
+
+		private Probe(String dependency, Runnable call) {
+			this.dependency = dependency;
+			this.call = call;
+			this.success = Timer.builder("health.probe").tag("dependency", dependency).tag("outcome", "success")
+					.description("Background probe of a TMForum API dependency")
+					.publishPercentileHistogram()
+					.register(Metrics.globalRegistry);
+			this.failure = Timer.builder("health.probe").tag("dependency", dependency).tag("outcome", "failure")
+					.description("Background probe of a TMForum API dependency")
+					.publishPercentileHistogram()
+					.register(Metrics.globalRegistry);
+			Gauge.builder("health.probe.last.success", this, p -> p.lastSuccess != null ? p.lastSuccess.toEpochMilli() / 1000d : Double.NaN)
+					.tag("dependency", dependency)
+					.description("Time (epoch seconds) of the last successful probe of a TMForum API dependency")
+					.baseUnit("seconds")
+					.register(Metrics.globalRegistry);
 		}
 
-		out.add(tmf635);
-		
-		// TMF637
-		Check tmf637 = createCheck("tmf-api", "connectivity", "tmf637");
-
-		try {
-			FetchUtils.streamAll(productInventoryApis::listProducts, null, null, 1).findAny();
-
-			tmf637.setStatus(HealthStatus.PASS);
-
-		} catch (Exception e) {
-			tmf637.setStatus(HealthStatus.FAIL);
-			tmf637.setOutput(e.toString());
+		private void run() {
+			long start = System.nanoTime();
+			HealthStatus status;
+			String error = null;
+			try {
+				call.run();
+				status = HealthStatus.PASS;
+			} catch (Throwable t) {
+				status = HealthStatus.FAIL;
+				error = t.toString();
+				logger.warn("Probe of {} failed: {}", dependency, error);
+			}
+			long nanos = System.nanoTime() - start;
+			Instant probedAt = Instant.now();
+
+			(status == HealthStatus.PASS ? success : failure).record(nanos, TimeUnit.NANOSECONDS);
+			if (status == HealthStatus.PASS) {
+				lastSuccess = probedAt;
+			}
+			result = new ProbeResult(status, error, probedAt, TimeUnit.NANOSECONDS.toMillis(nanos));
 		}
+	}
 
-		out.add(tmf637);
-
-		return out;
+	/*
+	 * The result of the last probe of a dependency (immutable, replaced by each probe)
+	 */
+	private static final class ProbeResult {
+
+		private final HealthStatus status;
+		private final String error;
+		private final Instant probedAt;
+		private final long latencyMillis;
+
+		private ProbeResult(HealthStatus status, String error, Instant probedAt, long latencyMillis) {
+			this.status = status;
+			this.error = error;
+			this.probedAt = probedAt;
+			this.latencyMillis = latencyMillis;
+		}
 	}
 }
@@ -1,26 +1,27 @@
 package it.eng.dome.billing.engine.service;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.Timer;
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
 import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.calculator.PriceCalculationContext;
 import it.eng.dome.billing.engine.price.calculator.PriceCalculator;
 import it.eng.dome.billing.engine.price.calculator.PriceCalculatorFactory;
+import it.eng.dome.billing.engine.utils.BillingMetrics;
+import it.eng.dome.billing.engine.utils.CostProfile;
 import it.eng.dome.billing.engine.utils.OrderPriceUtils;
 import it.eng.dome.billing.engine.utils.PriceTypeKey;
 import it.eng.dome.billing.engine.utils.TMForumEntityUtils;
 import it.eng.dome.billing.engine.validator.TMFEntityValidator;
-import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
-import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.brokerage.model.PriceType;
 import it.eng.dome.brokerage.model.RecurringChargePeriod;
 import it.eng.dome.tmforum.tmf620.v4.ApiException;
@@ -36,18 +37,18 @@ public class PricePreviewService {
 	
 	private final Logger logger = LoggerFactory.getLogger(PricePreviewService.class);
 	
-	@Autowired
-	private ProductCatalogManagementApis productCatalogManagementApis;
+	private final ProductOfferingPriceService productOfferingPriceService;
 	
-	@Autowired
-	private TMFEntityValidator tmfEntityValidator;
+	private final TMFEntityValidator tmfEntityValidator;
 	
-	@Autowired
-	private PriceCalculatorFactory priceCalculatorFactory;
-	
-	//Hash Map to manage aggregation of the OrderPrice
-	private Map<PriceTypeKey, List<OrderPrice>> orderPriceGroups;
+	private final PriceCalculatorFactory priceCalculatorFactory;
 	
+	public PricePreviewService(ProductOfferingPriceService productOfferingPriceService, TMFEntityValidator tmfEntityValidator, 
+			PriceCalculatorFactory priceCalculatorFactory) {
+		this.productOfferingPriceService = productOfferingPriceService;
+		this.tmfEntityValidator = tmfEntityValidator;
+		this.priceCalculatorFactory = priceCalculatorFactory;
+	}
 
 	/**
      * Calculate the prices of the specified {@link ProductOrder}. The list of {@link Usage}, if present, are used to simulate the consumptions and calculate the price for the pay per use plans. The ProductOrder is updated with the calculated prices.
@@ -62,12 +63,14 @@ public class PricePreviewService {
 	public ProductOrder calculateOrderPrice(ProductOrder productOrder, List<Usage> usageData) throws BillingEngineValidationException, IllegalArgumentException, ApiException{
 
 	    
-	    // HashMap to manage aggregation of OrderPrice
-	    this.orderPriceGroups=new HashMap<PriceTypeKey, List<OrderPrice>>();
+	    // Map to manage aggregation of OrderPrice, local to the single calculation (insertion order kept for the orderTotalPrice)
+	    Map<PriceTypeKey, List<OrderPrice>> orderPriceGroups=new LinkedHashMap<PriceTypeKey, List<OrderPrice>>();
 	    
 
 		tmfEntityValidator.validateProductOrder(productOrder);
 		
+		PriceCalculationContext context=PriceCalculationContext.forUsages(usageData);
+		
 		// Iteration over the ProductOrderItem elements of the ProductOrder
 	    for (ProductOrderItem productOrderitem : productOrder.getProductOrderItem()) {
 	    	
@@ -80,19 +83,25 @@ public class PricePreviewService {
 	    		tmfEntityValidator.validateOrderPrice(op, productOrderitem.getId(), productOrder.getId());
 	    		
 	    		// Retrieves from the ProductOfferingPrice
-	    		ProductOfferingPrice pop =ProductOfferingPriceUtils.getProductOfferingPrice(op.getProductOfferingPrice().getId(), productCatalogManagementApis);
+	    		ProductOfferingPrice pop =productOfferingPriceService.getProductOfferingPrice(op.getProductOfferingPrice().getId());
 	    		
 	    		tmfEntityValidator.validateProductOfferingPrice(pop);
 			
 	    		// Retrieves the price calculator for the ProductOfferingPrice
-	    		PriceCalculator<ProductOrderItem, List<OrderPrice>> priceCalculator = priceCalculatorFactory.getPriceCalculatorForProductOrderItem(pop, usageData);
+	    		PriceCalculator<ProductOrderItem, List<OrderPrice>> priceCalculator = priceCalculatorFactory.getPriceCalculatorForProductOrderItem(pop);
 	    		
 	    		// Calculates the OrderPrice(s)
-	    		List<OrderPrice> orderPrices=priceCalculator.calculatePrice(productOrderitem);
+	    		List<OrderPrice> orderPrices;
+	    		Timer.Sample sample=Timer.start();
+	    		try {
+	    			orderPrices=priceCalculator.calculatePrice(productOrderitem, context);
+	    		} finally {
+	    			CostProfile.recordPop(pop.getId(), BillingMetrics.stop(sample, BillingMetrics.priceCalculation(priceCalculator), "priceCalculation"));
+	    		}
 	    		
 	    		itemPriceList.addAll(orderPrices);
 
-	    		updateOrderPriceGroups(orderPrices);
+	    		updateOrderPriceGroups(orderPriceGroups, orderPrices);
 	    	}
 	    	
 	    	// updates the itemPrice element of the ProductOrderItem
@@ -106,7 +115,7 @@ public class PricePreviewService {
 		// Calculate orderTotalPrice over groups aggregating for PriceTypeKey
 		Set<PriceTypeKey> keys= orderPriceGroups.keySet();
 		for(PriceTypeKey key: keys) {
-			OrderPrice orderTotalPriceElement=calculateOrderTotalPriceElement(key);
+			OrderPrice orderTotalPriceElement=calculateOrderTotalPriceElement(key, orderPriceGroups.get(key));
 			productOrder.addOrderTotalPriceItem(orderTotalPriceElement);
 		}
 		
@@ -115,11 +124,12 @@ public class PricePreviewService {
 	}
 	
 	/*
-	 * Updates the hash map of OrderPrice groups adding the specified OrderPrice list 
+	 * Updates the map of OrderPrice groups adding the specified OrderPrice list 
 	 * 
-	 * @param itemPriceList the list of OrderPrice to add to the hash map of OrderPrice 
+	 * @param orderPriceGroups the map of OrderPrice groups of the current calculation
+	 * @param itemPriceList the list of OrderPrice to add to the map of OrderPrice groups
 	 */
-	private void updateOrderPriceGroups(List<OrderPrice> itemPriceList){
+	private static void updateOrderPriceGroups(Map<PriceTypeKey, List<OrderPrice>> orderPriceGroups, List<OrderPrice> itemPriceList){
 		if(itemPriceList!=null) {
 			for(OrderPrice op:itemPriceList) {
 				PriceTypeKey key;
@@ -147,31 +157,30 @@ public class PricePreviewService {
 	 * Calculates the OrderPrice that will be added to the orderTotalPrice element of the ProductOrder aggregating according to the specified key.
 	 * 
 	 * @param key the PriceTypeKey considered for make the aggregation of the prices
+	 * @param orderPrices the OrderPrice(s) of the group with the specified key
 	 * @return the OrderPrice item of the orderTotalPrice element of the ProductOrder
 	 */
-	private OrderPrice calculateOrderTotalPriceElement(PriceTypeKey key) {
+	private OrderPrice calculateOrderTotalPriceElement(PriceTypeKey key, List<OrderPrice> orderPrices) {
 		logger.info("Calculate 'orderTotalPrice' for group with key "+key.toString());
 		
-		float orderTotalPriceAmount = 0F;
-		String currency = null;
+		Money orderTotalPriceAmount = null;
 		
-		List<OrderPrice> orderPrices=orderPriceGroups.get(key);
 		// rounds order prices in a group to calculate the orderTotalPriceAmount
 		for(OrderPrice op:orderPrices) {
-			if(currency==null)
-				currency=OrderPriceUtils.getCurrency(op);
+			if(orderTotalPriceAmount==null)
+				orderTotalPriceAmount=Money.zero(OrderPriceUtils.getCurrency(op));
 			
 			if (OrderPriceUtils.hasAlterations(op))
-				orderTotalPriceAmount += OrderPriceUtils.getAlteredDutyFreePrice(op);
+				orderTotalPriceAmount = orderTotalPriceAmount.add(OrderPriceUtils.getAlteredDutyFreeAmount(op));
 			else
-				orderTotalPriceAmount += OrderPriceUtils.getDutyFreePrice(op);			
+				orderTotalPriceAmount = orderTotalPriceAmount.add(OrderPriceUtils.getDutyFreeAmount(op));			
 		}
 		
-		Money money=new Money(currency,orderTotalPriceAmount);
+		Money money=orderTotalPriceAmount!=null ? orderTotalPriceAmount : Money.zero(null);
 		Price orderTotalPrice=TMForumEntityUtils.createPriceTMF622(money);
 		OrderPrice orderTotalPriceElement=TMForumEntityUtils.createOrderTotalPriceItemTMF622(orderTotalPrice, key);
 		
-		logger.info("Order total price: {} euro ", orderTotalPriceAmount);
+		logger.info("Order total price: {} euro ", money.getAmount());
 		return orderTotalPriceElement;
 	}
 
@@ -0,0 +1,283 @@
+package it.eng.dome.billing.engine.service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
+import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
+import it.eng.dome.tmforum.tmf620.v4.ApiException;
+import it.eng.dome.tmforum.tmf620.v4.model.BundledProductOfferingPriceRelationship;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPriceRelationship;
+import lombok.NonNull;
+
+/**
+ * Service to retrieve the {@link ProductOfferingPrice}(s) from TMForum (TMF620) through a cache shared by the bill and the price preview calculations.
+ * The cache is bounded in size, the entries expire after a TTL (or at the end of the validFor of the ProductOfferingPrice, if earlier) and the ProductOfferingPrice(s) not found
+ * are cached for a shorter TTL (negative caching). The cache is configured in the application.yml file (app.pop-cache).
+ */
+@Service
+public class ProductOfferingPriceService {
+
+	private final Logger logger = LoggerFactory.getLogger(ProductOfferingPriceService.class);
+
+	public static final String CACHE_NAME = "productOfferingPrice";
+
+	private static final int NOT_FOUND = 404;
+
+	private final ProductCatalogManagementApis productCatalogManagementApis;
+
+	private final boolean enabled;
+
+	// key: ProductOfferingPrice identifier, value: the ProductOfferingPrice (empty if not found in TMForum)
+	private final Cache<String, Optional<ProductOfferingPrice>> cache;
+
+	// notified with the identifier of the ProductOfferingPrice removed from the cache, null if all have been removed (e.g., to drop what has been derived from them)
+	private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<Consumer<String>>();
+
+	public ProductOfferingPriceService(ProductCatalogManagementApis productCatalogManagementApis, AppProperties appProperties, ObjectProvider<MeterRegistry> meterRegistry) {
+		this.productCatalogManagementApis = productCatalogManagementApis;
+
+		AppProperties.PopCache popCache = appProperties.getPopCache() != null ? appProperties.getPopCache() : new AppProperties.PopCache();
+		this.enabled = popCache.isEnabled();
+		this.cache = createCache(popCache);
+
+		meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME));
+
+		logger.info("ProductOfferingPrice cache [enabled: {}, maximumSize: {}, ttl: {}, negativeTtl: {}]",
+				popCache.isEnabled(), popCache.getMaximumSize(), popCache.getTtl(), popCache.getNegativeTtl());
+	}
+
+	/**
+	 * Checks if the {@link ProductOfferingPrice}(s) are cached (app.pop-cache.enabled)
+	 *
+	 * @return true if the cache is enabled, false otherwise
+	 */
+	public boolean isCacheEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Registers a listener called when {@link ProductOfferingPrice}(s) are removed from the cache by {@link #invalidate(String)} or {@link #invalidateAll()}
+	 *
+	 * @param listener the listener to call with the identifier of the removed ProductOfferingPrice, null if all of them have been removed
+	 */
+	public void addInvalidationListener(@NonNull Consumer<String> listener) {
+		invalidationListeners.add(listener);
+	}
+
+	/**
+	 * Gets the {@link ProductOfferingPrice} with the specified identifier
+	 *
+	 * @param id the identifier of the {@link ProductOfferingPrice}
+	 * @return the {@link ProductOfferingPrice}, null if not found
+	 * @throws ApiException if some error occurs retrieving the ProductOfferingPrice from TMForum
+	 */
+	public ProductOfferingPrice getProductOfferingPrice(@NonNull String id) throws ApiException {
+		if (!enabled) {
+			return this.retrieveProductOfferingPrice(id);
+		}
+
+		// the concurrent requests of the same ProductOfferingPrice wait for a single retrieval from TMForum
+		try {
+			return cache.get(id, key -> {
+				try {
+					return Optional.ofNullable(this.retrieveProductOfferingPrice(key));
+				} catch (ApiException e) {
+					throw new RetrievalException(e);
+				}
+			}).orElse(null);
+		} catch (RetrievalException e) {
+			throw e.getCause();
+		}
+	}
+
+	/*
+	 * Retrieves the ProductOfferingPrice from TMForum, null if not found
+	 */
+	private ProductOfferingPrice retrieveProductOfferingPrice(String id) throws ApiException {
+		ProductOfferingPrice pop;
+		try {
+			pop = ProductOfferingPriceUtils.getProductOfferingPrice(id, productCatalogManagementApis);
+		} catch (ApiException e) {
+			if (e.getCode() != NOT_FOUND) {
+				throw e;
+			}
+			pop = null;
+		}
+
+		if (pop == null) {
+			logger.warn("ProductOfferingPrice '{}' not found", id);
+		}
+
+		return pop;
+	}
+
+	/**
+	 * Gets the {@link ProductOfferingPrice}(s) referred by the specified list of {@link BundledProductOfferingPriceRelationship}
+	 *
+	 * @param bundledPopRelationships the list of {@link BundledProductOfferingPriceRelationship} of a bundled ProductOfferingPrice
+	 * @return the list of bundled {@link ProductOfferingPrice} (the ones not found are skipped)
+	 * @throws ApiException if some error occurs retrieving the ProductOfferingPrice(s) from TMForum
+	 */
+	public List<ProductOfferingPrice> getBundledProductOfferingPrices(List<BundledProductOfferingPriceRelationship> bundledPopRelationships) throws ApiException {
+		List<ProductOfferingPrice> pops = new ArrayList<ProductOfferingPrice>();
+
+		if (bundledPopRelationships != null) {
+			for (BundledProductOfferingPriceRelationship bundledPopRelationship : bundledPopRelationships) {
+				ProductOfferingPrice pop = this.getProductOfferingPrice(bundledPopRelationship.getId());
+				if (pop != null) {
+					pops.add(pop);
+				}
+			}
+		}
+
+		return pops;
+	}
+
+	/**
+	 * Gets the {@link ProductOfferingPrice}(s) referred by the specified list of {@link ProductOfferingPriceRelationship} (e.g., the price alterations)
+	 *
+	 * @param popRelationships the list of {@link ProductOfferingPriceRelationship} of a ProductOfferingPrice
+	 * @return the list of related {@link ProductOfferingPrice} (the ones not found are skipped)
+	 * @throws ApiException if some error occurs retrieving the ProductOfferingPrice(s) from TMForum
+	 */
+	public List<ProductOfferingPrice> getProductOfferingPriceRelationships(List<ProductOfferingPriceRelationship> popRelationships) throws ApiException {
+		List<ProductOfferingPrice> pops = new ArrayList<ProductOfferingPrice>();
+
+		if (popRelationships != null) {
+			for (ProductOfferingPriceRelationship popRelationship : popRelationships) {
+				ProductOfferingPrice pop = this.getProductOfferingPrice(popRelationship.getId());
+				if (pop != null) {
+					pops.add(pop);
+				}
+			}
+		}
+
+		return pops;
+	}
+
+	/**
+	 * Removes from the cache the {@link ProductOfferingPrice} with the specified identifier
+	 *
+	 * @param id the identifier of the {@link ProductOfferingPrice}
+	 */
+	public void invalidate(@NonNull String id) {
+		logger.info("Invalidating ProductOfferingPrice '{}' in cache", id);
+		cache.invalidate(id);
+		invalidationListeners.forEach(listener -> listener.accept(id));
+	}
+
+	/**
+	 * Removes all the {@link ProductOfferingPrice}(s) from the cache
+	 */
+	public void invalidateAll() {
+		logger.info("Invalidating all the ProductOfferingPrice(s) in cache");
+		cache.invalidateAll();
+		invalidationListeners.forEach(listener -> listener.accept(null));
+	}
+
+	/**
+	 * Returns the statistics of the cache (e.g., hit and miss count)
+	 *
+	 * @return the {@link CacheStats} of the cache
+	 */
+	public CacheStats getStatistics() {
+		return cache.stats();
+	}
+
+	/**
+	 * Returns the number of {@link ProductOfferingPrice}(s) in cache (including the not found ones)
+	 *
+	 * @return the estimated number of entries in cache
+	 */
+	public long getSize() {
+		return cache.estimatedSize();
+	}
+
+	private static Cache<String, Optional<ProductOfferingPrice>> createCache(AppProperties.PopCache popCache) {
+		return Caffeine.newBuilder()
+				.maximumSize(popCache.getMaximumSize())
+				.expireAfter(new ProductOfferingPriceExpiry(popCache.getTtl(), popCache.getNegativeTtl()))
+				.recordStats()
+				.build();
+	}
+
+	/*
+	 * Expiration of the cache entries: negativeTtl for the ProductOfferingPrice(s) not found,
+	 * ttl (or the end of the validFor if earlier) for the found ones
+	 */
+	private static final class ProductOfferingPriceExpiry implements Expiry<String, Optional<ProductOfferingPrice>> {
+
+		private final long ttlNanos;
+		private final long negativeTtlNanos;
+
+		ProductOfferingPriceExpiry(Duration ttl, Duration negativeTtl) {
+			this.ttlNanos = ttl.toNanos();
+			this.negativeTtlNanos = negativeTtl.toNanos();
+		}
+
+		@Override
+		public long expireAfterCreate(String key, Optional<ProductOfferingPrice> value, long currentTime) {
+			if (value.isEmpty()) {
+				return negativeTtlNanos;
+			}
+
+			ProductOfferingPrice pop = value.get();
+			if (pop.getValidFor() != null && pop.getValidFor().getEndDateTime() != null) {
+				long untilEndOfValidity = Duration.between(OffsetDateTime.now(), pop.getValidFor().getEndDateTime()).toNanos();
+				if (untilEndOfValidity > 0) {
+					return Math.min(ttlNanos, untilEndOfValidity);
+				}
+			}
+
+			return ttlNanos;
+		}
+
+		@Override
+		public long expireAfterUpdate(String key, Optional<ProductOfferingPrice> value, long currentTime, long currentDuration) {
+			return expireAfterCreate(key, value, currentTime);
+		}
+
+		@Override
+		public long expireAfterRead(String key, Optional<ProductOfferingPrice> value, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
+	}
+
+	/*
+	 * Carries the ApiException out of the loader of the cache, that cannot throw checked exceptions
+	 */
+	private static final class RetrievalException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		RetrievalException(ApiException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized ApiException getCause() {
+			return (ApiException) super.getCause();
+		}
+	}
+
+}
@@ -4,17 +4,19 @@ import java.time.OffsetDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.Timer;
 import it.eng.dome.billing.engine.exception.BillingBadRequestException;
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.price.calculator.CharacteristicTierIndex;
+import it.eng.dome.billing.engine.utils.BillingMetrics;
 import it.eng.dome.billing.engine.validator.TMFEntityValidator;
-import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
-import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.brokerage.model.BillCycle;
 import it.eng.dome.brokerage.model.PriceType;
 import it.eng.dome.tmforum.tmf620.v4.ApiException;
@@ -33,12 +35,23 @@ public class ProductPriceService {
 	private TMFEntityValidator tmfEntityValidator;
 	
 	@Autowired
-	private ProductCatalogManagementApis productCatalogManagementApis;
+	private ProductOfferingPriceService productOfferingPriceService;
 	
 	@Autowired
 	private BillCycleService billCycleService;
 	
 	public Map<ProductOfferingPrice, List<BillCycle>> getPOPBillCyclesInBillingPeriod(@NotNull Product prod, @NotNull TimePeriod billingPeriod) throws BillingEngineValidationException, IllegalArgumentException, ApiException, BillingBadRequestException{
+		Timer.Sample sample=Timer.start();
+		try {
+			Map<ProductOfferingPrice, List<BillCycle>> popBillCyclesMap=this.retrievePOPBillCyclesInBillingPeriod(prod, billingPeriod);
+			BillingMetrics.POP_BILL_CYCLES_POPS.record(popBillCyclesMap.values().stream().filter(billCycles -> !billCycles.isEmpty()).count());
+			return popBillCyclesMap;
+		} finally {
+			BillingMetrics.stop(sample, BillingMetrics.POP_BILL_CYCLES, "popBillCycles");
+		}
+	}
+	
+	private Map<ProductOfferingPrice, List<BillCycle>> retrievePOPBillCyclesInBillingPeriod(@NotNull Product prod, @NotNull TimePeriod billingPeriod) throws BillingEngineValidationException, IllegalArgumentException, ApiException, BillingBadRequestException{
 		logger.info(String.format("Retrieving the ProductOfferingPrice(s) in the ProductPrice list of Product '%s' and the billCycles that must be billed in the billingPeriod ['%s'-'%s']", prod.getId(),billingPeriod.getStartDateTime().toString(), billingPeriod.getEndDateTime().toString()));
 		
 		Map<ProductOfferingPrice, List<BillCycle>> popBillCyclesMap=new HashMap<ProductOfferingPrice, List<BillCycle>>();
@@ -48,15 +61,23 @@ public class ProductPriceService {
 		for(ProductPrice pp:productPrices) {
 			tmfEntityValidator.validateProductPrice(pp,prod.getId());
 			
-			ProductOfferingPrice pop=ProductOfferingPriceUtils.getProductOfferingPrice(pp.getProductOfferingPrice().getId(), productCatalogManagementApis);
+			ProductOfferingPrice pop=productOfferingPriceService.getProductOfferingPrice(pp.getProductOfferingPrice().getId());
 			
 			if(pop!=null) {
 				tmfEntityValidator.validateProductOfferingPrice(pop);
 				if(pop.getIsBundle()) {
-					List<ProductOfferingPrice> bundledPops= ProductOfferingPriceUtils.getBundledProductOfferingPrices(pop.getBundledPopRelationship(), productCatalogManagementApis);
+					List<ProductOfferingPrice> bundledPops= productOfferingPriceService.getBundledProductOfferingPrices(pop.getBundledPopRelationship());
 					for(ProductOfferingPrice bundledPop: bundledPops) {
 						tmfEntityValidator.validateProductOfferingPrice(bundledPop);
-						popBillCyclesMap.put(bundledPop, this.getPOPBillCyclesInBillingPeriod(bundledPop, prod.getStartDate(), billingPeriod));
+					}
+					
+					if(isBilledAsTiers(bundledPops)) {
+						// the tiers are priced together by the BundledPriceCalculator (only the tier(s) of the characteristic's value), in the bill cycles of the tiers
+						popBillCyclesMap.put(pop, this.getPOPBillCyclesInBillingPeriod(bundledPops.get(0), prod.getStartDate(), billingPeriod));
+					}else {
+						for(ProductOfferingPrice bundledPop: bundledPops) {
+							popBillCyclesMap.put(bundledPop, this.getPOPBillCyclesInBillingPeriod(bundledPop, prod.getStartDate(), billingPeriod));
+						}
 					}
 				}else {
 					popBillCyclesMap.put(pop, this.getPOPBillCyclesInBillingPeriod(pop, prod.getStartDate(), billingPeriod));
@@ -74,13 +95,32 @@ public class ProductPriceService {
 		return popBillCyclesMap;
 	}
 	
+	/*
+	 * Checks if the bundled POPs are tiers of a number characteristic (see CharacteristicTierIndex) with the same bill cycles, i.e. the same priceType and recurringChargePeriod
+	 */
+	private static boolean isBilledAsTiers(List<ProductOfferingPrice> bundledPops) {
+		if(CharacteristicTierIndex.of(bundledPops)==null) {
+			return false;
+		}
+		
+		ProductOfferingPrice first=bundledPops.get(0);
+		for(ProductOfferingPrice tier: bundledPops) {
+			if(!first.getPriceType().equalsIgnoreCase(tier.getPriceType()) 
+					|| !Objects.equals(first.getRecurringChargePeriodType(), tier.getRecurringChargePeriodType())
+					|| !Objects.equals(first.getRecurringChargePeriodLength(), tier.getRecurringChargePeriodLength())) {
+				logger.warn("The tiers of the bundled ProductOfferingPrice(s) have different bill cycles: they are billed separately");
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	private List<BillCycle> getPOPBillCyclesInBillingPeriod(@NotNull ProductOfferingPrice pop, @NotNull OffsetDateTime activationDate, @NotNull TimePeriod billingPeriod) throws BillingBadRequestException{
 		 
 		logger.debug("Get billCycles in billingPeriod [{}-{}] for POP {} priceType {}",billingPeriod.getStartDateTime(),
 				billingPeriod.getEndDateTime(), pop.getId(), PriceType.fromString(pop.getPriceType()));
 		
-		List<BillCycle> billCycles=billCycleService.getBillCycles(pop, activationDate, billingPeriod.getEndDateTime());
-		List<BillCycle> billCyclesInBillingPeriod=billCycleService.getBillCyclesInBillingPeriod(billCycles, billingPeriod);
+		List<BillCycle> billCyclesInBillingPeriod=billCycleService.getBillCyclesInBillingPeriod(pop, activationDate, billingPeriod);
 		
 		logger.debug("BillDates in billingPeriod {}",billCycleService.getBillDates(billCyclesInBillingPeriod));
 
@@ -0,0 +1,238 @@
+package it.eng.dome.billing.engine.service;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.exception.BillingBadRequestException;
+import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.rating.UsageAggregate;
+import it.eng.dome.billing.engine.rating.UsageAggregateStore;
+import it.eng.dome.billing.engine.rating.UsageRating;
+import it.eng.dome.billing.engine.utils.TMForumEntityUtils;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.tmforum.tmf635.v4.model.RatedProductUsage;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Service to aggregate the {@link Usage}(s) as they are pushed to the billing engine (e.g., by the TMForum event hub with the UsageCreateEvent(s)).
+ * Each Usage is added to the {@link UsageAggregate} of its {@link Product}(s) and day, stored by a {@link UsageAggregateStore} (app.ingestion.directory),
+ * so the usage price calculation reads the totals of the days instead of retrieving and rating all the Usage(s) of the billing period.
+ * <p>
+ * When the first Usage of a Product and day is pushed, the Usage(s) of the day already in TMForum are retrieved and aggregated too:
+ * afterwards the aggregate is kept up to date by the push alone. The Usage(s) of the days without an aggregate, or with Usage(s) outside
+ * the billing period, are retrieved from TMForum at bill time.
+ * <p>
+ * The aggregates recently updated or read are kept in memory (app.ingestion.cache-size): a pushed Usage is added to the aggregate in memory
+ * and appended to its log, while the whole aggregate is saved every app.ingestion.checkpoint-interval Usage(s).
+ */
+@Service
+public class UsageIngestionService {
+
+	private final static Logger logger = LoggerFactory.getLogger(UsageIngestionService.class);
+
+	private static final int LOCK_STRIPES = 64;
+
+	private final UsageService usageService;
+
+	private final TMFEntityValidator tmfEntityValidator;
+
+	private final UsageAggregateStore store;
+
+	private final boolean enabled;
+
+	private final int checkpointInterval;
+
+	// key: Product's identifier and day
+	private final Cache<String, UsageAggregate> aggregates;
+
+	// the updates of the same Product and day are serialized
+	private final Object[] locks = new Object[LOCK_STRIPES];
+
+	public UsageIngestionService(UsageService usageService, TMFEntityValidator tmfEntityValidator, ObjectMapper objectMapper, AppProperties appProperties) {
+		this.usageService = usageService;
+		this.tmfEntityValidator = tmfEntityValidator;
+
+		AppProperties.Ingestion ingestionProperties = appProperties.getIngestion() != null ? appProperties.getIngestion() : new AppProperties.Ingestion();
+		this.store = new UsageAggregateStore(Paths.get(ingestionProperties.getDirectory()), objectMapper);
+		this.enabled = ingestionProperties.isEnabled();
+		this.checkpointInterval = ingestionProperties.getCheckpointInterval();
+		this.aggregates = Caffeine.newBuilder()
+				.maximumSize(ingestionProperties.getCacheSize())
+				.build();
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new Object();
+		}
+
+		logger.info("Usage ingestion [enabled: {}, directory: {}, checkpointInterval: {}, cacheSize: {}]", enabled,
+				Paths.get(ingestionProperties.getDirectory()).toAbsolutePath(), checkpointInterval, ingestionProperties.getCacheSize());
+	}
+
+	/**
+	 * Checks if the current spend reads the aggregates of the pushed Usage(s) (app.ingestion.enabled).
+	 * It must be enabled only if all the Usage(s) are pushed to the billing engine.
+	 *
+	 * @return true if the aggregates are used by the current spend, false otherwise
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Adds the {@link Usage} to the aggregates of the day of its usageDate, for each {@link Product} it refers to
+	 *
+	 * @param usage the {@link Usage} pushed
+	 * @return the identifiers of the Product(s) whose aggregate has been created or updated (empty if the Usage had already been aggregated)
+	 * @throws BillingBadRequestException if the Usage has no usageDate or doesn't refer to any Product
+	 * @throws BillingEngineValidationException if the Usage, or a Usage of the same day retrieved from TMForum, is not valid
+	 */
+	public List<String> ingest(@NotNull Usage usage) throws BillingBadRequestException, BillingEngineValidationException {
+		if (usage.getUsageDate() == null) {
+			throw new BillingBadRequestException(String.format("Missing the usageDate in the Usage '%s'", usage.getId()));
+		}
+
+		Set<String> productIds = new LinkedHashSet<String>();
+		if (usage.getRatedProductUsage() != null) {
+			for (RatedProductUsage rpu : usage.getRatedProductUsage()) {
+				if (rpu != null && rpu.getProductRef() != null && rpu.getProductRef().getId() != null) {
+					productIds.add(rpu.getProductRef().getId());
+				}
+			}
+		}
+		if (productIds.isEmpty()) {
+			throw new BillingBadRequestException(String.format("The Usage '%s' doesn't refer to any Product (ratedProductUsage.productRef)", usage.getId()));
+		}
+
+		tmfEntityValidator.validateUsage(usage);
+
+		LocalDate day = usage.getUsageDate().withOffsetSameInstant(ZoneOffset.UTC).toLocalDate();
+		UsageAggregate.Delta delta = UsageAggregate.Delta.of(usage);
+		List<String> aggregated = new ArrayList<String>();
+		for (String productId : productIds) {
+			synchronized (this.lockOf(productId, day)) {
+				String key = productId + "|" + day;
+				UsageAggregate aggregate = aggregates.get(key, k -> store.load(productId, day));
+				if (aggregate == null) {
+					// the Usage could already be in TMForum when the aggregate is created
+					aggregate = this.seed(productId, day);
+					aggregate.add(delta);
+					aggregate.setUpdatedAt(OffsetDateTime.now());
+					store.save(aggregate);
+					aggregates.put(key, aggregate);
+					aggregated.add(productId);
+				} else if (aggregate.add(delta)) {
+					aggregate.setUpdatedAt(OffsetDateTime.now());
+					try {
+						store.append(aggregate, delta);
+						if (aggregate.getAppendedUsages() >= checkpointInterval) {
+							store.save(aggregate);
+						}
+					} catch (UncheckedIOException e) {
+						// the aggregate in memory is reloaded from the store
+						aggregates.invalidate(key);
+						throw e;
+					}
+					aggregated.add(productId);
+				}
+			}
+		}
+
+		logger.debug("Usage '{}' of {} aggregated for the Product(s) {}", usage.getId(), day, aggregated);
+		return aggregated;
+	}
+
+	/**
+	 * Returns the totals of the {@link Usage}(s) of the {@link Product} in the billing period: the days with an aggregate
+	 * are read from it, while the Usage(s) of the other days are retrieved from TMForum
+	 *
+	 * @param productId the identifier of the {@link Product}
+	 * @param billingPeriod the {@link TimePeriod} of the billing period
+	 * @return the totals of the Usage(s) of the Product in the billing period
+	 * @throws BillingEngineValidationException if some Usage retrieved from TMForum is not valid
+	 */
+	public UsageRating getTotals(@NotNull String productId, @NotNull TimePeriod billingPeriod) throws BillingEngineValidationException {
+		OffsetDateTime start = billingPeriod.getStartDateTime();
+		OffsetDateTime end = billingPeriod.getEndDateTime();
+
+		UsageRating totals = new UsageRating(productId, billingPeriod);
+		int aggregatedDays = 0;
+		// start of the Usage(s) to retrieve from TMForum, null if the previous day has been read from its aggregate
+		OffsetDateTime retrieveFrom = null;
+
+		LocalDate last = end.withOffsetSameInstant(ZoneOffset.UTC).toLocalDate();
+		for (LocalDate day = start.withOffsetSameInstant(ZoneOffset.UTC).toLocalDate(); !day.isAfter(last); day = day.plusDays(1)) {
+			OffsetDateTime dayStart = day.atStartOfDay().atOffset(ZoneOffset.UTC);
+
+			// the aggregate of a day partially in the billing period is used only if all its Usage(s) fall within the billing period
+			boolean read = false;
+			synchronized (this.lockOf(productId, day)) {
+				LocalDate aggregateDay = day;
+				UsageAggregate aggregate = aggregates.get(productId + "|" + day, k -> store.load(productId, aggregateDay));
+				if (aggregate != null && aggregate.isWithin(start, end)) {
+					totals.add(aggregate);
+					read = true;
+				}
+			}
+			if (read) {
+				// the totals of the Usage(s) retrieved are added after the ones of the aggregate (the order doesn't change the totals)
+				if (retrieveFrom != null) {
+					totals.add(this.retrieve(productId, retrieveFrom, dayStart.minusNanos(1)));
+					retrieveFrom = null;
+				}
+				aggregatedDays++;
+			} else if (retrieveFrom == null) {
+				retrieveFrom = dayStart.isBefore(start) ? start : dayStart;
+			}
+		}
+		if (retrieveFrom != null) {
+			totals.add(this.retrieve(productId, retrieveFrom, end));
+		}
+		totals.setUpdatedAt(OffsetDateTime.now());
+
+		logger.debug("Totals of the Usage(s) of Product '{}' in [{} - {}]: {} Usage(s), {} day(s) read from the aggregates",
+				productId, start, end, totals.getRatedUsages(), aggregatedDays);
+		return totals;
+	}
+
+	/*
+	 * Creates the aggregate of a day with the Usage(s) already in TMForum
+	 */
+	private UsageAggregate seed(String productId, LocalDate day) throws BillingEngineValidationException {
+		OffsetDateTime dayStart = day.atStartOfDay().atOffset(ZoneOffset.UTC);
+		UsageAggregate aggregate = this.retrieve(productId, dayStart, dayStart.plusDays(1).minusNanos(1));
+		aggregate.setDay(day);
+		return aggregate;
+	}
+
+	private UsageAggregate retrieve(String productId, OffsetDateTime start, OffsetDateTime end) throws BillingEngineValidationException {
+		List<Usage> usages = usageService.getUsages(productId, TMForumEntityUtils.createTimePeriod678(start, end));
+		tmfEntityValidator.validateUsages(usages);
+
+		UsageAggregate aggregate = new UsageAggregate(productId, null);
+		usages.forEach(aggregate::add);
+		return aggregate;
+	}
+
+	private Object lockOf(String productId, LocalDate day) {
+		return locks[Math.floorMod((productId + "|" + day).hashCode(), LOCK_STRIPES)];
+	}
+
+}
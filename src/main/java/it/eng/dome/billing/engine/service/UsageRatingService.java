@@ -0,0 +1,156 @@
+package it.eng.dome.billing.engine.service;
+
+import java.nio.file.Paths;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.dto.UsageReconciliationDTO;
+import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.rating.UsageRating;
+import it.eng.dome.billing.engine.rating.UsageRatingStore;
+import it.eng.dome.billing.engine.utils.TMForumEntityUtils;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Service to rate the {@link Usage}(s) of a {@link Product} incrementally. The running totals of each Product and bill cycle are persisted
+ * by a {@link UsageRatingStore} (app.rating.directory) with the high-water mark of the Usage(s) already rated: each rating retrieves from TMForum
+ * only the Usage(s) with usageDate not before the high-water mark and adds to the totals only the ones after it.
+ * <p>
+ * The Usage(s) created in TMForum with a usageDate before the high-water mark are not rated incrementally:
+ * the running totals are verified, and replaced, by a full recompute with {@link #reconcile(String, TimePeriod)}.
+ */
+@Service
+public class UsageRatingService {
+
+	private final static Logger logger = LoggerFactory.getLogger(UsageRatingService.class);
+
+	private static final int LOCK_STRIPES = 64;
+
+	private static final Comparator<Usage> RATING_ORDER = Comparator
+			.comparing((Usage usage) -> usage.getUsageDate().toInstant())
+			.thenComparing(usage -> usage.getId() == null ? "" : usage.getId());
+
+	private final UsageService usageService;
+
+	private final TMFEntityValidator tmfEntityValidator;
+
+	private final UsageRatingStore store;
+
+	// the ratings of the same Product and bill cycle are serialized
+	private final Object[] locks = new Object[LOCK_STRIPES];
+
+	public UsageRatingService(UsageService usageService, TMFEntityValidator tmfEntityValidator, ObjectMapper objectMapper, AppProperties appProperties) {
+		this.usageService = usageService;
+		this.tmfEntityValidator = tmfEntityValidator;
+
+		AppProperties.Rating ratingProperties = appProperties.getRating() != null ? appProperties.getRating() : new AppProperties.Rating();
+		this.store = new UsageRatingStore(Paths.get(ratingProperties.getDirectory()), objectMapper);
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new Object();
+		}
+
+		logger.info("Usage ratings [directory: {}]", Paths.get(ratingProperties.getDirectory()).toAbsolutePath());
+	}
+
+	/**
+	 * Rates the {@link Usage}(s) of the {@link Product} in the bill cycle created after the last rating and returns the updated running totals
+	 *
+	 * @param productId the identifier of the {@link Product}
+	 * @param billCycle the {@link TimePeriod} of the bill cycle
+	 * @return the running totals of the Usage(s) of the Product in the bill cycle
+	 * @throws BillingEngineValidationException if some new Usage is not valid (the running totals are not updated)
+	 */
+	public UsageRating rate(@NotNull String productId, @NotNull TimePeriod billCycle) throws BillingEngineValidationException {
+		synchronized (this.lockOf(productId, billCycle)) {
+			UsageRating rating = store.load(productId, billCycle);
+			if (rating == null) {
+				rating = new UsageRating(productId, billCycle);
+			}
+
+			// the Usage(s) with the usageDate of the high-water mark are retrieved again and skipped by identifier
+			TimePeriod period = billCycle;
+			if (rating.getLastUsageDate() != null) {
+				period = TMForumEntityUtils.createTimePeriod678(rating.getLastUsageDate(), billCycle.getEndDateTime());
+			}
+
+			List<Usage> newUsages = new ArrayList<Usage>();
+			for (Usage usage : this.sort(usageService.getUsages(productId, period))) {
+				if (rating.isAfterHighWaterMark(usage)) {
+					newUsages.add(usage);
+				}
+			}
+			tmfEntityValidator.validateUsages(newUsages);
+
+			newUsages.forEach(rating::add);
+			rating.setUpdatedAt(OffsetDateTime.now());
+			store.save(rating);
+
+			logger.info("Rated {} new Usage(s) of Product '{}' in [{} - {}] ({} Usage(s) rated)",
+					newUsages.size(), productId, billCycle.getStartDateTime(), billCycle.getEndDateTime(), rating.getRatedUsages());
+			return rating;
+		}
+	}
+
+	/**
+	 * Recomputes the totals of all the {@link Usage}(s) of the {@link Product} in the bill cycle, compares them with the running totals and replaces them
+	 *
+	 * @param productId the identifier of the {@link Product}
+	 * @param billCycle the {@link TimePeriod} of the bill cycle
+	 * @return the {@link UsageReconciliationDTO} with the differences between the running and the recomputed totals
+	 * @throws BillingEngineValidationException if some Usage is not valid (the running totals are not replaced)
+	 */
+	public UsageReconciliationDTO reconcile(@NotNull String productId, @NotNull TimePeriod billCycle) throws BillingEngineValidationException {
+		synchronized (this.lockOf(productId, billCycle)) {
+			UsageRating stored = store.load(productId, billCycle);
+
+			List<Usage> usages = this.sort(usageService.getUsages(productId, billCycle));
+			tmfEntityValidator.validateUsages(usages);
+
+			UsageRating recomputed = new UsageRating(productId, billCycle);
+			usages.forEach(recomputed::add);
+			recomputed.setUpdatedAt(OffsetDateTime.now());
+			recomputed.setReconciledAt(recomputed.getUpdatedAt());
+			store.save(recomputed);
+
+			UsageReconciliationDTO reconciliation = UsageReconciliationDTO.of(stored, recomputed);
+			if (stored != null && !reconciliation.isConsistent()) {
+				logger.warn("The running totals of Product '{}' in [{} - {}] differ from the recomputed ones for the metric(s) {}", productId,
+						billCycle.getStartDateTime(), billCycle.getEndDateTime(), reconciliation.getDifferences().stream().map(UsageReconciliationDTO.MetricDifference::getMetric).toList());
+			}
+			return reconciliation;
+		}
+	}
+
+	/*
+	 * The Usage(s) are rated in order of usageDate and identifier, the order of the high-water mark
+	 */
+	private List<Usage> sort(List<Usage> usages) {
+		List<Usage> sorted = new ArrayList<Usage>(usages.size());
+		for (Usage usage : usages) {
+			if (usage.getUsageDate() != null) {
+				sorted.add(usage);
+			}
+		}
+		sorted.sort(RATING_ORDER);
+		return sorted;
+	}
+
+	private Object lockOf(String productId, TimePeriod billCycle) {
+		int hash = (productId + "|" + billCycle.getStartDateTime().toInstant() + "|" + billCycle.getEndDateTime().toInstant()).hashCode();
+		return locks[Math.floorMod(hash, LOCK_STRIPES)];
+	}
+
+}
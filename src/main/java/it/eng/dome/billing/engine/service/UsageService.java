@@ -0,0 +1,71 @@
+package it.eng.dome.billing.engine.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.utils.UsageUtils;
+import it.eng.dome.brokerage.api.UsageManagementApis;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+import lombok.NonNull;
+
+/**
+ * Service to retrieve the {@link Usage}(s) of a {@link Product} from TMForum.
+ * The product identifier and the {@link TimePeriod} are pushed down to TMForum as query filters, unless the server-side filter is disabled in the application.yml file (app.usage.server-side-filter). 
+ */
+@Service
+public class UsageService {
+	
+	private final Logger logger = LoggerFactory.getLogger(UsageService.class);
+	
+	private final UsageManagementApis usageManagementApis;
+	private final AppProperties.Usage usageProperties;
+	
+	public UsageService(UsageManagementApis usageManagementApis, AppProperties appProperties) {
+		this.usageManagementApis = usageManagementApis;
+		this.usageProperties = appProperties.getUsage() != null ? appProperties.getUsage() : new AppProperties.Usage();
+	}
+	
+	/**
+	 * Gets all {@link Usage} related to the {@link Product} with the specified identifier and belonging to the specified {@link TimePeriod}
+	 * 
+	 * @param productId the identifier of the {@link Product}
+	 * @param tp the {@link TimePeriod} in which the usageDate must fall
+	 * @return A list of Usage (empty if no Usage is found)
+	 */
+	public List<Usage> getUsages(@NonNull String productId, @NonNull TimePeriod tp){
+		int pageSize = usageProperties.getPageSize() > 0 ? usageProperties.getPageSize() : UsageUtils.DEFAULT_PAGE_SIZE;
+		
+		logger.debug("Retrieving Usage of Product '{}' in [{} - {}] (serverSideFilter: {}, pageSize: {})", 
+				productId, tp.getStartDateTime(), tp.getEndDateTime(), usageProperties.isServerSideFilter(), pageSize);
+		
+		List<Usage> usages = UsageUtils.getUsages(productId, tp, usageManagementApis, 
+				usageProperties.isServerSideFilter(), usageProperties.getFields(), pageSize);
+		
+		if (usages == null) {
+			return new ArrayList<Usage>();
+		}
+		
+		logger.debug("Usage found for Product '{}': {}", productId, usages.size());
+		return usages;
+	}
+	
+	/**
+	 * Creates a {@link UsageSnapshot} of the {@link Usage}(s) of the {@link Product} with the specified identifier in the specified window.
+	 * The Usage(s) are retrieved from TMForum only once, when the first usage price calculation requests them.
+	 * 
+	 * @param productId the identifier of the {@link Product}
+	 * @param window the {@link TimePeriod} covering all the bill cycles of the billing run
+	 * @return the {@link UsageSnapshot}
+	 */
+	public UsageSnapshot createSnapshot(@NonNull String productId, @NonNull TimePeriod window) {
+		return new UsageSnapshot(productId, window, () -> this.getUsages(productId, window));
+	}
+
+}
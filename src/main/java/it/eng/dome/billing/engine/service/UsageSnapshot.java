@@ -0,0 +1,172 @@
+package it.eng.dome.billing.engine.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+import it.eng.dome.billing.engine.utils.UsageIndex;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+import lombok.NonNull;
+
+/**
+ * The {@link Usage}(s) of a {@link Product} in a time window (e.g., the union of the bill cycles of a billing run), retrieved from TMForum at most once, 
+ * on the first request, and shared by all the usage price calculations of the run. The Usage(s) are sorted by usageDate, 
+ * so the Usage(s) of a sub-period (e.g., a bill cycle) are found with a binary search, and indexed by metric in a {@link UsageIndex}. The snapshot can be used concurrently.
+ */
+public final class UsageSnapshot {
+	
+	private final String productId;
+	private final TimePeriod window;
+	private final Supplier<List<Usage>> loader;
+	
+	private volatile TimeIndex index;
+	
+	/**
+	 * Creates the snapshot of the {@link Usage}(s) of a {@link Product}
+	 * 
+	 * @param productId the identifier of the {@link Product}
+	 * @param window the {@link TimePeriod} covered by the snapshot
+	 * @param loader the function retrieving the Usage(s) of the Product in the window (invoked at most once)
+	 */
+	public UsageSnapshot(@NonNull String productId, @NonNull TimePeriod window, @NonNull Supplier<List<Usage>> loader) {
+		this.productId = productId;
+		this.window = window;
+		this.loader = loader;
+	}
+	
+	public String getProductId() {
+		return productId;
+	}
+
+	public TimePeriod getWindow() {
+		return window;
+	}
+	
+	/**
+	 * Checks if the snapshot can provide the {@link Usage}(s) of the specified {@link Product} in the specified {@link TimePeriod}
+	 * 
+	 * @param productId the identifier of the {@link Product}
+	 * @param tp the {@link TimePeriod}
+	 * @return true if the snapshot refers to the Product and its window includes the TimePeriod, false otherwise
+	 */
+	public boolean covers(String productId, TimePeriod tp) {
+		return this.productId.equals(productId) && tp != null &&
+				!tp.getStartDateTime().isBefore(window.getStartDateTime()) &&
+				!tp.getEndDateTime().isAfter(window.getEndDateTime());
+	}
+	
+	/**
+	 * Gets the {@link Usage}(s) with usageDate within the specified {@link TimePeriod} (bounds included), retrieving the Usage(s) of the whole window at the first call
+	 * 
+	 * @param tp the {@link TimePeriod}, included in the window of the snapshot
+	 * @return the list of Usage sorted by usageDate (unmodifiable)
+	 */
+	public List<Usage> getUsages(@NonNull TimePeriod tp) {
+		if (!this.covers(productId, tp)) {
+			throw new IllegalArgumentException(String.format("The period [%s - %s] is not included in the UsageSnapshot of Product '%s'", 
+					tp.getStartDateTime(), tp.getEndDateTime(), productId));
+		}
+		
+		TimeIndex index = this.getIndex();
+		int from = index.firstNotBefore(tp.getStartDateTime().toInstant());
+		int to = index.firstAfter(tp.getEndDateTime().toInstant());
+		
+		return Collections.unmodifiableList(Arrays.asList(index.usages).subList(from, Math.max(from, to)));
+	}
+	
+	/**
+	 * Gets the {@link UsageIndex} of the {@link Usage}(s) of the whole window, retrieving the Usage(s) at the first call.
+	 * The quantity of a metric in a sub-period is read from the index with {@link UsageIndex#sum(String, TimePeriod)}
+	 * 
+	 * @return the {@link UsageIndex} of the snapshot
+	 */
+	public UsageIndex getUsageIndex() {
+		return this.getIndex().usageIndex;
+	}
+	
+	/**
+	 * Checks if the {@link Usage}(s) have already been retrieved
+	 * 
+	 * @return true if the Usage(s) have been retrieved, false otherwise
+	 */
+	public boolean isLoaded() {
+		return index != null;
+	}
+	
+	private TimeIndex getIndex() {
+		TimeIndex result = index;
+		if (result == null) {
+			synchronized (this) {
+				result = index;
+				if (result == null) {
+					result = new TimeIndex(loader.get());
+					index = result;
+				}
+			}
+		}
+		return result;
+	}
+	
+	/*
+	 * The Usage(s) sorted by usageDate, with the usageDate(s) in a separate array for the binary search
+	 */
+	private static final class TimeIndex {
+		
+		private final Usage[] usages;
+		private final Instant[] usageDates;
+		private final UsageIndex usageIndex;
+		
+		TimeIndex(List<Usage> list) {
+			List<Usage> dated = new ArrayList<Usage>(list.size());
+			for (Usage usage : list) {
+				if (usage.getUsageDate() != null) {
+					dated.add(usage);
+				}
+			}
+			// stable sort: the Usage(s) with the same usageDate keep the order of TMForum
+			dated.sort(Comparator.comparing(usage -> usage.getUsageDate().toInstant()));
+			
+			this.usages = dated.toArray(new Usage[0]);
+			this.usageDates = new Instant[usages.length];
+			for (int i = 0; i < usages.length; i++) {
+				usageDates[i] = usages[i].getUsageDate().toInstant();
+			}
+			this.usageIndex = new UsageIndex(dated);
+		}
+		
+		int firstNotBefore(Instant instant) {
+			int low = 0;
+			int high = usageDates.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (usageDates[mid].isBefore(instant)) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+		
+		int firstAfter(Instant instant) {
+			int low = 0;
+			int high = usageDates.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (usageDates[mid].isAfter(instant)) {
+					high = mid;
+				} else {
+					low = mid + 1;
+				}
+			}
+			return low;
+		}
+	}
+
+}
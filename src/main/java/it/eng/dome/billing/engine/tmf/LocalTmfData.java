@@ -0,0 +1,236 @@
+package it.eng.dome.billing.engine.tmf;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.tmforum.tmf620.v4.model.Money;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPriceRelationship;
+import it.eng.dome.tmforum.tmf620.v4.model.Quantity;
+import it.eng.dome.tmforum.tmf620.v4.model.TimePeriod;
+import it.eng.dome.tmforum.tmf635.v4.model.ProductRef;
+import it.eng.dome.tmforum.tmf635.v4.model.RatedProductUsage;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+import it.eng.dome.tmforum.tmf637.v4.model.BillingAccountRef;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf637.v4.model.ProductOfferingPriceRef;
+import it.eng.dome.tmforum.tmf637.v4.model.ProductPrice;
+import it.eng.dome.tmforum.tmf637.v4.model.ProductStatusType;
+import it.eng.dome.tmforum.tmf637.v4.model.RelatedParty;
+import lombok.NonNull;
+
+/**
+ * Generates the TMForum entities of the in-memory TMForum of the local-tmf profile: a catalog of {@link ProductOfferingPrice}(s)
+ * (one time, monthly, yearly, usage and discount), the {@link Product}(s) of the Product Inventory and the {@link Usage}(s) of each Product.
+ * The data depend only on the {@link AppProperties.LocalTmf} properties (seed included) and on the reference date, so two runs with the same
+ * properties bill the same data. The Usage(s) of a Product are generated when requested for the first time.
+ */
+public class LocalTmfData {
+
+	static final String[] METRICS = { "apiCalls", "storage", "bandwidth" };
+
+	private static final String POP_ID_PREFIX = "urn:ngsi-ld:product-offering-price:local-";
+	private static final String PRODUCT_ID_PREFIX = "urn:ngsi-ld:product:local-";
+	private static final String CURRENCY = "EUR";
+
+	private final AppProperties.LocalTmf properties;
+	private final OffsetDateTime startDate;
+	private final OffsetDateTime endDate;
+
+	// key: ProductOfferingPrice's id (catalog order)
+	private final Map<String, ProductOfferingPrice> pops = new LinkedHashMap<String, ProductOfferingPrice>();
+
+	// key: Product's id (inventory order)
+	private final Map<String, Product> products = new LinkedHashMap<String, Product>();
+
+	// key: Product's id, value: the Usage(s) of the Product sorted by usageDate
+	private final Map<String, List<Usage>> usages = new ConcurrentHashMap<String, List<Usage>>();
+
+	/**
+	 * Generates the catalog and the Product Inventory
+	 *
+	 * @param properties the sizes of the data and the seed of the generation
+	 * @param referenceDate the end of the history of the Product(s) (e.g., the start of the application)
+	 */
+	public LocalTmfData(@NonNull AppProperties.LocalTmf properties, @NonNull OffsetDateTime referenceDate) {
+		this.properties = properties;
+		this.endDate = referenceDate.withOffsetSameInstant(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS);
+		this.startDate = endDate.minus(properties.getHistory());
+
+		this.generateCatalog();
+		this.generateProducts();
+	}
+
+	public ProductOfferingPrice getProductOfferingPrice(String id) {
+		return pops.get(id);
+	}
+
+	public List<ProductOfferingPrice> getProductOfferingPrices() {
+		return new ArrayList<ProductOfferingPrice>(pops.values());
+	}
+
+	public Product getProduct(String id) {
+		return products.get(id);
+	}
+
+	public List<Product> getProducts() {
+		return new ArrayList<Product>(products.values());
+	}
+
+	/**
+	 * Returns the {@link Usage}(s) of the {@link Product} with the specified identifier
+	 *
+	 * @param productId the identifier of the Product
+	 * @return the Usage(s) sorted by usageDate (empty if the Product is not in the inventory)
+	 */
+	public List<Usage> getUsages(@NonNull String productId) {
+		if (!products.containsKey(productId)) {
+			return Collections.emptyList();
+		}
+		return usages.computeIfAbsent(productId, this::generateUsages);
+	}
+
+	/**
+	 * Returns the {@link Usage}(s) of all the {@link Product}(s)
+	 *
+	 * @return the Usage(s) grouped by Product
+	 */
+	public List<Usage> getUsages() {
+		return products.keySet().stream().flatMap(id -> this.getUsages(id).stream()).collect(Collectors.toList());
+	}
+
+	/*
+	 * The i-th ProductOfferingPrice is one time, monthly, yearly, usage or discount (in this order), a third of the monthly prices is discounted
+	 */
+	private void generateCatalog() {
+		Random random = new Random(properties.getSeed());
+		List<String> discountIds = new ArrayList<String>();
+
+		for (int i = 0; i < properties.getCatalogSize(); i++) {
+			ProductOfferingPrice pop = new ProductOfferingPrice();
+			pop.setId(POP_ID_PREFIX + i);
+			pop.setIsBundle(false);
+			pop.setLifecycleStatus("Launched");
+			pop.setValidFor(new TimePeriod().startDateTime(startDate.minusYears(1)));
+
+			switch (i % 5) {
+			case 0:
+				pop.setPriceType("one time");
+				pop.setPrice(createPrice(10 + random.nextInt(990)));
+				break;
+			case 1:
+				pop.setPriceType("recurring");
+				pop.setRecurringChargePeriodType("month");
+				pop.setRecurringChargePeriodLength(1);
+				pop.setPrice(createPrice(1 + random.nextInt(100)));
+				break;
+			case 2:
+				pop.setPriceType("recurring-prepaid");
+				pop.setRecurringChargePeriodType("year");
+				pop.setRecurringChargePeriodLength(1);
+				pop.setPrice(createPrice(10 + random.nextInt(1000)));
+				break;
+			case 3:
+				pop.setPriceType("usage");
+				pop.setRecurringChargePeriodType("month");
+				pop.setRecurringChargePeriodLength(1);
+				pop.setPrice(createPrice(1 + random.nextInt(50)));
+				pop.setUnitOfMeasure(new Quantity().amount(100f).units(METRICS[(i / 5) % METRICS.length]));
+				break;
+			default:
+				pop.setPriceType("discount");
+				pop.setPercentage((float) (5 + random.nextInt(26)));
+				discountIds.add(pop.getId());
+			}
+			pop.setName(pop.getPriceType() + " " + i);
+			pops.put(pop.getId(), pop);
+		}
+
+		if (!discountIds.isEmpty()) {
+			for (ProductOfferingPrice pop : pops.values()) {
+				if ("recurring".equals(pop.getPriceType()) && random.nextInt(3) == 0) {
+					pop.addPopRelationshipItem(new ProductOfferingPriceRelationship().id(discountIds.get(random.nextInt(discountIds.size()))));
+				}
+			}
+		}
+	}
+
+	/*
+	 * Each Product has popsPerProduct ProductOfferingPrice(s) of the catalog (not discounts) and is active from the start of the history
+	 */
+	private void generateProducts() {
+		List<String> priceIds = pops.values().stream()
+				.filter(pop -> !"discount".equals(pop.getPriceType()))
+				.map(ProductOfferingPrice::getId)
+				.collect(Collectors.toList());
+		Random random = new Random(properties.getSeed() + 1);
+
+		for (int i = 0; i < properties.getProducts(); i++) {
+			Product product = new Product();
+			product.setId(PRODUCT_ID_PREFIX + i);
+			product.setName("Local product " + i);
+			product.setStartDate(startDate);
+			product.setStatus(ProductStatusType.ACTIVE);
+
+			BillingAccountRef billingAccount = new BillingAccountRef();
+			billingAccount.setId("urn:ngsi-ld:billing-account:local-" + i);
+			product.setBillingAccount(billingAccount);
+			product.addRelatedPartyItem(new RelatedParty().id("urn:ngsi-ld:organization:local-buyer-" + i).role("Buyer"));
+			product.addRelatedPartyItem(new RelatedParty().id("urn:ngsi-ld:organization:local-seller").role("Seller"));
+
+			List<String> productPriceIds = new ArrayList<String>(priceIds);
+			Collections.shuffle(productPriceIds, random);
+			for (String popId : productPriceIds.subList(0, Math.min(properties.getPopsPerProduct(), productPriceIds.size()))) {
+				product.addProductPriceItem(new ProductPrice().productOfferingPrice(new ProductOfferingPriceRef().id(popId)));
+			}
+
+			products.put(product.getId(), product);
+		}
+	}
+
+	/*
+	 * usagesPerProduct Usage(s) uniformly distributed in the history, each with a value for each metric
+	 */
+	private List<Usage> generateUsages(String productId) {
+		Random random = new Random(properties.getSeed() + productId.hashCode());
+		long seconds = endDate.toEpochSecond() - startDate.toEpochSecond();
+
+		List<Usage> productUsages = new ArrayList<Usage>(properties.getUsagesPerProduct());
+		for (int i = 0; i < properties.getUsagesPerProduct(); i++) {
+			Usage usage = new Usage();
+			usage.setUsageDate(startDate.plusSeconds((long) (random.nextDouble() * seconds)));
+			usage.setUsageType("local");
+			usage.addRatedProductUsageItem(new RatedProductUsage().productRef(new ProductRef().id(productId)));
+			for (String metric : METRICS) {
+				UsageCharacteristic usageCh = new UsageCharacteristic();
+				usageCh.setName(metric);
+				usageCh.setValue(random.nextInt(10000) / 10d);
+				usage.addUsageCharacteristicItem(usageCh);
+			}
+			productUsages.add(usage);
+		}
+
+		productUsages.sort(Comparator.comparing(Usage::getUsageDate));
+		for (int i = 0; i < productUsages.size(); i++) {
+			productUsages.get(i).setId("urn:ngsi-ld:usage:" + productId.substring(PRODUCT_ID_PREFIX.length()) + "-" + i);
+		}
+		return Collections.unmodifiableList(productUsages);
+	}
+
+	private static Money createPrice(float value) {
+		return new Money().unit(CURRENCY).value(value);
+	}
+
+}
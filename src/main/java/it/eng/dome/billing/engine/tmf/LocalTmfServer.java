@@ -0,0 +1,231 @@
+package it.eng.dome.billing.engine.tmf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+
+/**
+ * Embedded HTTP server of the local-tmf profile: serves the TMF620 ProductOfferingPrice(s), the TMF635 Usage(s) and the TMF637 Product(s)
+ * generated by {@link LocalTmfData} on the paths of the TMForum APIs, so the billing engine can be load-tested and profiled on a single machine
+ * with the same TMForum clients (and the same HTTP round trips) used with a DOME stack.
+ * <p>
+ * The lists support the offset/limit paging and the query filters used by the billing engine (the Usage's product and usageDate range, the Product's status),
+ * and each request is delayed by the configured latency (plus a random jitter) to simulate a remote TMForum.
+ */
+@Component
+@Profile("local-tmf")
+public class LocalTmfServer implements InitializingBean, DisposableBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(LocalTmfServer.class);
+
+	private static final String PRODUCT_REF_FILTER = "ratedProductUsage.productRef.id";
+	private static final String USAGE_DATE_FILTER = "usageDate";
+
+	@Value("${tmforumapi.tmf620_catalog_path}")
+	private String tmf620ProductCatalogPath;
+
+	@Value("${tmforumapi.tmf635_usage_path}")
+	private String tmf635UsageManagementPath;
+
+	@Value("${tmforumapi.tmf637_billing_path}")
+	private String tmf637ProductInventoryPath;
+
+	private final AppProperties.LocalTmf properties;
+
+	private LocalTmfData data;
+	private HttpServer server;
+	private ExecutorService executor;
+
+	public LocalTmfServer(AppProperties appProperties) {
+		this.properties = appProperties.getLocalTmf();
+	}
+
+	@Override
+	public void afterPropertiesSet() throws IOException {
+		data = new LocalTmfData(properties, OffsetDateTime.now());
+
+		AtomicInteger count = new AtomicInteger(0);
+		executor = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r, "local-tmf-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		server = HttpServer.create(new InetSocketAddress("localhost", properties.getPort()), 0);
+		server.createContext("/" + tmf620ProductCatalogPath + "/productOfferingPrice",
+				exchange -> this.handle(exchange, query -> this.getList(data.getProductOfferingPrices(), query), data::getProductOfferingPrice));
+		server.createContext("/" + tmf635UsageManagementPath + "/usage",
+				exchange -> this.handle(exchange, this::getUsages, id -> null));
+		server.createContext("/" + tmf637ProductInventoryPath + "/product",
+				exchange -> this.handle(exchange, this::getProducts, data::getProduct));
+		server.setExecutor(executor);
+		server.start();
+
+		logger.info("Local TMForum started on port {}: {} ProductOfferingPrice(s), {} Product(s), {} Usage(s) per Product, latency {} (+ {} jitter)",
+				properties.getPort(), properties.getCatalogSize(), properties.getProducts(), properties.getUsagesPerProduct(),
+				properties.getLatency(), properties.getLatencyJitter());
+	}
+
+	@Override
+	public void destroy() {
+		if (server != null) {
+			server.stop(0);
+		}
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	 * GET <path> returns the (filtered) page of the list, GET <path>/<id> the entity (404 if not found)
+	 */
+	private void handle(HttpExchange exchange, Function<Map<String, String>, List<?>> list, Function<String, Object> get) throws IOException {
+		try {
+			this.simulateLatency();
+
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				this.send(exchange, 405, "{\"code\":\"405\",\"reason\":\"Method not allowed\"}");
+				return;
+			}
+
+			String path = exchange.getRequestURI().getPath();
+			String contextPath = exchange.getHttpContext().getPath();
+			if (path.length() <= contextPath.length() + 1) {
+				List<?> entities = list.apply(parseQuery(exchange.getRequestURI().getRawQuery()));
+				this.send(exchange, 200, entities.stream().map(LocalTmfServer::toJson).collect(Collectors.joining(",", "[", "]")));
+				return;
+			}
+
+			String id = URLDecoder.decode(path.substring(contextPath.length() + 1), StandardCharsets.UTF_8);
+			Object entity = get.apply(id);
+			if (entity == null) {
+				this.send(exchange, 404, "{\"code\":\"404\",\"reason\":\"Not found\",\"message\":\"" + id + " not found\"}");
+				return;
+			}
+			this.send(exchange, 200, toJson(entity));
+		} catch (RuntimeException e) {
+			logger.error("Error serving {}: {}", exchange.getRequestURI(), e.getMessage());
+			this.send(exchange, 500, "{\"code\":\"500\",\"reason\":\"Internal error\"}");
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private List<Usage> getUsages(Map<String, String> query) {
+		String productId = query.get(PRODUCT_REF_FILTER);
+		List<Usage> usages = productId != null ? data.getUsages(productId) : data.getUsages();
+
+		OffsetDateTime from = query.containsKey(USAGE_DATE_FILTER + ".gte") ? OffsetDateTime.parse(query.get(USAGE_DATE_FILTER + ".gte")) : null;
+		OffsetDateTime to = query.containsKey(USAGE_DATE_FILTER + ".lte") ? OffsetDateTime.parse(query.get(USAGE_DATE_FILTER + ".lte")) : null;
+		if (from != null || to != null) {
+			usages = usages.stream()
+					.filter(u -> (from == null || !u.getUsageDate().isBefore(from)) && (to == null || !u.getUsageDate().isAfter(to)))
+					.collect(Collectors.toList());
+		}
+
+		return this.getList(usages, query);
+	}
+
+	private List<Product> getProducts(Map<String, String> query) {
+		List<Product> products = data.getProducts();
+
+		String status = query.get("status");
+		if (status != null) {
+			products = products.stream().filter(p -> p.getStatus() != null && p.getStatus().toString().equalsIgnoreCase(status)).collect(Collectors.toList());
+		}
+
+		return this.getList(products, query);
+	}
+
+	/*
+	 * The page [offset, offset+limit) of the list (the whole list if limit is missing)
+	 */
+	private <T> List<T> getList(List<T> entities, Map<String, String> query) {
+		int offset = Math.min(entities.size(), Math.max(0, Integer.parseInt(query.getOrDefault("offset", "0"))));
+		int limit = query.containsKey("limit") ? Math.max(0, Integer.parseInt(query.get("limit"))) : entities.size();
+		return entities.subList(offset, (int) Math.min(entities.size(), (long) offset + limit));
+	}
+
+	private void simulateLatency() {
+		long latency = properties.getLatency().toMillis();
+		long jitter = properties.getLatencyJitter().toMillis();
+		if (jitter > 0) {
+			latency += ThreadLocalRandom.current().nextLong(jitter + 1);
+		}
+		if (latency > 0) {
+			try {
+				Thread.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> query = new HashMap<String, String>();
+		if (rawQuery == null || rawQuery.isEmpty()) {
+			return query;
+		}
+		for (String param : rawQuery.split("&")) {
+			int index = param.indexOf('=');
+			String key = URLDecoder.decode(index < 0 ? param : param.substring(0, index), StandardCharsets.UTF_8);
+			String value = index < 0 ? "" : URLDecoder.decode(param.substring(index + 1), StandardCharsets.UTF_8);
+			query.put(key, value);
+		}
+		return query;
+	}
+
+	/*
+	 * The TMForum JSON of the entity, as serialized by the TMForum SDK
+	 */
+	private static String toJson(Object entity) {
+		if (entity instanceof ProductOfferingPrice) {
+			return ((ProductOfferingPrice) entity).toJson();
+		}
+		if (entity instanceof Usage) {
+			return ((Usage) entity).toJson();
+		}
+		if (entity instanceof Product) {
+			return ((Product) entity).toJson();
+		}
+		throw new IllegalArgumentException("Entity not supported: " + entity.getClass().getName());
+	}
+
+}
@@ -4,12 +4,15 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import it.eng.dome.billing.engine.config.AppProperties;
 import it.eng.dome.brokerage.billing.utils.UrlPathUtils;
 
 
@@ -59,6 +62,14 @@ public final class TmfApiFactory implements InitializingBean {
 	private it.eng.dome.tmforum.tmf635.v4.ApiClient apiClientTmf635;
 	private it.eng.dome.tmforum.tmf637.v4.ApiClient apiClientTmf637;
 	
+	private final AppProperties.TmfClient tmfClient;
+	private final ObjectProvider<MeterRegistry> meterRegistry;
+	
+	public TmfApiFactory(AppProperties appProperties, ObjectProvider<MeterRegistry> meterRegistry) {
+		this.tmfClient = appProperties.getTmfClient() != null ? appProperties.getTmfClient() : new AppProperties.TmfClient();
+		this.meterRegistry = meterRegistry;
+	}
+	
 	
 	public it.eng.dome.tmforum.tmf620.v4.ApiClient getTMF620ProductCatalogApiClient() {
 		if (apiClientTmf620 == null) {
@@ -70,6 +81,8 @@ public final class TmfApiFactory implements InitializingBean {
 			}
 			
 			apiClientTmf620.setBasePath(basePath + "/" + tmf620ProductCatalogPath);
+			apiClientTmf620.setHttpClientBuilder(TmfHttpClient.builder(this.createHttpClient("tmf620", tmfClient.getTmf620())));
+			apiClientTmf620.setReadTimeout(tmfClient.getTmf620().getReadTimeout());
 			log.debug("Invoke Product Catalog API at endpoint: " + apiClientTmf620.getBasePath());			
 		}
 		
@@ -102,6 +115,8 @@ public final class TmfApiFactory implements InitializingBean {
 			}
 			
 			apiClientTmf635.setBasePath(basePath + "/" + tmf635UsageManagementPath);
+			apiClientTmf635.setHttpClientBuilder(TmfHttpClient.builder(this.createHttpClient("tmf635", tmfClient.getTmf635())));
+			apiClientTmf635.setReadTimeout(tmfClient.getTmf635().getReadTimeout());
 			log.debug("Invoke Product Ordering API at endpoint: " + apiClientTmf635.getBasePath());
 		}
 		
@@ -133,12 +148,26 @@ public final class TmfApiFactory implements InitializingBean {
 			}
 			
 			apiClientTmf637.setBasePath(basePath + "/" + tmf637ProductInventoryPath);
+			apiClientTmf637.setHttpClientBuilder(TmfHttpClient.builder(this.createHttpClient("tmf637", tmfClient.getTmf637())));
+			apiClientTmf637.setReadTimeout(tmfClient.getTmf637().getReadTimeout());
 			log.debug("Invoke Product Inventory API at endpoint: " + apiClientTmf637.getBasePath());
 		}
 		
 		return apiClientTmf637;
 	}
 	
+	/*
+	 * The HttpClient shared by the API classes of a TMForum API, with its connection pool metrics
+	 */
+	private TmfHttpClient createHttpClient(String api, AppProperties.TmfHttp settings) {
+		TmfHttpClient httpClient = new TmfHttpClient(api, settings);
+		meterRegistry.ifAvailable(httpClient::bindTo);
+		
+		log.info("HTTP client of {} [maxConnections: {}, connectTimeout: {}, readTimeout: {}, version: {}, compression: {}]", api,
+				settings.getMaxConnections(), settings.getConnectTimeout(), settings.getReadTimeout(), settings.getVersion(), settings.isCompression());
+		return httpClient;
+	}
+	
 	/*public String getSchemaLocationRelatedParty() {
 		return schemaLocationRelatedParty;
 	}*/
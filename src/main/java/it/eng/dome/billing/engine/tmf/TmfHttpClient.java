@@ -0,0 +1,497 @@
+package it.eng.dome.billing.engine.tmf;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.PushPromiseHandler;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.utils.CostProfile;
+import lombok.NonNull;
+
+/**
+ * {@link HttpClient} of a TMForum API configured by the {@link AppProperties.TmfHttp} properties: connect timeout, HTTP version,
+ * maximum number of in-flight requests (the requests exceeding it wait for a free connection instead of opening a new one)
+ * and optional gzip compression of the responses (the responses are decompressed before they reach the TMForum client).
+ * A request is in flight until its response body has been received, or until the stream of the body (e.g., {@link BodySubscribers#ofInputStream()}) is closed.
+ * <p>
+ * The generated TMForum clients build their {@link HttpClient} each time an API class is instantiated: {@link #builder(HttpClient)} returns a builder
+ * that always builds the same instance, so all the API classes share its connection pool.
+ * <p>
+ * The underlying {@link HttpClient} (its SSL context and selector thread) is built by the first request, not at the startup of the application.
+ */
+public class TmfHttpClient extends HttpClient {
+
+	private static final String ACCEPT_ENCODING = "Accept-Encoding";
+	private static final String CONTENT_ENCODING = "Content-Encoding";
+	private static final String GZIP = "gzip";
+
+	private final String api;
+	private final Version version;
+	private final Duration connectTimeout;
+	private volatile HttpClient delegate;
+	private final boolean compression;
+	private final int maxConnections;
+	private final Semaphore connections;
+
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicLong queued = new AtomicLong();
+
+	/**
+	 * Creates the HttpClient of a TMForum API
+	 *
+	 * @param api the name of the TMForum API (e.g., tmf620), used as tag of the metrics
+	 * @param settings the HTTP settings of the TMForum API
+	 */
+	public TmfHttpClient(@NonNull String api, @NonNull AppProperties.TmfHttp settings) {
+		this.api = api;
+		this.version = settings.getVersion();
+		this.connectTimeout = settings.getConnectTimeout();
+		this.compression = settings.isCompression();
+		this.maxConnections = Math.max(1, settings.getMaxConnections());
+		this.connections = new Semaphore(maxConnections, true);
+	}
+
+	/**
+	 * Registers the connection pool metrics of the TMForum API: the in-flight requests (tmf.client.requests.active), the requests waiting
+	 * for a free connection (tmf.client.requests.pending), the maximum number of in-flight requests (tmf.client.requests.max)
+	 * and the number of requests that found the pool saturated (tmf.client.requests.queued)
+	 *
+	 * @param registry the registry of the metrics
+	 */
+	public void bindTo(@NonNull MeterRegistry registry) {
+		Gauge.builder("tmf.client.requests.active", active, AtomicInteger::get).tag("api", api)
+				.description("In-flight requests to the TMForum API").register(registry);
+		Gauge.builder("tmf.client.requests.pending", pending, AtomicInteger::get).tag("api", api)
+				.description("Requests waiting for a free connection to the TMForum API").register(registry);
+		Gauge.builder("tmf.client.requests.max", this, c -> c.maxConnections).tag("api", api)
+				.description("Maximum number of in-flight requests to the TMForum API").register(registry);
+		FunctionCounter.builder("tmf.client.requests.queued", queued, AtomicLong::get).tag("api", api)
+				.description("Requests that found all the connections to the TMForum API in use").register(registry);
+	}
+
+	/**
+	 * Returns a {@link HttpClient.Builder} that always builds the specified HttpClient (its settings can not be changed through the builder)
+	 *
+	 * @param httpClient the HttpClient to share
+	 * @return the builder of the HttpClient
+	 */
+	public static HttpClient.Builder builder(@NonNull HttpClient httpClient) {
+		return new SharedBuilder(httpClient);
+	}
+
+	public int getActive() {
+		return active.get();
+	}
+
+	public int getPending() {
+		return pending.get();
+	}
+
+	public long getQueued() {
+		return queued.get();
+	}
+
+	@Override
+	public <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> responseBodyHandler) throws IOException, InterruptedException {
+		Permit permit = this.acquire();
+		boolean sent = false;
+		try {
+			HttpResponse<T> response = this.delegate().send(this.prepare(request), this.hold(permit, this.profile(this.decode(responseBodyHandler))));
+			sent = true;
+			return response;
+		} finally {
+			if (!sent) {
+				permit.release();
+			}
+		}
+	}
+
+	@Override
+	public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> responseBodyHandler) {
+		return this.sendAsync(request, responseBodyHandler, null);
+	}
+
+	@Override
+	public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> responseBodyHandler, PushPromiseHandler<T> pushPromiseHandler) {
+		Permit permit;
+		try {
+			permit = this.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return CompletableFuture.failedFuture(e);
+		}
+		try {
+			return this.delegate().sendAsync(this.prepare(request), this.hold(permit, this.profile(this.decode(responseBodyHandler))), pushPromiseHandler)
+					.whenComplete((response, error) -> {
+						if (error != null) {
+							permit.release();
+						}
+					});
+		} catch (RuntimeException e) {
+			permit.release();
+			throw e;
+		}
+	}
+
+	@Override
+	public Optional<CookieHandler> cookieHandler() {
+		return this.delegate().cookieHandler();
+	}
+
+	@Override
+	public Optional<Duration> connectTimeout() {
+		return this.delegate().connectTimeout();
+	}
+
+	@Override
+	public Redirect followRedirects() {
+		return this.delegate().followRedirects();
+	}
+
+	@Override
+	public Optional<ProxySelector> proxy() {
+		return this.delegate().proxy();
+	}
+
+	@Override
+	public SSLContext sslContext() {
+		return this.delegate().sslContext();
+	}
+
+	@Override
+	public SSLParameters sslParameters() {
+		return this.delegate().sslParameters();
+	}
+
+	@Override
+	public Optional<Authenticator> authenticator() {
+		return this.delegate().authenticator();
+	}
+
+	@Override
+	public Version version() {
+		return this.delegate().version();
+	}
+
+	@Override
+	public Optional<Executor> executor() {
+		return this.delegate().executor();
+	}
+
+	/*
+	 * The underlying HttpClient, built by the first request
+	 */
+	private HttpClient delegate() {
+		HttpClient httpClient = delegate;
+		if (httpClient == null) {
+			synchronized (this) {
+				httpClient = delegate;
+				if (httpClient == null) {
+					httpClient = HttpClient.newBuilder()
+							.version(version)
+							.connectTimeout(connectTimeout)
+							.build();
+					delegate = httpClient;
+				}
+			}
+		}
+		return httpClient;
+	}
+
+	/*
+	 * Waits for a free connection, counting the requests that found the pool saturated
+	 */
+	private Permit acquire() throws InterruptedException {
+		if (!connections.tryAcquire()) {
+			queued.incrementAndGet();
+			pending.incrementAndGet();
+			try {
+				connections.acquire();
+			} finally {
+				pending.decrementAndGet();
+			}
+		}
+		active.incrementAndGet();
+		return new Permit();
+	}
+
+	private void release() {
+		active.decrementAndGet();
+		connections.release();
+	}
+
+	/*
+	 * Holds the connection of the request until its response body has been received or the stream of the body has been closed
+	 */
+	private <T> BodyHandler<T> hold(Permit permit, BodyHandler<T> responseBodyHandler) {
+		return info -> new ReleasingSubscriber<T>(responseBodyHandler.apply(info), permit);
+	}
+
+	/*
+	 * Asks for a gzip response if the compression is enabled (and the request does not set its own encoding)
+	 */
+	private HttpRequest prepare(HttpRequest request) {
+		if (!compression || request.headers().firstValue(ACCEPT_ENCODING).isPresent()) {
+			return request;
+		}
+		return HttpRequest.newBuilder(request, (name, value) -> true).header(ACCEPT_ENCODING, GZIP).build();
+	}
+
+	/*
+	 * The gzip responses are read as a whole, decompressed and passed to the body subscriber of the TMForum client
+	 */
+	private <T> BodyHandler<T> decode(BodyHandler<T> responseBodyHandler) {
+		if (!compression) {
+			return responseBodyHandler;
+		}
+		return info -> {
+			if (!info.headers().firstValue(CONTENT_ENCODING).map(GZIP::equalsIgnoreCase).orElse(false)) {
+				return responseBodyHandler.apply(info);
+			}
+			return BodySubscribers.mapping(BodySubscribers.ofByteArray(), body -> gunzip(responseBodyHandler, info, body));
+		};
+	}
+
+	private static <T> T gunzip(BodyHandler<T> responseBodyHandler, ResponseInfo info, byte[] body) {
+		byte[] decompressed;
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+			decompressed = in.readAllBytes();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		BodySubscriber<T> subscriber = responseBodyHandler.apply(info);
+		subscriber.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+			}
+
+			@Override
+			public void cancel() {
+			}
+		});
+		subscriber.onNext(List.of(ByteBuffer.wrap(decompressed)));
+		subscriber.onComplete();
+		return subscriber.getBody().toCompletableFuture().join();
+	}
+
+	/*
+	 * Counts the request and the bytes received (before the decompression) in the profile of the current billing request, if any
+	 */
+	private <T> BodyHandler<T> profile(BodyHandler<T> responseBodyHandler) {
+		CostProfile profile = CostProfile.current();
+		if (profile == null) {
+			return responseBodyHandler;
+		}
+		profile.addTmfCall(api);
+		return info -> new CountingSubscriber<T>(responseBodyHandler.apply(info), bytes -> profile.addTmfBytes(api, bytes));
+	}
+
+	private static final class CountingSubscriber<T> implements BodySubscriber<T> {
+
+		private final BodySubscriber<T> delegate;
+		private final LongConsumer received;
+
+		private CountingSubscriber(BodySubscriber<T> delegate, LongConsumer received) {
+			this.delegate = delegate;
+			this.received = received;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			delegate.onSubscribe(subscription);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> item) {
+			long bytes = 0;
+			for (ByteBuffer buffer : item) {
+				bytes += buffer.remaining();
+			}
+			received.accept(bytes);
+			delegate.onNext(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			delegate.onError(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			delegate.onComplete();
+		}
+
+		@Override
+		public CompletionStage<T> getBody() {
+			return delegate.getBody();
+		}
+	}
+
+	/*
+	 * The connection of a request, released once
+	 */
+	private final class Permit {
+
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private void release() {
+			if (released.compareAndSet(false, true)) {
+				TmfHttpClient.this.release();
+			}
+		}
+	}
+
+	/*
+	 * Releases the connection once the body has been received (before handing it over) or when the InputStream of the body is closed, whichever comes first
+	 */
+	private static final class ReleasingSubscriber<T> implements BodySubscriber<T> {
+
+		private final BodySubscriber<T> delegate;
+		private final Permit permit;
+
+		private ReleasingSubscriber(BodySubscriber<T> delegate, Permit permit) {
+			this.delegate = delegate;
+			this.permit = permit;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			delegate.onSubscribe(subscription);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> item) {
+			delegate.onNext(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			permit.release();
+			delegate.onError(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			permit.release();
+			delegate.onComplete();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public CompletionStage<T> getBody() {
+			return delegate.getBody().thenApply(body -> body instanceof InputStream ? (T) new FilterInputStream((InputStream) body) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						permit.release();
+					}
+				}
+			} : body);
+		}
+	}
+
+	/*
+	 * Ignores the settings of the TMForum client and returns the shared HttpClient
+	 */
+	private static final class SharedBuilder implements HttpClient.Builder {
+
+		private final HttpClient httpClient;
+
+		private SharedBuilder(HttpClient httpClient) {
+			this.httpClient = httpClient;
+		}
+
+		@Override
+		public Builder cookieHandler(CookieHandler cookieHandler) {
+			return this;
+		}
+
+		@Override
+		public Builder connectTimeout(Duration duration) {
+			return this;
+		}
+
+		@Override
+		public Builder sslContext(SSLContext sslContext) {
+			return this;
+		}
+
+		@Override
+		public Builder sslParameters(SSLParameters sslParameters) {
+			return this;
+		}
+
+		@Override
+		public Builder executor(Executor executor) {
+			return this;
+		}
+
+		@Override
+		public Builder followRedirects(Redirect policy) {
+			return this;
+		}
+
+		@Override
+		public Builder version(Version version) {
+			return this;
+		}
+
+		@Override
+		public Builder priority(int priority) {
+			return this;
+		}
+
+		@Override
+		public Builder proxy(ProxySelector proxySelector) {
+			return this;
+		}
+
+		@Override
+		public Builder authenticator(Authenticator authenticator) {
+			return this;
+		}
+
+		@Override
+		public HttpClient build() {
+			return httpClient;
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package it.eng.dome.billing.engine.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Timers, counters and distribution summaries of the stages of the billing pipeline (bill cycles, Usage retrieval, price calculation, price alterations
+ * and validation of the TMForum entities). The meters are registered in the Micrometer global registry, to which Spring Boot adds the registries
+ * of the application (e.g., the Prometheus registry exported by the actuator), so they can be recorded also by the static utilities and by the objects
+ * not managed by Spring (e.g., the PriceCalculator(s)). Without registries (e.g., in the unit tests) the meters do nothing.
+ */
+public final class BillingMetrics {
+
+	public static final Timer POP_BILL_CYCLES = Timer.builder("billing.pop.billcycles")
+			.description("Retrieval of the ProductOfferingPrice(s) of a Product and of their bill cycles in the billing period")
+			.register(Metrics.globalRegistry);
+
+	public static final DistributionSummary POP_BILL_CYCLES_POPS = DistributionSummary.builder("billing.pop.billcycles.pops")
+			.description("ProductOfferingPrice(s) of a Product with bill cycles in the billing period")
+			.register(Metrics.globalRegistry);
+
+	public static final Timer USAGE_FETCH = Timer.builder("billing.usage.fetch")
+			.description("Retrieval of the Usage(s) of a Product in a time period")
+			.register(Metrics.globalRegistry);
+
+	public static final Counter USAGE_FETCH_PAGES = Counter.builder("billing.usage.fetch.pages")
+			.description("Pages of Usage(s) retrieved from TMForum")
+			.register(Metrics.globalRegistry);
+
+	public static final Counter USAGE_FETCH_SCANNED = Counter.builder("billing.usage.fetch.records").tag("state", "scanned")
+			.description("Usage(s) retrieved from TMForum and scanned by the client-side filters")
+			.register(Metrics.globalRegistry);
+
+	public static final Counter USAGE_FETCH_KEPT = Counter.builder("billing.usage.fetch.records").tag("state", "kept")
+			.description("Usage(s) retrieved from TMForum and kept by the client-side filters")
+			.register(Metrics.globalRegistry);
+
+	public static final DistributionSummary USAGE_FETCH_SIZE = DistributionSummary.builder("billing.usage.fetch.size")
+			.description("Usage(s) of a Product in a time period")
+			.register(Metrics.globalRegistry);
+
+	public static final DistributionSummary PRICE_ALTERATIONS = DistributionSummary.builder("billing.price.alterations")
+			.description("Price alterations (ProductOfferingPrice relationships) of an altered price")
+			.register(Metrics.globalRegistry);
+
+	public static final Counter VALIDATION_ERRORS = Counter.builder("billing.validation.issues").tag("severity", "error")
+			.description("Validation issues of the TMForum entities")
+			.register(Metrics.globalRegistry);
+
+	public static final Counter VALIDATION_WARNINGS = Counter.builder("billing.validation.issues").tag("severity", "warning")
+			.description("Validation issues of the TMForum entities")
+			.register(Metrics.globalRegistry);
+
+	// key: simple name of the PriceCalculator class
+	private static final Map<String, Timer> PRICE_CALCULATION = new ConcurrentHashMap<String, Timer>();
+
+	// key: the target of the price alterations (orderPrice, money)
+	private static final Map<String, Timer> PRICE_ALTERATION = new ConcurrentHashMap<String, Timer>();
+
+	// key: the validated TMForum entity
+	private static final Map<String, Timer> VALIDATION = new ConcurrentHashMap<String, Timer>();
+
+	private BillingMetrics() {
+	}
+
+	/**
+	 * Stops the sample recording its duration in the timer and in the stages of the {@link CostProfile} of the current request (if any)
+	 *
+	 * @param sample the started sample
+	 * @param timer the timer of the stage
+	 * @param stage the name of the stage in the CostProfile (e.g., usageFetch)
+	 * @return the duration in nanoseconds
+	 */
+	public static long stop(Timer.Sample sample, Timer timer, String stage) {
+		long nanos = sample.stop(timer);
+		CostProfile.recordStage(stage, nanos);
+		return nanos;
+	}
+
+	/**
+	 * Returns the timer of the price calculations of a type of PriceCalculator
+	 *
+	 * @param calculator the PriceCalculator
+	 * @return the timer tagged with the simple name of the PriceCalculator class
+	 */
+	public static Timer priceCalculation(Object calculator) {
+		return PRICE_CALCULATION.computeIfAbsent(calculator.getClass().getSimpleName(), type -> Timer.builder("billing.price.calculation")
+				.tag("calculator", type)
+				.description("Price calculation of a ProductOfferingPrice")
+				.register(Metrics.globalRegistry));
+	}
+
+	/**
+	 * Returns the timer of the application of the price alterations to a price
+	 *
+	 * @param target the type of price altered (e.g., orderPrice, money)
+	 * @return the timer tagged with the target
+	 */
+	public static Timer priceAlteration(String target) {
+		return PRICE_ALTERATION.computeIfAbsent(target, t -> Timer.builder("billing.price.alteration")
+				.tag("target", t)
+				.description("Application of the price alterations to a price")
+				.register(Metrics.globalRegistry));
+	}
+
+	/**
+	 * Returns the timer of the validation of a TMForum entity
+	 *
+	 * @param entity the validated TMForum entity (e.g., product, productOfferingPrice)
+	 * @return the timer tagged with the entity
+	 */
+	public static Timer validation(String entity) {
+		return VALIDATION.computeIfAbsent(entity, e -> Timer.builder("billing.validation")
+				.tag("entity", e)
+				.description("Validation of a TMForum entity")
+				.register(Metrics.globalRegistry));
+	}
+
+}
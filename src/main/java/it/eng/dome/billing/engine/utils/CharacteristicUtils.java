@@ -11,10 +11,10 @@ public class CharacteristicUtils {
 		return false;
 	}
 	
-	public static boolean isValueInCharacteristicRange(@NotNull Integer value, @NotNull CharacteristicValueSpecification ch) {
+	public static boolean isValueInCharacteristicRange(@NotNull Number value, @NotNull CharacteristicValueSpecification ch) {
 		Integer validFrom=ch.getValueFrom();
 		Integer validTo=ch.getValueTo();
-		return value >= validFrom && value <= validTo;
+		return value.doubleValue() >= validFrom && value.doubleValue() <= validTo;
 	}
 	
 
@@ -0,0 +1,243 @@
+package it.eng.dome.billing.engine.utils;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Timing and I/O profile of a single billing request (opt-in): the TMForum requests and the bytes received for each TMForum API,
+ * the Usage(s) scanned and kept, the time spent in each stage of the billing pipeline and the time spent pricing each ProductOfferingPrice.
+ * <p>
+ * The profile of the request is bound to the thread serving the request and is propagated to the tasks of the parallel pricing with {@link #propagate(Supplier)}.
+ * The stages are nested (e.g., the price calculation includes the retrieval of the Usage(s), the price alterations and the validations),
+ * so their times are not additive. When no profile is active all the recording methods do nothing.
+ */
+@JsonPropertyOrder({ "totalMillis", "tmf", "usages", "stages", "pops" })
+public class CostProfile {
+
+	private static final ThreadLocal<CostProfile> CURRENT = new ThreadLocal<CostProfile>();
+
+	private final long startNanos = System.nanoTime();
+	private volatile long durationNanos = -1;
+
+	// key: TMForum API (e.g., tmf635)
+	private final Map<String, TmfStat> tmf = new ConcurrentHashMap<String, TmfStat>();
+
+	private final UsageStat usages = new UsageStat();
+
+	// key: stage of the billing pipeline (e.g., usageFetch)
+	private final Map<String, TimeStat> stages = new ConcurrentHashMap<String, TimeStat>();
+
+	// key: ProductOfferingPrice's identifier
+	private final Map<String, TimeStat> pops = new ConcurrentHashMap<String, TimeStat>();
+
+	/**
+	 * Starts the profile of a request and binds it to the current thread
+	 *
+	 * @return the new profile
+	 */
+	public static CostProfile start() {
+		CostProfile profile = new CostProfile();
+		CURRENT.set(profile);
+		return profile;
+	}
+
+	/**
+	 * Returns the profile bound to the current thread
+	 *
+	 * @return the profile, null if the current request is not profiled
+	 */
+	public static CostProfile current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Unbinds the profile from the current thread
+	 */
+	public static void clear() {
+		CURRENT.remove();
+	}
+
+	/**
+	 * Binds the profile of the current thread (if any) to the thread that will run the specified task
+	 *
+	 * @param task the task to run in another thread
+	 * @return the task running with the profile of the current thread
+	 */
+	public static <T> Supplier<T> propagate(Supplier<T> task) {
+		CostProfile profile = CURRENT.get();
+		if (profile == null) {
+			return task;
+		}
+		return () -> {
+			CostProfile previous = CURRENT.get();
+			CURRENT.set(profile);
+			try {
+				return task.get();
+			} finally {
+				if (previous != null) {
+					CURRENT.set(previous);
+				} else {
+					CURRENT.remove();
+				}
+			}
+		};
+	}
+
+	public static void recordStage(String stage, long nanos) {
+		CostProfile profile = CURRENT.get();
+		if (profile != null) {
+			profile.stages.computeIfAbsent(stage, s -> new TimeStat()).add(nanos);
+		}
+	}
+
+	public static void recordPop(String popId, long nanos) {
+		CostProfile profile = CURRENT.get();
+		if (profile != null && popId != null) {
+			profile.pops.computeIfAbsent(popId, id -> new TimeStat()).add(nanos);
+		}
+	}
+
+	public static void recordUsages(long scanned, long kept) {
+		CostProfile profile = CURRENT.get();
+		if (profile != null) {
+			profile.usages.scanned.add(scanned);
+			profile.usages.kept.add(kept);
+		}
+	}
+
+	/**
+	 * Counts a request to a TMForum API (the bytes of the response are added with {@link #addTmfBytes(String, long)})
+	 *
+	 * @param api the TMForum API (e.g., tmf635)
+	 */
+	public void addTmfCall(String api) {
+		tmf.computeIfAbsent(api, a -> new TmfStat()).calls.increment();
+	}
+
+	public void addTmfBytes(String api, long bytes) {
+		tmf.computeIfAbsent(api, a -> new TmfStat()).bytesReceived.add(bytes);
+	}
+
+	/**
+	 * Stops the profile (the following calls return the same duration)
+	 *
+	 * @return the duration of the request in nanoseconds
+	 */
+	public long stop() {
+		if (durationNanos < 0) {
+			durationNanos = System.nanoTime() - startNanos;
+		}
+		return durationNanos;
+	}
+
+	public double getTotalMillis() {
+		return toMillis(durationNanos < 0 ? System.nanoTime() - startNanos : durationNanos);
+	}
+
+	public Map<String, TmfStat> getTmf() {
+		return new TreeMap<String, TmfStat>(tmf);
+	}
+
+	public UsageStat getUsages() {
+		return usages;
+	}
+
+	public Map<String, TimeStat> getStages() {
+		return new TreeMap<String, TimeStat>(stages);
+	}
+
+	public Map<String, TimeStat> getPops() {
+		return new TreeMap<String, TimeStat>(pops);
+	}
+
+	/**
+	 * Returns the ProductOfferingPrice(s) that took the longest to price
+	 *
+	 * @param max the maximum number of ProductOfferingPrice(s) returned
+	 * @return the times of the ProductOfferingPrice(s), the slowest first
+	 */
+	public Map<String, TimeStat> getSlowestPops(int max) {
+		return pops.entrySet().stream()
+				.sorted(Map.Entry.<String, TimeStat>comparingByValue(Comparator.comparingLong(stat -> stat.nanos.sum())).reversed())
+				.limit(Math.max(max, 0))
+				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+	}
+
+	/**
+	 * Returns the times of the stages in the format of the Server-Timing HTTP header (e.g., usageFetch;dur=12.3, total;dur=45.6)
+	 *
+	 * @return the value of the Server-Timing header
+	 */
+	public String toServerTiming() {
+		String timings = this.getStages().entrySet().stream()
+				.map(e -> e.getKey() + ";dur=" + format(e.getValue().getMillis()))
+				.collect(Collectors.joining(", "));
+		return (timings.isEmpty() ? "" : timings + ", ") + "total;dur=" + format(this.getTotalMillis());
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	private static String format(double millis) {
+		return String.format(Locale.ROOT, "%.3f", millis);
+	}
+
+	public static class TmfStat {
+
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder bytesReceived = new LongAdder();
+
+		public long getCalls() {
+			return calls.sum();
+		}
+
+		public long getBytesReceived() {
+			return bytesReceived.sum();
+		}
+	}
+
+	public static class UsageStat {
+
+		private final LongAdder scanned = new LongAdder();
+		private final LongAdder kept = new LongAdder();
+
+		public long getScanned() {
+			return scanned.sum();
+		}
+
+		public long getKept() {
+			return kept.sum();
+		}
+	}
+
+	public static class TimeStat {
+
+		private final LongAdder count = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+
+		private void add(long duration) {
+			count.increment();
+			nanos.add(duration);
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public double getMillis() {
+			return toMillis(nanos.sum());
+		}
+	}
+
+}
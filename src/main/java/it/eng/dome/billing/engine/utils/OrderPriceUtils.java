@@ -1,7 +1,5 @@
 package it.eng.dome.billing.engine.utils;
 
-import java.math.BigDecimal;
-
 import org.springframework.util.CollectionUtils;
 
 import it.eng.dome.billing.engine.model.Money;
@@ -29,23 +27,30 @@ public class OrderPriceUtils {
 	 * @return the dutyFreeAmount of the {@link OrderPrice} after the application of all the {@link PriceAlteration} 
 	 */
 	public static float getAlteredDutyFreePrice(@NonNull OrderPrice orderPrice) {
-		BigDecimal totalAlteratedPrice=new BigDecimal(String.valueOf(orderPrice.getPrice().getDutyFreeAmount().getValue()));
+		return getAlteredDutyFreeAmount(orderPrice).getValue();
+	}
+	
+	/**
+	 * Returns the dutyFreeAmount of the {@link OrderPrice} after the application of all the {@link PriceAlteration} of the OrderPrice as exact decimal {@link Money}
+	 * @param orderPrice the {@link OrderPrice} with price alterations
+	 * @return the dutyFreeAmount of the {@link OrderPrice} after the application of all the {@link PriceAlteration} 
+	 */
+	public static Money getAlteredDutyFreeAmount(@NonNull OrderPrice orderPrice) {
+		Money totalAlteratedPrice=getDutyFreeAmount(orderPrice);
 		
 		if (OrderPriceUtils.hasAlterations(orderPrice)) {
 			for(PriceAlteration pa:orderPrice.getPriceAlteration()) {
-				BigDecimal alteratedPrice=new BigDecimal(String.valueOf(pa.getPrice().getDutyFreeAmount().getValue()));
-				totalAlteratedPrice=totalAlteratedPrice.add(alteratedPrice);
+				totalAlteratedPrice=totalAlteratedPrice.add(TmfConverter.convert622ToMoney(pa.getPrice().getDutyFreeAmount()));
 			}
 		}
 		
-		return totalAlteratedPrice.floatValue();
+		return totalAlteratedPrice;
 	}
 	
 	public static Money applyQuantity(@NonNull Money money, @NonNull Integer quantity) {
 		
 		if(quantity>0) {
-			Float updatedValue=money.getValue()*quantity;
-			money.setValue(updatedValue);
+			return money.multiply(quantity);
 		}
 		
 		return money;
@@ -75,6 +80,15 @@ public class OrderPriceUtils {
 		return orderPrice.getPrice().getDutyFreeAmount().getValue();
 	}
 	
+	/**
+	 * Returns the dutyFreeAmount of the {@link OrderPrice} as exact decimal {@link Money}
+	 * @param orderPrice the {@link OrderPrice}
+	 * @return the dutyFreeAmount of the {@link OrderPrice}
+	 */
+	public static Money getDutyFreeAmount(@NonNull OrderPrice orderPrice) {
+		return TmfConverter.convert622ToMoney(orderPrice.getPrice().getDutyFreeAmount());
+	}
+	
 	public static String getCurrency(@NonNull OrderPrice orderPrice) {
 		return orderPrice.getPrice().getDutyFreeAmount().getUnit();
 	}
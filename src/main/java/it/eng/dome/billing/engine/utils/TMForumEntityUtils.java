@@ -30,6 +30,10 @@ public class TMForumEntityUtils {
 	
 	
 	public static AppliedCustomerBillingRate createAppliedCustomerBillingRate(@NotNull ProductOfferingPrice pop, @NonNull Product product, @NonNull BillCycle billCycle, @NonNull Money taxExcludedAmount, String relatedPartySchemaLocation){
+		return createAppliedCustomerBillingRate(pop, pop.getPriceType(), product, billCycle, taxExcludedAmount, relatedPartySchemaLocation);
+	}
+	
+	public static AppliedCustomerBillingRate createAppliedCustomerBillingRate(@NotNull ProductOfferingPrice pop, String priceType, @NonNull Product product, @NonNull BillCycle billCycle, @NonNull Money taxExcludedAmount, String relatedPartySchemaLocation){
 		
 		AppliedCustomerBillingRate appliedCustomerBillingRate = new AppliedCustomerBillingRate();
 
@@ -48,7 +52,7 @@ public class TMForumEntityUtils {
 		appliedCustomerBillingRate.setIsBilled(true);
 
 		// Set appliedCustomerBillingRate.name
-		appliedCustomerBillingRate.setName(String.format("%s Bill", pop.getPriceType()));
+		appliedCustomerBillingRate.setName(String.format("%s Bill", priceType));
 
 		// Set appliedCustomerBillingRate.periodCoverage
 		appliedCustomerBillingRate.setPeriodCoverage(billCycle.getBillingPeriod());
@@ -57,7 +61,7 @@ public class TMForumEntityUtils {
 		appliedCustomerBillingRate.setProduct(TMForumEntityUtils.createProductRef(product.getId()));
 		
 		// Set appliedCustomerBillinhRate.appliedBillingRateType
-		appliedCustomerBillingRate.setType(pop.getPriceType());
+		appliedCustomerBillingRate.setType(priceType);
 		
 		// Set appliedCustomerBillingRate.taxExcludedAmount
 		appliedCustomerBillingRate.setTaxExcludedAmount(taxExcludedAmount);
@@ -92,16 +96,17 @@ public class TMForumEntityUtils {
 		
 		OffsetDateTime currrentDate=OffsetDateTime.now();
 		
-		Float totalAmount=0f;
 		String currency=acbrs.get(0).getTaxExcludedAmount().getUnit();
 		
+		// the amounts are summed as exact decimals and converted to float once
+		it.eng.dome.billing.engine.model.Money totalAmount=it.eng.dome.billing.engine.model.Money.zero(currency);
 		for(AppliedCustomerBillingRate acbr:acbrs) {
-			totalAmount+=acbr.getTaxExcludedAmount().getValue();
+			totalAmount=totalAmount.add(new it.eng.dome.billing.engine.model.Money(currency, acbr.getTaxExcludedAmount().getValue()));
 		}
 		
 		//Set customerBill.amountDue
 		Money totalAmountMoney=new Money();
-		totalAmountMoney.setValue(totalAmount);
+		totalAmountMoney.setValue(totalAmount.getValue());
 		totalAmountMoney.setUnit(currency);
 		cb.setAmountDue(totalAmountMoney);
 		
@@ -82,12 +82,7 @@ public class TmfConverter {
 	
 	public static it.eng.dome.billing.engine.model.Money convert622ToMoney(@NotNull it.eng.dome.tmforum.tmf622.v4.model.Money moneyIn){
 		
-		it.eng.dome.billing.engine.model.Money  out=new it.eng.dome.billing.engine.model.Money();
-		
-		out.setUnit(moneyIn.getUnit());
-		out.setValue(moneyIn.getValue());
-		
-		return out;
+		return new it.eng.dome.billing.engine.model.Money(moneyIn.getUnit(), moneyIn.getValue());
 		
 	}
 	
@@ -0,0 +1,311 @@
+package it.eng.dome.billing.engine.utils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+import lombok.NonNull;
+
+/**
+ * Index of the {@link UsageCharacteristic} values of a list of {@link Usage}, keyed by metric (i.e., the UsageCharacteristic's name).
+ * For each metric the values are kept in primitive arrays sorted by the usageDate of their Usage, together with their prefix sums
+ * (exact, in fixed point with the decimal digits of a Money, or in BigDecimal if they do not fit in a long), so the number and the total quantity of a metric in any {@link TimePeriod} are computed with two binary searches (O(log n)),
+ * without scanning the Usage(s) again. This permits to price many sub-periods (e.g., the usage bill cycles of a longer billing period) from a single index.
+ * <p>
+ * The Usage(s) without usageDate and the UsageCharacteristic(s) without value are not indexed. The index is immutable and can be used concurrently.
+ */
+public final class UsageIndex {
+
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+	// key: metric's name, value: the values of the metric sorted by usageDate
+	private final Map<String, MetricSeries> series;
+
+	/**
+	 * Creates the index of the {@link UsageCharacteristic} values of the specified list of {@link Usage}
+	 *
+	 * @param usages the list of {@link Usage} to index
+	 * @throws NumberFormatException if the value of a UsageCharacteristic is not a number
+	 */
+	public UsageIndex(@NonNull List<Usage> usages) {
+		Map<String, SeriesBuilder> builders = new HashMap<String, SeriesBuilder>();
+
+		for (Usage usage : usages) {
+			if (usage.getUsageDate() == null || usage.getUsageCharacteristic() == null) {
+				continue;
+			}
+
+			long usageDate = toEpochNanos(usage.getUsageDate().toInstant());
+			for (UsageCharacteristic usageCh : usage.getUsageCharacteristic()) {
+				if (usageCh != null && usageCh.getName() != null && usageCh.getValue() != null) {
+					builders.computeIfAbsent(usageCh.getName(), k -> new SeriesBuilder())
+						.add(usageDate, usageCh.getValue());
+				}
+			}
+		}
+
+		Map<String, MetricSeries> series = new HashMap<String, MetricSeries>();
+		builders.forEach((metric, builder) -> series.put(metric, builder.build()));
+		this.series = Collections.unmodifiableMap(series);
+	}
+
+	/**
+	 * Returns the metrics in the index
+	 *
+	 * @return the set of the metric's names (unmodifiable)
+	 */
+	public Set<String> getMetrics() {
+		return series.keySet();
+	}
+
+	/**
+	 * Returns the number of values of the specified metric
+	 *
+	 * @param metric the metric's name
+	 * @return the number of values of the metric (0 if the metric is not in the index)
+	 */
+	public int count(@NonNull String metric) {
+		MetricSeries metricSeries = series.get(metric);
+		return metricSeries == null ? 0 : metricSeries.size();
+	}
+
+	/**
+	 * Returns the number of values of the specified metric with usageDate within the specified {@link TimePeriod} (bounds included)
+	 *
+	 * @param metric the metric's name
+	 * @param tp the {@link TimePeriod}
+	 * @return the number of values of the metric in the TimePeriod
+	 */
+	public int count(@NonNull String metric, @NonNull TimePeriod tp) {
+		return this.count(metric, tp.getStartDateTime().toInstant(), tp.getEndDateTime().toInstant());
+	}
+
+	/**
+	 * Returns the number of values of the specified metric with usageDate between the specified instants (bounds included)
+	 *
+	 * @param metric the metric's name
+	 * @param from the start of the range
+	 * @param to the end of the range
+	 * @return the number of values of the metric in the range
+	 */
+	public int count(@NonNull String metric, @NonNull Instant from, @NonNull Instant to) {
+		MetricSeries metricSeries = series.get(metric);
+		if (metricSeries == null) {
+			return 0;
+		}
+
+		int[] range = metricSeries.range(toEpochNanos(from), toEpochNanos(to));
+		return range[1] - range[0];
+	}
+
+	/**
+	 * Returns the total quantity of the specified metric
+	 *
+	 * @param metric the metric's name
+	 * @return the sum of the values of the metric (0 if the metric is not in the index)
+	 */
+	public BigDecimal sum(@NonNull String metric) {
+		MetricSeries metricSeries = series.get(metric);
+		return metricSeries == null ? BigDecimal.ZERO : metricSeries.sum(0, metricSeries.size());
+	}
+
+	/**
+	 * Returns the total quantity of the specified metric with usageDate within the specified {@link TimePeriod} (bounds included)
+	 *
+	 * @param metric the metric's name
+	 * @param tp the {@link TimePeriod}
+	 * @return the sum of the values of the metric in the TimePeriod
+	 */
+	public BigDecimal sum(@NonNull String metric, @NonNull TimePeriod tp) {
+		return this.sum(metric, tp.getStartDateTime().toInstant(), tp.getEndDateTime().toInstant());
+	}
+
+	/**
+	 * Returns the total quantity of the specified metric with usageDate between the specified instants (bounds included)
+	 *
+	 * @param metric the metric's name
+	 * @param from the start of the range
+	 * @param to the end of the range
+	 * @return the sum of the values of the metric in the range
+	 */
+	public BigDecimal sum(@NonNull String metric, @NonNull Instant from, @NonNull Instant to) {
+		MetricSeries metricSeries = series.get(metric);
+		if (metricSeries == null) {
+			return BigDecimal.ZERO;
+		}
+
+		int[] range = metricSeries.range(toEpochNanos(from), toEpochNanos(to));
+		return metricSeries.sum(range[0], range[1]);
+	}
+
+	/*
+	 * Converts the instant in nanoseconds from the epoch, saturating the instants out of the range of a long (years 1677-2262), e.g. an open-ended validFor
+	 */
+	private static long toEpochNanos(Instant instant) {
+		long seconds = instant.getEpochSecond();
+		if (seconds >= Long.MAX_VALUE / NANOS_PER_SECOND) {
+			return Long.MAX_VALUE;
+		}
+		if (seconds <= Long.MIN_VALUE / NANOS_PER_SECOND) {
+			return Long.MIN_VALUE;
+		}
+		return seconds * NANOS_PER_SECOND + instant.getNano();
+	}
+
+	/*
+	 * The values of a metric sorted by usageDate: prefixUnits[i] is the sum of the first i values in fixed point (see UsageUtils.getQuantityUnits),
+	 * prefixDecimals[i] the same sum in BigDecimal when the units overflow (null otherwise)
+	 */
+	private static final class MetricSeries {
+
+		private final long[] usageDates;
+		private final long[] prefixUnits;
+		private final BigDecimal[] prefixDecimals;
+
+		MetricSeries(long[] usageDates, long[] prefixUnits, BigDecimal[] prefixDecimals) {
+			this.usageDates = usageDates;
+			this.prefixUnits = prefixUnits;
+			this.prefixDecimals = prefixDecimals;
+		}
+
+		int size() {
+			return usageDates.length;
+		}
+
+		/*
+		 * Returns [from, to) the positions of the values with usageDate in [start, end]
+		 */
+		int[] range(long start, long end) {
+			int from = firstNotBefore(start);
+			int to = end == Long.MAX_VALUE ? usageDates.length : firstNotBefore(end + 1);
+			return new int[] { from, Math.max(from, to) };
+		}
+
+		BigDecimal sum(int from, int to) {
+			if (prefixDecimals != null) {
+				return prefixDecimals[to].subtract(prefixDecimals[from]);
+			}
+			return UsageUtils.toQuantity(prefixUnits[to] - prefixUnits[from]);
+		}
+
+		private int firstNotBefore(long instant) {
+			int low = 0;
+			int high = usageDates.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (usageDates[mid] < instant) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+	}
+
+	/*
+	 * Collects the values of a metric in the order of the Usage(s), sorting them only if needed (e.g., the Usage(s) of a UsageSnapshot are already sorted).
+	 * The values are kept in fixed point, and in BigDecimal from the first one that does not fit in a long
+	 */
+	private static final class SeriesBuilder {
+
+		private long[] usageDates = new long[16];
+		private long[] units = new long[16];
+		private BigDecimal[] decimals;
+		private int size;
+		private boolean sorted = true;
+
+		void add(long usageDate, Object value) {
+			if (size == usageDates.length) {
+				usageDates = Arrays.copyOf(usageDates, size * 2);
+				units = Arrays.copyOf(units, size * 2);
+				if (decimals != null) {
+					decimals = Arrays.copyOf(decimals, size * 2);
+				}
+			}
+			if (size > 0 && usageDate < usageDates[size - 1]) {
+				sorted = false;
+			}
+			usageDates[size] = usageDate;
+			if (decimals == null) {
+				try {
+					units[size++] = UsageUtils.getQuantityUnits(value);
+					return;
+				} catch (ArithmeticException e) {
+					decimals = new BigDecimal[usageDates.length];
+					for (int i = 0; i < size; i++) {
+						decimals[i] = UsageUtils.toQuantity(units[i]);
+					}
+				}
+			}
+			decimals[size++] = UsageUtils.getQuantity(value);
+		}
+
+		MetricSeries build() {
+			long[] sortedDates = Arrays.copyOf(usageDates, size);
+			// positions[i] is the position in the order of the Usage(s) of the i-th value by usageDate
+			int[] positions = new int[size];
+			for (int i = 0; i < size; i++) {
+				positions[i] = i;
+			}
+			if (!sorted) {
+				mergeSort(sortedDates, positions, Arrays.copyOf(usageDates, size), positions.clone(), 0, size);
+			}
+
+			long[] prefixUnits = new long[size + 1];
+			if (decimals == null) {
+				try {
+					for (int i = 0; i < size; i++) {
+						prefixUnits[i + 1] = Math.addExact(prefixUnits[i], units[positions[i]]);
+					}
+					return new MetricSeries(sortedDates, prefixUnits, null);
+				} catch (ArithmeticException e) {
+					// the total does not fit in a long: the prefix sums are kept in BigDecimal
+				}
+			}
+
+			BigDecimal[] prefixDecimals = new BigDecimal[size + 1];
+			prefixDecimals[0] = BigDecimal.ZERO;
+			for (int i = 0; i < size; i++) {
+				BigDecimal value = decimals != null ? decimals[positions[i]] : UsageUtils.toQuantity(units[positions[i]]);
+				prefixDecimals[i + 1] = prefixDecimals[i].add(value);
+			}
+			return new MetricSeries(sortedDates, null, prefixDecimals);
+		}
+
+		/*
+		 * Stable merge sort by usageDate of dates[from, to) and positions[from, to) (the values with the same usageDate keep the order of the Usage(s)),
+		 * using the buffers (with the same content) as work arrays
+		 */
+		private static void mergeSort(long[] dates, int[] positions, long[] workDates, int[] workPositions, int from, int to) {
+			if (to - from < 2) {
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			// sort the halves in the work arrays and merge them back
+			mergeSort(workDates, workPositions, dates, positions, from, mid);
+			mergeSort(workDates, workPositions, dates, positions, mid, to);
+
+			int left = from;
+			int right = mid;
+			for (int i = from; i < to; i++) {
+				if (right >= to || (left < mid && workDates[left] <= workDates[right])) {
+					dates[i] = workDates[left];
+					positions[i] = workPositions[left++];
+				} else {
+					dates[i] = workDates[right];
+					positions[i] = workPositions[right++];
+				}
+			}
+		}
+	}
+
+}
@@ -1,15 +1,21 @@
 package it.eng.dome.billing.engine.utils;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.micrometer.core.instrument.Timer;
+import it.eng.dome.billing.engine.model.Money;
 import it.eng.dome.brokerage.api.UsageManagementApis;
 import it.eng.dome.brokerage.api.fetch.FetchUtils;
 import it.eng.dome.tmforum.tmf635.v4.model.Usage;
@@ -22,37 +28,65 @@ public class UsageUtils {
 	
 	private static final Logger logger = LoggerFactory.getLogger(UsageUtils.class);
 	
+	public static final int DEFAULT_PAGE_SIZE = 100;
+	
+	// 10^Money.SCALE: the quantities are accumulated in fixed point with the decimal digits of a Money
+	private static final long QUANTITY_SCALE_FACTOR = 100_000_000L;
+	
+	private static final String PRODUCT_REF_FILTER = "ratedProductUsage.productRef.id";
+	private static final String USAGE_DATE_FILTER = "usageDate";
+	
+	// Usage's attributes always needed to filter and rate the Usage(s)
+	private static final List<String> REQUIRED_FIELDS = List.of("id", "usageDate", "ratedProductUsage", "usageCharacteristic");
+	
 	/**
-	 * Gets all {@link Usage} related in to the {@link Product} with the product identifier in input and belonging to the specified {@link TimePeriod}
+	 * Gets all {@link Usage} related in to the {@link Product} with the product identifier in input and belonging to the specified {@link TimePeriod}.
+	 * The product and the {@link TimePeriod} are pushed down to TMForum as query filters.
+	 * 
 	 * @param productId the identifier of the {@link Product}
 	 * @param tp the billingPeriod to take into consideration
 	 * @param usageManagementApis An instance of {@link UsageManagementApis} to retrieve the Usage(s)
 	 * @return A list of Usage for the specified product identifier and belonging to the specified {@link TimePeriod}
 	 */
 	public static List<Usage> getUsages(@NonNull String productId, @NonNull TimePeriod tp, UsageManagementApis usageManagementApis){
+		return getUsages(productId, tp, usageManagementApis, true, null, DEFAULT_PAGE_SIZE);
+	}
+	
+	/**
+	 * Gets all {@link Usage} related in to the {@link Product} with the product identifier in input and belonging to the specified {@link TimePeriod}
+	 * 
+	 * @param productId the identifier of the {@link Product}
+	 * @param tp the billingPeriod to take into consideration
+	 * @param usageManagementApis An instance of {@link UsageManagementApis} to retrieve the Usage(s)
+	 * @param serverSideFilter if true the product identifier and the {@link TimePeriod} are sent to TMForum as query filters, otherwise the whole Usage collection is retrieved and filtered client-side
+	 * @param fields the comma separated list of Usage's attributes to retrieve (null to retrieve all the attributes)
+	 * @param pageSize the number of Usage retrieved for each TMForum request
+	 * @return A list of Usage for the specified product identifier and belonging to the specified {@link TimePeriod}
+	 */
+	public static List<Usage> getUsages(@NonNull String productId, @NonNull TimePeriod tp, UsageManagementApis usageManagementApis, boolean serverSideFilter, String fields, int pageSize){
 		
 		AtomicInteger count = new AtomicInteger(0);
+		AtomicInteger scanned = new AtomicInteger(0);
+		AtomicInteger pages = new AtomicInteger(0);
+		Timer.Sample sample = Timer.start();
+		
+		Map<String, String> filter = serverSideFilter ? createUsageFilter(productId, tp) : null;
 		
 		List<Usage> usages=FetchUtils.streamAll(
-			 usageManagementApis::listUsages,  // method TMF GET /usage
-		        null,            // fields
-		        null,            // date filter server-side
-		        100              // page size
+			 (f, offset, limit, flt) -> {       // method TMF GET /usage, counting the pages requested
+				 pages.incrementAndGet();
+				 return usageManagementApis.listUsages(f, offset, limit, flt);
+			 },
+			 	getFieldsProjection(fields),     // fields
+			 	filter,                          // product and date filter server-side
+			 	pageSize                         // page size
 		)
+		.peek(u -> scanned.incrementAndGet())
+		// The client-side filters are always applied: TMForum could ignore some of the query filters 
 		// Filter for usageDate
-		 .filter(u ->
-		        u.getUsageDate() != null &&
-		        !u.getUsageDate().isBefore(tp.getStartDateTime()) &&
-		        !u.getUsageDate().isAfter(tp.getEndDateTime())
-		    )
+		 .filter(u -> isUsageInTimePeriod(u, tp))
 		    // Filter for ratedProductUsage.productRef.id
-		    .filter(u ->
-		        u.getRatedProductUsage() != null &&
-		        u.getRatedProductUsage().stream().anyMatch(rpu ->
-		            rpu.getProductRef() != null &&
-		            productId.equals(rpu.getProductRef().getId())
-		        )
-		    )
+		    .filter(u -> isUsageOfProduct(u, productId))
 		    .peek(u -> {
 	            int index = count.incrementAndGet();
 	            logger.debug(index + " " +
@@ -61,11 +95,80 @@ public class UsageUtils {
 	                    u.getUsageDate());
 	        })
 	        .collect(Collectors.toList());
-			// System.out.println("Usage found: " + usages.size());
+		
+		BillingMetrics.USAGE_FETCH_PAGES.increment(pages.get());
+		BillingMetrics.USAGE_FETCH_SCANNED.increment(scanned.get());
+		BillingMetrics.USAGE_FETCH_KEPT.increment(usages.size());
+		BillingMetrics.USAGE_FETCH_SIZE.record(usages.size());
+		CostProfile.recordUsages(scanned.get(), usages.size());
+		BillingMetrics.stop(sample, BillingMetrics.USAGE_FETCH, "usageFetch");
 		
 		return usages;
 	}
 	
+	/**
+	 * Creates the TMForum query filter to retrieve the {@link Usage} of the {@link Product} with the specified identifier and with usageDate within the specified {@link TimePeriod}
+	 * 
+	 * @param productId the identifier of the {@link Product}
+	 * @param tp the {@link TimePeriod} in which the usageDate must fall
+	 * @return A map with the query filters (key: attribute with operator, value: the value of the filter)
+	 */
+	public static Map<String, String> createUsageFilter(@NonNull String productId, @NonNull TimePeriod tp){
+		Map<String, String> filter = new HashMap<String, String>();
+		filter.put(PRODUCT_REF_FILTER, productId);
+		filter.put(USAGE_DATE_FILTER + ".gte", tp.getStartDateTime().toInstant().toString());
+		filter.put(USAGE_DATE_FILTER + ".lte", tp.getEndDateTime().toInstant().toString());
+		
+		return filter;
+	}
+	
+	/**
+	 * Checks if the usageDate of the {@link Usage} falls within the specified {@link TimePeriod} (bounds included)
+	 * 
+	 * @param usage the {@link Usage} to check
+	 * @param tp the {@link TimePeriod}
+	 * @return true if the usageDate falls within the TimePeriod, false otherwise
+	 */
+	public static boolean isUsageInTimePeriod(@NonNull Usage usage, @NonNull TimePeriod tp) {
+		return usage.getUsageDate() != null &&
+		        !usage.getUsageDate().isBefore(tp.getStartDateTime()) &&
+		        !usage.getUsageDate().isAfter(tp.getEndDateTime());
+	}
+	
+	/**
+	 * Checks if the {@link Usage} refers to the {@link Product} with the specified identifier (i.e., ratedProductUsage.productRef.id)
+	 * 
+	 * @param usage the {@link Usage} to check
+	 * @param productId the identifier of the {@link Product}
+	 * @return true if the Usage refers to the Product, false otherwise
+	 */
+	public static boolean isUsageOfProduct(@NonNull Usage usage, @NonNull String productId) {
+		return usage.getRatedProductUsage() != null &&
+	        	usage.getRatedProductUsage().stream().anyMatch(rpu ->
+	            rpu.getProductRef() != null &&
+	            productId.equals(rpu.getProductRef().getId())
+	        );
+	}
+	
+	/*
+	 * Adds to the fields projection the Usage's attributes needed to filter and rate the Usage(s)
+	 */
+	private static String getFieldsProjection(String fields) {
+		if (fields == null || fields.isBlank()) {
+			return null;
+		}
+		
+		Set<String> projection = new LinkedHashSet<String>();
+		for (String field : fields.split(",")) {
+			if (!field.isBlank()) {
+				projection.add(field.trim());
+			}
+		}
+		projection.addAll(REQUIRED_FIELDS);
+		
+		return String.join(",", projection);
+	}
+	
 	/**
 	 * Creates a {@link UsageCharacteristic} map with key the UsageCharacteristic's name. This map permits to retrieve from a list of {@link Usage} 
 	 * all the {@link UsageCharacteristic} with a UsageCharacteristic's name
@@ -92,6 +195,97 @@ public class UsageUtils {
 		return usageData;
 	}
 	
+	/**
+	 * Creates a {@link UsageIndex} of the {@link UsageCharacteristic} values of a list of {@link Usage}. Differently from the map created by {@link #createUsageCharacteristicDataMap(List)},
+	 * the index keeps the usageDate of the values, so the quantity of a metric in any sub-period is computed without scanning the Usage(s) again
+	 * 
+	 * @param usages A list of {@link Usage}
+	 * @return the {@link UsageIndex} of the Usage(s)
+	 */
+	public static UsageIndex createUsageIndex(@NonNull List<Usage> usages){
+		return new UsageIndex(usages);
+	}
+	
+	/**
+	 * Returns the total quantity of a list of {@link UsageCharacteristic}. The values are accumulated exactly in a long in fixed point
+	 * (with the {@value Money#SCALE} decimal digits of {@link Money}), and in {@link BigDecimal} only if the total does not fit in it
+	 * 
+	 * @param usageCharacteristics A list of {@link UsageCharacteristic}
+	 * @return the sum of the values of the UsageCharacteristic(s) (the ones without value are skipped)
+	 * @throws NumberFormatException if the value of a UsageCharacteristic is not a number
+	 */
+	public static BigDecimal sumUsageCharacteristicValues(@NonNull List<UsageCharacteristic> usageCharacteristics){
+		long units = 0L;
+		// the total in BigDecimal, once the units overflow
+		BigDecimal quantity = null;
+		
+		for (int i = 0; i < usageCharacteristics.size(); i++) {
+			Object value = usageCharacteristics.get(i).getValue();
+			if (value == null) {
+				continue;
+			}
+			if (quantity == null) {
+				try {
+					units = Math.addExact(units, getQuantityUnits(value));
+					continue;
+				} catch (ArithmeticException e) {
+					quantity = toQuantity(units);
+				}
+			}
+			quantity = quantity.add(getQuantity(value));
+		}
+		
+		return quantity != null ? quantity : toQuantity(units);
+	}
+	
+	/**
+	 * Returns the quantity of a {@link UsageCharacteristic}'s value, that can be a number or its text representation.
+	 * The float and double values are converted to the decimal of their shortest representation (e.g., 0.1f is 0.1)
+	 * 
+	 * @param value the value of the {@link UsageCharacteristic}
+	 * @return the value as exact decimal
+	 * @throws NumberFormatException if the value is not a number
+	 */
+	public static BigDecimal getQuantity(@NonNull Object value){
+		if (isIntegral(value)) {
+			return BigDecimal.valueOf(((Number) value).longValue());
+		}
+		if (value instanceof BigDecimal) {
+			return (BigDecimal) value;
+		}
+		return new BigDecimal(value.toString().trim());
+	}
+	
+	/**
+	 * Returns the quantity of a {@link UsageCharacteristic}'s value in fixed point, i.e. multiplied by 10^{@value Money#SCALE} 
+	 * and rounded (half even) as the value of a {@link Money}
+	 * 
+	 * @param value the value of the {@link UsageCharacteristic}
+	 * @return the units of the value
+	 * @throws NumberFormatException if the value is not a number
+	 * @throws ArithmeticException if the units do not fit in a long
+	 */
+	public static long getQuantityUnits(@NonNull Object value){
+		if (isIntegral(value)) {
+			return Math.multiplyExact(((Number) value).longValue(), QUANTITY_SCALE_FACTOR);
+		}
+		return getQuantity(value).setScale(Money.SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+	}
+	
+	/**
+	 * Converts a quantity in fixed point (see {@link #getQuantityUnits(Object)}) to decimal
+	 * 
+	 * @param units the units of the quantity
+	 * @return the quantity with {@value Money#SCALE} decimal digits
+	 */
+	public static BigDecimal toQuantity(long units){
+		return BigDecimal.valueOf(units, Money.SCALE);
+	}
+	
+	private static boolean isIntegral(Object value) {
+		return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+	}
+	
 	/**
 	 * Returns the list of {@link UsageCharacteristic} with the specified metric's name
 	 * 
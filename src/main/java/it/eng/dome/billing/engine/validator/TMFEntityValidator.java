@@ -6,10 +6,20 @@ import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import it.eng.dome.billing.engine.config.AppProperties;
 import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
 import it.eng.dome.billing.engine.model.Characteristic;
+import it.eng.dome.billing.engine.utils.BillingMetrics;
 import it.eng.dome.billing.engine.utils.TmfConverter;
 import it.eng.dome.brokerage.billing.utils.ProductOfferingPriceUtils;
 import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
@@ -26,12 +36,49 @@ import jakarta.validation.constraints.NotNull;
 
 /**
  * Class to validate the TMForum entities. If there are some unexpected/missing values needed for the BillingEngine processing a {@link BillingEngineValidationException} is raised.
+ * <p>
+ * The validations of a {@link ProductOfferingPrice} are cached (app.validation-cache) by identifier, version and lastUpdate of the ProductOfferingPrice:
+ * the {@link ValidationIssue}(s) found (none, if valid) are reused until the ProductOfferingPrice changes in the catalog, so the same
+ * ProductOfferingPrice is not validated again by each bill cycle and request (the warnings are logged again). The ProductOfferingPrice(s) without version and lastUpdate are always validated.
  */
 @Component
 public class TMFEntityValidator {
 	
 	private final static Logger logger=LoggerFactory.getLogger(TMFEntityValidator.class);
 	
+	public static final String CACHE_NAME = "validation";
+	
+	// key: validation|id|version|lastUpdate of the ProductOfferingPrice, value: the issues found. Null if the validations are not cached
+	private final Cache<String, List<ValidationIssue>> cache;
+	
+	/**
+	 * Creates a TMFEntityValidator that doesn't cache the validations
+	 */
+	public TMFEntityValidator() {
+		this(null, null);
+	}
+	
+	@Autowired
+	public TMFEntityValidator(AppProperties appProperties, ObjectProvider<MeterRegistry> meterRegistry) {
+		AppProperties.ValidationCache validationCache = appProperties!=null && appProperties.getValidationCache()!=null ? appProperties.getValidationCache() : null;
+		
+		if(validationCache!=null && validationCache.isEnabled()) {
+			this.cache = Caffeine.newBuilder()
+					.maximumSize(validationCache.getMaximumSize())
+					.expireAfterWrite(validationCache.getTtl())
+					.recordStats()
+					.build();
+			
+			if(meterRegistry!=null) {
+				meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME));
+			}
+			logger.info("Validation cache [enabled: true, maximumSize: {}, ttl: {}]", validationCache.getMaximumSize(), validationCache.getTtl());
+		}else {
+			this.cache = null;
+			logger.info("Validation cache [enabled: false]");
+		}
+	}
+	
 	/**
 	 * Validates the {@link ProductOfferingPrice}
 	 * 
@@ -39,7 +86,12 @@ public class TMFEntityValidator {
 	 * @throws BillingEngineValidationException if some unexpected/missing values are find
 	 */
 	public void validateProductOfferingPrice(@NotNull ProductOfferingPrice pop) throws BillingEngineValidationException{
+		String cacheKey=this.cacheKey("productOfferingPrice", pop);
+		if(this.replayCachedIssues(cacheKey)) {
+			return;
+		}
 		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		if(pop.getLifecycleStatus()==null || pop.getLifecycleStatus().isEmpty()) {
@@ -90,7 +142,7 @@ public class TMFEntityValidator {
 		
 		if(pop.getProdSpecCharValueUse()!=null && pop.getProdSpecCharValueUse().get(0)!=null) {
 			ProductSpecificationCharacteristicValueUse prodSpecChValueUse=pop.getProdSpecCharValueUse().get(0);
-			if(prodSpecChValueUse.getProductSpecCharacteristicValue()!=null && prodSpecChValueUse.getProductSpecCharacteristicValue().size()>0) {
+			if(prodSpecChValueUse.getProductSpecCharacteristicValue()!=null && prodSpecChValueUse.getProductSpecCharacteristicValue().size()>1) {
 				String msg=String.format("The size of productSpecCharacteristicValue in ProductOfferingPrice %s is greater than one ", pop.getId());
 				issues.add(new ValidationIssue(msg,ValidationIssueSeverity.ERROR));
 			}
@@ -101,7 +153,9 @@ public class TMFEntityValidator {
 
 		}
 		
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.cacheIssues(cacheKey, issues);
+		
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "productOfferingPrice");
 		
 		logger.debug("Validation of ProductOfferingPrice {} successful", pop.getId());
 		
@@ -115,6 +169,7 @@ public class TMFEntityValidator {
 	 */
 	public void validateProduct(@NotNull Product prod) throws BillingEngineValidationException{
 		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		if(prod.getProductPrice()==null || prod.getProductPrice().isEmpty()) {
@@ -143,7 +198,7 @@ public class TMFEntityValidator {
 		}
 		
 		
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "product");
 		
 		logger.debug("Validation of Product {} successful", prod.getId());
 		
@@ -158,6 +213,7 @@ public class TMFEntityValidator {
 	 */
 	public void validateProductPrice(@NotNull ProductPrice prodPrice, @NotNull String prodId) throws BillingEngineValidationException{
 		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		if(prodPrice.getProductOfferingPrice()==null) {
@@ -170,7 +226,7 @@ public class TMFEntityValidator {
 			issues.add(new ValidationIssue(msg,ValidationIssueSeverity.ERROR));
 		}
 		
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "productPrice");
 		
 		logger.debug("Validation of ProductPrice successful");
 		
@@ -201,11 +257,13 @@ public class TMFEntityValidator {
 	 * @throws BillingEngineValidationException if some unexpected/missing values are find
 	 */
 	public void validateUsages(@NotNull List<Usage> usages) throws BillingEngineValidationException{
+		Timer.Sample sample=Timer.start();
 		
 		for(Usage usage:usages) {
 			this.validateUsage(usage);
 		}
 		
+		sample.stop(BillingMetrics.validation("usages"));
 	} 
 	
 	/**
@@ -214,6 +272,12 @@ public class TMFEntityValidator {
 	 * @throws BillingEngineValidationException if some unexpected/missing values are find
 	 */
 	public void validatePrice(@NotNull ProductOfferingPrice pop) throws BillingEngineValidationException {
+		String cacheKey=this.cacheKey("price", pop);
+		if(this.replayCachedIssues(cacheKey)) {
+			return;
+		}
+		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		if(pop.getPrice().getUnit()==null || (pop.getPrice().getUnit().isEmpty())) {
@@ -226,11 +290,9 @@ public class TMFEntityValidator {
 			issues.add(new ValidationIssue(msg,ValidationIssueSeverity.ERROR));
 		}
 		
-		if (issues.stream().anyMatch(i -> i.getSeverity() == ValidationIssueSeverity.ERROR)) {
-            throw new BillingEngineValidationException(issues);
-        }
+		this.cacheIssues(cacheKey, issues);
 		
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "price");
 		
 		this.logWarningValidationIssuesIfAny(issues);
 		
@@ -244,6 +306,12 @@ public class TMFEntityValidator {
 	 * @throws BillingEngineValidationException if some unexpected/missing values are find
 	 */
 	public void validateUnitOfMeasure (@NotNull Quantity unitOfMeasure, @NotNull ProductOfferingPrice pop) throws BillingEngineValidationException {
+		String cacheKey=unitOfMeasure==pop.getUnitOfMeasure() ? this.cacheKey("unitOfMeasure", pop) : null;
+		if(this.replayCachedIssues(cacheKey)) {
+			return;
+		}
+		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		if(unitOfMeasure.getUnits()==null || unitOfMeasure.getUnits().isEmpty()){
@@ -256,7 +324,9 @@ public class TMFEntityValidator {
 			issues.add(new ValidationIssue(msg,ValidationIssueSeverity.ERROR));
 		}
 			
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.cacheIssues(cacheKey, issues);
+		
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "unitOfMeasure");
 		
 		logger.debug("Validation of unitOdMeasure of ProductOfferingPrice {} successful", pop.getId());
 	}
@@ -268,6 +338,12 @@ public class TMFEntityValidator {
 	 * @throws BillingEngineValidationException if some unexpected/missing values are find
 	 */
 	public void validateUnitOfMeasureForSinglePrice(@NotNull ProductOfferingPrice pop) throws BillingEngineValidationException {
+		String cacheKey=this.cacheKey("unitOfMeasureForSinglePrice", pop);
+		if(this.replayCachedIssues(cacheKey)) {
+			return;
+		}
+		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		if(pop.getUnitOfMeasure()!=null && !"unit".equalsIgnoreCase(pop.getUnitOfMeasure().getUnits()) && pop.getUnitOfMeasure().getAmount()!=1){
@@ -277,7 +353,9 @@ public class TMFEntityValidator {
 		
 		logger.debug("Validation of unitOfMeasure of single ProductOfferingPrice {} successful", pop.getId());
 		
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.cacheIssues(cacheKey, issues);
+		
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "unitOfMeasureForSinglePrice");
 	}
 	
 	/**
@@ -287,6 +365,12 @@ public class TMFEntityValidator {
 	 * @throws BillingEngineValidationException if some unexpected/missing values are find
 	 */
 	public void validateProdSpecCharValueUse(@NotNull ProductSpecificationCharacteristicValueUse charValueUse, @NotNull ProductOfferingPrice pop) throws BillingEngineValidationException {
+		String cacheKey=this.cacheKey("prodSpecCharValueUse", pop, charValueUse, pop.getProdSpecCharValueUse());
+		if(this.replayCachedIssues(cacheKey)) {
+			return;
+		}
+		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		if(charValueUse.getName()==null || charValueUse.getName().isEmpty()) {
@@ -298,7 +382,9 @@ public class TMFEntityValidator {
 			issues.add(new ValidationIssue(msg,ValidationIssueSeverity.ERROR));
 		}
 	
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.cacheIssues(cacheKey, issues);
+		
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "prodSpecCharValueUse");
 		
 		logger.debug("Validation of productSpecificationCharacteristicValueUse of ProductOfferingPrice {} successful", pop.getId());
 	}
@@ -351,6 +437,7 @@ public class TMFEntityValidator {
 	 * @throws BillingEngineValidationException if some unexpected/missing values are find
 	 */
 	public void validatePOPsCurrency(@NotNull List<ProductOfferingPrice> pops, @NotNull Product prod) throws BillingEngineValidationException {
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		String firstCurrency = pops.get(0).getPrice().getUnit();
@@ -364,7 +451,7 @@ public class TMFEntityValidator {
 			issues.add(new ValidationIssue(msg,ValidationIssueSeverity.ERROR));
 	    }
 	    
-	    this.throwsErrorValidationIssuesIfAny(issues);
+	    this.throwsErrorValidationIssuesIfAny(issues, sample, "popsCurrency");
 	    
 	    logger.debug("Validation of ProductOfferingPrice's currencies of Product {} successful", prod.getId());
 		
@@ -378,7 +465,12 @@ public class TMFEntityValidator {
 	 * @throws BillingEngineValidationException if some unexpected/missing values are find
 	 */
 	public void validatePopRelationship(@NotNull ProductOfferingPrice pop) throws BillingEngineValidationException{
+		String cacheKey=this.cacheKey("popRelationship", pop);
+		if(this.replayCachedIssues(cacheKey)) {
+			return;
+		}
 		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		if(pop.getLifecycleStatus()==null || pop.getLifecycleStatus().isEmpty()) {
@@ -396,7 +488,9 @@ public class TMFEntityValidator {
 			issues.add(new ValidationIssue(msg,ValidationIssueSeverity.ERROR));
 		}
 		
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.cacheIssues(cacheKey, issues);
+		
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "popRelationship");
 		
 		logger.debug("Validation of ProductOfferingPrice in popRelationship {} successful", pop.getId());
 		
@@ -410,6 +504,7 @@ public class TMFEntityValidator {
 	 */
 	public void validateProductOrder(@NotNull ProductOrder productOrder) throws BillingEngineValidationException{
 		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		if(productOrder.getProductOrderItem()==null||productOrder.getProductOrderItem().isEmpty()){
@@ -417,7 +512,7 @@ public class TMFEntityValidator {
 			issues.add(new ValidationIssue(msg,ValidationIssueSeverity.ERROR));
 		}
 		
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "productOrder");
 		
 		logger.debug("Validation of ProductOrder {} successful", productOrder.getId());
 		
@@ -432,6 +527,7 @@ public class TMFEntityValidator {
 	 */
 	public void validateProductOrderItem(@NotNull ProductOrderItem productOrderItem, @NotNull String productOrderId) throws BillingEngineValidationException{
 		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		if(productOrderItem.getItemTotalPrice()==null||productOrderItem.getItemTotalPrice().isEmpty()){
@@ -451,7 +547,7 @@ public class TMFEntityValidator {
 			}
 		}
 		
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "productOrderItem");
 		
 		logger.debug("Validation of ProductOrderItem {} for ProductOrder {} successful",productOrderItem.getId(),productOrderId);
 		
@@ -467,6 +563,7 @@ public class TMFEntityValidator {
 	 */
 	public void validateOrderPrice(@NotNull OrderPrice op, @NotNull String productOrderItemId, @NotNull String productOrderId) throws BillingEngineValidationException{
 		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		if(op.getProductOfferingPrice()==null){
@@ -479,7 +576,7 @@ public class TMFEntityValidator {
 			issues.add(new ValidationIssue(msg,ValidationIssueSeverity.ERROR));
 		}
 		
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "orderPrice");
 		
 		logger.debug("Validation of OrderPrice of ProductOrderItem {} in ProductOrder {} successful",productOrderItemId, productOrderId);
 		
@@ -493,6 +590,7 @@ public class TMFEntityValidator {
 	 */
 	public void validateCharacteristicsInProductOrderItem(@NotNull ProductOrderItem productOrderItem) throws BillingEngineValidationException{
 		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		if(productOrderItem.getProduct()==null){
@@ -505,7 +603,7 @@ public class TMFEntityValidator {
 			issues.add(new ValidationIssue(msg,ValidationIssueSeverity.ERROR));
 		}
 		
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "characteristicsInProductOrderItem");
 		
 		logger.debug("Validation of Characteristics in ProductOrderItem {} successful",productOrderItem.getId());
 		
@@ -519,6 +617,7 @@ public class TMFEntityValidator {
 	 */
 	public void validateCharacteristicsInProduct(@NotNull Product product) throws BillingEngineValidationException{
 		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		
 		if(product.getProductCharacteristic()==null || product.getProductCharacteristic().isEmpty()){
@@ -526,7 +625,7 @@ public class TMFEntityValidator {
 			issues.add(new ValidationIssue(msg,ValidationIssueSeverity.ERROR));
 		}
 		
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "characteristicsInProduct");
 		
 		logger.debug("Validation of Characteristics in Product {} successful",product.getId());
 		
@@ -540,6 +639,7 @@ public class TMFEntityValidator {
 	 */
 	public void validateBillingPeriod(@NotNull TimePeriod billingPeriod) throws BillingEngineValidationException{
 		
+		Timer.Sample sample=Timer.start();
 		List<ValidationIssue> issues=new ArrayList<ValidationIssue>();
 		OffsetDateTime start = billingPeriod.getStartDateTime();
 	    OffsetDateTime end   = billingPeriod.getEndDateTime();
@@ -550,20 +650,72 @@ public class TMFEntityValidator {
 			issues.add(new ValidationIssue(msg,ValidationIssueSeverity.ERROR));
 	           
 	    }
-		this.throwsErrorValidationIssuesIfAny(issues);
+		this.throwsErrorValidationIssuesIfAny(issues, sample, "billingPeriod");
 		
 		logger.debug("Validation of billingPeriod successful");
 		
 	}
 	
+	/*
+	 * The key of the validation of the ProductOfferingPrice in the cache, null if the validation is not cached (cache disabled or ProductOfferingPrice without id, version and lastUpdate)
+	 */
+	private String cacheKey(String validation, ProductOfferingPrice pop) {
+		if(cache==null || pop.getId()==null || (pop.getVersion()==null && pop.getLastUpdate()==null))
+			return null;
+		return validation + "|" + pop.getId() + "|" + pop.getVersion() + "|" + (pop.getLastUpdate()!=null ? pop.getLastUpdate().toInstant() : null);
+	}
+	
+	/*
+	 * The key of the validation of an element of a list of the ProductOfferingPrice (e.g., its prodSpecCharValueUse), null if the validated element is not in the list
+	 * of the ProductOfferingPrice: the cached validations must refer to what the ProductOfferingPrice contains
+	 */
+	private String cacheKey(String validation, ProductOfferingPrice pop, Object element, List<?> elements) {
+		if(elements!=null) {
+			for(int i=0; i<elements.size(); i++) {
+				if(elements.get(i)==element)
+					return this.cacheKey(validation + "[" + i + "]", pop);
+			}
+		}
+		return null;
+	}
+	
+	/*
+	 * Raises the errors and logs the warnings of a cached validation, if any. Returns false if the validation is not cached
+	 */
+	private boolean replayCachedIssues(String cacheKey) throws BillingEngineValidationException {
+		if(cacheKey==null)
+			return false;
+		List<ValidationIssue> issues=cache.getIfPresent(cacheKey);
+		if(issues==null)
+			return false;
+		this.throwsErrorValidationIssuesIfAny(issues);
+		this.logWarningValidationIssuesIfAny(issues);
+		return true;
+	}
+	
+	private void cacheIssues(String cacheKey, List<ValidationIssue> issues) {
+		if(cacheKey!=null)
+			cache.put(cacheKey, List.copyOf(issues));
+	}
+	
+	/*
+	 * Records the duration of the validation of the entity before checking the issues
+	 */
+	private void throwsErrorValidationIssuesIfAny(List<ValidationIssue> issues, Timer.Sample sample, String entity) throws BillingEngineValidationException {
+		BillingMetrics.stop(sample, BillingMetrics.validation(entity), "validation");
+		this.throwsErrorValidationIssuesIfAny(issues);
+	}
+	
 	private void throwsErrorValidationIssuesIfAny(List<ValidationIssue> issues) throws BillingEngineValidationException {
 		if (issues.stream().anyMatch(i -> i.getSeverity() == ValidationIssueSeverity.ERROR)) {
+			BillingMetrics.VALIDATION_ERRORS.increment(issues.stream().filter(i -> i.getSeverity() == ValidationIssueSeverity.ERROR).count());
 	           throw new BillingEngineValidationException(issues);
 	        }
 	}
 	
 	private void logWarningValidationIssuesIfAny(List<ValidationIssue> issues) {
 		if (issues.stream().anyMatch(i -> i.getSeverity() == ValidationIssueSeverity.WARNING)) {
+			BillingMetrics.VALIDATION_WARNINGS.increment(issues.stream().filter(i -> i.getSeverity() == ValidationIssueSeverity.WARNING).count());
 			BillingEngineValidationException ex=new BillingEngineValidationException(issues);
             logger.warn(ex.getMessage());
         }
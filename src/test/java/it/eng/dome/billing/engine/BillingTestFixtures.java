@@ -0,0 +1,128 @@
+package it.eng.dome.billing.engine;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import it.eng.dome.tmforum.tmf620.v4.model.CharacteristicValueSpecification;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductSpecificationCharacteristicValueUse;
+import it.eng.dome.tmforum.tmf620.v4.model.Quantity;
+import it.eng.dome.tmforum.tmf635.v4.model.ProductRef;
+import it.eng.dome.tmforum.tmf635.v4.model.RatedProductUsage;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+
+/**
+ * Builders of the TMForum entities shared by the tests.
+ */
+public final class BillingTestFixtures {
+
+	private BillingTestFixtures() {
+	}
+
+	/**
+	 * Creates the identifiers of the Products from urn:ngsi-ld:product:from to urn:ngsi-ld:product:(to - 1)
+	 *
+	 * @param from the first number (inclusive)
+	 * @param to the last number (exclusive)
+	 * @return the identifiers of the Products
+	 */
+	public static List<String> createProductIds(int from, int to) {
+		List<String> productIds = new ArrayList<String>();
+		for (int i = from; i < to; i++) {
+			productIds.add("urn:ngsi-ld:product:" + i);
+		}
+		return productIds;
+	}
+
+	/**
+	 * Creates a launched, not bundled {@link ProductOfferingPrice} named as its priceType
+	 *
+	 * @param id the identifier of the POP
+	 * @param priceType the priceType (e.g., one time, recurring, usage)
+	 * @param value the value of the price
+	 * @param currency the currency of the price
+	 * @return the {@link ProductOfferingPrice}
+	 */
+	public static ProductOfferingPrice createPop(String id, String priceType, float value, String currency) {
+		ProductOfferingPrice pop = new ProductOfferingPrice();
+		pop.setId(id);
+		pop.setName(priceType);
+		pop.setPriceType(priceType);
+		pop.setIsBundle(false);
+		pop.setLifecycleStatus("Launched");
+		pop.setPrice(new it.eng.dome.tmforum.tmf620.v4.model.Money().unit(currency).value(value));
+		return pop;
+	}
+
+	/**
+	 * Creates a {@link Usage} of a Product with a single {@link UsageCharacteristic}
+	 *
+	 * @param productId the identifier of the Product (ratedProductUsage.productRef)
+	 * @param id the identifier of the Usage
+	 * @param metric the name of the UsageCharacteristic
+	 * @param value the value of the UsageCharacteristic
+	 * @param usageDate the usageDate
+	 * @return the {@link Usage}
+	 */
+	public static Usage createUsage(String productId, String id, String metric, float value, OffsetDateTime usageDate) {
+		Usage usage = new Usage();
+		usage.setId(id);
+		usage.setUsageDate(usageDate);
+		usage.addRatedProductUsageItem(new RatedProductUsage().productRef(new ProductRef().id(productId)));
+
+		UsageCharacteristic usageCh = new UsageCharacteristic();
+		usageCh.setName(metric);
+		usageCh.setValue(value);
+		usage.addUsageCharacteristicItem(usageCh);
+		return usage;
+	}
+
+	/**
+	 * Creates a usage {@link ProductOfferingPrice} in EUR for each unit of a metric
+	 *
+	 * @param metric the metric (unitOfMeasure.units), also used in the identifier of the POP
+	 * @param value the price of a unit
+	 * @return the {@link ProductOfferingPrice}
+	 */
+	public static ProductOfferingPrice createUsagePop(String metric, float value) {
+		ProductOfferingPrice pop = new ProductOfferingPrice();
+		pop.setId("urn:ngsi-ld:product-offering-price:" + metric);
+		pop.setPriceType("usage");
+		pop.setIsBundle(false);
+		pop.setLifecycleStatus("Launched");
+		pop.setPrice(new it.eng.dome.tmforum.tmf620.v4.model.Money().unit("EUR").value(value));
+		pop.setUnitOfMeasure(new Quantity().amount(1f).units(metric));
+		return pop;
+	}
+
+	/**
+	 * Creates a monthly recurring {@link ProductOfferingPrice} in EUR for each user, applied when the "users" characteristic is in the range
+	 *
+	 * @param id the identifier of the POP
+	 * @param valueFrom the first number of users of the tier
+	 * @param valueTo the last number of users of the tier
+	 * @param value the price of a user
+	 * @return the {@link ProductOfferingPrice}
+	 */
+	public static ProductOfferingPrice createTier(String id, int valueFrom, int valueTo, float value) {
+		ProductOfferingPrice pop = new ProductOfferingPrice();
+		pop.setId(id);
+		pop.setPriceType("recurring");
+		pop.setIsBundle(false);
+		pop.setLifecycleStatus("Launched");
+		pop.setPrice(new it.eng.dome.tmforum.tmf620.v4.model.Money().unit("EUR").value(value));
+		pop.setRecurringChargePeriodType("month");
+		pop.setRecurringChargePeriodLength(1);
+		pop.setUnitOfMeasure(new Quantity().amount(1f).units("user"));
+
+		ProductSpecificationCharacteristicValueUse valueUse = new ProductSpecificationCharacteristicValueUse();
+		valueUse.setName("users");
+		valueUse.setValueType("number");
+		valueUse.addProductSpecCharacteristicValueItem(new CharacteristicValueSpecification().valueFrom(valueFrom).valueTo(valueTo));
+		pop.addProdSpecCharValueUseItem(valueUse);
+		return pop;
+	}
+
+}
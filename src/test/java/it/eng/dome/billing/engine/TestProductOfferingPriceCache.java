@@ -0,0 +1,100 @@
+package it.eng.dome.billing.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
+import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
+import it.eng.dome.tmforum.tmf620.v4.ApiClient;
+
+/**
+ * Benchmark of the ProductOfferingPrice cache against a local stub of the TMF620 API (with a simulated latency).
+ * Each bill/preview request looks up a few ProductOfferingPrice(s) (the price, the bundled ones and the price alterations).
+ */
+public class TestProductOfferingPriceCache {
+
+	private static final int POPS = 50;
+	private static final int REQUESTS = 2000;
+	private static final int LOOKUPS_PER_REQUEST = 4;
+	private static final long LATENCY_MS = 2;
+
+	private static final AtomicInteger tmfRequests = new AtomicInteger(0);
+
+	public static void main(String[] args) throws Exception {
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/tmf-api/productCatalogManagement/v4/productOfferingPrice/", TestProductOfferingPriceCache::handleGetProductOfferingPrice);
+		server.start();
+
+		try {
+			ApiClient apiClient = new ApiClient();
+			apiClient.setBasePath("http://localhost:" + server.getAddress().getPort() + "/tmf-api/productCatalogManagement/v4");
+			ProductCatalogManagementApis productCatalogManagementApis = new ProductCatalogManagementApis(apiClient);
+
+			// warm-up
+			run(productCatalogManagementApis, false);
+
+			run(productCatalogManagementApis, false);
+			run(productCatalogManagementApis, true);
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	private static void run(ProductCatalogManagementApis productCatalogManagementApis, boolean cacheEnabled) throws Exception {
+		AppProperties appProperties = new AppProperties();
+		appProperties.getPopCache().setEnabled(cacheEnabled);
+		ProductOfferingPriceService service = new ProductOfferingPriceService(productCatalogManagementApis, appProperties,
+				new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+
+		tmfRequests.set(0);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < REQUESTS; i++) {
+			for (int j = 0; j < LOOKUPS_PER_REQUEST; j++) {
+				service.getProductOfferingPrice(getPopId((i + j) % POPS));
+			}
+		}
+
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+		System.out.println(String.format("cache %s: %d requests in %d ms (%.3f ms/request), %d TMF620 calls, hit rate %.2f",
+				cacheEnabled ? "enabled " : "disabled", REQUESTS, elapsedMs, (double) elapsedMs / REQUESTS, tmfRequests.get(),
+				service.getStatistics().hitRate()));
+	}
+
+	private static String getPopId(int i) {
+		return "urn:ngsi-ld:product-offering-price:" + i;
+	}
+
+	private static void handleGetProductOfferingPrice(HttpExchange exchange) throws IOException {
+		tmfRequests.incrementAndGet();
+		String path = exchange.getRequestURI().getPath();
+		String id = path.substring(path.lastIndexOf('/') + 1);
+
+		try {
+			Thread.sleep(LATENCY_MS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		String json = "{\"id\":\"" + id + "\",\"name\":\"pop " + id + "\",\"priceType\":\"recurring\","
+				+ "\"recurringChargePeriodType\":\"month\",\"recurringChargePeriodLength\":1,"
+				+ "\"price\":{\"unit\":\"EUR\",\"value\":10.0}}";
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(body);
+		}
+	}
+}
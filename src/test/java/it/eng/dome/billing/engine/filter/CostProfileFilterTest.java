@@ -0,0 +1,176 @@
+package it.eng.dome.billing.engine.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.utils.CostProfile;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class CostProfileFilterTest {
+
+	private static final String BODY = "[{\"id\":\"urn:ngsi-ld:customer-bill:1\"}]";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AppProperties appProperties = new AppProperties();
+	private ExecutorService executor;
+
+	@BeforeEach
+	public void setUp() {
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void profiledRequestReturnsTheProfileHeaders() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/billing/bill");
+		request.setServletPath("/billing/bill");
+		request.addHeader(CostProfileFilter.PROFILE_HEADER, "true");
+		MockHttpServletResponse response = this.doFilter(request);
+
+		assertEquals(BODY, response.getContentAsString());
+		assertNull(CostProfile.current());
+
+		JsonNode profile = objectMapper.readTree(response.getHeader(CostProfileFilter.PROFILE_HEADER));
+		assertEquals(2, profile.at("/tmf/tmf637/calls").asLong());
+		assertEquals(2048, profile.at("/tmf/tmf637/bytesReceived").asLong());
+		assertEquals(25, profile.at("/usages/scanned").asLong());
+		assertEquals(15, profile.at("/usages/kept").asLong());
+		assertEquals(1, profile.at("/stages/usageFetch/count").asLong());
+		assertEquals(2, profile.at("/pops/urn:ngsi-ld:product-offering-price:1/count").asLong());
+		assertTrue(profile.get("totalMillis").asDouble() > 0);
+
+		String serverTiming = response.getHeader(CostProfileFilter.SERVER_TIMING_HEADER);
+		assertTrue(serverTiming.startsWith("priceCalculation;dur="), serverTiming);
+		assertTrue(serverTiming.contains("usageFetch;dur=3.000"), serverTiming);
+		assertTrue(serverTiming.contains("total;dur="), serverTiming);
+	}
+
+	@Test
+	public void profileQueryParameterEnablesTheProfile() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/billing/previewPrice");
+		request.setServletPath("/billing/previewPrice");
+		request.setParameter(CostProfileFilter.PROFILE_PARAMETER, "true");
+
+		assertTrue(this.doFilter(request).containsHeader(CostProfileFilter.SERVER_TIMING_HEADER));
+	}
+
+	@Test
+	public void requestsAreNotProfiledByDefault() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/billing/bill");
+		request.setServletPath("/billing/bill");
+		MockHttpServletResponse response = this.doFilter(request);
+
+		assertEquals(BODY, response.getContentAsString());
+		assertNull(response.getHeader(CostProfileFilter.PROFILE_HEADER));
+		assertNull(response.getHeader(CostProfileFilter.SERVER_TIMING_HEADER));
+	}
+
+	@Test
+	public void otherPathsAndDisabledProfilingAreNotProfiled() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/billing/bills");
+		request.setServletPath("/billing/bills");
+		request.addHeader(CostProfileFilter.PROFILE_HEADER, "true");
+		assertNull(this.doFilter(request).getHeader(CostProfileFilter.PROFILE_HEADER));
+
+		appProperties.getProfiling().setEnabled(false);
+		request = new MockHttpServletRequest("POST", "/billing/bill");
+		request.setServletPath("/billing/bill");
+		request.addHeader(CostProfileFilter.PROFILE_HEADER, "true");
+		assertNull(this.doFilter(request).getHeader(CostProfileFilter.PROFILE_HEADER));
+	}
+
+	@Test
+	public void headerListsOnlyTheSlowestPops() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/billing/bill");
+		request.setServletPath("/billing/bill");
+		request.addHeader(CostProfileFilter.PROFILE_HEADER, "true");
+		MockHttpServletResponse response = this.doFilter(request, new HttpServlet() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void service(HttpServletRequest req, HttpServletResponse resp) {
+				for (int i = 1; i <= 500; i++) {
+					CostProfile.recordPop("urn:ngsi-ld:product-offering-price:" + UUID.nameUUIDFromBytes(new byte[] { (byte) i, (byte) (i >> 8) }), i * 1_000L);
+				}
+			}
+		});
+
+		String header = response.getHeader(CostProfileFilter.PROFILE_HEADER);
+		assertTrue(header.length() < 8192, "The header is " + header.length() + " characters long");
+		JsonNode profile = objectMapper.readTree(header);
+		assertEquals(appProperties.getProfiling().getHeaderPops(), profile.get("pops").size());
+		assertEquals(500 - appProperties.getProfiling().getHeaderPops(), profile.get("popsOmitted").asInt());
+		assertEquals(0.5, profile.get("pops").elements().next().get("millis").asDouble());
+	}
+
+	private MockHttpServletResponse doFilter(MockHttpServletRequest request) throws Exception {
+		return this.doFilter(request, new BillingServlet());
+	}
+
+	private MockHttpServletResponse doFilter(MockHttpServletRequest request, HttpServlet servlet) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		new CostProfileFilter(appProperties, objectMapper).doFilter(request, response, new MockFilterChain(servlet));
+		return response;
+	}
+
+	/*
+	 * Records a billing request, pricing a POP in another thread, and writes (and commits) the response
+	 */
+	private class BillingServlet extends HttpServlet {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void service(HttpServletRequest req, HttpServletResponse resp) {
+			CostProfile profile = CostProfile.current();
+			if (profile != null) {
+				profile.addTmfCall("tmf637");
+				profile.addTmfCall("tmf637");
+				profile.addTmfBytes("tmf637", 2048);
+			}
+			CostProfile.recordUsages(25, 15);
+			CostProfile.recordStage("usageFetch", 3_000_000);
+			CostProfile.recordPop("urn:ngsi-ld:product-offering-price:1", 1_000_000);
+			CompletableFuture.supplyAsync(CostProfile.propagate(() -> {
+				CostProfile.recordStage("priceCalculation", 1_000_000);
+				CostProfile.recordPop("urn:ngsi-ld:product-offering-price:1", 1_000_000);
+				return null;
+			}), executor).join();
+
+			try {
+				resp.setContentType("application/json");
+				resp.getWriter().write(BODY);
+				resp.flushBuffer();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+package it.eng.dome.billing.engine.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the exact decimal arithmetic of {@link Money} and its conversion from/to the TMForum floats.
+ */
+public class MoneyTest {
+
+	@Test
+	public void floatsAreConvertedToTheirDecimal() {
+		Random random = new Random(11);
+		for (int i = 0; i < 100_000; i++) {
+			// prices as written in the TMForum entities, e.g. 1234.56
+			BigDecimal decimal = BigDecimal.valueOf(random.nextInt(10_000_000), random.nextInt(5));
+			float value = decimal.floatValue();
+
+			Money money = new Money("EUR", value);
+			assertEquals(value, money.getValue());
+			assertEquals(0, decimal.compareTo(money.getAmount()), decimal + " -> " + money.getAmount());
+		}
+
+		assertEquals(new BigDecimal("0.10000000"), new Money("EUR", 0.1f).getAmount());
+		assertEquals(new BigDecimal("1.10000000"), new Money("EUR", 1.1f).getAmount());
+		assertEquals(new BigDecimal("-19.99000000"), new Money("EUR", -19.99f).getAmount());
+		assertEquals(new BigDecimal("100000000.00000000"), new Money("EUR", 100000000f).getAmount());
+	}
+
+	@Test
+	public void sumsDoNotDrift() {
+		float floatTotal = 0f;
+		Money total = Money.zero("EUR");
+		Money amount = new Money("EUR", 0.1f);
+		for (int i = 0; i < 10_000; i++) {
+			floatTotal += 0.1f;
+			total = total.add(amount);
+		}
+
+		assertNotEquals(1000f, floatTotal);
+		assertEquals(new BigDecimal("1000.00000000"), total.getAmount());
+		assertEquals(1000f, total.getValue());
+	}
+
+	@Test
+	public void percentageIsRoundedHalfEven() {
+		assertEquals(new BigDecimal("3.00000000"), new Money("EUR", 19.99f).percentage(15f, 2).getAmount());
+		assertEquals(new BigDecimal("0.12000000"), new Money("EUR", 1f).percentage(12.5f, 2).getAmount());
+		assertEquals(new BigDecimal("0.38000000"), new Money("EUR", 1f).percentage(37.5f, 2).getAmount());
+		assertEquals(new BigDecimal("-0.12000000"), new Money("EUR", -1f).percentage(12.5f, 2).getAmount());
+
+		Random random = new Random(5);
+		for (int i = 0; i < 10_000; i++) {
+			BigDecimal price = BigDecimal.valueOf(random.nextInt(1_000_000), 2);
+			BigDecimal percentage = BigDecimal.valueOf(random.nextInt(10_000), 2);
+
+			BigDecimal expected = price.multiply(percentage).divide(BigDecimal.valueOf(100)).setScale(2, RoundingMode.HALF_EVEN);
+			Money actual = new Money("EUR", price.floatValue()).percentage(percentage.floatValue(), 2);
+			assertEquals(0, expected.compareTo(actual.getAmount()), price + " * " + percentage + "%");
+		}
+	}
+
+	@Test
+	public void arithmeticIsChecked() {
+		Money money = new Money("EUR", 10.5f);
+		assertEquals(new BigDecimal("31.50000000"), money.multiply(3).getAmount());
+		assertEquals(new BigDecimal("3.50000000"), money.divide(new BigDecimal("3")).getAmount());
+		assertEquals(new BigDecimal("-10.50000000"), money.negate().getAmount());
+		assertEquals(money.getAmount(), money.negate().abs().getAmount());
+
+		Money large = new Money("EUR", new BigDecimal("90000000000"));
+		assertThrows(ArithmeticException.class, () -> large.add(large));
+		assertThrows(ArithmeticException.class, () -> large.multiply(2));
+		assertEquals(new BigDecimal("45000000000.00000000"), large.percentage(50f, 2).getAmount());
+		assertThrows(ArithmeticException.class, () -> large.percentage(200f, 2));
+
+		Money unset = new Money();
+		assertNull(unset.getValue());
+		assertNull(unset.getAmount());
+		assertThrows(IllegalStateException.class, () -> unset.add(money));
+	}
+
+	@Test
+	public void onlyTheSameCurrencyIsAdded() {
+		Money euros = new Money("EUR", 10.5f);
+		assertEquals(new BigDecimal("21.00000000"), euros.add(euros).getAmount());
+		assertEquals("EUR", Money.zero(null).add(euros).getUnit());
+		assertThrows(IllegalArgumentException.class, () -> euros.add(new Money("USD", 10.5f)));
+		assertThrows(IllegalArgumentException.class, () -> Money.zero("USD").add(euros));
+	}
+}
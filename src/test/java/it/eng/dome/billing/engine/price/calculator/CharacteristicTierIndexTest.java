@@ -0,0 +1,213 @@
+package it.eng.dome.billing.engine.price.calculator;
+
+import static it.eng.dome.billing.engine.BillingTestFixtures.createTier;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
+import it.eng.dome.billing.engine.service.UsageService;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
+import it.eng.dome.tmforum.tmf620.v4.model.BundledProductOfferingPriceRelationship;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf622.v4.model.OrderPrice;
+import it.eng.dome.tmforum.tmf622.v4.model.ProductOrderItem;
+import it.eng.dome.tmforum.tmf622.v4.model.ProductRefOrValue;
+import it.eng.dome.tmforum.tmf637.v4.model.Characteristic;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Checks the selection of the tiers of a bundled {@link ProductOfferingPrice} by the {@link CharacteristicTierIndex}
+ * and the prices of the volume and graduated tiers.
+ */
+public class CharacteristicTierIndexTest {
+
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+	// users 1-10: 2 EUR per user, 11-100: 1.5 EUR per user, 101-1000: 1 EUR per user
+	private final List<ProductOfferingPrice> tiers = new ArrayList<ProductOfferingPrice>();
+
+	private ProductOfferingPrice bundledPop;
+
+	private ProductCatalogManagementApis productCatalogManagementApis;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		// the tiers are not sorted in the bundled POP
+		tiers.add(createTier("urn:ngsi-ld:product-offering-price:tier-2", 11, 100, 1.5f));
+		tiers.add(createTier("urn:ngsi-ld:product-offering-price:tier-1", 1, 10, 2f));
+		tiers.add(createTier("urn:ngsi-ld:product-offering-price:tier-3", 101, 1000, 1f));
+
+		bundledPop = new ProductOfferingPrice();
+		bundledPop.setId("urn:ngsi-ld:product-offering-price:bundled");
+		bundledPop.setIsBundle(true);
+		bundledPop.setLifecycleStatus("Launched");
+
+		productCatalogManagementApis = mock(ProductCatalogManagementApis.class);
+		for (ProductOfferingPrice tier : tiers) {
+			bundledPop.addBundledPopRelationshipItem(new BundledProductOfferingPriceRelationship().id(tier.getId()));
+			when(productCatalogManagementApis.getProductOfferingPrice(eq(tier.getId()), any())).thenReturn(tier);
+		}
+	}
+
+	@Test
+	public void tiersAreSelected() throws Exception {
+		CharacteristicTierIndex index = CharacteristicTierIndex.of(tiers);
+		assertNotNull(index);
+		assertEquals("users", index.getCharacteristicName());
+
+		assertSame(tiers.get(1), index.select(1, CharacteristicTierIndex.Mode.VOLUME).get(0).getPop());
+		assertSame(tiers.get(1), index.select(10, CharacteristicTierIndex.Mode.VOLUME).get(0).getPop());
+		assertSame(tiers.get(0), index.select(11, CharacteristicTierIndex.Mode.VOLUME).get(0).getPop());
+		assertSame(tiers.get(2), index.select(1000, CharacteristicTierIndex.Mode.VOLUME).get(0).getPop());
+		// a value between two adjacent ranges is in the upper one
+		assertSame(tiers.get(0), index.select(10.5, CharacteristicTierIndex.Mode.VOLUME).get(0).getPop());
+		assertThrows(BillingEngineValidationException.class, () -> index.select(0, CharacteristicTierIndex.Mode.VOLUME));
+
+		List<CharacteristicTierIndex.Tier> graduated = index.select(150, CharacteristicTierIndex.Mode.GRADUATED);
+		assertEquals(3, graduated.size());
+		assertEquals(10L, graduated.get(0).getQuantity());
+		assertEquals(90L, graduated.get(1).getQuantity());
+		assertEquals(50L, graduated.get(2).getQuantity());
+
+		// overlapping ranges are not tiers
+		List<ProductOfferingPrice> overlapping = new ArrayList<ProductOfferingPrice>(tiers);
+		overlapping.add(createTier("urn:ngsi-ld:product-offering-price:tier-4", 50, 60, 1f));
+		assertNull(CharacteristicTierIndex.of(overlapping));
+	}
+
+	@Test
+	public void valuesNotCoveredByTheTiersAreRejected() throws Exception {
+		// above the last range
+		CharacteristicTierIndex index = CharacteristicTierIndex.of(tiers);
+		for (CharacteristicTierIndex.Mode mode : CharacteristicTierIndex.Mode.values()) {
+			assertThrows(BillingEngineValidationException.class, () -> index.select(1001, mode));
+			assertThrows(BillingEngineValidationException.class, () -> index.select(1000.5, mode));
+		}
+
+		// in the gap between the ranges 1-10 and 21-100
+		List<ProductOfferingPrice> gap = List.of(createTier("urn:ngsi-ld:product-offering-price:tier-1", 1, 10, 2f),
+				createTier("urn:ngsi-ld:product-offering-price:tier-2", 21, 100, 1.5f));
+		CharacteristicTierIndex gapIndex = CharacteristicTierIndex.of(gap);
+		for (CharacteristicTierIndex.Mode mode : CharacteristicTierIndex.Mode.values()) {
+			assertThrows(BillingEngineValidationException.class, () -> gapIndex.select(15, mode));
+			assertEquals(1, gapIndex.select(5, mode).size());
+		}
+		// the whole value is in a range, but the graduated tiers don't price the part in the gap
+		assertSame(gap.get(1), gapIndex.select(25, CharacteristicTierIndex.Mode.VOLUME).get(0).getPop());
+		assertThrows(BillingEngineValidationException.class, () -> gapIndex.select(25, CharacteristicTierIndex.Mode.GRADUATED));
+
+		// the bill fails instead of pricing only a part of the value
+		for (CharacteristicTierIndex.Mode mode : CharacteristicTierIndex.Mode.values()) {
+			PriceCalculator<Product, Money> pc = createPriceCalculatorFactory(mode).getPriceCalculatorForProduct(bundledPop);
+			assertThrows(BillingEngineValidationException.class, () -> calculate(pc, 2000));
+		}
+	}
+
+	@Test
+	public void volumeTiersPriceTheWholeValue() throws Exception {
+		PriceCalculatorFactory priceCalculatorFactory = createPriceCalculatorFactory(CharacteristicTierIndex.Mode.VOLUME);
+		PriceCalculator<Product, Money> pc = priceCalculatorFactory.getPriceCalculatorForProduct(bundledPop);
+
+		assertEquals(10f, calculate(pc, 5), 0.0001f);
+		assertEquals(37.5f, calculate(pc, 25), 0.0001f);
+		assertEquals(150f, calculate(pc, 150), 0.0001f);
+		assertThrows(BillingEngineValidationException.class, () -> calculate(pc, 2000));
+	}
+
+	@Test
+	public void graduatedTiersPriceThePartsOfTheValue() throws Exception {
+		PriceCalculatorFactory priceCalculatorFactory = createPriceCalculatorFactory(CharacteristicTierIndex.Mode.GRADUATED);
+		PriceCalculator<Product, Money> pc = priceCalculatorFactory.getPriceCalculatorForProduct(bundledPop);
+
+		assertEquals(10f, calculate(pc, 5), 0.0001f);
+		assertEquals(42.5f, calculate(pc, 25), 0.0001f);
+		assertEquals(205f, calculate(pc, 150), 0.0001f);
+
+		// price preview: an OrderPrice for each tier
+		List<OrderPrice> orderPrices = priceCalculatorFactory.getPriceCalculatorForProductOrderItem(bundledPop)
+				.calculatePrice(createProductOrderItem(25), PriceCalculationContext.forBillingPeriod(null));
+		assertEquals(2, orderPrices.size());
+		assertEquals(20f, orderPrices.get(0).getPrice().getDutyFreeAmount().getValue(), 0.0001f);
+		assertEquals(22.5f, orderPrices.get(1).getPrice().getDutyFreeAmount().getValue(), 0.0001f);
+	}
+
+	@Test
+	public void tiersArePricedInTheirCurrency() throws Exception {
+		for (ProductOfferingPrice tier : tiers) {
+			tier.getPrice().setUnit("USD");
+		}
+
+		for (CharacteristicTierIndex.Mode mode : CharacteristicTierIndex.Mode.values()) {
+			Money price = calculateMoney(createPriceCalculatorFactory(mode).getPriceCalculatorForProduct(bundledPop), 150);
+			assertEquals("USD", price.getUnit());
+		}
+	}
+
+	private PriceCalculatorFactory createPriceCalculatorFactory(CharacteristicTierIndex.Mode tierMode) {
+		AppProperties appProperties = new AppProperties();
+		appProperties.getPricing().setTierMode(tierMode);
+		ProductOfferingPriceService productOfferingPriceService = new ProductOfferingPriceService(productCatalogManagementApis, appProperties,
+				new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+		return new PriceCalculatorFactory(mock(PriceAlterationCalculator.class), productOfferingPriceService,
+				new TMFEntityValidator(), mock(UsageService.class), appProperties, new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+	}
+
+	private static float calculate(PriceCalculator<Product, Money> pc, int users) throws Exception {
+		return calculateMoney(pc, users).getValue();
+	}
+
+	private static Money calculateMoney(PriceCalculator<Product, Money> pc, int users) throws Exception {
+		Product product = new Product();
+		product.setId("urn:ngsi-ld:product:1");
+		Characteristic characteristic = new Characteristic();
+		characteristic.setName("users");
+		characteristic.setValueType("number");
+		characteristic.setValue(users);
+		product.addProductCharacteristicItem(characteristic);
+
+		TimePeriod billingPeriod = new TimePeriod();
+		billingPeriod.setStartDateTime(START);
+		billingPeriod.setEndDateTime(START.plusMonths(1));
+		return pc.calculatePrice(product, PriceCalculationContext.forBillingPeriod(billingPeriod));
+	}
+
+	private static ProductOrderItem createProductOrderItem(int users) {
+		it.eng.dome.tmforum.tmf622.v4.model.Characteristic characteristic = new it.eng.dome.tmforum.tmf622.v4.model.Characteristic();
+		characteristic.setName("users");
+		characteristic.setValueType("number");
+		characteristic.setValue(users);
+
+		ProductRefOrValue product = new ProductRefOrValue();
+		product.addProductCharacteristicItem(characteristic);
+
+		ProductOrderItem item = new ProductOrderItem();
+		item.setId("1");
+		item.setQuantity(1);
+		item.setProduct(product);
+		return item;
+	}
+}
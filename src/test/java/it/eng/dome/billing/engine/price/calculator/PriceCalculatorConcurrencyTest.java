@@ -0,0 +1,173 @@
+package it.eng.dome.billing.engine.price.calculator;
+
+import static it.eng.dome.billing.engine.BillingTestFixtures.createPop;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
+import it.eng.dome.billing.engine.service.UsageService;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
+import it.eng.dome.tmforum.tmf620.v4.model.BundledProductOfferingPriceRelationship;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductSpecificationCharacteristicValueUse;
+import it.eng.dome.tmforum.tmf620.v4.model.Quantity;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+import it.eng.dome.tmforum.tmf637.v4.model.Characteristic;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Runs the {@link PriceCalculator}(s) of different {@link ProductOfferingPrice} types concurrently on different products and billingPeriods, 
+ * checking that each result is the same obtained by a sequential calculation.
+ */
+public class PriceCalculatorConcurrencyTest {
+	
+	private static final int PRODUCTS = 8;
+	private static final int THREADS = 16;
+	private static final int TASKS = 2000;
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+	
+	private PriceCalculatorFactory priceCalculatorFactory;
+	private final List<ProductOfferingPrice> pops = new ArrayList<ProductOfferingPrice>();
+	private final List<Product> products = new ArrayList<Product>();
+	
+	@BeforeEach
+	public void setUp() throws Exception {
+		ProductOfferingPrice basePop = createPop("urn:ngsi-ld:product-offering-price:base", "recurring", 10f, "EUR");
+		
+		ProductOfferingPrice usagePop = createPop("urn:ngsi-ld:product-offering-price:usage", "usage", 0.5f, "EUR");
+		usagePop.setUnitOfMeasure(new Quantity().amount(1f).units("apiCalls"));
+		
+		ProductOfferingPrice characteristicPop = createPop("urn:ngsi-ld:product-offering-price:characteristic", "recurring", 2f, "EUR");
+		characteristicPop.setUnitOfMeasure(new Quantity().amount(1f).units("GB"));
+		ProductSpecificationCharacteristicValueUse valueUse = new ProductSpecificationCharacteristicValueUse();
+		valueUse.setName("storage");
+		valueUse.setValueType("number");
+		characteristicPop.addProdSpecCharValueUseItem(valueUse);
+		
+		ProductOfferingPrice bundledPop = new ProductOfferingPrice();
+		bundledPop.setId("urn:ngsi-ld:product-offering-price:bundled");
+		bundledPop.setIsBundle(true);
+		bundledPop.setLifecycleStatus("Launched");
+		bundledPop.addBundledPopRelationshipItem(new BundledProductOfferingPriceRelationship().id(basePop.getId()));
+		bundledPop.addBundledPopRelationshipItem(new BundledProductOfferingPriceRelationship().id(usagePop.getId()));
+		
+		pops.add(basePop);
+		pops.add(usagePop);
+		pops.add(characteristicPop);
+		pops.add(bundledPop);
+		
+		ProductCatalogManagementApis productCatalogManagementApis = mock(ProductCatalogManagementApis.class);
+		for (ProductOfferingPrice pop : pops) {
+			when(productCatalogManagementApis.getProductOfferingPrice(eq(pop.getId()), any())).thenReturn(pop);
+		}
+		
+		// the number of usages depends on the product and on the billingPeriod
+		UsageService usageService = mock(UsageService.class);
+		Map<String, Integer> usagesPerProduct = new HashMap<String, Integer>();
+		for (int i = 0; i < PRODUCTS; i++) {
+			Product product = new Product();
+			product.setId("urn:ngsi-ld:product:" + i);
+			Characteristic storage = new Characteristic();
+			storage.setName("storage");
+			storage.setValueType("number");
+			storage.setValue(i + 1);
+			product.addProductCharacteristicItem(storage);
+			products.add(product);
+			usagesPerProduct.put(product.getId(), i + 1);
+		}
+		when(usageService.getUsages(anyString(), any(TimePeriod.class))).thenAnswer(invocation -> {
+			String productId = invocation.getArgument(0);
+			TimePeriod tp = invocation.getArgument(1);
+			return createUsages(usagesPerProduct.get(productId) * tp.getStartDateTime().getMonthValue());
+		});
+		
+		ProductOfferingPriceService productOfferingPriceService = new ProductOfferingPriceService(productCatalogManagementApis, 
+				new AppProperties(), new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+		
+		// the PriceCalculator(s) are cached and shared by the concurrent calculations
+		priceCalculatorFactory = new PriceCalculatorFactory(mock(PriceAlterationCalculator.class), productOfferingPriceService, 
+				new TMFEntityValidator(), usageService, new AppProperties(), new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+	}
+	
+	@Test
+	public void concurrentCalculationsAreDeterministic() throws Exception {
+		// expected prices calculated sequentially
+		Map<String, Float> expected = new HashMap<String, Float>();
+		List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+		for (int t = 0; t < TASKS; t++) {
+			ProductOfferingPrice pop = pops.get(t % pops.size());
+			Product product = products.get((t / pops.size()) % PRODUCTS);
+			int month = 1 + (t % 12);
+			String key = pop.getId() + "|" + product.getId() + "|" + month;
+			
+			if (!expected.containsKey(key)) {
+				expected.put(key, calculate(pop, product, month));
+			}
+			
+			tasks.add(() -> key + "=" + calculate(pop, product, month));
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<String>> results = executor.invokeAll(tasks);
+			for (Future<String> result : results) {
+				String[] keyValue = result.get().split("=");
+				assertEquals(String.valueOf(expected.get(keyValue[0])), keyValue[1], "Unexpected price for " + keyValue[0]);
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+	
+	private Float calculate(ProductOfferingPrice pop, Product product, int month) throws Exception {
+		TimePeriod billingPeriod = new TimePeriod();
+		billingPeriod.setStartDateTime(START.withMonth(month));
+		billingPeriod.setEndDateTime(START.withMonth(month).plusMonths(1));
+		
+		PriceCalculator<Product, Money> pc = priceCalculatorFactory.getPriceCalculatorForProduct(pop);
+		return pc.calculatePrice(product, PriceCalculationContext.forBillingPeriod(billingPeriod)).getValue();
+	}
+	
+	private static List<Usage> createUsages(int number) {
+		List<Usage> usages = new ArrayList<Usage>();
+		for (int i = 0; i < number; i++) {
+			Usage usage = new Usage();
+			usage.setId("urn:ngsi-ld:usage:" + i);
+			UsageCharacteristic usageCh = new UsageCharacteristic();
+			usageCh.setName("apiCalls");
+			usageCh.setValue(i + 1);
+			usage.addUsageCharacteristicItem(usageCh);
+			usages.add(usage);
+		}
+		return usages;
+	}
+
+}
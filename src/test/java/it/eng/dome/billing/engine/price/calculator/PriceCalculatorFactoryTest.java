@@ -0,0 +1,139 @@
+package it.eng.dome.billing.engine.price.calculator;
+
+import static it.eng.dome.billing.engine.BillingTestFixtures.createPop;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.service.ProductOfferingPriceService;
+import it.eng.dome.billing.engine.service.UsageService;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
+import it.eng.dome.tmforum.tmf620.v4.model.BundledProductOfferingPriceRelationship;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Checks that the {@link PriceCalculator}(s) of the cached {@link ProductOfferingPrice}(s) are reused, with their bundled POPs resolved once,
+ * and that they are dropped with the ProductOfferingPrice(s).
+ */
+public class PriceCalculatorFactoryTest {
+
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+	private ProductCatalogManagementApis productCatalogManagementApis;
+	private ProductOfferingPriceService productOfferingPriceService;
+	private PriceCalculatorFactory priceCalculatorFactory;
+
+	private ProductOfferingPrice bundledPop;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		ProductOfferingPrice firstPop = createPop("urn:ngsi-ld:product-offering-price:first", "recurring", 10f, "EUR");
+		ProductOfferingPrice secondPop = createPop("urn:ngsi-ld:product-offering-price:second", "recurring", 5f, "EUR");
+
+		bundledPop = new ProductOfferingPrice();
+		bundledPop.setId("urn:ngsi-ld:product-offering-price:bundled");
+		bundledPop.setIsBundle(true);
+		bundledPop.setLifecycleStatus("Launched");
+		bundledPop.addBundledPopRelationshipItem(new BundledProductOfferingPriceRelationship().id(firstPop.getId()));
+		bundledPop.addBundledPopRelationshipItem(new BundledProductOfferingPriceRelationship().id(secondPop.getId()));
+
+		productCatalogManagementApis = mock(ProductCatalogManagementApis.class);
+		when(productCatalogManagementApis.getProductOfferingPrice(eq(firstPop.getId()), any())).thenReturn(firstPop);
+		when(productCatalogManagementApis.getProductOfferingPrice(eq(secondPop.getId()), any())).thenReturn(secondPop);
+
+		AppProperties appProperties = new AppProperties();
+		productOfferingPriceService = new ProductOfferingPriceService(productCatalogManagementApis, appProperties,
+				new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+		priceCalculatorFactory = new PriceCalculatorFactory(mock(PriceAlterationCalculator.class), productOfferingPriceService,
+				new TMFEntityValidator(), mock(UsageService.class), appProperties, new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+	}
+
+	@Test
+	public void priceCalculatorsAreReused() throws Exception {
+		PriceCalculator<Product, Money> pc = priceCalculatorFactory.getPriceCalculatorForProduct(bundledPop);
+		assertEquals(15f, calculate(pc), 0.0001f);
+
+		assertSame(pc, priceCalculatorFactory.getPriceCalculatorForProduct(bundledPop));
+		assertEquals(15f, calculate(pc), 0.0001f);
+		assertEquals(15f, calculate(pc), 0.0001f);
+
+		// the bundled POPs have been resolved once
+		verify(productCatalogManagementApis, times(1)).getProductOfferingPrice(eq("urn:ngsi-ld:product-offering-price:first"), any());
+		verify(productCatalogManagementApis, times(1)).getProductOfferingPrice(eq("urn:ngsi-ld:product-offering-price:second"), any());
+	}
+
+	@Test
+	public void priceCalculatorsAreInvalidatedWithTheProductOfferingPrices() throws Exception {
+		PriceCalculator<Product, Money> pc = priceCalculatorFactory.getPriceCalculatorForProduct(bundledPop);
+		calculate(pc);
+
+		// a new price of a bundled POP
+		when(productCatalogManagementApis.getProductOfferingPrice(eq("urn:ngsi-ld:product-offering-price:second"), any()))
+			.thenReturn(createPop("urn:ngsi-ld:product-offering-price:second", "recurring", 7f, "EUR"));
+		productOfferingPriceService.invalidate("urn:ngsi-ld:product-offering-price:second");
+
+		PriceCalculator<Product, Money> newPc = priceCalculatorFactory.getPriceCalculatorForProduct(bundledPop);
+		assertNotSame(pc, newPc);
+		assertEquals(17f, calculate(newPc), 0.0001f);
+	}
+
+	@Test
+	public void priceCalculatorsOfOtherProductOfferingPricesAreKept() throws Exception {
+		PriceCalculator<Product, Money> pc = priceCalculatorFactory.getPriceCalculatorForProduct(bundledPop);
+		calculate(pc);
+
+		productOfferingPriceService.invalidate("urn:ngsi-ld:product-offering-price:other");
+
+		assertSame(pc, priceCalculatorFactory.getPriceCalculatorForProduct(bundledPop));
+	}
+
+	@Test
+	public void priceCalculatorsAreCachedByVersionAndLastUpdate() throws Exception {
+		ProductOfferingPrice pop = createPop("urn:ngsi-ld:product-offering-price:first", "recurring", 10f, "EUR");
+		pop.setLastUpdate(START);
+		PriceCalculator<Product, Money> pc = priceCalculatorFactory.getPriceCalculatorForProduct(pop);
+
+		// the same ProductOfferingPrice retrieved again from TMForum
+		ProductOfferingPrice retrieved = createPop("urn:ngsi-ld:product-offering-price:first", "recurring", 10f, "EUR");
+		retrieved.setLastUpdate(START);
+		assertSame(pc, priceCalculatorFactory.getPriceCalculatorForProduct(retrieved));
+
+		// the ProductOfferingPrice changed in the catalog
+		ProductOfferingPrice changed = createPop("urn:ngsi-ld:product-offering-price:first", "recurring", 12f, "EUR");
+		changed.setLastUpdate(START.plusDays(1));
+		PriceCalculator<Product, Money> changedPc = priceCalculatorFactory.getPriceCalculatorForProduct(changed);
+		assertNotSame(pc, changedPc);
+		assertEquals(12f, calculate(changedPc), 0.0001f);
+	}
+
+	private static float calculate(PriceCalculator<Product, Money> pc) throws Exception {
+		Product product = new Product();
+		product.setId("urn:ngsi-ld:product:1");
+
+		TimePeriod billingPeriod = new TimePeriod();
+		billingPeriod.setStartDateTime(START);
+		billingPeriod.setEndDateTime(START.plusMonths(1));
+		return pc.calculatePrice(product, PriceCalculationContext.forBillingPeriod(billingPeriod)).getValue();
+	}
+
+}
@@ -0,0 +1,177 @@
+package it.eng.dome.billing.engine.service;
+
+import static it.eng.dome.billing.engine.BillingTestFixtures.createProductIds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.dto.BatchBillingResponseDTO;
+import it.eng.dome.billing.engine.dto.ProductBillingResultDTO;
+import it.eng.dome.billing.engine.exception.BillingBadRequestException;
+import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.validator.ValidationIssue;
+import it.eng.dome.billing.engine.validator.ValidationIssueSeverity;
+import it.eng.dome.brokerage.api.ProductInventoryApis;
+import it.eng.dome.brokerage.model.Invoice;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+public class BatchBillingServiceTest {
+
+	private static final int PARALLELISM = 4;
+	private static final String INVALID_PRODUCT_ID = "urn:ngsi-ld:product:invalid";
+	private static final String MISSING_PRODUCT_ID = "urn:ngsi-ld:product:missing";
+
+	private BatchBillingService batchBillingService;
+
+	private ProductInventoryApis productInventoryApis;
+
+	private final AtomicInteger running = new AtomicInteger(0);
+	private final AtomicInteger maxRunning = new AtomicInteger(0);
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		productInventoryApis = mock(ProductInventoryApis.class);
+		when(productInventoryApis.getProduct(anyString(), isNull())).thenAnswer(invocation -> createProduct(invocation.getArgument(0)));
+		when(productInventoryApis.getProduct(eq(MISSING_PRODUCT_ID), isNull())).thenReturn(null);
+
+		BillingEngineService billingEngineService = mock(BillingEngineService.class);
+		when(billingEngineService.calculateBill(any(Product.class), any(TimePeriod.class))).thenAnswer(invocation -> {
+			Product product = invocation.getArgument(0);
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(20);
+				if (INVALID_PRODUCT_ID.equals(product.getId())) {
+					throw new BillingEngineValidationException(new ValidationIssue("invalid Product", ValidationIssueSeverity.ERROR));
+				}
+				return new ArrayList<Invoice>();
+			} finally {
+				running.decrementAndGet();
+			}
+		});
+
+		AppProperties appProperties = new AppProperties();
+		appProperties.getBatch().setParallelism(PARALLELISM);
+		appProperties.getBatch().setMaxProducts(50);
+		appProperties.getBatch().setPageSize(10);
+
+		batchBillingService = new BatchBillingService(billingEngineService, productInventoryApis, appProperties);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		batchBillingService.shutdown();
+	}
+
+	@Test
+	public void productsAreBilledInParallelWithBoundedWorkers() throws Exception {
+		List<String> productIds = createProductIds(0, 20);
+
+		BatchBillingResponseDTO response = batchBillingService.calculateBills(productIds, getBillingPeriod());
+
+		assertEquals(20, response.getSucceeded());
+		assertEquals(0, response.getFailed());
+		for (int i = 0; i < productIds.size(); i++) {
+			assertEquals(productIds.get(i), response.getResults().get(i).getProductId());
+		}
+		assertTrue(maxRunning.get() > 1, "Products not billed in parallel");
+		assertTrue(maxRunning.get() <= PARALLELISM, "Too many Products billed in parallel: " + maxRunning.get());
+	}
+
+	@Test
+	public void failuresAreReportedPerProduct() throws Exception {
+		List<String> productIds = createProductIds(0, 3);
+		productIds.add(1, INVALID_PRODUCT_ID);
+		productIds.add(MISSING_PRODUCT_ID);
+
+		BatchBillingResponseDTO response = batchBillingService.calculateBills(productIds, getBillingPeriod());
+
+		assertEquals(3, response.getSucceeded());
+		assertEquals(2, response.getFailed());
+
+		ProductBillingResultDTO invalid = response.getResults().get(1);
+		assertEquals(INVALID_PRODUCT_ID, invalid.getProductId());
+		assertEquals(ProductBillingResultDTO.Status.FAILED, invalid.getStatus());
+		assertNull(invalid.getInvoices());
+
+		ProductBillingResultDTO missing = response.getResults().get(4);
+		assertEquals(ProductBillingResultDTO.Status.FAILED, missing.getStatus());
+		assertTrue(missing.getError().contains("not found"));
+	}
+
+	@Test
+	public void productsAreListedFromInventoryFilter() throws Exception {
+		List<Product> inventory = new ArrayList<Product>();
+		for (String id : createProductIds(0, 25)) {
+			inventory.add(createProduct(id));
+		}
+		when(productInventoryApis.listProducts(any(), anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+			int offset = invocation.getArgument(1);
+			int limit = invocation.getArgument(2);
+			return new ArrayList<Product>(inventory.subList(Math.min(offset, inventory.size()), Math.min(offset + limit, inventory.size())));
+		});
+
+		BatchBillingResponseDTO response = batchBillingService.calculateBills(Map.of("status", "active"), getBillingPeriod());
+
+		assertEquals(25, response.getSucceeded());
+	}
+
+	@Test
+	public void streamedResultsAreNotLimitedByBatchSize() throws Exception {
+		List<String> productIds = createProductIds(0, 60);
+		productIds.add(INVALID_PRODUCT_ID);
+		Set<String> streamed = ConcurrentHashMap.newKeySet();
+		AtomicInteger failed = new AtomicInteger(0);
+
+		batchBillingService.calculateBills(productIds, getBillingPeriod(), result -> {
+			streamed.add(result.getProductId());
+			if (result.getStatus() == ProductBillingResultDTO.Status.FAILED) {
+				failed.incrementAndGet();
+			}
+		});
+
+		assertEquals(61, streamed.size());
+		assertEquals(1, failed.get());
+		assertTrue(maxRunning.get() <= PARALLELISM, "Too many Products billed in parallel: " + maxRunning.get());
+	}
+
+	@Test
+	public void tooManyProductsAreRejected() {
+		assertThrows(BillingBadRequestException.class, () -> batchBillingService.calculateBills(createProductIds(0, 51), getBillingPeriod()));
+	}
+
+	private static Product createProduct(String id) {
+		Product product = new Product();
+		product.setId(id);
+		return product;
+	}
+
+	private static TimePeriod getBillingPeriod() {
+		TimePeriod tp = new TimePeriod();
+		tp.setStartDateTime(OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC));
+		tp.setEndDateTime(OffsetDateTime.of(2025, 1, 31, 0, 0, 0, 0, ZoneOffset.UTC));
+		return tp;
+	}
+}
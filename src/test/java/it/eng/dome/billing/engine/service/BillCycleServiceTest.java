@@ -0,0 +1,85 @@
+package it.eng.dome.billing.engine.service;
+
+import static it.eng.dome.billing.engine.BillingTestFixtures.createPop;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import it.eng.dome.billing.engine.exception.BillingBadRequestException;
+import it.eng.dome.brokerage.model.BillCycle;
+import it.eng.dome.brokerage.model.RecurringChargePeriod;
+import it.eng.dome.brokerage.model.RecurringPeriod;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+public class BillCycleServiceTest {
+	
+	private final BillCycleService billCycleService = new BillCycleService();
+	
+	private static final OffsetDateTime ACTIVATION_DATE = OffsetDateTime.parse("2023-03-14T10:04:38.983Z");
+	
+	@Test
+	public void billCyclesInBillingPeriodMatchFullIteration() throws BillingBadRequestException {
+		String[][] recurringCharges = { {"day", "1"}, {"day", "3"}, {"week", "2"}, {"month", "1"}, {"month", "3"}, {"year", "1"} };
+		
+		for (String priceType : new String[] {"recurring-prepaid", "recurring", "one time"}) {
+			for (String[] recurringCharge : recurringCharges) {
+				ProductOfferingPrice pop = createPop("urn:ngsi-ld:product-offering-price:" + priceType, priceType, 1f, "EUR");
+				pop.setRecurringChargePeriodType(recurringCharge[0]);
+				pop.setRecurringChargePeriodLength(Integer.parseInt(recurringCharge[1]));
+				
+				// monthly billingPeriods from before the activation date to three years later
+				for (int month = -2; month < 40; month++) {
+					TimePeriod billingPeriod = new TimePeriod();
+					billingPeriod.setStartDateTime(OffsetDateTime.parse("2023-01-01T00:00:00Z").plusMonths(month));
+					billingPeriod.setEndDateTime(billingPeriod.getStartDateTime().plusMonths(1).minusSeconds(1));
+					
+					List<BillCycle> expected = billCycleService.getBillCyclesInBillingPeriod(
+							billCycleService.getBillCycles(pop, ACTIVATION_DATE, billingPeriod.getEndDateTime()), billingPeriod);
+					List<BillCycle> actual = billCycleService.getBillCyclesInBillingPeriod(pop, ACTIVATION_DATE, billingPeriod);
+					
+					assertEquals(toString(expected), toString(actual), 
+							String.format("Unexpected bill cycles for %s %s in %s", priceType, String.join(" ", recurringCharge), billingPeriod.getStartDateTime()));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void monthlyBillingPeriodsKeepMonthEnd() {
+		RecurringChargePeriod monthly = new RecurringChargePeriod(RecurringPeriod.MONTH, 1);
+		OffsetDateTime activationDate = OffsetDateTime.parse("2025-01-31T00:00:00Z");
+		
+		assertEquals(OffsetDateTime.parse("2025-02-28T00:00:00Z"), billCycleService.getBillingPeriodStartDate(monthly, activationDate, 1));
+		assertEquals(OffsetDateTime.parse("2025-03-31T00:00:00Z"), billCycleService.getBillingPeriodStartDate(monthly, activationDate, 2));
+		assertEquals(OffsetDateTime.parse("2025-04-30T00:00:00Z"), billCycleService.getBillingPeriodStartDate(monthly, activationDate, 3));
+		
+		// contiguous billingPeriods
+		TimePeriod february = billCycleService.getBillingPeriod(monthly, activationDate, 1);
+		assertEquals(OffsetDateTime.parse("2025-03-30T00:00:00Z"), february.getEndDateTime());
+		
+		assertEquals(2, billCycleService.getFirstCycleIndexNotBefore(monthly, activationDate, OffsetDateTime.parse("2025-03-01T00:00:00Z")));
+		assertEquals(2, billCycleService.getFirstCycleIndexNotBefore(monthly, activationDate, OffsetDateTime.parse("2025-03-31T00:00:00Z")));
+		assertEquals(3, billCycleService.getFirstCycleIndexNotBefore(monthly, activationDate, OffsetDateTime.parse("2025-03-31T00:00:01Z")));
+	}
+	
+	@Test
+	public void firstCycleIndexIsCalculatedFromTheActivationDate() {
+		RecurringChargePeriod daily = new RecurringChargePeriod(RecurringPeriod.DAY, 1);
+		
+		assertEquals(0, billCycleService.getFirstCycleIndexNotBefore(daily, ACTIVATION_DATE, ACTIVATION_DATE.minusDays(10)));
+		assertEquals(0, billCycleService.getFirstCycleIndexNotBefore(daily, ACTIVATION_DATE, ACTIVATION_DATE));
+		assertEquals(1096, billCycleService.getFirstCycleIndexNotBefore(daily, ACTIVATION_DATE, ACTIVATION_DATE.plusDays(1095).plusSeconds(1)));
+	}
+	
+	private static String toString(List<BillCycle> billCycles) {
+		return billCycles.stream()
+				.map(bc -> bc.getBillDate() + " [" + bc.getBillingPeriod().getStartDateTime() + " - " + bc.getBillingPeriod().getEndDateTime() + "]")
+				.collect(Collectors.joining(", "));
+	}
+
+}
@@ -0,0 +1,275 @@
+package it.eng.dome.billing.engine.service;
+
+import static it.eng.dome.billing.engine.BillingTestFixtures.createTier;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.price.calculator.PriceCalculationContext;
+import it.eng.dome.billing.engine.price.calculator.PriceCalculator;
+import it.eng.dome.billing.engine.price.calculator.PriceCalculatorFactory;
+import it.eng.dome.billing.engine.utils.TMForumEntityUtils;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
+import it.eng.dome.brokerage.model.BillCycle;
+import it.eng.dome.brokerage.model.Invoice;
+import it.eng.dome.tmforum.tmf620.v4.ApiException;
+import it.eng.dome.tmforum.tmf620.v4.model.BundledProductOfferingPriceRelationship;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf637.v4.model.BillingAccountRef;
+import it.eng.dome.tmforum.tmf637.v4.model.Characteristic;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf637.v4.model.ProductOfferingPriceRef;
+import it.eng.dome.tmforum.tmf637.v4.model.ProductPrice;
+import it.eng.dome.tmforum.tmf637.v4.model.ProductStatusType;
+import it.eng.dome.tmforum.tmf637.v4.model.RelatedParty;
+import it.eng.dome.tmforum.tmf678.v4.model.AppliedCustomerBillingRate;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Checks that the parallel pricing of the POP/bill cycle pairs generates the same ACBRs, in the same order, of the sequential pricing,
+ * and that the tiers of a bundled POP are billed together.
+ */
+public class BillingEngineServiceTest {
+
+	private static final int POPS = 5;
+	private static final int BILL_CYCLES = 6;
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+	private final Map<ProductOfferingPrice, List<BillCycle>> popBillCycles = new LinkedHashMap<ProductOfferingPrice, List<BillCycle>>();
+
+	private final AtomicInteger running = new AtomicInteger(0);
+	private final AtomicInteger maxRunning = new AtomicInteger(0);
+
+	private ProductPriceService productPriceService;
+
+	private PriceCalculatorFactory priceCalculatorFactory;
+
+	private Product product;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	public void setUp() throws Exception {
+		product = new Product();
+		product.setId("urn:ngsi-ld:product:1");
+		BillingAccountRef billingAccount = new BillingAccountRef();
+		billingAccount.setId("urn:ngsi-ld:billing-account:1");
+		product.setBillingAccount(billingAccount);
+		product.setRelatedParty(new ArrayList<RelatedParty>());
+
+		priceCalculatorFactory = mock(PriceCalculatorFactory.class);
+		for (int i = 0; i < POPS; i++) {
+			ProductOfferingPrice pop = new ProductOfferingPrice();
+			pop.setId("urn:ngsi-ld:product-offering-price:" + i);
+			pop.setPriceType("recurring-postpaid");
+
+			List<BillCycle> billCycles = new ArrayList<BillCycle>();
+			for (int j = 0; j < BILL_CYCLES; j++) {
+				BillCycle billCycle = new BillCycle();
+				billCycle.setBillDate(START.plusMonths(j + 1).minusDays(1));
+				billCycle.setBillingPeriod(TMForumEntityUtils.createTimePeriod678(START.plusMonths(j), START.plusMonths(j + 1).minusDays(1)));
+				billCycles.add(billCycle);
+			}
+			popBillCycles.put(pop, billCycles);
+
+			// the price depends on the POP and on the bill cycle, the calculation takes a random time
+			float base = (i + 1) * 100f;
+			PriceCalculator<Product, Money> calculator = mock(PriceCalculator.class);
+			when(calculator.calculatePrice(any(Product.class), any(PriceCalculationContext.class))).thenAnswer(invocation -> {
+				PriceCalculationContext context = invocation.getArgument(1);
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(ThreadLocalRandom.current().nextInt(1, 10));
+					return new Money("EUR", base + context.getBillingPeriod().getStartDateTime().getMonthValue());
+				} finally {
+					running.decrementAndGet();
+				}
+			});
+			when(priceCalculatorFactory.getPriceCalculatorForProduct(pop)).thenReturn(calculator);
+		}
+
+		productPriceService = mock(ProductPriceService.class);
+		when(productPriceService.getPOPBillCyclesInBillingPeriod(any(Product.class), any(TimePeriod.class))).thenReturn(popBillCycles);
+	}
+
+	@Test
+	public void parallelPricingKeepsTheSequentialOrder() throws Exception {
+		List<Invoice> sequential = createService(false).calculateBill(product, getBillingPeriod());
+
+		BillingEngineService parallelService = createService(true);
+		try {
+			for (int i = 0; i < 5; i++) {
+				List<Invoice> parallel = parallelService.calculateBill(product, getBillingPeriod());
+
+				List<AppliedCustomerBillingRate> expected = sequential.get(0).getAcbrs();
+				List<AppliedCustomerBillingRate> actual = parallel.get(0).getAcbrs();
+				assertEquals(POPS * BILL_CYCLES, actual.size());
+				for (int j = 0; j < expected.size(); j++) {
+					assertEquals(expected.get(j).getTaxExcludedAmount().getValue(), actual.get(j).getTaxExcludedAmount().getValue());
+					assertEquals(expected.get(j).getPeriodCoverage().getStartDateTime(), actual.get(j).getPeriodCoverage().getStartDateTime());
+				}
+				assertEquals(sequential.get(0).getCustomerBill().getAmountDue().getValue(), parallel.get(0).getCustomerBill().getAmountDue().getValue());
+			}
+		} finally {
+			parallelService.shutdown();
+		}
+
+		assertTrue(maxRunning.get() > 1, "POP/bill cycle pairs not priced in parallel");
+		assertTrue(maxRunning.get() <= 4, "Too many POP/bill cycle pairs priced in parallel: " + maxRunning.get());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void parallelPricingRethrowsTheCheckedException() throws Exception {
+		ProductOfferingPrice failingPop = popBillCycles.keySet().iterator().next();
+		PriceCalculator<Product, Money> failingCalculator = mock(PriceCalculator.class);
+		when(failingCalculator.calculatePrice(any(Product.class), any(PriceCalculationContext.class))).thenThrow(new ApiException(503, "TMF620 not available"));
+		when(priceCalculatorFactory.getPriceCalculatorForProduct(failingPop)).thenReturn(failingCalculator);
+
+		BillingEngineService parallelService = createService(true);
+		try {
+			assertThrows(ApiException.class, () -> parallelService.calculateBill(product, getBillingPeriod()));
+		} finally {
+			parallelService.shutdown();
+		}
+	}
+
+	@Test
+	public void tieredBundleIsBilledAsOneUnit() throws Exception {
+		// users 1-10: 2 EUR per user, 11-100: 1.5 EUR per user, 101-1000: 1 EUR per user
+		BillingEngineService service = createTieredBundleService(createTier("urn:ngsi-ld:product-offering-price:tier-1", 1, 10, 2f),
+				createTier("urn:ngsi-ld:product-offering-price:tier-2", 11, 100, 1.5f), createTier("urn:ngsi-ld:product-offering-price:tier-3", 101, 1000, 1f));
+
+		// 25 users priced by the second tier in each of the 3 monthly bill cycles
+		List<AppliedCustomerBillingRate> acbrs = service.calculateBill(product, TMForumEntityUtils.createTimePeriod678(START, START.plusMonths(3).minusDays(1))).get(0).getAcbrs();
+		assertEquals(3, acbrs.size());
+		for (AppliedCustomerBillingRate acbr : acbrs) {
+			assertEquals(37.5f, acbr.getTaxExcludedAmount().getValue(), 0.0001f);
+			assertEquals("recurring", acbr.getType());
+			assertEquals("recurring Bill", acbr.getName());
+		}
+	}
+
+	@Test
+	public void everyTierOfABundleIsValidated() throws Exception {
+		// the value is priced by the second tier, but the third one has a different currency
+		ProductOfferingPrice tier3 = createTier("urn:ngsi-ld:product-offering-price:tier-3", 101, 1000, 1f);
+		tier3.getPrice().setUnit("USD");
+		BillingEngineService service = createTieredBundleService(createTier("urn:ngsi-ld:product-offering-price:tier-1", 1, 10, 2f),
+				createTier("urn:ngsi-ld:product-offering-price:tier-2", 11, 100, 1.5f), tier3);
+
+		assertThrows(BillingEngineValidationException.class,
+				() -> service.calculateBill(product, TMForumEntityUtils.createTimePeriod678(START, START.plusMonths(3).minusDays(1))));
+	}
+
+	@Test
+	public void onlyTheCurrentSpendIsPricedFromTheIngestedUsages() throws Exception {
+		popBillCycles.keySet().iterator().next().setPriceType("usage");
+		BillingEngineService service = createService(false);
+		UsageIngestionService usageIngestionService = mock(UsageIngestionService.class);
+		when(usageIngestionService.isEnabled()).thenReturn(true);
+		ReflectionTestUtils.setField(service, "usageIngestionService", usageIngestionService);
+
+		service.calculateBill(product, getBillingPeriod());
+		verify(usageIngestionService, never()).getTotals(any(), any());
+
+		service.calculateCurrentSpend(product, getBillingPeriod());
+		verify(usageIngestionService, times(BILL_CYCLES)).getTotals(eq(product.getId()), any());
+	}
+
+	/*
+	 * Creates the BillingEngineService with the real services billing the Product with a bundled POP of the tiers and 25 users
+	 */
+	private BillingEngineService createTieredBundleService(ProductOfferingPrice... tiers) throws Exception {
+		ProductCatalogManagementApis productCatalogManagementApis = mock(ProductCatalogManagementApis.class);
+		ProductOfferingPrice bundledPop = new ProductOfferingPrice();
+		bundledPop.setId("urn:ngsi-ld:product-offering-price:bundled");
+		bundledPop.setIsBundle(true);
+		bundledPop.setLifecycleStatus("Launched");
+		for (ProductOfferingPrice tier : tiers) {
+			bundledPop.addBundledPopRelationshipItem(new BundledProductOfferingPriceRelationship().id(tier.getId()));
+			when(productCatalogManagementApis.getProductOfferingPrice(eq(tier.getId()), any())).thenReturn(tier);
+		}
+		when(productCatalogManagementApis.getProductOfferingPrice(eq(bundledPop.getId()), any())).thenReturn(bundledPop);
+
+		AppProperties appProperties = createAppProperties(false);
+		TMFEntityValidator tmfEntityValidator = new TMFEntityValidator();
+		ProductOfferingPriceService productOfferingPriceService = new ProductOfferingPriceService(productCatalogManagementApis, appProperties,
+				new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+		ProductPriceService productPriceService = new ProductPriceService();
+		ReflectionTestUtils.setField(productPriceService, "tmfEntityValidator", tmfEntityValidator);
+		ReflectionTestUtils.setField(productPriceService, "productOfferingPriceService", productOfferingPriceService);
+		ReflectionTestUtils.setField(productPriceService, "billCycleService", new BillCycleService());
+
+		BillingEngineService service = new BillingEngineService(appProperties);
+		ReflectionTestUtils.setField(service, "tmfEntityValidator", tmfEntityValidator);
+		ReflectionTestUtils.setField(service, "productPriceService", productPriceService);
+		ReflectionTestUtils.setField(service, "productOfferingPriceService", productOfferingPriceService);
+		ReflectionTestUtils.setField(service, "priceCalculatorFactory", new PriceCalculatorFactory(mock(PriceAlterationCalculator.class), productOfferingPriceService,
+				tmfEntityValidator, mock(UsageService.class), appProperties, new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class)));
+		ReflectionTestUtils.setField(service, "usageService", mock(UsageService.class));
+		ReflectionTestUtils.setField(service, "usageIngestionService", mock(UsageIngestionService.class));
+
+		product.setStartDate(START);
+		product.setStatus(ProductStatusType.ACTIVE);
+		product.getRelatedParty().add(new RelatedParty().id("urn:ngsi-ld:organization:1"));
+		product.addProductPriceItem(new ProductPrice().productOfferingPrice(new ProductOfferingPriceRef().id(bundledPop.getId())));
+		Characteristic users = new Characteristic();
+		users.setName("users");
+		users.setValueType("number");
+		users.setValue(25);
+		product.addProductCharacteristicItem(users);
+		return service;
+	}
+
+	private BillingEngineService createService(boolean parallel) {
+		BillingEngineService service = new BillingEngineService(createAppProperties(parallel));
+		ReflectionTestUtils.setField(service, "tmfEntityValidator", mock(TMFEntityValidator.class));
+		ReflectionTestUtils.setField(service, "productPriceService", productPriceService);
+		ReflectionTestUtils.setField(service, "priceCalculatorFactory", priceCalculatorFactory);
+		ReflectionTestUtils.setField(service, "usageService", mock(UsageService.class));
+		ReflectionTestUtils.setField(service, "usageIngestionService", mock(UsageIngestionService.class));
+		return service;
+	}
+
+	private static AppProperties createAppProperties(boolean parallel) {
+		AppProperties appProperties = new AppProperties();
+		appProperties.setSchema(new AppProperties.Schema());
+		appProperties.getSchema().setSchemaLocationRelatedParty("https://example.org/schema/RelatedParty.json");
+		appProperties.setBillCycle(new AppProperties.BillCycle());
+		appProperties.getPricing().setParallel(parallel);
+		appProperties.getPricing().setParallelism(4);
+		return appProperties;
+	}
+
+
+	private static TimePeriod getBillingPeriod() {
+		return TMForumEntityUtils.createTimePeriod678(START, START.plusMonths(BILL_CYCLES).minusDays(1));
+	}
+}
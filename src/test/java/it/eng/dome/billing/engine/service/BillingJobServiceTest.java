@@ -0,0 +1,160 @@
+package it.eng.dome.billing.engine.service;
+
+import static it.eng.dome.billing.engine.BillingTestFixtures.createProductIds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.dto.BatchBillingRequestDTO;
+import it.eng.dome.billing.engine.dto.ProductBillingResultDTO;
+import it.eng.dome.billing.engine.exception.BillingBadRequestException;
+import it.eng.dome.billing.engine.job.BillingJob;
+import it.eng.dome.billing.engine.job.BillingJobStore;
+import it.eng.dome.brokerage.api.ProductInventoryApis;
+import it.eng.dome.brokerage.model.Invoice;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+public class BillingJobServiceTest {
+
+	@TempDir
+	Path directory;
+
+	private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+	private BillingEngineService billingEngineService;
+
+	private BatchBillingService batchBillingService;
+
+	private BillingJobService billingJobService;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		ProductInventoryApis productInventoryApis = mock(ProductInventoryApis.class);
+		when(productInventoryApis.getProduct(anyString(), isNull())).thenAnswer(invocation -> {
+			Product product = new Product();
+			product.setId(invocation.getArgument(0));
+			return product;
+		});
+
+		billingEngineService = mock(BillingEngineService.class);
+		when(billingEngineService.calculateBill(any(Product.class), any(TimePeriod.class))).thenReturn(new ArrayList<Invoice>());
+
+		AppProperties appProperties = new AppProperties();
+		appProperties.getJob().setDirectory(directory.toString());
+		appProperties.getJob().setCheckpointInterval(3);
+
+		batchBillingService = new BatchBillingService(billingEngineService, productInventoryApis, appProperties);
+		billingJobService = new BillingJobService(batchBillingService, objectMapper, appProperties);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		billingJobService.shutdown();
+		batchBillingService.shutdown();
+	}
+
+	@Test
+	public void jobResultsArePagedAndPersisted() throws Exception {
+		BillingJob job = billingJobService.submit(new BatchBillingRequestDTO(createProductIds(0, 10), null, getBillingPeriod()));
+
+		BillingJob completed = waitForCompletion(job.getId());
+
+		assertEquals(BillingJob.Status.COMPLETED, completed.getStatus());
+		assertEquals(10, completed.getTotal());
+		assertEquals(10, completed.getSucceeded());
+		assertEquals(4, billingJobService.getResults(job.getId(), 0, 4).size());
+		assertEquals(2, billingJobService.getResults(job.getId(), 8, 4).size());
+
+		// the job is still available after a restart
+		BillingJob stored = new BillingJobStore(directory, objectMapper).load(job.getId());
+		assertEquals(BillingJob.Status.COMPLETED, stored.getStatus());
+		assertEquals(10, stored.getProcessed());
+	}
+
+	@Test
+	public void interruptedJobIsResumedFromCheckpoint() throws Exception {
+		// a job interrupted by a crash after billing the first 6 Product(s)
+		BillingJobStore store = new BillingJobStore(directory, objectMapper);
+		BillingJob job = new BillingJob("0b2f6a1e-0000-4000-8000-000000000001", new BatchBillingRequestDTO(createProductIds(0, 10), null, getBillingPeriod()));
+		job.start(10);
+		store.save(job);
+		try (BillingJobStore.ResultAppender appender = store.openResults(job.getId())) {
+			for (String productId : createProductIds(0, 6)) {
+				appender.append(ProductBillingResultDTO.succeeded(productId, new ArrayList<Invoice>()));
+			}
+		}
+
+		billingJobService.resumeJobs();
+		BillingJob completed = waitForCompletion(job.getId());
+
+		assertEquals(BillingJob.Status.COMPLETED, completed.getStatus());
+		assertEquals(10, completed.getProcessed());
+		assertEquals(10, billingJobService.getResults(job.getId(), 0, 100).size());
+		for (String productId : createProductIds(0, 6)) {
+			verify(billingEngineService, never()).calculateBill(productWithId(productId), any(TimePeriod.class));
+		}
+		for (String productId : createProductIds(6, 10)) {
+			verify(billingEngineService, times(1)).calculateBill(productWithId(productId), any(TimePeriod.class));
+		}
+	}
+
+	@Test
+	public void unknownJobIsNotFound() {
+		assertNull(billingJobService.getJob("0b2f6a1e-0000-4000-8000-00000000ffff"));
+		assertNull(billingJobService.getJob("../../etc"));
+		assertNull(billingJobService.getResults("0b2f6a1e-0000-4000-8000-00000000ffff", 0, 10));
+	}
+
+	@Test
+	public void malformedRequestIsRejected() {
+		assertThrows(BillingBadRequestException.class, () -> billingJobService.submit(new BatchBillingRequestDTO(null, null, getBillingPeriod())));
+		assertThrows(BillingBadRequestException.class, () -> billingJobService.submit(new BatchBillingRequestDTO(createProductIds(0, 1), null, null)));
+	}
+
+	private BillingJob waitForCompletion(String id) throws InterruptedException {
+		for (int i = 0; i < 500; i++) {
+			BillingJob job = billingJobService.getJob(id);
+			if (job.getStatus() == BillingJob.Status.COMPLETED || job.getStatus() == BillingJob.Status.FAILED) {
+				return job;
+			}
+			Thread.sleep(10);
+		}
+		throw new AssertionError("BillingJob " + id + " not completed");
+	}
+
+	private static Product productWithId(String id) {
+		return argThat(product -> product != null && id.equals(product.getId()));
+	}
+
+	private static TimePeriod getBillingPeriod() {
+		TimePeriod tp = new TimePeriod();
+		tp.setStartDateTime(OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC));
+		tp.setEndDateTime(OffsetDateTime.of(2025, 1, 31, 0, 0, 0, 0, ZoneOffset.UTC));
+		return tp;
+	}
+}
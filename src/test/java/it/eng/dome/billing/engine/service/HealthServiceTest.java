@@ -0,0 +1,110 @@
+package it.eng.dome.billing.engine.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
+import it.eng.dome.brokerage.api.ProductInventoryApis;
+import it.eng.dome.brokerage.api.UsageManagementApis;
+import it.eng.dome.brokerage.observability.health.Check;
+import it.eng.dome.brokerage.observability.health.HealthStatus;
+
+/**
+ * Checks that the health is built from the background probes of the TMForum APIs, without calling TMForum at each request.
+ */
+public class HealthServiceTest {
+
+	private ProductCatalogManagementApis productCatalogManagementApis;
+	private UsageManagementApis usageManagementApis;
+	private ProductInventoryApis productInventoryApis;
+
+	private HealthService healthService;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		productCatalogManagementApis = mock(ProductCatalogManagementApis.class);
+		usageManagementApis = mock(UsageManagementApis.class);
+		productInventoryApis = mock(ProductInventoryApis.class);
+		when(productCatalogManagementApis.listProductOfferingPrices(any(), anyInt(), anyInt(), any())).thenReturn(Collections.emptyList());
+		when(usageManagementApis.listUsages(any(), anyInt(), anyInt(), any())).thenThrow(new IllegalStateException("TMF635 unavailable"));
+		when(productInventoryApis.listProducts(any(), anyInt(), anyInt(), any())).thenReturn(Collections.emptyList());
+
+		AppProperties appProperties = new AppProperties();
+		appProperties.getHealth().setProbeInterval(Duration.ofHours(1));
+		healthService = new HealthService(productCatalogManagementApis, usageManagementApis, productInventoryApis, appProperties);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		healthService.shutdown();
+	}
+
+	@Test
+	public void healthIsBuiltFromTheBackgroundProbes() throws Exception {
+		// not probed yet
+		List<Check> checks = healthService.getHealth().getChecks(null, null);
+		assertEquals(HealthStatus.WARN, checks.get(0).getStatus());
+		verify(productCatalogManagementApis, never()).listProductOfferingPrices(any(), anyInt(), anyInt(), any());
+
+		healthService.startProbes();
+		verify(productCatalogManagementApis, timeout(5000)).listProductOfferingPrices(any(), anyInt(), anyInt(), any());
+		verify(usageManagementApis, timeout(5000)).listUsages(any(), anyInt(), anyInt(), any());
+		verify(productInventoryApis, timeout(5000)).listProducts(any(), anyInt(), anyInt(), any());
+
+		// the probes complete after the call to TMForum
+		long deadline = System.currentTimeMillis() + 5000;
+		while (healthService.getHealth().getChecks(null, null).stream().limit(3).anyMatch(c -> c.getOutput() == null || c.getOutput().startsWith("Not"))
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		for (int i = 0; i < 100; i++) {
+			checks = healthService.getHealth().getChecks(null, null);
+		}
+		assertEquals(HealthStatus.PASS, checks.get(0).getStatus());
+		assertEquals(HealthStatus.FAIL, checks.get(1).getStatus());
+		assertTrue(checks.get(1).getOutput().contains("TMF635 unavailable"), checks.get(1).getOutput());
+		assertTrue(checks.get(1).getOutput().contains("last success never"), checks.get(1).getOutput());
+		assertEquals(HealthStatus.PASS, checks.get(2).getStatus());
+
+		// the health requests don't call TMForum
+		verify(productCatalogManagementApis, timeout(5000).times(1)).listProductOfferingPrices(any(), anyInt(), anyInt(), any());
+	}
+
+	@Test
+	public void probesKeepRunningAfterAnError() throws Exception {
+		doThrow(new NoClassDefFoundError("it/eng/dome/tmforum/tmf635/v4/model/Usage")).when(usageManagementApis).listUsages(any(), anyInt(), anyInt(), any());
+
+		AppProperties appProperties = new AppProperties();
+		appProperties.getHealth().setProbeInterval(Duration.ofMillis(10));
+		HealthService fastHealthService = new HealthService(productCatalogManagementApis, usageManagementApis, productInventoryApis, appProperties);
+		try {
+			fastHealthService.startProbes();
+			verify(usageManagementApis, timeout(5000).atLeast(3)).listUsages(any(), anyInt(), anyInt(), any());
+
+			Check check = fastHealthService.getHealth().getChecks(null, null).get(1);
+			assertEquals(HealthStatus.FAIL, check.getStatus());
+			assertTrue(check.getOutput().contains("NoClassDefFoundError"), check.getOutput());
+		} finally {
+			fastHealthService.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+package it.eng.dome.billing.engine.service;
+
+import static it.eng.dome.billing.engine.BillingTestFixtures.createPop;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.price.calculator.PriceCalculatorFactory;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf622.v4.model.OrderPrice;
+import it.eng.dome.tmforum.tmf622.v4.model.ProductOfferingPriceRef;
+import it.eng.dome.tmforum.tmf622.v4.model.ProductOrder;
+import it.eng.dome.tmforum.tmf622.v4.model.ProductOrderItem;
+
+/**
+ * Runs many price previews concurrently on the same {@link PricePreviewService} and checks that the orderTotalPrice 
+ * of each {@link ProductOrder} is the aggregation of its own itemPrice(s).
+ */
+public class PricePreviewServiceTest {
+	
+	private static final int THREADS = 16;
+	private static final int ORDERS = 500;
+	
+	private static final String ONE_TIME_POP_ID = "urn:ngsi-ld:product-offering-price:one-time";
+	private static final String RECURRING_POP_ID = "urn:ngsi-ld:product-offering-price:recurring";
+	
+	private PricePreviewService pricePreviewService;
+	
+	@BeforeEach
+	public void setUp() throws Exception {
+		ProductOfferingPrice oneTimePop = createPop(ONE_TIME_POP_ID, "one time", 10f, "EUR");
+		ProductOfferingPrice recurringPop = createPop(RECURRING_POP_ID, "recurring", 3f, "EUR");
+		recurringPop.setRecurringChargePeriodType("month");
+		recurringPop.setRecurringChargePeriodLength(1);
+		
+		ProductCatalogManagementApis productCatalogManagementApis = mock(ProductCatalogManagementApis.class);
+		when(productCatalogManagementApis.getProductOfferingPrice(eq(ONE_TIME_POP_ID), any())).thenReturn(oneTimePop);
+		when(productCatalogManagementApis.getProductOfferingPrice(eq(RECURRING_POP_ID), any())).thenReturn(recurringPop);
+		
+		ProductOfferingPriceService productOfferingPriceService = new ProductOfferingPriceService(productCatalogManagementApis, 
+				new AppProperties(), new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+		
+		TMFEntityValidator tmfEntityValidator = new TMFEntityValidator();
+		PriceCalculatorFactory priceCalculatorFactory = new PriceCalculatorFactory(mock(PriceAlterationCalculator.class), 
+				productOfferingPriceService, tmfEntityValidator, mock(UsageService.class));
+		
+		pricePreviewService = new PricePreviewService(productOfferingPriceService, tmfEntityValidator, priceCalculatorFactory);
+	}
+	
+	@Test
+	public void concurrentPreviewsDoNotShareOrderTotalPrice() throws Exception {
+		List<Callable<ProductOrder>> tasks = new ArrayList<Callable<ProductOrder>>();
+		for (int i = 0; i < ORDERS; i++) {
+			int quantity = 1 + (i % 50);
+			tasks.add(() -> pricePreviewService.calculateOrderPrice(createProductOrder(quantity), null));
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<ProductOrder>> results = executor.invokeAll(tasks);
+			for (Future<ProductOrder> result : results) {
+				ProductOrder productOrder = result.get();
+				
+				Map<String, Float> expectedTotals = new HashMap<String, Float>();
+				for (ProductOrderItem item : productOrder.getProductOrderItem()) {
+					for (OrderPrice op : item.getItemPrice()) {
+						expectedTotals.merge(op.getPriceType(), op.getPrice().getDutyFreeAmount().getValue(), Float::sum);
+					}
+				}
+				
+				assertEquals(expectedTotals.size(), productOrder.getOrderTotalPrice().size(), "Unexpected orderTotalPrice for ProductOrder " + productOrder.getId());
+				for (OrderPrice total : productOrder.getOrderTotalPrice()) {
+					assertEquals(expectedTotals.get(total.getPriceType()), total.getPrice().getDutyFreeAmount().getValue(), 
+							"Unexpected orderTotalPrice for ProductOrder " + productOrder.getId());
+				}
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+	
+	/*
+	 * ProductOrder with two ProductOrderItem(s) (with quantity and quantity+1) each with a one time and a recurring price
+	 */
+	private static ProductOrder createProductOrder(int quantity) {
+		ProductOrder productOrder = new ProductOrder();
+		productOrder.setId("urn:ngsi-ld:product-order:" + quantity);
+		
+		for (int i = 0; i < 2; i++) {
+			ProductOrderItem item = new ProductOrderItem();
+			item.setId(String.valueOf(i));
+			item.setQuantity(quantity + i);
+			item.addItemTotalPriceItem(new OrderPrice().productOfferingPrice(new ProductOfferingPriceRef().id(ONE_TIME_POP_ID)));
+			item.addItemTotalPriceItem(new OrderPrice().productOfferingPrice(new ProductOfferingPriceRef().id(RECURRING_POP_ID)));
+			productOrder.addProductOrderItemItem(item);
+		}
+		
+		return productOrder;
+	}
+
+}
@@ -0,0 +1,152 @@
+package it.eng.dome.billing.engine.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.brokerage.api.ProductCatalogManagementApis;
+import it.eng.dome.tmforum.tmf620.v4.ApiException;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPriceRelationship;
+
+public class ProductOfferingPriceServiceTest {
+
+	private static final String POP_ID = "urn:ngsi-ld:product-offering-price:1";
+	private static final String MISSING_POP_ID = "urn:ngsi-ld:product-offering-price:missing";
+	private static final String FAILING_POP_ID = "urn:ngsi-ld:product-offering-price:failing";
+
+	private ProductCatalogManagementApis productCatalogManagementApis;
+
+	private ProductOfferingPrice pop;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		pop = new ProductOfferingPrice();
+		pop.setId(POP_ID);
+
+		productCatalogManagementApis = mock(ProductCatalogManagementApis.class);
+		when(productCatalogManagementApis.getProductOfferingPrice(eq(POP_ID), any())).thenReturn(pop);
+		when(productCatalogManagementApis.getProductOfferingPrice(eq(MISSING_POP_ID), any())).thenThrow(new ApiException(404, "Not Found"));
+		when(productCatalogManagementApis.getProductOfferingPrice(eq(FAILING_POP_ID), any())).thenThrow(new ApiException(500, "Internal Server Error"));
+	}
+
+	@Test
+	public void productOfferingPriceIsRetrievedOnce() throws Exception {
+		ProductOfferingPriceService service = createService(true);
+
+		for (int i = 0; i < 10; i++) {
+			assertSame(pop, service.getProductOfferingPrice(POP_ID));
+		}
+
+		verify(productCatalogManagementApis, times(1)).getProductOfferingPrice(eq(POP_ID), any());
+		assertEquals(9, service.getStatistics().hitCount());
+		assertEquals(1, service.getStatistics().missCount());
+	}
+
+	@Test
+	public void concurrentRequestsRetrieveProductOfferingPriceOnce() throws Exception {
+		ProductOfferingPriceService service = createService(true);
+		CountDownLatch retrieving = new CountDownLatch(1);
+		when(productCatalogManagementApis.getProductOfferingPrice(eq(POP_ID), any())).thenAnswer(invocation -> {
+			retrieving.await(1, TimeUnit.SECONDS);
+			return pop;
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<ProductOfferingPrice>> results = new ArrayList<Future<ProductOfferingPrice>>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(() -> service.getProductOfferingPrice(POP_ID)));
+			}
+			retrieving.countDown();
+			for (Future<ProductOfferingPrice> result : results) {
+				assertSame(pop, result.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		verify(productCatalogManagementApis, times(1)).getProductOfferingPrice(eq(POP_ID), any());
+	}
+
+	@Test
+	public void notFoundProductOfferingPriceIsCached() throws Exception {
+		ProductOfferingPriceService service = createService(true);
+
+		ProductOfferingPriceRelationship missing = new ProductOfferingPriceRelationship();
+		missing.setId(MISSING_POP_ID);
+		ProductOfferingPriceRelationship existing = new ProductOfferingPriceRelationship();
+		existing.setId(POP_ID);
+
+		assertNull(service.getProductOfferingPrice(MISSING_POP_ID));
+		List<ProductOfferingPrice> related = service.getProductOfferingPriceRelationships(List.of(missing, existing));
+
+		assertEquals(1, related.size());
+		assertSame(pop, related.get(0));
+		verify(productCatalogManagementApis, times(1)).getProductOfferingPrice(eq(MISSING_POP_ID), any());
+	}
+
+	@Test
+	public void errorsAreNotCached() throws Exception {
+		ProductOfferingPriceService service = createService(true);
+
+		assertThrows(ApiException.class, () -> service.getProductOfferingPrice(FAILING_POP_ID));
+		assertThrows(ApiException.class, () -> service.getProductOfferingPrice(FAILING_POP_ID));
+
+		verify(productCatalogManagementApis, times(2)).getProductOfferingPrice(eq(FAILING_POP_ID), any());
+		assertEquals(0, service.getSize());
+	}
+
+	@Test
+	public void invalidatedProductOfferingPriceIsRetrievedAgain() throws Exception {
+		ProductOfferingPriceService service = createService(true);
+
+		service.getProductOfferingPrice(POP_ID);
+		service.invalidate(POP_ID);
+		service.getProductOfferingPrice(POP_ID);
+		service.invalidateAll();
+		service.getProductOfferingPrice(POP_ID);
+
+		verify(productCatalogManagementApis, times(3)).getProductOfferingPrice(eq(POP_ID), any());
+	}
+
+	@Test
+	public void disabledCacheAlwaysRetrievesProductOfferingPrice() throws Exception {
+		ProductOfferingPriceService service = createService(false);
+
+		for (int i = 0; i < 3; i++) {
+			assertSame(pop, service.getProductOfferingPrice(POP_ID));
+		}
+
+		verify(productCatalogManagementApis, times(3)).getProductOfferingPrice(eq(POP_ID), any());
+	}
+
+	private ProductOfferingPriceService createService(boolean enabled) {
+		AppProperties appProperties = new AppProperties();
+		appProperties.getPopCache().setEnabled(enabled);
+
+		return new ProductOfferingPriceService(productCatalogManagementApis, appProperties,
+				new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+	}
+}
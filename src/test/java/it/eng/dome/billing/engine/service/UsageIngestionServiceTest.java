@@ -0,0 +1,209 @@
+package it.eng.dome.billing.engine.service;
+
+import static it.eng.dome.billing.engine.BillingTestFixtures.createUsage;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.exception.BillingBadRequestException;
+import it.eng.dome.billing.engine.rating.UsageRating;
+import it.eng.dome.billing.engine.utils.TMForumEntityUtils;
+import it.eng.dome.billing.engine.utils.UsageUtils;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.brokerage.api.UsageManagementApis;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Checks that the pushed {@link Usage}(s) are aggregated once and that the totals read from the daily aggregates are the same of a full recompute.
+ */
+public class UsageIngestionServiceTest {
+
+	private static final String PRODUCT_ID = "urn:ngsi-ld:product:1";
+	// the bill cycle doesn't start at midnight UTC
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 15, 10, 30, 0, 0, ZoneOffset.ofHours(2));
+
+	@TempDir
+	Path directory;
+
+	private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+	// the Usage(s) in TMForum
+	private final List<Usage> usages = Collections.synchronizedList(new ArrayList<Usage>());
+	private final AtomicInteger scanned = new AtomicInteger(0);
+
+	private UsageManagementApis usageManagementApis;
+	private AppProperties appProperties;
+	private UsageIngestionService service;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		usageManagementApis = mock(UsageManagementApis.class);
+		when(usageManagementApis.listUsages(any(), anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+			int offset = invocation.getArgument(1);
+			int limit = invocation.getArgument(2);
+			Map<String, String> filter = invocation.getArgument(3);
+			OffsetDateTime gte = OffsetDateTime.parse(filter.get("usageDate.gte"));
+			OffsetDateTime lte = OffsetDateTime.parse(filter.get("usageDate.lte"));
+			// TMForum applies the usageDate filter
+			List<Usage> filtered = new ArrayList<Usage>();
+			for (Usage usage : new ArrayList<Usage>(usages)) {
+				if (!usage.getUsageDate().isBefore(gte) && !usage.getUsageDate().isAfter(lte)) {
+					filtered.add(usage);
+				}
+			}
+			List<Usage> page = new ArrayList<Usage>(filtered.subList(Math.min(offset, filtered.size()), Math.min(offset + limit, filtered.size())));
+			scanned.addAndGet(page.size());
+			return page;
+		});
+
+		appProperties = new AppProperties();
+		appProperties.getIngestion().setDirectory(directory.toString());
+		service = this.createService();
+	}
+
+	@Test
+	public void pushedUsagesAreAppendedAndRecoveredAfterRestart() throws Exception {
+		appProperties.getIngestion().setCheckpointInterval(3);
+		service = this.createService();
+		OffsetDateTime day = OffsetDateTime.of(2025, 2, 3, 0, 0, 0, 0, ZoneOffset.UTC);
+		TimePeriod period = TMForumEntityUtils.createTimePeriod678(day, day.plusDays(1).minusSeconds(1));
+
+		// the first Usage pushed for the day saves the aggregate
+		service.ingest(createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:0", "apiCalls", 0, day));
+		Path checkpoint = findFile(".json");
+		Path log = checkpoint.resolveSibling(checkpoint.getFileName().toString().replace(".json", ".log"));
+		byte[] saved = Files.readAllBytes(checkpoint);
+		assertFalse(Files.exists(log));
+
+		// the next ones are appended to the log, without saving the aggregate again
+		service.ingest(createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:1", "apiCalls", 1, day.plusHours(1)));
+		service.ingest(createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:2", "apiCalls", 2, day.plusHours(2)));
+		assertEquals(2, Files.readAllLines(log).size());
+		assertArrayEquals(saved, Files.readAllBytes(checkpoint));
+
+		// the aggregate is saved every 3 Usage(s)
+		service.ingest(createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:3", "apiCalls", 3, day.plusHours(3)));
+		assertFalse(Files.exists(log));
+		service.ingest(createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:4", "apiCalls", 4, day.plusHours(4)));
+		assertEquals(1, Files.readAllLines(log).size());
+
+		// after a restart the aggregate is the checkpoint with its log replayed, also if the billing engine stopped while appending
+		Files.write(log, "{\"sequence\":6,\"usa".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		service = this.createService();
+		assertTrue(service.ingest(createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:4", "apiCalls", 4, day.plusHours(4))).isEmpty());
+		assertTrue(service.ingest(createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:1", "apiCalls", 1, day.plusHours(1))).isEmpty());
+		service.ingest(createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:5", "apiCalls", 5, day.plusHours(5)));
+
+		service = this.createService();
+		UsageRating totals = service.getTotals(PRODUCT_ID, period);
+		assertEquals(6, totals.getRatedUsages());
+		assertEquals(0, BigDecimal.valueOf(15).compareTo(totals.getMetric("apiCalls").getQuantity()));
+		assertEquals(0, scanned.get());
+	}
+
+	@Test
+	public void pushedUsagesAreAggregatedOnce() throws Exception {
+		OffsetDateTime day = OffsetDateTime.of(2025, 2, 3, 0, 0, 0, 0, ZoneOffset.UTC);
+		for (int i = 0; i < 5; i++) {
+			usages.add(createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:" + i, "apiCalls", i, day.plusHours(i)));
+		}
+
+		// the first Usage pushed for the day aggregates the Usage(s) of the day already in TMForum
+		Usage pushed = createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:5", "apiCalls", 5, day.plusHours(5));
+		usages.add(pushed);
+		assertEquals(List.of(PRODUCT_ID), service.ingest(pushed));
+		assertEquals(6, scanned.getAndSet(0));
+
+		// a Usage delivered again is ignored
+		assertTrue(service.ingest(pushed).isEmpty());
+		assertTrue(service.ingest(usages.get(0)).isEmpty());
+
+		pushed = createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:6", "apiCalls", 6, day.plusHours(6));
+		usages.add(pushed);
+		assertEquals(List.of(PRODUCT_ID), service.ingest(pushed));
+		assertEquals(0, scanned.get());
+
+		UsageRating totals = service.getTotals(PRODUCT_ID, TMForumEntityUtils.createTimePeriod678(day, day.plusDays(1).minusSeconds(1)));
+		assertEquals(7, totals.getRatedUsages());
+		assertEquals(BigDecimal.valueOf(21d), totals.getMetric("apiCalls").getQuantity());
+		assertEquals(0, scanned.get());
+
+		Usage withoutProduct = createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:7", "apiCalls", 7, day);
+		withoutProduct.setRatedProductUsage(null);
+		assertThrows(BillingBadRequestException.class, () -> service.ingest(withoutProduct));
+	}
+
+	@Test
+	public void totalsAreTheSameOfAFullRecompute() throws Exception {
+		TimePeriod billCycle = TMForumEntityUtils.createTimePeriod678(START, START.plusMonths(1).minusSeconds(1));
+		Random random = new Random(42);
+
+		// Usage(s) created before the push
+		for (int i = 0; i < 300; i++) {
+			usages.add(createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:" + i, "apiCalls", random.nextInt(1000) / 10f, START.minusDays(2).plusMinutes(random.nextInt(60 * 24 * 35))));
+		}
+		// Usage(s) pushed as they are created
+		for (int i = 300; i < 600; i++) {
+			Usage usage = createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:" + i, "apiCalls", random.nextInt(1000) / 10f, START.plusMinutes(random.nextInt(60 * 24 * 20)));
+			usages.add(usage);
+			service.ingest(usage);
+		}
+		scanned.set(0);
+
+		UsageRating totals = service.getTotals(PRODUCT_ID, billCycle);
+
+		List<Usage> inBillCycle = new ArrayList<Usage>();
+		for (Usage usage : usages) {
+			if (UsageUtils.isUsageInTimePeriod(usage, billCycle)) {
+				inBillCycle.add(usage);
+			}
+		}
+		UsageRating recomputed = new UsageRating(PRODUCT_ID, billCycle);
+		inBillCycle.forEach(recomputed::add);
+
+		assertEquals(recomputed.getRatedUsages(), totals.getRatedUsages());
+		assertTrue(recomputed.getMetric("apiCalls").isSameAs(totals.getMetric("apiCalls")));
+		// only the days without pushed Usage(s) and the first and last day are retrieved from TMForum
+		assertTrue(scanned.get() < inBillCycle.size() / 2, "scanned: " + scanned.get());
+	}
+
+	private UsageIngestionService createService() {
+		return new UsageIngestionService(new UsageService(usageManagementApis, appProperties), new TMFEntityValidator(), objectMapper, appProperties);
+	}
+
+	private Path findFile(String extension) throws Exception {
+		try (Stream<Path> files = Files.walk(directory)) {
+			return files.filter(file -> file.toString().endsWith(extension)).findFirst().orElseThrow();
+		}
+	}
+}
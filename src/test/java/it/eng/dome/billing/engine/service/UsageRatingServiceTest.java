@@ -0,0 +1,214 @@
+package it.eng.dome.billing.engine.service;
+
+import static it.eng.dome.billing.engine.BillingTestFixtures.createUsage;
+import static it.eng.dome.billing.engine.BillingTestFixtures.createUsagePop;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.dto.UsageReconciliationDTO;
+import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.price.calculator.PriceCalculationContext;
+import it.eng.dome.billing.engine.price.calculator.PriceCalculator;
+import it.eng.dome.billing.engine.price.calculator.PriceCalculatorFactory;
+import it.eng.dome.billing.engine.rating.UsageRating;
+import it.eng.dome.billing.engine.utils.TMForumEntityUtils;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.brokerage.api.UsageManagementApis;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Checks that the incremental rating retrieves and rates only the new {@link Usage}(s) and that the running totals reconcile with a full recompute.
+ */
+public class UsageRatingServiceTest {
+
+	private static final String PRODUCT_ID = "urn:ngsi-ld:product:1";
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+	private static final TimePeriod BILL_CYCLE = TMForumEntityUtils.createTimePeriod678(START, START.plusMonths(1).minusSeconds(1));
+
+	@TempDir
+	Path directory;
+
+	private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+	private final List<Usage> usages = Collections.synchronizedList(new ArrayList<Usage>());
+	private final AtomicInteger scanned = new AtomicInteger(0);
+	private final AtomicReference<String> usageDateFilter = new AtomicReference<String>();
+
+	private AppProperties appProperties;
+	private UsageService usageService;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		UsageManagementApis usageManagementApis = mock(UsageManagementApis.class);
+		when(usageManagementApis.listUsages(any(), anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+			int offset = invocation.getArgument(1);
+			int limit = invocation.getArgument(2);
+			Map<String, String> filter = invocation.getArgument(3);
+			usageDateFilter.set(filter.get("usageDate.gte"));
+			// TMForum applies the usageDate filter
+			List<Usage> filtered = new ArrayList<Usage>();
+			for (Usage usage : new ArrayList<Usage>(usages)) {
+				if (!usage.getUsageDate().isBefore(OffsetDateTime.parse(filter.get("usageDate.gte")))) {
+					filtered.add(usage);
+				}
+			}
+			List<Usage> page = new ArrayList<Usage>(filtered.subList(Math.min(offset, filtered.size()), Math.min(offset + limit, filtered.size())));
+			scanned.addAndGet(page.size());
+			return page;
+		});
+
+		appProperties = new AppProperties();
+		appProperties.getRating().setDirectory(directory.toString());
+		usageService = new UsageService(usageManagementApis, appProperties);
+	}
+
+	@Test
+	public void onlyTheNewUsagesAreRated() throws Exception {
+		UsageRatingService service = this.createService();
+		addUsages(0, 100);
+
+		UsageRating rating = service.rate(PRODUCT_ID, BILL_CYCLE);
+		assertEquals(100, rating.getRatedUsages());
+		assertEquals(100, scanned.getAndSet(0));
+		assertEquals(sum(0, 100), rating.getMetric("apiCalls").getQuantity());
+
+		// a new Usage with the usageDate of the high-water mark and 10 Usage(s) after it
+		Usage sameDate = createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:99b", "apiCalls", 7, rating.getLastUsageDate());
+		usages.add(sameDate);
+		addUsages(100, 110);
+
+		rating = service.rate(PRODUCT_ID, BILL_CYCLE);
+		assertEquals(111, rating.getRatedUsages());
+		assertEquals(START.plusHours(99).toInstant().toString(), usageDateFilter.get());
+		// only the Usage(s) from the high-water mark are retrieved again
+		assertEquals(12, scanned.getAndSet(0));
+		assertEquals(sum(0, 110).add(BigDecimal.valueOf(7d)), rating.getMetric("apiCalls").getQuantity());
+		assertEquals(111, rating.getMetric("apiCalls").getCount());
+
+		// the running totals are persisted
+		rating = this.createService().rate(PRODUCT_ID, BILL_CYCLE);
+		assertEquals(111, rating.getRatedUsages());
+		assertEquals(1, scanned.get());
+	}
+
+	@Test
+	public void lateUsagesAreReconciled() throws Exception {
+		UsageRatingService service = this.createService();
+
+		UsageReconciliationDTO reconciliation = service.reconcile(PRODUCT_ID, BILL_CYCLE);
+		assertFalse(reconciliation.isConsistent());
+		assertEquals(0, reconciliation.getRecomputedUsages());
+
+		addUsages(0, 50);
+		service.rate(PRODUCT_ID, BILL_CYCLE);
+
+		// a Usage created with a usageDate before the high-water mark is not rated incrementally
+		usages.add(createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:late", "apiCalls", 1000, START.plusMinutes(30)));
+		assertEquals(50, service.rate(PRODUCT_ID, BILL_CYCLE).getRatedUsages());
+
+		reconciliation = service.reconcile(PRODUCT_ID, BILL_CYCLE);
+		assertFalse(reconciliation.isConsistent());
+		assertEquals(50, reconciliation.getRatedUsages());
+		assertEquals(51, reconciliation.getRecomputedUsages());
+		assertEquals(1, reconciliation.getDifferences().size());
+		assertEquals(sum(0, 50), reconciliation.getDifferences().get(0).getRatedQuantity());
+		assertEquals(sum(0, 50).add(BigDecimal.valueOf(1000d)), reconciliation.getDifferences().get(0).getRecomputedQuantity());
+
+		// the recomputed totals replace the running totals
+		addUsages(50, 60);
+		assertEquals(61, service.rate(PRODUCT_ID, BILL_CYCLE).getRatedUsages());
+		assertTrue(service.reconcile(PRODUCT_ID, BILL_CYCLE).isConsistent());
+	}
+
+	@Test
+	public void runningTotalsPriceAsTheUsages() throws Exception {
+		Random random = new Random(42);
+		for (int i = 0; i < 200; i++) {
+			usages.add(createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:" + i, "apiCalls", random.nextInt(1000) / 10f, START.plusMinutes(random.nextInt(60 * 24 * 30))));
+		}
+		UsageRating rating = this.createService().rate(PRODUCT_ID, BILL_CYCLE);
+
+		ProductOfferingPrice usagePop = createUsagePop("apiCalls", 0.3f);
+
+		PriceCalculatorFactory priceCalculatorFactory = new PriceCalculatorFactory(mock(PriceAlterationCalculator.class), mock(ProductOfferingPriceService.class),
+				new TMFEntityValidator(), usageService);
+		PriceCalculator<Product, Money> pc = priceCalculatorFactory.getPriceCalculatorForProduct(usagePop);
+		Product product = new Product();
+		product.setId(PRODUCT_ID);
+
+		scanned.set(0);
+		Money currentSpend = pc.calculatePrice(product, PriceCalculationContext.forRunningTotals(BILL_CYCLE, null, rating));
+		assertEquals(0, scanned.get());
+
+		Money bill = pc.calculatePrice(product, PriceCalculationContext.forBillingPeriod(BILL_CYCLE));
+		assertEquals(bill.getValue(), currentSpend.getValue(), 0.001f);
+	}
+
+	@Test
+	public void runningTotalsArePricedWithoutRounding() throws Exception {
+		// a running total beyond the precision of a double and a count beyond an int
+		UsageRating rating = new UsageRating(PRODUCT_ID, BILL_CYCLE);
+		rating.getMetrics().put("apiCalls", new UsageRating.MetricTotal(3_000_000_000L, new BigDecimal("12345678901.12345678")));
+
+		ProductOfferingPrice usagePop = createUsagePop("apiCalls", 1f);
+
+		PriceCalculatorFactory priceCalculatorFactory = new PriceCalculatorFactory(mock(PriceAlterationCalculator.class), mock(ProductOfferingPriceService.class),
+				new TMFEntityValidator(), usageService);
+		Product product = new Product();
+		product.setId(PRODUCT_ID);
+
+		Money currentSpend = priceCalculatorFactory.getPriceCalculatorForProduct(usagePop)
+				.calculatePrice(product, PriceCalculationContext.forRunningTotals(BILL_CYCLE, null, rating));
+		assertEquals(0, new BigDecimal("12345678901.12345678").compareTo(currentSpend.getAmount()));
+	}
+
+	private UsageRatingService createService() {
+		return new UsageRatingService(usageService, new TMFEntityValidator(), objectMapper, appProperties);
+	}
+
+	/*
+	 * Adds the Usage(s) from..to-1, one per hour, with value i
+	 */
+	private void addUsages(int from, int to) {
+		for (int i = from; i < to; i++) {
+			usages.add(createUsage(PRODUCT_ID, String.format("urn:ngsi-ld:usage:%03d", i), "apiCalls", i, START.plusHours(i)));
+		}
+	}
+
+	private static BigDecimal sum(int from, int to) {
+		BigDecimal sum = BigDecimal.ZERO;
+		for (int i = from; i < to; i++) {
+			sum = sum.add(BigDecimal.valueOf((double) i));
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,186 @@
+package it.eng.dome.billing.engine.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.brokerage.api.UsageManagementApis;
+import it.eng.dome.tmforum.tmf635.v4.ApiClient;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Checks the {@link UsageService} against a local stub of the TMF635 API: with the server-side filter the number of TMForum requests 
+ * depends on the Usage(s) of the billed product, not on the size of the whole Usage collection.
+ */
+public class UsageServiceTest {
+	
+	private static final String PRODUCT_ID = "urn:ngsi-ld:product:billed";
+	private static final int PAGE_SIZE = 10;
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+	
+	private HttpServer server;
+	private final List<StubUsage> usages = new ArrayList<StubUsage>();
+	private final AtomicInteger requests = new AtomicInteger(0);
+	
+	@BeforeEach
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/tmf-api/usageManagement/v4/usage", this::handleListUsage);
+		server.start();
+	}
+	
+	@AfterEach
+	public void stopServer() {
+		server.stop(0);
+	}
+	
+	@Test
+	public void serverSideFilterRequestsGrowWithProductUsages() {
+		addUsages(PRODUCT_ID, 25);
+		addUsages("urn:ngsi-ld:product:other", 500);
+		
+		List<Usage> result = getUsageService(true).getUsages(PRODUCT_ID, getBillingPeriod());
+		assertEquals(25, result.size());
+		int requestsSmallPlatform = requests.getAndSet(0);
+		
+		addUsages("urn:ngsi-ld:product:other", 1000);
+		
+		result = getUsageService(true).getUsages(PRODUCT_ID, getBillingPeriod());
+		assertEquals(25, result.size());
+		int requestsBigPlatform = requests.get();
+		
+		// 25 usages with page size 10: 3 pages, plus at most one empty page
+		assertTrue(requestsSmallPlatform <= 4, "Unexpected number of requests: " + requestsSmallPlatform);
+		assertEquals(requestsSmallPlatform, requestsBigPlatform);
+	}
+	
+	@Test
+	public void clientSideFilterFallbackScansAllUsages() {
+		addUsages(PRODUCT_ID, 25);
+		addUsages("urn:ngsi-ld:product:other", 500);
+		
+		List<Usage> result = getUsageService(false).getUsages(PRODUCT_ID, getBillingPeriod());
+		
+		assertEquals(25, result.size());
+		assertTrue(requests.get() >= 525 / PAGE_SIZE, "Unexpected number of requests: " + requests.get());
+	}
+	
+	@Test
+	public void usagesOutsideBillingPeriodAreDiscarded() {
+		addUsages(PRODUCT_ID, 5);
+		usages.add(new StubUsage("out-before", PRODUCT_ID, START.minusDays(1)));
+		usages.add(new StubUsage("out-after", PRODUCT_ID, START.plusMonths(2)));
+		
+		assertEquals(5, getUsageService(true).getUsages(PRODUCT_ID, getBillingPeriod()).size());
+		assertEquals(5, getUsageService(false).getUsages(PRODUCT_ID, getBillingPeriod()).size());
+	}
+	
+	private UsageService getUsageService(boolean serverSideFilter) {
+		ApiClient apiClient = new ApiClient();
+		apiClient.setBasePath("http://localhost:" + server.getAddress().getPort() + "/tmf-api/usageManagement/v4");
+		
+		AppProperties appProperties = new AppProperties();
+		appProperties.getUsage().setServerSideFilter(serverSideFilter);
+		appProperties.getUsage().setPageSize(PAGE_SIZE);
+		
+		return new UsageService(new UsageManagementApis(apiClient), appProperties);
+	}
+	
+	private TimePeriod getBillingPeriod() {
+		TimePeriod tp = new TimePeriod();
+		tp.setStartDateTime(START);
+		tp.setEndDateTime(START.plusMonths(1));
+		return tp;
+	}
+	
+	private void addUsages(String productId, int number) {
+		int offset = usages.size();
+		for (int i = 0; i < number; i++) {
+			usages.add(new StubUsage("urn:ngsi-ld:usage:" + (offset + i), productId, START.plusHours(i % 700)));
+		}
+	}
+	
+	/*
+	 * Stub of GET /usage supporting offset, limit and the filters on ratedProductUsage.productRef.id and usageDate
+	 */
+	private void handleListUsage(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		
+		Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+		int offset = Integer.parseInt(query.getOrDefault("offset", "0"));
+		int limit = Integer.parseInt(query.getOrDefault("limit", String.valueOf(Integer.MAX_VALUE)));
+		
+		String productId = query.get("ratedProductUsage.productRef.id");
+		OffsetDateTime from = query.containsKey("usageDate.gte") ? OffsetDateTime.parse(query.get("usageDate.gte")) : null;
+		OffsetDateTime to = query.containsKey("usageDate.lte") ? OffsetDateTime.parse(query.get("usageDate.lte")) : null;
+		
+		String body = usages.stream()
+				.filter(u -> productId == null || productId.equals(u.productId))
+				.filter(u -> from == null || !u.usageDate.isBefore(from))
+				.filter(u -> to == null || !u.usageDate.isAfter(to))
+				.skip(offset)
+				.limit(limit)
+				.map(StubUsage::toJson)
+				.collect(Collectors.joining(",", "[", "]"));
+		
+		byte[] response = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, response.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(response);
+		}
+	}
+	
+	private static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> query = new HashMap<String, String>();
+		if (rawQuery == null) {
+			return query;
+		}
+		for (String param : rawQuery.split("&")) {
+			String[] kv = param.split("=", 2);
+			query.put(URLDecoder.decode(kv[0], StandardCharsets.UTF_8), kv.length > 1 ? URLDecoder.decode(kv[1], StandardCharsets.UTF_8) : "");
+		}
+		return query;
+	}
+	
+	private static class StubUsage {
+		private final String id;
+		private final String productId;
+		private final OffsetDateTime usageDate;
+		
+		StubUsage(String id, String productId, OffsetDateTime usageDate) {
+			this.id = id;
+			this.productId = productId;
+			this.usageDate = usageDate;
+		}
+		
+		String toJson() {
+			return "{\"id\":\"" + id + "\",\"usageType\":\"apiCalls\",\"usageDate\":\"" + usageDate + "\","
+					+ "\"ratedProductUsage\":[{\"productRef\":{\"id\":\"" + productId + "\"}}],"
+					+ "\"usageCharacteristic\":[{\"name\":\"apiCalls\",\"valueType\":\"number\",\"value\":1}]}";
+		}
+	}
+
+}
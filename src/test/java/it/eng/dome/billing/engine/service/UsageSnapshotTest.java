@@ -0,0 +1,148 @@
+package it.eng.dome.billing.engine.service;
+
+import static it.eng.dome.billing.engine.BillingTestFixtures.createUsage;
+import static it.eng.dome.billing.engine.BillingTestFixtures.createUsagePop;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.model.Money;
+import it.eng.dome.billing.engine.price.alteration.PriceAlterationCalculator;
+import it.eng.dome.billing.engine.price.calculator.PriceCalculationContext;
+import it.eng.dome.billing.engine.price.calculator.PriceCalculator;
+import it.eng.dome.billing.engine.price.calculator.PriceCalculatorFactory;
+import it.eng.dome.billing.engine.utils.TMForumEntityUtils;
+import it.eng.dome.billing.engine.utils.UsageUtils;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.brokerage.api.UsageManagementApis;
+import it.eng.dome.tmforum.tmf620.v4.model.BundledProductOfferingPriceRelationship;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Counts the TMF635 requests of the usage price calculations of a billing run with and without the {@link UsageSnapshot}.
+ */
+public class UsageSnapshotTest {
+
+	private static final String PRODUCT_ID = "urn:ngsi-ld:product:1";
+	private static final String[] METRICS = { "apiCalls", "storage", "bandwidth" };
+	private static final int BILL_CYCLES = 3;
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+	private final List<Usage> usages = new ArrayList<Usage>();
+	private final AtomicInteger tmfRequests = new AtomicInteger(0);
+
+	private UsageService usageService;
+	private PriceCalculatorFactory priceCalculatorFactory;
+	private ProductOfferingPrice bundledPop;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		// Usage(s) of the 3 metrics spread over the bill cycles, returned in random order by TMForum
+		Random random = new Random(42);
+		for (int i = 0; i < 300; i++) {
+			usages.add(createUsage(PRODUCT_ID, "urn:ngsi-ld:usage:" + i, METRICS[i % METRICS.length], random.nextInt(100) + 1,
+					START.plusMinutes(random.nextInt(60 * 24 * 31 * BILL_CYCLES))));
+		}
+		Collections.shuffle(usages, random);
+
+		UsageManagementApis usageManagementApis = mock(UsageManagementApis.class);
+		when(usageManagementApis.listUsages(any(), anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+			tmfRequests.incrementAndGet();
+			int offset = invocation.getArgument(1);
+			int limit = invocation.getArgument(2);
+			return new ArrayList<Usage>(usages.subList(Math.min(offset, usages.size()), Math.min(offset + limit, usages.size())));
+		});
+
+		AppProperties appProperties = new AppProperties();
+		appProperties.getUsage().setPageSize(1000);
+		usageService = new UsageService(usageManagementApis, appProperties);
+
+		// a bundle of 3 usage-based POPs, one for each metric
+		ProductOfferingPriceService productOfferingPriceService = mock(ProductOfferingPriceService.class);
+		bundledPop = new ProductOfferingPrice();
+		bundledPop.setId("urn:ngsi-ld:product-offering-price:bundled");
+		bundledPop.setIsBundle(true);
+		bundledPop.setLifecycleStatus("Launched");
+		List<ProductOfferingPrice> usagePops = new ArrayList<ProductOfferingPrice>();
+		for (int i = 0; i < METRICS.length; i++) {
+			ProductOfferingPrice usagePop = createUsagePop(METRICS[i], 0.1f * (i + 1));
+			usagePops.add(usagePop);
+			bundledPop.addBundledPopRelationshipItem(new BundledProductOfferingPriceRelationship().id(usagePop.getId()));
+		}
+		when(productOfferingPriceService.getBundledProductOfferingPrices(eq(bundledPop.getBundledPopRelationship()))).thenReturn(usagePops);
+
+		priceCalculatorFactory = new PriceCalculatorFactory(mock(PriceAlterationCalculator.class), productOfferingPriceService,
+				new TMFEntityValidator(), usageService);
+	}
+
+	@Test
+	public void usagesAreRetrievedOncePerBillingRun() throws Exception {
+		Product product = new Product();
+		product.setId(PRODUCT_ID);
+		PriceCalculator<Product, Money> pc = priceCalculatorFactory.getPriceCalculatorForProduct(bundledPop);
+
+		// without snapshot: one retrieval for each usage POP and bill cycle
+		List<Float> expected = new ArrayList<Float>();
+		for (int i = 0; i < BILL_CYCLES; i++) {
+			expected.add(pc.calculatePrice(product, PriceCalculationContext.forBillingPeriod(getBillCycle(i))).getValue());
+		}
+		assertEquals(METRICS.length * BILL_CYCLES, tmfRequests.getAndSet(0));
+
+		// with snapshot: one retrieval for the whole billing run
+		UsageSnapshot snapshot = usageService.createSnapshot(PRODUCT_ID, TMForumEntityUtils.createTimePeriod678(START, getBillCycle(BILL_CYCLES - 1).getEndDateTime()));
+		assertFalse(snapshot.isLoaded());
+		for (int i = 0; i < BILL_CYCLES; i++) {
+			float actual = pc.calculatePrice(product, PriceCalculationContext.forBillingPeriod(getBillCycle(i), snapshot)).getValue();
+			assertEquals(expected.get(i), actual, 0.001f);
+		}
+		assertEquals(1, tmfRequests.get());
+		assertTrue(snapshot.isLoaded());
+	}
+
+	@Test
+	public void snapshotSubPeriodsMatchTheFilteredUsages() {
+		TimePeriod window = TMForumEntityUtils.createTimePeriod678(START, START.plusMonths(BILL_CYCLES));
+		UsageSnapshot snapshot = new UsageSnapshot(PRODUCT_ID, window, () -> new ArrayList<Usage>(usages));
+
+		for (int days = 1; days < 45; days += 7) {
+			TimePeriod tp = TMForumEntityUtils.createTimePeriod678(START.plusDays(days), START.plusDays(days * 2).plusHours(5));
+
+			Set<String> expected = usages.stream().filter(u -> UsageUtils.isUsageInTimePeriod(u, tp)).map(Usage::getId).collect(Collectors.toSet());
+			List<Usage> actual = snapshot.getUsages(tp);
+
+			assertEquals(expected, actual.stream().map(Usage::getId).collect(Collectors.toSet()));
+			for (int i = 1; i < actual.size(); i++) {
+				assertFalse(actual.get(i).getUsageDate().isBefore(actual.get(i - 1).getUsageDate()));
+			}
+		}
+
+		assertFalse(snapshot.covers(PRODUCT_ID, TMForumEntityUtils.createTimePeriod678(START.minusDays(1), START.plusDays(1))));
+		assertFalse(snapshot.covers("urn:ngsi-ld:product:other", TMForumEntityUtils.createTimePeriod678(START, START.plusDays(1))));
+	}
+
+	private static TimePeriod getBillCycle(int i) {
+		return TMForumEntityUtils.createTimePeriod678(START.plusMonths(i), START.plusMonths(i + 1).minusSeconds(1));
+	}
+}
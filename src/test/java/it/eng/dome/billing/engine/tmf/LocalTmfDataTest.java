@@ -0,0 +1,113 @@
+package it.eng.dome.billing.engine.tmf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf637.v4.model.ProductPrice;
+
+/**
+ * Checks that the data of the local TMForum are valid for the billing engine and depend only on the properties.
+ */
+public class LocalTmfDataTest {
+
+	private static final OffsetDateTime REFERENCE_DATE = OffsetDateTime.parse("2025-06-15T10:30:00Z");
+
+	private final TMFEntityValidator tmfEntityValidator = new TMFEntityValidator();
+
+	@Test
+	public void generatedEntitiesAreValid() throws Exception {
+		AppProperties.LocalTmf properties = createProperties();
+		LocalTmfData data = new LocalTmfData(properties, REFERENCE_DATE);
+
+		assertEquals(properties.getCatalogSize(), data.getProductOfferingPrices().size());
+		for (ProductOfferingPrice pop : data.getProductOfferingPrices()) {
+			if ("discount".equals(pop.getPriceType())) {
+				tmfEntityValidator.validatePopRelationship(pop);
+			} else {
+				tmfEntityValidator.validateProductOfferingPrice(pop);
+			}
+		}
+
+		assertEquals(properties.getProducts(), data.getProducts().size());
+		for (Product product : data.getProducts()) {
+			tmfEntityValidator.validateProduct(product);
+			assertEquals(properties.getPopsPerProduct(), product.getProductPrice().size());
+			for (ProductPrice productPrice : product.getProductPrice()) {
+				assertNotNull(data.getProductOfferingPrice(productPrice.getProductOfferingPrice().getId()));
+			}
+		}
+	}
+
+	@Test
+	public void usagesAreSortedWithinTheHistory() {
+		AppProperties.LocalTmf properties = createProperties();
+		LocalTmfData data = new LocalTmfData(properties, REFERENCE_DATE);
+		Product product = data.getProducts().get(3);
+
+		List<Usage> usages = data.getUsages(product.getId());
+		assertEquals(properties.getUsagesPerProduct(), usages.size());
+		assertSame(usages, data.getUsages(product.getId()));
+		for (int i = 0; i < usages.size(); i++) {
+			Usage usage = usages.get(i);
+			assertFalse(usage.getUsageDate().isBefore(product.getStartDate()));
+			assertTrue(usage.getUsageDate().isBefore(REFERENCE_DATE));
+			assertEquals(product.getId(), usage.getRatedProductUsage().get(0).getProductRef().getId());
+			assertEquals(LocalTmfData.METRICS.length, usage.getUsageCharacteristic().size());
+			if (i > 0) {
+				assertFalse(usage.getUsageDate().isBefore(usages.get(i - 1).getUsageDate()));
+			}
+		}
+
+		assertTrue(data.getUsages("urn:ngsi-ld:product:unknown").isEmpty());
+		assertEquals(properties.getProducts() * properties.getUsagesPerProduct(), data.getUsages().size());
+	}
+
+	@Test
+	public void sameSeedGeneratesTheSameData() {
+		LocalTmfData data = new LocalTmfData(createProperties(), REFERENCE_DATE);
+		LocalTmfData other = new LocalTmfData(createProperties(), REFERENCE_DATE);
+
+		assertEquals(describe(data), describe(other));
+
+		AppProperties.LocalTmf properties = createProperties();
+		properties.setSeed(7);
+		assertFalse(describe(data).equals(describe(new LocalTmfData(properties, REFERENCE_DATE))));
+	}
+
+	private static String describe(LocalTmfData data) {
+		String pops = data.getProductOfferingPrices().stream()
+				.map(pop -> pop.getId() + ":" + pop.getPriceType() + ":" + (pop.getPrice() != null ? pop.getPrice().getValue() : pop.getPercentage()))
+				.collect(Collectors.joining(","));
+		String products = data.getProducts().stream()
+				.map(product -> product.getId() + ":" + product.getProductPrice().stream().map(pp -> pp.getProductOfferingPrice().getId()).collect(Collectors.joining("|")))
+				.collect(Collectors.joining(","));
+		String usages = data.getUsages(data.getProducts().get(0).getId()).stream()
+				.map(usage -> usage.getUsageDate() + "=" + usage.getUsageCharacteristic().get(0).getValue())
+				.collect(Collectors.joining(","));
+		return pops + "\n" + products + "\n" + usages;
+	}
+
+	private static AppProperties.LocalTmf createProperties() {
+		AppProperties.LocalTmf properties = new AppProperties.LocalTmf();
+		properties.setCatalogSize(20);
+		properties.setProducts(10);
+		properties.setPopsPerProduct(4);
+		properties.setUsagesPerProduct(200);
+		return properties;
+	}
+
+}
@@ -0,0 +1,225 @@
+package it.eng.dome.billing.engine.tmf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.utils.CostProfile;
+
+public class TmfHttpClientTest {
+
+	private static final String BODY = "[{\"id\":\"urn:ngsi-ld:usage:1\"},{\"id\":\"urn:ngsi-ld:usage:2\"}]";
+	private static final int LARGE_BODY_SIZE = 8 * 1024 * 1024;
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	private final AtomicReference<String> acceptEncoding = new AtomicReference<String>();
+	private final AtomicInteger concurrent = new AtomicInteger();
+	private final AtomicInteger maxConcurrent = new AtomicInteger();
+	private volatile CountDownLatch release = new CountDownLatch(0);
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		executor = Executors.newCachedThreadPool();
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/usage", this::handle);
+		server.createContext("/large", exchange -> {
+			exchange.sendResponseHeaders(200, LARGE_BODY_SIZE);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(new byte[LARGE_BODY_SIZE]);
+			} catch (IOException e) {
+				// the client closed the body before reading it
+			} finally {
+				exchange.close();
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		release.countDown();
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void gzipResponsesAreDecompressed() throws Exception {
+		AppProperties.TmfHttp settings = new AppProperties.TmfHttp();
+		settings.setCompression(true);
+		TmfHttpClient httpClient = new TmfHttpClient("tmf635", settings);
+
+		HttpResponse<InputStream> response = httpClient.send(this.request(), HttpResponse.BodyHandlers.ofInputStream());
+		assertEquals("gzip", acceptEncoding.get());
+		assertEquals(BODY, new String(response.body().readAllBytes(), StandardCharsets.UTF_8));
+
+		assertEquals(BODY, httpClient.sendAsync(this.request(), HttpResponse.BodyHandlers.ofString()).get(5, TimeUnit.SECONDS).body());
+	}
+
+	@Test
+	public void noCompressionByDefault() throws Exception {
+		TmfHttpClient httpClient = new TmfHttpClient("tmf635", new AppProperties.TmfHttp());
+
+		HttpResponse<String> response = httpClient.send(this.request(), HttpResponse.BodyHandlers.ofString());
+		assertNull(acceptEncoding.get());
+		assertEquals(BODY, response.body());
+	}
+
+	@Test
+	public void inFlightRequestsAreBounded() throws Exception {
+		AppProperties.TmfHttp settings = new AppProperties.TmfHttp();
+		settings.setMaxConnections(2);
+		TmfHttpClient httpClient = new TmfHttpClient("tmf635", settings);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		httpClient.bindTo(registry);
+
+		release = new CountDownLatch(1);
+		ExecutorService clients = Executors.newFixedThreadPool(5);
+		try {
+			List<Future<HttpResponse<String>>> responses = new ArrayList<Future<HttpResponse<String>>>();
+			for (int i = 0; i < 5; i++) {
+				responses.add(clients.submit(() -> httpClient.send(this.request(), HttpResponse.BodyHandlers.ofString())));
+			}
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (httpClient.getPending() < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(2, httpClient.getActive());
+			assertEquals(3, httpClient.getPending());
+			assertEquals(3, registry.get("tmf.client.requests.pending").tag("api", "tmf635").gauge().value());
+			assertEquals(2, registry.get("tmf.client.requests.max").tag("api", "tmf635").gauge().value());
+
+			release.countDown();
+			for (Future<HttpResponse<String>> response : responses) {
+				assertEquals(BODY, response.get(5, TimeUnit.SECONDS).body());
+			}
+		} finally {
+			clients.shutdownNow();
+		}
+
+		assertTrue(maxConcurrent.get() <= 2);
+		assertEquals(0, httpClient.getActive());
+		assertEquals(3, httpClient.getQueued());
+		assertEquals(3, registry.get("tmf.client.requests.queued").tag("api", "tmf635").functionCounter().count());
+	}
+
+	@Test
+	public void connectionIsHeldUntilTheBodyStreamIsClosed() throws Exception {
+		TmfHttpClient httpClient = new TmfHttpClient("tmf635", new AppProperties.TmfHttp());
+		URI large = URI.create("http://localhost:" + server.getAddress().getPort() + "/large");
+
+		HttpResponse<InputStream> response = httpClient.send(HttpRequest.newBuilder(large).GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+		assertEquals(1, httpClient.getActive());
+		response.body().close();
+		assertEquals(0, httpClient.getActive());
+
+		response = httpClient.sendAsync(HttpRequest.newBuilder(large).GET().build(), HttpResponse.BodyHandlers.ofInputStream()).get(5, TimeUnit.SECONDS);
+		assertEquals(1, httpClient.getActive());
+		try (InputStream body = response.body()) {
+			assertEquals(LARGE_BODY_SIZE, body.readAllBytes().length);
+		}
+		assertEquals(0, httpClient.getActive());
+
+		// a body read in full releases the connection without closing its stream
+		assertEquals(BODY, httpClient.send(this.request(), HttpResponse.BodyHandlers.ofString()).body());
+		assertEquals(0, httpClient.getActive());
+	}
+
+	@Test
+	public void requestsAreCountedInTheCostProfile() throws Exception {
+		AppProperties.TmfHttp settings = new AppProperties.TmfHttp();
+		settings.setCompression(true);
+		TmfHttpClient httpClient = new TmfHttpClient("tmf635", settings);
+
+		CostProfile profile = CostProfile.start();
+		try {
+			assertEquals(BODY, httpClient.send(this.request(), HttpResponse.BodyHandlers.ofString()).body());
+			assertEquals(BODY, httpClient.sendAsync(this.request(), HttpResponse.BodyHandlers.ofString()).get(5, TimeUnit.SECONDS).body());
+		} finally {
+			CostProfile.clear();
+		}
+
+		// the bytes received are the compressed ones
+		assertEquals(2, profile.getTmf().get("tmf635").getCalls());
+		assertTrue(profile.getTmf().get("tmf635").getBytesReceived() > 0);
+		assertTrue(profile.getTmf().get("tmf635").getBytesReceived() != 2 * BODY.length());
+
+		httpClient.send(this.request(), HttpResponse.BodyHandlers.ofString());
+		assertEquals(2, profile.getTmf().get("tmf635").getCalls());
+	}
+
+	@Test
+	public void sharedBuilderAlwaysBuildsTheSameClient() {
+		TmfHttpClient httpClient = new TmfHttpClient("tmf620", new AppProperties.TmfHttp());
+		HttpClient.Builder builder = TmfHttpClient.builder(httpClient);
+
+		assertSame(httpClient, builder.build());
+		assertSame(httpClient, builder.version(HttpClient.Version.HTTP_2).build());
+	}
+
+	private HttpRequest request() {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getAddress().getPort() + "/usage")).GET().build();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+		try {
+			release.await(5, TimeUnit.SECONDS);
+			acceptEncoding.set(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+
+			byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+			if ("gzip".equals(acceptEncoding.get())) {
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+				try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+					gzip.write(body);
+				}
+				body = compressed.toByteArray();
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			}
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			concurrent.decrementAndGet();
+			exchange.close();
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+package it.eng.dome.billing.engine.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.billing.engine.validator.TMFEntityValidator;
+import it.eng.dome.brokerage.api.UsageManagementApis;
+import it.eng.dome.tmforum.tmf635.v4.model.ProductRef;
+import it.eng.dome.tmforum.tmf635.v4.model.RatedProductUsage;
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf637.v4.model.Product;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Checks that the billing pipeline stages are recorded in the registries added to the Micrometer global registry.
+ */
+public class BillingMetricsTest {
+
+	private static final String PRODUCT_ID = "urn:ngsi-ld:product:1";
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+	private SimpleMeterRegistry registry;
+
+	@BeforeEach
+	public void setUp() {
+		registry = new SimpleMeterRegistry();
+		Metrics.addRegistry(registry);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		Metrics.removeRegistry(registry);
+		registry.close();
+	}
+
+	@Test
+	public void usageFetchRecordsPagesAndScannedRecords() throws Exception {
+		// 25 Usage(s) returned by TMForum, 10 of another Product
+		List<Usage> usages = new ArrayList<Usage>();
+		for (int i = 0; i < 25; i++) {
+			usages.add(createUsage(i < 15 ? PRODUCT_ID : "urn:ngsi-ld:product:2", START.plusDays(i)));
+		}
+		UsageManagementApis usageManagementApis = mock(UsageManagementApis.class);
+		when(usageManagementApis.listUsages(any(), anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+			int offset = invocation.getArgument(1);
+			int limit = invocation.getArgument(2);
+			return new ArrayList<Usage>(usages.subList(Math.min(offset, usages.size()), Math.min(offset + limit, usages.size())));
+		});
+
+		TimePeriod tp = new TimePeriod();
+		tp.setStartDateTime(START);
+		tp.setEndDateTime(START.plusMonths(1));
+		List<Usage> productUsages = UsageUtils.getUsages(PRODUCT_ID, tp, usageManagementApis, false, null, 10);
+
+		assertEquals(15, productUsages.size());
+		assertEquals(1, registry.get("billing.usage.fetch").timer().count());
+		// the pages requested to TMForum
+		int requests = (int) mockingDetails(usageManagementApis).getInvocations().stream().filter(i -> i.getMethod().getName().equals("listUsages")).count();
+		assertEquals(requests, registry.get("billing.usage.fetch.pages").counter().count());
+		assertEquals(25, registry.get("billing.usage.fetch.records").tag("state", "scanned").counter().count());
+		assertEquals(15, registry.get("billing.usage.fetch.records").tag("state", "kept").counter().count());
+		assertEquals(15, registry.get("billing.usage.fetch.size").summary().totalAmount());
+	}
+
+	@Test
+	public void validationRecordsTheEntityAndTheIssues() {
+		TMFEntityValidator tmfEntityValidator = new TMFEntityValidator();
+
+		Product product = new Product();
+		product.setId(PRODUCT_ID);
+		assertThrows(BillingEngineValidationException.class, () -> tmfEntityValidator.validateProduct(product));
+
+		assertEquals(1, registry.get("billing.validation").tag("entity", "product").timer().count());
+		assertEquals(5, registry.get("billing.validation.issues").tag("severity", "error").counter().count());
+	}
+
+	private static Usage createUsage(String productId, OffsetDateTime usageDate) {
+		Usage usage = new Usage();
+		usage.setId("urn:ngsi-ld:usage:" + usageDate.toEpochSecond());
+		usage.setUsageDate(usageDate);
+		usage.addRatedProductUsageItem(new RatedProductUsage().productRef(new ProductRef().id(productId)));
+		return usage;
+	}
+
+}
@@ -0,0 +1,130 @@
+package it.eng.dome.billing.engine.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import it.eng.dome.tmforum.tmf635.v4.model.Usage;
+import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+import it.eng.dome.tmforum.tmf678.v4.model.TimePeriod;
+
+/**
+ * Checks the range counts and sums of the {@link UsageIndex} against the {@link UsageCharacteristic} map of the filtered Usage(s).
+ */
+public class UsageIndexTest {
+
+	private static final String[] METRICS = { "apiCalls", "storage", "bandwidth" };
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+	@Test
+	public void rangeSumsMatchTheFilteredUsages() {
+		Random random = new Random(7);
+		List<Usage> usages = new ArrayList<Usage>();
+		for (int i = 0; i < 2000; i++) {
+			Usage usage = createUsage(START.plusSeconds(random.nextInt(60 * 60 * 24 * 90)));
+			// some Usage(s) with more than one metric
+			usage.addUsageCharacteristicItem(createUsageCharacteristic(METRICS[i % METRICS.length], random.nextInt(1000) / 10d));
+			if (i % 5 == 0) {
+				usage.addUsageCharacteristicItem(createUsageCharacteristic(METRICS[(i + 1) % METRICS.length], random.nextInt(100)));
+			}
+			usages.add(usage);
+		}
+		Collections.shuffle(usages, random);
+
+		UsageIndex index = UsageUtils.createUsageIndex(usages);
+		assertEquals(Set.of(METRICS), index.getMetrics());
+
+		for (int i = 0; i < 50; i++) {
+			OffsetDateTime from = START.plusHours(random.nextInt(24 * 90));
+			TimePeriod tp = TMForumEntityUtils.createTimePeriod678(from, from.plusHours(random.nextInt(24 * 40)));
+
+			List<Usage> filtered = usages.stream().filter(u -> UsageUtils.isUsageInTimePeriod(u, tp)).collect(Collectors.toList());
+			Map<String, List<UsageCharacteristic>> usageData = UsageUtils.createUsageCharacteristicDataMap(filtered);
+
+			for (String metric : METRICS) {
+				List<UsageCharacteristic> expected = usageData.getOrDefault(metric, List.of());
+				assertEquals(expected.size(), index.count(metric, tp));
+				assertEquals(0, UsageUtils.sumUsageCharacteristicValues(expected).compareTo(index.sum(metric, tp)));
+			}
+		}
+	}
+
+	@Test
+	public void boundsAreIncluded() {
+		List<Usage> usages = new ArrayList<Usage>();
+		for (int i = 0; i < 10; i++) {
+			Usage usage = createUsage(START.plusDays(i));
+			usage.addUsageCharacteristicItem(createUsageCharacteristic("apiCalls", i + 1));
+			usages.add(usage);
+		}
+		UsageIndex index = new UsageIndex(usages);
+
+		TimePeriod tp = TMForumEntityUtils.createTimePeriod678(START.plusDays(2), START.plusDays(4));
+		assertEquals(3, index.count("apiCalls", tp));
+		assertEquals(0, BigDecimal.valueOf(3 + 4 + 5).compareTo(index.sum("apiCalls", tp)));
+
+		TimePeriod openEnded = TMForumEntityUtils.createTimePeriod678(START.plusDays(8), OffsetDateTime.of(9999, 12, 31, 23, 59, 59, 0, ZoneOffset.UTC));
+		assertEquals(0, BigDecimal.valueOf(9 + 10).compareTo(index.sum("apiCalls", openEnded)));
+
+		assertEquals(0, index.count("apiCalls", TMForumEntityUtils.createTimePeriod678(START.plusDays(4), START.plusDays(2))));
+		assertEquals(0, index.count("storage", tp));
+		assertEquals(0, BigDecimal.ZERO.compareTo(index.sum("storage")));
+		assertEquals(0, BigDecimal.valueOf(55).compareTo(index.sum("apiCalls")));
+	}
+
+	@Test
+	public void usagesWithoutDateOrValueAreNotIndexed() {
+		Usage withoutDate = createUsage(null);
+		withoutDate.addUsageCharacteristicItem(createUsageCharacteristic("apiCalls", 1));
+		Usage withoutValue = createUsage(START);
+		withoutValue.addUsageCharacteristicItem(createUsageCharacteristic("apiCalls", null));
+
+		UsageIndex index = new UsageIndex(List.of(withoutDate, withoutValue));
+		assertEquals(0, index.count("apiCalls"));
+
+		Usage notNumeric = createUsage(START);
+		notNumeric.addUsageCharacteristicItem(createUsageCharacteristic("apiCalls", "ten"));
+		assertThrows(NumberFormatException.class, () -> new UsageIndex(List.of(notNumeric)));
+	}
+
+	@Test
+	public void largeTotalsAreSummedExactly() {
+		// in reverse order of usageDate, with a total that does not fit in fixed point
+		List<Usage> usages = new ArrayList<Usage>();
+		for (int i = 9; i >= 0; i--) {
+			Usage usage = createUsage(START.plusDays(i));
+			usage.addUsageCharacteristicItem(createUsageCharacteristic("bandwidth", i % 2 == 0 ? (Object) (Long.MAX_VALUE / 100) : (Object) 0.1d));
+			usages.add(usage);
+		}
+		UsageIndex index = new UsageIndex(usages);
+
+		BigDecimal large = BigDecimal.valueOf(Long.MAX_VALUE / 100);
+		assertEquals(0, large.multiply(BigDecimal.valueOf(5)).add(new BigDecimal("0.5")).compareTo(index.sum("bandwidth")));
+		assertEquals(0, large.add(new BigDecimal("0.2")).compareTo(index.sum("bandwidth", TMForumEntityUtils.createTimePeriod678(START.plusDays(1), START.plusDays(3)))));
+	}
+
+	private static Usage createUsage(OffsetDateTime usageDate) {
+		Usage usage = new Usage();
+		usage.setUsageDate(usageDate);
+		return usage;
+	}
+
+	private static UsageCharacteristic createUsageCharacteristic(String metric, Object value) {
+		UsageCharacteristic usageCh = new UsageCharacteristic();
+		usageCh.setName(metric);
+		usageCh.setValue(value);
+		return usageCh;
+	}
+}
@@ -0,0 +1,60 @@
+package it.eng.dome.billing.engine.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import it.eng.dome.tmforum.tmf635.v4.model.UsageCharacteristic;
+
+/**
+ * Checks the accumulation of the {@link UsageCharacteristic} values used to rate the usage.
+ */
+public class UsageUtilsTest {
+
+	@Test
+	public void numericAndTextValuesAreSummed() {
+		List<UsageCharacteristic> usageChs = new ArrayList<UsageCharacteristic>();
+		usageChs.add(createUsageCharacteristic(1.5f));
+		usageChs.add(createUsageCharacteristic(2.25d));
+		usageChs.add(createUsageCharacteristic(3));
+		usageChs.add(createUsageCharacteristic(new BigDecimal("4.75")));
+		usageChs.add(createUsageCharacteristic("10.5"));
+		usageChs.add(createUsageCharacteristic(null));
+
+		assertEquals(0, new BigDecimal("22").compareTo(UsageUtils.sumUsageCharacteristicValues(usageChs)));
+		assertEquals(0, BigDecimal.ZERO.compareTo(UsageUtils.sumUsageCharacteristicValues(List.of())));
+	}
+
+	@Test
+	public void valuesAreSummedExactly() {
+		List<UsageCharacteristic> usageChs = new ArrayList<UsageCharacteristic>();
+		for (int i = 0; i < 1000; i++) {
+			usageChs.add(createUsageCharacteristic(0.1f));
+		}
+		// the same sum in double is 100.00000149011612 (0.1f) or 99.9999999999986 (0.1d)
+		assertEquals(0, new BigDecimal("100").compareTo(UsageUtils.sumUsageCharacteristicValues(usageChs)));
+
+		// a total that does not fit in fixed point is summed in BigDecimal
+		List<UsageCharacteristic> large = List.of(createUsageCharacteristic(Long.MAX_VALUE / 10), createUsageCharacteristic(Long.MAX_VALUE / 10), createUsageCharacteristic(0.5d));
+		assertEquals(0, BigDecimal.valueOf(Long.MAX_VALUE / 10).multiply(BigDecimal.valueOf(2)).add(new BigDecimal("0.5")).compareTo(UsageUtils.sumUsageCharacteristicValues(large)));
+	}
+
+	@Test
+	public void notNumericValueIsRejected() {
+		List<UsageCharacteristic> usageChs = List.of(createUsageCharacteristic("1"), createUsageCharacteristic("one"));
+
+		assertThrows(NumberFormatException.class, () -> UsageUtils.sumUsageCharacteristicValues(usageChs));
+	}
+
+	private static UsageCharacteristic createUsageCharacteristic(Object value) {
+		UsageCharacteristic usageCh = new UsageCharacteristic();
+		usageCh.setName("apiCalls");
+		usageCh.setValue(value);
+		return usageCh;
+	}
+}
@@ -0,0 +1,129 @@
+package it.eng.dome.billing.engine.validator;
+
+import static it.eng.dome.billing.engine.BillingTestFixtures.createPop;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.eng.dome.billing.engine.config.AppProperties;
+import it.eng.dome.billing.engine.exception.BillingEngineValidationException;
+import it.eng.dome.tmforum.tmf620.v4.model.ProductOfferingPrice;
+import it.eng.dome.tmforum.tmf620.v4.model.Quantity;
+
+/**
+ * Checks that the validations of a {@link ProductOfferingPrice} are cached by identifier and lastUpdate, both when it is valid and when it is not.
+ */
+public class TMFEntityValidatorTest {
+
+	private static final OffsetDateTime LAST_UPDATE = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+	private SimpleMeterRegistry registry;
+
+	private TMFEntityValidator validator;
+
+	@BeforeEach
+	public void setUp() {
+		registry = new SimpleMeterRegistry();
+		Metrics.addRegistry(registry);
+
+		StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+		beanFactory.addBean("meterRegistry", registry);
+		validator = new TMFEntityValidator(new AppProperties(), beanFactory.getBeanProvider(MeterRegistry.class));
+	}
+
+	@AfterEach
+	public void tearDown() {
+		Metrics.removeRegistry(registry);
+		registry.close();
+	}
+
+	@Test
+	public void validationsAreCachedByLastUpdate() throws Exception {
+		ProductOfferingPrice pop = createPopUpdatedAt(LAST_UPDATE);
+		for (int i = 0; i < 10; i++) {
+			validator.validateProductOfferingPrice(pop);
+			validator.validatePrice(pop);
+		}
+		assertEquals(1, registry.get("billing.validation").tag("entity", "productOfferingPrice").timer().count());
+		assertEquals(1, registry.get("billing.validation").tag("entity", "price").timer().count());
+		assertEquals(18, registry.get("cache.gets").tag("cache", TMFEntityValidator.CACHE_NAME).tag("result", "hit").functionCounter().count());
+
+		// the ProductOfferingPrice changed in the catalog is validated again
+		ProductOfferingPrice changed = createPopUpdatedAt(LAST_UPDATE.plusDays(1));
+		changed.setLifecycleStatus(null);
+		assertThrows(BillingEngineValidationException.class, () -> validator.validateProductOfferingPrice(changed));
+		// the issues are cached too
+		assertThrows(BillingEngineValidationException.class, () -> validator.validateProductOfferingPrice(changed));
+		assertEquals(2, registry.get("billing.validation").tag("entity", "productOfferingPrice").timer().count());
+		assertEquals(2, registry.get("billing.validation.issues").tag("severity", "error").counter().count());
+	}
+
+	@Test
+	public void validationsWithoutLastUpdateAreNotCached() throws Exception {
+		ProductOfferingPrice pop = createPopUpdatedAt(null);
+		for (int i = 0; i < 10; i++) {
+			validator.validateProductOfferingPrice(pop);
+		}
+		assertEquals(10, registry.get("billing.validation").tag("entity", "productOfferingPrice").timer().count());
+
+		// the cache can be disabled
+		AppProperties appProperties = new AppProperties();
+		appProperties.getValidationCache().setEnabled(false);
+		TMFEntityValidator notCaching = new TMFEntityValidator(appProperties, new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+		ProductOfferingPrice updated = createPopUpdatedAt(LAST_UPDATE);
+		for (int i = 0; i < 10; i++) {
+			notCaching.validateProductOfferingPrice(updated);
+		}
+		assertEquals(20, registry.get("billing.validation").tag("entity", "productOfferingPrice").timer().count());
+	}
+
+	@Test
+	public void failedValidationsAreTimed() {
+		ProductOfferingPrice pop = createPopUpdatedAt(null);
+		pop.getPrice().setValue(null);
+		assertThrows(BillingEngineValidationException.class, () -> validator.validatePrice(pop));
+		assertEquals(1, registry.get("billing.validation").tag("entity", "price").timer().count());
+		assertEquals(1, registry.get("billing.validation.issues").tag("severity", "error").counter().count());
+	}
+
+	@Test
+	public void cachedValidationsLogTheWarningsAgain() throws Exception {
+		ProductOfferingPrice pop = createPopUpdatedAt(LAST_UPDATE);
+		pop.getPrice().setUnit(null);
+		for (int i = 0; i < 3; i++) {
+			validator.validatePrice(pop);
+		}
+		assertEquals(1, registry.get("billing.validation").tag("entity", "price").timer().count());
+		assertEquals(3, registry.get("billing.validation.issues").tag("severity", "warning").counter().count());
+	}
+
+	@Test
+	public void onlyTheValuesOfTheCachedPopAreCached() throws Exception {
+		ProductOfferingPrice pop = createPopUpdatedAt(LAST_UPDATE);
+		pop.setUnitOfMeasure(new Quantity().amount(1f).units("GB"));
+		validator.validateUnitOfMeasure(pop.getUnitOfMeasure(), pop);
+		validator.validateUnitOfMeasure(pop.getUnitOfMeasure(), pop);
+		assertEquals(1, registry.get("billing.validation").tag("entity", "unitOfMeasure").timer().count());
+
+		// a value that is not the one of the ProductOfferingPrice is always validated
+		assertThrows(BillingEngineValidationException.class, () -> validator.validateUnitOfMeasure(new Quantity().amount(1f), pop));
+		assertEquals(2, registry.get("billing.validation").tag("entity", "unitOfMeasure").timer().count());
+	}
+
+	private static ProductOfferingPrice createPopUpdatedAt(OffsetDateTime lastUpdate) {
+		ProductOfferingPrice pop = createPop("urn:ngsi-ld:product-offering-price:1", "one time", 10f, "EUR");
+		pop.setLastUpdate(lastUpdate);
+		return pop;
+	}
+
+}